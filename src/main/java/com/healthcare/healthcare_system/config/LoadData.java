@@ -5,6 +5,7 @@ import com.healthcare.healthcare_system.model.Facility;
 import com.healthcare.healthcare_system.model.Patient;
 import com.healthcare.healthcare_system.repository.FacilityRepository;
 import com.healthcare.healthcare_system.repository.PatientRepository;
+import com.healthcare.healthcare_system.service.PatientCountReconciliationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
@@ -14,9 +15,12 @@ import org.springframework.stereotype.Component;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 @Slf4j
 @Component
@@ -26,7 +30,9 @@ public class LoadData implements CommandLineRunner {
 
     private final FacilityRepository facilityRepository;
     private final PatientRepository patientRepository;
+    private final PatientCountReconciliationService patientCountReconciliationService;
     private final Random random = new Random();
+    private final Set<String> issuedValues = new HashSet<>();
 
     @Override
     public void run(String... args) throws Exception {
@@ -67,6 +73,9 @@ public class LoadData implements CommandLineRunner {
             List<Patient> patients = createPatientsForFacility(facility);
             patientRepository.saveAll(patients);
         });
+
+        // saveAll bypasses the per-write counter updates in PatientService
+        patientCountReconciliationService.reconcile();
     }
 
     private List<Facility> createFacilities() {
@@ -168,13 +177,14 @@ public class LoadData implements CommandLineRunner {
                     streets.get(random.nextInt(streets.size())) + ", " +
                     cities.get(random.nextInt(cities.size()));
 
-            String phoneNumber = String.format("(%03d) %03d-%04d",
-                    random.nextInt(1000), random.nextInt(1000), random.nextInt(10000));
+            // Contact fields are unique among active patients, so redraw on collision
+            String phoneNumber = unique(() -> String.format("(%03d) %03d-%04d",
+                    random.nextInt(1000), random.nextInt(1000), random.nextInt(10000)));
 
-            String email = firstName.toLowerCase() + "." + lastName.toLowerCase() +
-                    random.nextInt(100) + "@example.com";
+            String email = unique(() -> firstName.toLowerCase() + "." + lastName.toLowerCase() +
+                    random.nextInt(100) + "@example.com");
 
-            String insuranceNumber = "INS" + (1000000 + random.nextInt(9000000));
+            String insuranceNumber = unique(() -> "INS" + (1000000 + random.nextInt(9000000)));
 
             patients.add(Patient.builder()
                     .facility(facility)
@@ -191,4 +201,12 @@ public class LoadData implements CommandLineRunner {
 
         return patients;
     }
+
+    private String unique(Supplier<String> generator) {
+        String value = generator.get();
+        while (!issuedValues.add(value)) {
+            value = generator.get();
+        }
+        return value;
+    }
 }
\ No newline at end of file
@@ -1,28 +0,0 @@
-package com.healthcare.healthcare_system.config;
-
-
-import org.modelmapper.ModelMapper;
-import org.modelmapper.convention.MatchingStrategies;
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
-
-/**
- * The type Model mapper config.
- */
-@Configuration
-public class ModelMapperConfig {
-    /**
-     * Model mapper model mapper.
-     *
-     * @return the model mapper
-     */
-    @Bean
-    public ModelMapper modelMapper() {
-        ModelMapper modelMapper = new ModelMapper();
-        modelMapper.getConfiguration()
-                .setMatchingStrategy(MatchingStrategies.STRICT)
-                .setFieldMatchingEnabled(true)
-                .setSkipNullEnabled(true);
-        return modelMapper;
-    }
-}
@@ -3,12 +3,19 @@ package com.healthcare.healthcare_system.controller;
 import com.healthcare.healthcare_system.dto.ChatRequest;
 import com.healthcare.healthcare_system.dto.ChatResponse;
 import com.healthcare.healthcare_system.service.AIService;
+import com.healthcare.healthcare_system.service.ChatResponseCache;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.CompletableFuture;
 
 /**
  * The type Ai controller.
@@ -18,15 +25,39 @@ import org.springframework.web.bind.annotation.RestController;
 @RequiredArgsConstructor
 public class AIController {
     private final AIService aiService;
+    private final ChatResponseCache chatResponseCache;
 
     /**
-     * Process query response entity.
+     * Process query response entity. The request is handled asynchronously, so the servlet thread is released while
+     * the model generates the answer.
      *
      * @param chatRequest the chat request
-     * @return the response entity
+     * @return the response entity, once the answer is ready
      */
     @PostMapping
-    public ResponseEntity<ChatResponse> processQuery(@RequestBody ChatRequest chatRequest) {
-        return ResponseEntity.ok(aiService.processQuery(chatRequest));
+    public CompletableFuture<ResponseEntity<ChatResponse>> processQuery(@RequestBody ChatRequest chatRequest) {
+        return aiService.processQuery(chatRequest).thenApply(ResponseEntity::ok);
+    }
+
+    /**
+     * Stream the answer to a query as Server-Sent Events, token by token as the model generates it.
+     *
+     * @param chatRequest the chat request
+     * @return the event stream
+     */
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> streamQuery(@RequestBody ChatRequest chatRequest) {
+        return aiService.streamQuery(chatRequest);
+    }
+
+    /**
+     * Drop every cached model answer, so the next queries are answered by the model again.
+     *
+     * @return the response entity
+     */
+    @DeleteMapping("/cache")
+    public ResponseEntity<Void> invalidateCache() {
+        chatResponseCache.invalidateAll();
+        return ResponseEntity.noContent().build();
     }
 }
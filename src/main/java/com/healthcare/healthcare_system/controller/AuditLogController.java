@@ -1,14 +1,28 @@
 package com.healthcare.healthcare_system.controller;
 
+import com.healthcare.healthcare_system.dto.AuditActivityStatsDto;
+import com.healthcare.healthcare_system.dto.AuditArchiveRestoreResultDto;
+import com.healthcare.healthcare_system.dto.AuditEntityActivityDto;
+import com.healthcare.healthcare_system.dto.AuditPartitionMaintenanceResultDto;
+import com.healthcare.healthcare_system.dto.AuditRollupBackfillResultDto;
+import com.healthcare.healthcare_system.dto.AuditSegmentCompactionResultDto;
+import com.healthcare.healthcare_system.dto.CursorPage;
+import com.healthcare.healthcare_system.enums.AuditRollupGranularity;
 import com.healthcare.healthcare_system.model.AuditLog;
 import com.healthcare.healthcare_system.service.AuditLogService;
+import com.healthcare.healthcare_system.service.AuditPartitionService;
+import com.healthcare.healthcare_system.service.AuditRollupService;
+import com.healthcare.healthcare_system.service.AuditStreamService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -21,14 +35,24 @@ import java.util.List;
 public class AuditLogController {
 
     private final AuditLogService auditLogService;
+    private final AuditPartitionService auditPartitionService;
+    private final AuditRollupService auditRollupService;
+    private final AuditStreamService auditStreamService;
 
     /**
      * Instantiates a new Audit log controller.
      *
      * @param auditLogService the audit log service
+     * @param auditPartitionService the audit partition service
+     * @param auditRollupService the audit rollup service
+     * @param auditStreamService the audit stream service
      */
-    public AuditLogController(AuditLogService auditLogService) {
+    public AuditLogController(AuditLogService auditLogService, AuditPartitionService auditPartitionService,
+                              AuditRollupService auditRollupService, AuditStreamService auditStreamService) {
         this.auditLogService = auditLogService;
+        this.auditPartitionService = auditPartitionService;
+        this.auditRollupService = auditRollupService;
+        this.auditStreamService = auditStreamService;
     }
 
     /**
@@ -56,73 +80,231 @@ public class AuditLogController {
     }
 
     /**
-     * Gets audit logs by entity type.
+     * Gets audit logs by entity type, newest first, one keyset slice at a time.
      *
      * @param entityType the entity type
+     * @param cursor the continuation token, omitted for the first slice
+     * @param size the slice size
      * @return the audit logs by entity type
      */
     @GetMapping("/entity-type/{entityType}")
-    public ResponseEntity<List<AuditLog>> getAuditLogsByEntityType(
-            @PathVariable String entityType) {
-        List<AuditLog> auditLogs = auditLogService.getAuditLogsByEntityType(entityType);
-        return ResponseEntity.ok(auditLogs);
+    public ResponseEntity<CursorPage<AuditLog>> getAuditLogsByEntityType(
+            @PathVariable String entityType,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(auditLogService.getAuditLogsByEntityType(entityType, cursor, size));
     }
 
     /**
-     * Gets audit logs for entity.
+     * Gets audit logs for entity, newest first, one keyset slice at a time.
      *
      * @param entityType the entity type
      * @param entityId the entity id
+     * @param cursor the continuation token, omitted for the first slice
+     * @param size the slice size
      * @return the audit logs for entity
      */
     @GetMapping("/entity/{entityType}/{entityId}")
-    public ResponseEntity<List<AuditLog>> getAuditLogsForEntity(
+    public ResponseEntity<CursorPage<AuditLog>> getAuditLogsForEntity(
             @PathVariable String entityType,
-            @PathVariable Long entityId) {
-        List<AuditLog> auditLogs = auditLogService.getAuditLogsForEntity(entityType, entityId);
-        return ResponseEntity.ok(auditLogs);
+            @PathVariable Long entityId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(auditLogService.getAuditLogsForEntity(entityType, entityId, cursor, size));
     }
 
     /**
-     * Gets audit logs by action.
+     * Gets audit logs by action, newest first, one keyset slice at a time.
      *
      * @param action the action
+     * @param cursor the continuation token, omitted for the first slice
+     * @param size the slice size
      * @return the audit logs by action
      */
     @GetMapping("/action/{action}")
-    public ResponseEntity<List<AuditLog>> getAuditLogsByAction(
-            @PathVariable String action) {
-        List<AuditLog> auditLogs = auditLogService.getAuditLogsByAction(action);
-        return ResponseEntity.ok(auditLogs);
+    public ResponseEntity<CursorPage<AuditLog>> getAuditLogsByAction(
+            @PathVariable String action,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(auditLogService.getAuditLogsByAction(action, cursor, size));
     }
 
     /**
-     * Gets audit logs by date range.
+     * Gets audit logs by date range, newest first, one keyset slice at a time.
      *
      * @param start the start
      * @param end the end
+     * @param cursor the continuation token, omitted for the first slice
+     * @param size the slice size
      * @return the audit logs by date range
      */
     @GetMapping("/date-range")
-    public ResponseEntity<List<AuditLog>> getAuditLogsByDateRange(
+    public ResponseEntity<CursorPage<AuditLog>> getAuditLogsByDateRange(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
-        List<AuditLog> auditLogs = auditLogService.getAuditLogsByDateRange(start, end);
-        return ResponseEntity.ok(auditLogs);
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(auditLogService.getAuditLogsByDateRange(start, end, cursor, size));
     }
 
     /**
-     * Gets entity history.
+     * Gets entity history, newest first, one keyset slice at a time.
      *
      * @param entityType the entity type
      * @param entityId the entity id
+     * @param cursor the continuation token, omitted for the first slice
+     * @param size the slice size
      * @return the entity history
      */
     @GetMapping("/history/{entityType}/{entityId}")
-    public ResponseEntity<List<AuditLog>> getEntityHistory(
+    public ResponseEntity<CursorPage<AuditLog>> getEntityHistory(
+            @PathVariable String entityType,
+            @PathVariable Long entityId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(auditLogService.getEntityHistory(entityType, entityId, cursor, size));
+    }
+
+    /**
+     * Gets every audit entry after a cursor, oldest first, for SIEM ingestion.
+     *
+     * @param cursor the cursor returned by the previous call, omitted on the first call
+     * @param since where to start when there is no cursor
+     * @param size the slice size
+     * @return the changes
+     */
+    @GetMapping("/feed")
+    public ResponseEntity<CursorPage<AuditLog>> getChangesSince(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(auditLogService.getChangesSince(cursor, since, size));
+    }
+
+    /**
+     * Follow audit events as they are committed, as Server-Sent Events. Each event id is a {@code /feed} cursor; a
+     * client that reconnects with it as {@code Last-Event-ID} first receives the events it missed.
+     *
+     * @param entityType the entity type, omitted for all
+     * @param action the action, omitted for all
+     * @param lastEventId the id of the last event received
+     * @return the event stream
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> streamAuditLogs(
+            @RequestParam(required = false) String entityType,
+            @RequestParam(required = false) String action,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return auditStreamService.stream(entityType, action, lastEventId);
+    }
+
+    /**
+     * Reconstruct a patient or facility as it was at a point in time.
+     *
+     * @param entityType the entity type, Patient or Facility
+     * @param entityId the entity id
+     * @param at the point in time, defaults to now
+     * @return the reconstructed patient or facility
+     */
+    @GetMapping("/reconstruct/{entityType}/{entityId}")
+    public ResponseEntity<Object> reconstructEntity(
             @PathVariable String entityType,
-            @PathVariable Long entityId) {
-        List<AuditLog> history = auditLogService.getEntityHistory(entityType, entityId);
-        return ResponseEntity.ok(history);
+            @PathVariable Long entityId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        Object entity = auditLogService.reconstruct(entityType, entityId, at != null ? at : LocalDateTime.now());
+        return ResponseEntity.ok(entity);
+    }
+
+    /**
+     * Gets the number of changes per entity type and action for each hour or day of a range, from the rollups.
+     *
+     * @param granularity the bucket size, HOUR or DAY
+     * @param start the start
+     * @param end the end
+     * @param entityType the entity type, omitted for all
+     * @param action the action, omitted for all
+     * @return the activity statistics
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<AuditActivityStatsDto> getActivityStats(
+            @RequestParam(defaultValue = "HOUR") AuditRollupGranularity granularity,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(required = false) String entityType,
+            @RequestParam(required = false) String action) {
+        return ResponseEntity.ok(auditRollupService.getActivity(granularity, start, end, entityType, action));
+    }
+
+    /**
+     * Gets the most modified entities over the days of a range, from the rollups.
+     *
+     * @param start the start
+     * @param end the end
+     * @param entityType the entity type, omitted for all
+     * @param limit the number of entities
+     * @return the entities and their change counts
+     */
+    @GetMapping("/stats/top-entities")
+    public ResponseEntity<List<AuditEntityActivityDto>> getTopEntities(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(required = false) String entityType,
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(auditRollupService.getTopEntities(start, end, entityType, limit));
+    }
+
+    /**
+     * Rebuild the rollups from the audit log, by default over every day that has events.
+     *
+     * @param start the start, omitted for the oldest event
+     * @param end the end, omitted for the newest event
+     * @return the backfill result
+     */
+    @PostMapping("/stats/backfill")
+    public ResponseEntity<AuditRollupBackfillResultDto> backfillRollups(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
+        return ResponseEntity.ok(auditRollupService.backfill(start, end));
+    }
+
+    /**
+     * Create upcoming partitions and archive expired ones on demand.
+     *
+     * @return the maintenance result
+     */
+    @PostMapping("/partitions/maintain")
+    public ResponseEntity<AuditPartitionMaintenanceResultDto> maintainPartitions() {
+        return ResponseEntity.ok(auditPartitionService.maintain());
+    }
+
+    /**
+     * Compact the audit segments on demand. Nothing happens unless {@code audit.store} is SEGMENT.
+     *
+     * @return the compaction result
+     */
+    @PostMapping("/segments/compact")
+    public ResponseEntity<AuditSegmentCompactionResultDto> compactSegments() {
+        return ResponseEntity.ok(auditLogService.compactStore());
+    }
+
+    /**
+     * Gets the archived months.
+     *
+     * @return the archive names
+     */
+    @GetMapping("/archives")
+    public ResponseEntity<List<String>> getArchives() {
+        return ResponseEntity.ok(auditPartitionService.listArchives());
+    }
+
+    /**
+     * Restore an archived month into the audit log.
+     *
+     * @param archive the archive name
+     * @return the restore result
+     */
+    @PostMapping("/archives/{archive}/restore")
+    public ResponseEntity<AuditArchiveRestoreResultDto> restoreArchive(@PathVariable String archive) {
+        return ResponseEntity.ok(auditPartitionService.restore(archive));
     }
-}
\ No newline at end of file
+}
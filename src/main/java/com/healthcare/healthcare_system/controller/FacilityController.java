@@ -1,8 +1,12 @@
 package com.healthcare.healthcare_system.controller;
 
+import com.healthcare.healthcare_system.dto.CursorPage;
 import com.healthcare.healthcare_system.dto.FacilityDto;
-import com.healthcare.healthcare_system.dto.PatientDto;
+import com.healthcare.healthcare_system.dto.ReconciliationResultDto;
+import com.healthcare.healthcare_system.dto.SearchResultDto;
 import com.healthcare.healthcare_system.service.FacilityService;
+import com.healthcare.healthcare_system.service.NameSearchService;
+import com.healthcare.healthcare_system.service.PatientCountReconciliationService;
 import com.healthcare.healthcare_system.service.PatientService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -11,6 +15,8 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 
 /**
  * The type Facility controller.
@@ -21,6 +27,8 @@ import org.springframework.web.bind.annotation.*;
 public class FacilityController {
     private final FacilityService facilityService;
     private final PatientService patientService;
+    private final PatientCountReconciliationService patientCountReconciliationService;
+    private final NameSearchService nameSearchService;
 
     /**
      * Gets all facilities.
@@ -38,6 +46,20 @@ public class FacilityController {
         return ResponseEntity.ok(facilityService.getAllFacilities(pageable, name, type));
     }
 
+    /**
+     * Search facilities by partial name, most similar first.
+     *
+     * @param q the search term, at least three characters
+     * @param limit the maximum number of results
+     * @return the ranked results
+     */
+    @GetMapping("/search")
+    public ResponseEntity<List<SearchResultDto<FacilityDto>>> searchFacilities(
+            @RequestParam String q,
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(nameSearchService.searchFacilities(q, limit));
+    }
+
     /**
      * Gets facility by id.
      *
@@ -86,15 +108,31 @@ public class FacilityController {
     }
 
     /**
-     * Gets patients by facility.
+     * Gets patients by facility. When a {@code cursor} parameter is present (empty for the first slice) the
+     * listing switches to keyset paging and returns a {@link CursorPage}.
      *
      * @param facilityId the facility id
      * @param pageable the pageable
+     * @param cursor the continuation token
      * @return the patients by facility
      */
     @GetMapping("/{facilityId}/patients")
-    public ResponseEntity<Page<PatientDto>> getPatientsByFacility(
-            @PathVariable Long facilityId, Pageable pageable) {
+    public ResponseEntity<?> getPatientsByFacility(
+            @PathVariable Long facilityId, Pageable pageable,
+            @RequestParam(required = false) String cursor) {
+        if (cursor != null) {
+            return ResponseEntity.ok(patientService.scrollPatientsByFacility(facilityId, cursor, pageable));
+        }
         return ResponseEntity.ok(patientService.getPatientsByFacility(facilityId, pageable));
     }
+
+    /**
+     * Reconcile facility patient counts on demand.
+     *
+     * @return the response entity
+     */
+    @PostMapping("/patient-counts/reconcile")
+    public ResponseEntity<ReconciliationResultDto> reconcilePatientCounts() {
+        return ResponseEntity.ok(patientCountReconciliationService.reconcile());
+    }
 }
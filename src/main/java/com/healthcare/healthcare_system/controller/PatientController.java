@@ -1,16 +1,32 @@
 package com.healthcare.healthcare_system.controller;
 
 
+import com.healthcare.healthcare_system.dto.CursorPage;
 import com.healthcare.healthcare_system.dto.PatientDto;
+import com.healthcare.healthcare_system.dto.PatientImportResultDto;
+import com.healthcare.healthcare_system.dto.PatientSearchCriteria;
+import com.healthcare.healthcare_system.dto.SearchResultDto;
+import com.healthcare.healthcare_system.enums.DataFormat;
+import com.healthcare.healthcare_system.service.NameSearchService;
+import com.healthcare.healthcare_system.service.PatientExportService;
+import com.healthcare.healthcare_system.service.PatientImportService;
 import com.healthcare.healthcare_system.service.PatientService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
+import java.io.InputStream;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * The type Patient controller.
@@ -19,24 +35,70 @@ import java.time.LocalDate;
 @RequestMapping("/api/patients")
 @RequiredArgsConstructor
 public class PatientController {
+    private static final String TEXT_CSV_VALUE = "text/csv";
+    private static final MediaType TEXT_CSV = MediaType.valueOf(TEXT_CSV_VALUE);
+
     private final PatientService patientService;
+    private final NameSearchService nameSearchService;
+    private final PatientImportService patientImportService;
+    private final PatientExportService patientExportService;
 
     /**
-     * Gets all patients.
+     * Gets all patients. Every filter that is present narrows the result and they are combined in a single
+     * query. When a {@code cursor} parameter is present (empty for the first slice) the listing switches to
+     * keyset paging and returns a {@link CursorPage} without a total count.
      *
      * @param pageable the pageable
-     * @param search the search
-     * @param dob the dob
+     * @param search substring of the first or last name
+     * @param name prefix of the first or last name
+     * @param dob the exact date of birth
+     * @param dobFrom the earliest date of birth
+     * @param dobTo the latest date of birth
      * @param gender the gender
+     * @param facilityId the facility id
+     * @param insuranceNumber the insurance number
+     * @param cursor the continuation token
      * @return the all patients
      */
     @GetMapping
-    public ResponseEntity<Page<PatientDto>> getAllPatients(
+    public ResponseEntity<?> getAllPatients(
             Pageable pageable,
             @RequestParam(required = false) String search,
+            @RequestParam(required = false) String name,
             @RequestParam(required = false) LocalDate dob,
-            @RequestParam(required = false) String gender) {
-        return ResponseEntity.ok(patientService.getAllPatients(pageable, search, dob, gender));
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dobFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dobTo,
+            @RequestParam(required = false) String gender,
+            @RequestParam(required = false) Long facilityId,
+            @RequestParam(required = false) String insuranceNumber,
+            @RequestParam(required = false) String cursor) {
+        PatientSearchCriteria criteria = PatientSearchCriteria.builder()
+                .search(search)
+                .name(name)
+                .dobFrom(dob != null ? dob : dobFrom)
+                .dobTo(dob != null ? dob : dobTo)
+                .gender(gender)
+                .facilityId(facilityId)
+                .insuranceNumber(insuranceNumber)
+                .build();
+        if (cursor != null) {
+            return ResponseEntity.ok(patientService.scrollPatients(cursor, pageable, criteria));
+        }
+        return ResponseEntity.ok(patientService.getAllPatients(pageable, criteria));
+    }
+
+    /**
+     * Search patients by partial first or last name, most similar first.
+     *
+     * @param q the search term, at least three characters
+     * @param limit the maximum number of results
+     * @return the ranked results
+     */
+    @GetMapping("/search")
+    public ResponseEntity<List<SearchResultDto<PatientDto>>> searchPatients(
+            @RequestParam String q,
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(nameSearchService.searchPatients(q, limit));
     }
 
     /**
@@ -61,6 +123,55 @@ public class PatientController {
         return ResponseEntity.ok(patientService.createPatient(patientDto));
     }
 
+    /**
+     * Import patients in bulk from an NDJSON or CSV request body. The body is streamed, so it can hold far more
+     * patients than fit in memory at once.
+     *
+     * @param contentType the content type
+     * @param body the request body
+     * @return the per-row import report
+     */
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, TEXT_CSV_VALUE})
+    public ResponseEntity<PatientImportResultDto> importPatients(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType, InputStream body) {
+        DataFormat format = MediaType.parseMediaType(contentType).isCompatibleWith(TEXT_CSV)
+                ? DataFormat.CSV : DataFormat.NDJSON;
+        return ResponseEntity.ok(patientImportService.importPatients(body, format));
+    }
+
+    /**
+     * Export active patients as NDJSON, or as CSV when the client accepts {@code text/csv}. Rows are written while
+     * they are read from the database, so the export size is not limited by memory. The export runs off the request
+     * thread for up to {@code patient.export.timeout}, independently of the default async request timeout.
+     *
+     * @param facilityId only patients of this facility
+     * @param updatedSince only patients created or changed at or after this time
+     * @param accept the accept header
+     * @param response the response the export is written to
+     * @return the export task
+     */
+    @GetMapping("/export")
+    public WebAsyncTask<Void> exportPatients(
+            @RequestParam(required = false) Long facilityId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime updatedSince,
+            @RequestHeader(value = HttpHeaders.ACCEPT, defaultValue = MediaType.APPLICATION_NDJSON_VALUE) String accept,
+            HttpServletResponse response) {
+        DataFormat format = MediaType.parseMediaTypes(accept).stream().anyMatch(TEXT_CSV::equalsTypeAndSubtype)
+                ? DataFormat.CSV : DataFormat.NDJSON;
+        patientExportService.validateFilters(facilityId);
+
+        response.setContentType(format == DataFormat.CSV ? TEXT_CSV_VALUE : MediaType.APPLICATION_NDJSON_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(format == DataFormat.CSV ? "patients.csv" : "patients.ndjson")
+                .build()
+                .toString());
+        return new WebAsyncTask<>(patientExportService.getTimeout().toMillis(), () -> {
+            patientExportService.exportPatients(facilityId, updatedSince, format, response.getOutputStream());
+            response.flushBuffer();
+            return null;
+        });
+    }
+
     /**
      * Update patient response entity.
      *
@@ -0,0 +1,22 @@
+package com.healthcare.healthcare_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * The type Audit activity dto.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AuditActivityDto {
+    private LocalDateTime bucket;
+    private String entityType;
+    private String action;
+    private long eventCount;
+}
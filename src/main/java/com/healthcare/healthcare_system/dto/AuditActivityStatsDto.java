@@ -0,0 +1,25 @@
+package com.healthcare.healthcare_system.dto;
+
+import com.healthcare.healthcare_system.enums.AuditRollupGranularity;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * The type Audit activity stats dto.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AuditActivityStatsDto {
+    private AuditRollupGranularity granularity;
+    private LocalDateTime start;
+    private LocalDateTime end;
+    private long totalEvents;
+    private List<AuditActivityDto> buckets;
+}
@@ -0,0 +1,19 @@
+package com.healthcare.healthcare_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The type Audit archive restore result dto.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AuditArchiveRestoreResultDto {
+    private String archive;
+    private String partition;
+    private long rowsRestored;
+}
@@ -0,0 +1,19 @@
+package com.healthcare.healthcare_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The type Audit entity activity dto.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AuditEntityActivityDto {
+    private String entityType;
+    private Long entityId;
+    private long eventCount;
+}
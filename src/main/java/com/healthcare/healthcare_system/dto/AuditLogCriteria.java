@@ -0,0 +1,36 @@
+package com.healthcare.healthcare_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * The type Audit log criteria. Every non-null field narrows the result; all of them are combined with AND.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AuditLogCriteria {
+    private String entityType;
+
+    /**
+     * Only used together with {@link #entityType}.
+     */
+    private Long entityId;
+
+    private String action;
+
+    /**
+     * Changed at or after, inclusive.
+     */
+    private LocalDateTime from;
+
+    /**
+     * Changed at or before, inclusive.
+     */
+    private LocalDateTime to;
+}
@@ -0,0 +1,17 @@
+package com.healthcare.healthcare_system.dto;
+
+import com.healthcare.healthcare_system.model.AuditLog;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Published by the audit stores for every batch they save. Listeners bound to the transaction see it once the batch
+ * is committed.
+ */
+@Getter
+@AllArgsConstructor
+public class AuditLogsSavedEvent {
+    private final List<AuditLog> auditLogs;
+}
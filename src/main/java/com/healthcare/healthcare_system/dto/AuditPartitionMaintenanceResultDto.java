@@ -0,0 +1,21 @@
+package com.healthcare.healthcare_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * The type Audit partition maintenance result dto.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AuditPartitionMaintenanceResultDto {
+    private List<String> createdPartitions;
+    private List<String> archivedPartitions;
+    private long durationMs;
+}
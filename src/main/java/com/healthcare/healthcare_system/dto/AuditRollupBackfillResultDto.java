@@ -0,0 +1,24 @@
+package com.healthcare.healthcare_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * The type Audit rollup backfill result dto.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AuditRollupBackfillResultDto {
+    private LocalDate firstDay;
+    private LocalDate lastDay;
+    private int daysRebuilt;
+    private int daysSkipped;
+    private long eventsCounted;
+    private long durationMs;
+}
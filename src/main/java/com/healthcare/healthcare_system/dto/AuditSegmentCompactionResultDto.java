@@ -0,0 +1,21 @@
+package com.healthcare.healthcare_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * The type Audit segment compaction result dto.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AuditSegmentCompactionResultDto {
+    private List<String> compactedSegments;
+    private List<String> writtenSegments;
+    private long durationMs;
+}
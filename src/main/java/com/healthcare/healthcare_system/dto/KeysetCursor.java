@@ -0,0 +1,19 @@
+package com.healthcare.healthcare_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Sort;
+
+/**
+ * The decoded position of a keyset cursor: the sort key and id of the last row already returned.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KeysetCursor {
+    private String sortProperty;
+    private Sort.Direction direction;
+    private String sortValue;
+    private Long id;
+}
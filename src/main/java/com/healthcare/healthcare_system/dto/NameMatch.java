@@ -0,0 +1,16 @@
+package com.healthcare.healthcare_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The type Name match: the id of a matching record and its similarity to the search term, between 0 and 1.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NameMatch {
+    private Long id;
+    private double score;
+}
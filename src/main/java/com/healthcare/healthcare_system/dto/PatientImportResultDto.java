@@ -0,0 +1,25 @@
+package com.healthcare.healthcare_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * The type Patient import result dto.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PatientImportResultDto {
+    private long totalRows;
+    private long imported;
+    private long duplicates;
+    private long invalid;
+    private long failed;
+    private long durationMs;
+    private List<PatientImportRowResultDto> rows;
+}
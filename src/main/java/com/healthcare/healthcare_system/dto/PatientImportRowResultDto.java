@@ -0,0 +1,26 @@
+package com.healthcare.healthcare_system.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.healthcare.healthcare_system.enums.ImportRowStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * The outcome of one imported row. {@code row} is the line number for NDJSON and the record number, not counting
+ * the header, for CSV.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PatientImportRowResultDto {
+    private long row;
+    private ImportRowStatus status;
+    private Long patientId;
+    private List<String> errors;
+}
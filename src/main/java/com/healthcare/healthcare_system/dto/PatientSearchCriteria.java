@@ -0,0 +1,43 @@
+package com.healthcare.healthcare_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * The type Patient search criteria. Every non-null field narrows the result; all of them are combined with AND.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PatientSearchCriteria {
+    /**
+     * Substring of the first or last name, case insensitive.
+     */
+    private String search;
+
+    /**
+     * Prefix of the first or last name, case insensitive.
+     */
+    private String name;
+
+    private LocalDate dobFrom;
+    private LocalDate dobTo;
+    private String gender;
+    private Long facilityId;
+    private String insuranceNumber;
+
+    /**
+     * Whether no filter is set.
+     *
+     * @return the boolean
+     */
+    public boolean isEmpty() {
+        return search == null && name == null && dobFrom == null && dobTo == null
+                && gender == null && facilityId == null && insuranceNumber == null;
+    }
+}
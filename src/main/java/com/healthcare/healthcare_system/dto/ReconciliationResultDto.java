@@ -0,0 +1,19 @@
+package com.healthcare.healthcare_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The type Reconciliation result dto.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReconciliationResultDto {
+    private long facilitiesScanned;
+    private long facilitiesCorrected;
+    private long durationMs;
+}
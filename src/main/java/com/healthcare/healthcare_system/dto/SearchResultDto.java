@@ -0,0 +1,18 @@
+package com.healthcare.healthcare_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The type Search result dto.
+ *
+ * @param <T> the result type
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchResultDto<T> {
+    private double score;
+    private T result;
+}
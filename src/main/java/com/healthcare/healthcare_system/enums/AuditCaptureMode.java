@@ -0,0 +1,16 @@
+package com.healthcare.healthcare_system.enums;
+
+/**
+ * The enum Audit capture mode.
+ */
+public enum AuditCaptureMode {
+    /**
+     * Events are handed to the in-memory audit writer and saved in batches on its own thread and transaction.
+     */
+    QUEUE,
+    /**
+     * Events are inserted into the outbox table in the caller's transaction and relayed to the audit log
+     * after commit, so rolled back changes are never audited.
+     */
+    OUTBOX
+}
@@ -0,0 +1,19 @@
+package com.healthcare.healthcare_system.enums;
+
+/**
+ * The enum Audit overflow policy.
+ */
+public enum AuditOverflowPolicy {
+    /**
+     * The caller waits until the writer has made room in the queue.
+     */
+    BLOCK,
+    /**
+     * The event is appended to a local spill file and written once the queue has drained.
+     */
+    SPILL,
+    /**
+     * The event is dropped and counted.
+     */
+    REJECT
+}
@@ -0,0 +1,15 @@
+package com.healthcare.healthcare_system.enums;
+
+/**
+ * The enum Audit rollup granularity.
+ */
+public enum AuditRollupGranularity {
+    /**
+     * Counts per hour.
+     */
+    HOUR,
+    /**
+     * Counts per day.
+     */
+    DAY
+}
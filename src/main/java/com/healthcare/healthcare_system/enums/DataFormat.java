@@ -0,0 +1,15 @@
+package com.healthcare.healthcare_system.enums;
+
+/**
+ * The enum Data format.
+ */
+public enum DataFormat {
+    /**
+     * One JSON patient object per line.
+     */
+    NDJSON,
+    /**
+     * Comma separated values with a header row naming the patient fields.
+     */
+    CSV
+}
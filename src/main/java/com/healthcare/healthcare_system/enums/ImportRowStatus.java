@@ -0,0 +1,23 @@
+package com.healthcare.healthcare_system.enums;
+
+/**
+ * The enum Import row status.
+ */
+public enum ImportRowStatus {
+    /**
+     * The row was inserted.
+     */
+    IMPORTED,
+    /**
+     * The row could not be parsed, failed validation or names an unknown facility.
+     */
+    INVALID,
+    /**
+     * The row repeats a unique contact field of an active patient or of an earlier imported row.
+     */
+    DUPLICATE,
+    /**
+     * The chunk holding the row could not be written, so the row was not imported.
+     */
+    FAILED
+}
@@ -0,0 +1,30 @@
+package com.healthcare.healthcare_system.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+/**
+ * The type Service busy exception. Thrown when a request is shed under load, so the client is told when to retry.
+ */
+@Getter
+public class ServiceBusyException extends HealthcareSystemException {
+    private final HttpStatus status;
+    private final long retryAfterSeconds;
+
+    /**
+     * Instantiates a new Service busy exception.
+     *
+     * @param status the status to answer with, 429 or 503
+     * @param entityType the entity type
+     * @param retryAfterSeconds the seconds after which the client may retry
+     * @param cause the cause
+     */
+    public ServiceBusyException(HttpStatus status, String entityType, long retryAfterSeconds, Throwable cause) {
+        super("SERVICE_BUSY",
+                String.format("The %s service is busy. Please try again in %d seconds.", entityType, retryAfterSeconds),
+                cause.getMessage(),
+                entityType);
+        this.status = status;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,55 @@
+package com.healthcare.healthcare_system.mapper;
+
+import com.healthcare.healthcare_system.dto.FacilityDto;
+import com.healthcare.healthcare_system.model.Facility;
+import org.mapstruct.BeanMapping;
+import org.mapstruct.Builder;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingTarget;
+import org.mapstruct.NullValuePropertyMappingStrategy;
+
+/**
+ * Compile-time generated mapper between {@link Facility} and {@link FacilityDto}.
+ * The patient count is read from the facility's maintained counter.
+ */
+@Mapper(componentModel = "spring", builder = @Builder(disableBuilder = true))
+public interface FacilityMapper {
+
+    /**
+     * To dto facility dto.
+     *
+     * @param facility the facility
+     * @return the facility dto
+     */
+    FacilityDto toDto(Facility facility);
+
+    /**
+     * To entity facility.
+     *
+     * @param facilityDto the facility dto
+     * @return the facility
+     */
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "deleted", ignore = true)
+    @Mapping(target = "patientCount", ignore = true)
+    @Mapping(target = "patients", ignore = true)
+    @Mapping(target = "createdAt", ignore = true)
+    @Mapping(target = "updatedAt", ignore = true)
+    Facility toEntity(FacilityDto facilityDto);
+
+    /**
+     * Copy the non-null dto fields onto an existing facility.
+     *
+     * @param facilityDto the facility dto
+     * @param facility the facility to update
+     */
+    @BeanMapping(nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE)
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "deleted", ignore = true)
+    @Mapping(target = "patientCount", ignore = true)
+    @Mapping(target = "patients", ignore = true)
+    @Mapping(target = "createdAt", ignore = true)
+    @Mapping(target = "updatedAt", ignore = true)
+    void updateEntity(FacilityDto facilityDto, @MappingTarget Facility facility);
+}
@@ -0,0 +1,54 @@
+package com.healthcare.healthcare_system.mapper;
+
+import com.healthcare.healthcare_system.dto.PatientDto;
+import com.healthcare.healthcare_system.model.Patient;
+import org.mapstruct.BeanMapping;
+import org.mapstruct.Builder;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingTarget;
+import org.mapstruct.NullValuePropertyMappingStrategy;
+
+/**
+ * Compile-time generated mapper between {@link Patient} and {@link PatientDto}.
+ * The facility association is resolved by the service and never mapped from the dto.
+ */
+@Mapper(componentModel = "spring", builder = @Builder(disableBuilder = true))
+public interface PatientMapper {
+
+    /**
+     * To dto patient dto.
+     *
+     * @param patient the patient
+     * @return the patient dto
+     */
+    @Mapping(target = "facilityId", source = "facility.id")
+    PatientDto toDto(Patient patient);
+
+    /**
+     * To entity patient.
+     *
+     * @param patientDto the patient dto
+     * @return the patient
+     */
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "facility", ignore = true)
+    @Mapping(target = "deleted", ignore = true)
+    @Mapping(target = "createdAt", ignore = true)
+    @Mapping(target = "updatedAt", ignore = true)
+    Patient toEntity(PatientDto patientDto);
+
+    /**
+     * Copy the non-null dto fields onto an existing patient.
+     *
+     * @param patientDto the patient dto
+     * @param patient the patient to update
+     */
+    @BeanMapping(nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE)
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "facility", ignore = true)
+    @Mapping(target = "deleted", ignore = true)
+    @Mapping(target = "createdAt", ignore = true)
+    @Mapping(target = "updatedAt", ignore = true)
+    void updateEntity(PatientDto patientDto, @MappingTarget Patient patient);
+}
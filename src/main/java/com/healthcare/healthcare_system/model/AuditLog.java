@@ -1,8 +1,12 @@
 package com.healthcare.healthcare_system.model;
 
 
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.healthcare.healthcare_system.repository.AuditCodeConverter;
+import com.healthcare.healthcare_system.repository.AuditValueConverter;
+import com.healthcare.healthcare_system.util.RawJsonDeserializer;
 import lombok.*;
-import org.hibernate.annotations.CreationTimestamp;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
@@ -18,28 +22,47 @@ import java.time.LocalDateTime;
 @Builder
 public class AuditLog {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "audit_log_id_seq")
+    @SequenceGenerator(name = "audit_log_id_seq", sequenceName = "audit_log_id_seq", allocationSize = 50)
     private Long id;
 
-    @Column(name = "entity_type", nullable = false)
+    // Stored as an audit_code code, like action
+    @Convert(converter = AuditCodeConverter.class)
+    @Column(name = "entity_type_code", nullable = false)
     private String entityType;
 
     @Column(name = "entity_id", nullable = false)
     private Long entityId;
 
-    @Column(nullable = false)
+    @Convert(converter = AuditCodeConverter.class)
+    @Column(name = "action_code", nullable = false)
     private String action;
 
+    // JSON: the changed fields with their old values, see AuditDiffUtils; stored as BYTEA, see AuditValueCodec
+    @JsonRawValue
+    @JsonDeserialize(using = RawJsonDeserializer.class)
+    @Convert(converter = AuditValueConverter.class)
     @Column(name = "old_value")
     private String oldValue;
 
+    // JSON: the created entity, or the changed fields with their new values
+    @JsonRawValue
+    @JsonDeserialize(using = RawJsonDeserializer.class)
+    @Convert(converter = AuditValueConverter.class)
     @Column(name = "new_value")
     private String newValue;
 
     @Column(name = "changed_by")
     private String changedBy;
 
-    @CreationTimestamp
     @Column(name = "changed_at", updatable = false)
     private LocalDateTime changedAt;
+
+    // Events are written in batches after the fact, so the time of the change is set when it is logged
+    @PrePersist
+    void onCreate() {
+        if (changedAt == null) {
+            changedAt = LocalDateTime.now();
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+package com.healthcare.healthcare_system.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.ColumnTransformer;
+
+import java.time.LocalDateTime;
+
+/**
+ * The type Audit outbox event.
+ */
+@Entity
+@Table(name = "audit_outbox")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AuditOutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "audit_outbox_id_seq")
+    @SequenceGenerator(name = "audit_outbox_id_seq", sequenceName = "audit_outbox_id_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "entity_type", nullable = false)
+    private String entityType;
+
+    @Column(name = "entity_id", nullable = false)
+    private Long entityId;
+
+    @Column(nullable = false)
+    private String action;
+
+    @ColumnTransformer(write = "?::jsonb")
+    @Column(name = "old_value", columnDefinition = "jsonb")
+    private String oldValue;
+
+    @ColumnTransformer(write = "?::jsonb")
+    @Column(name = "new_value", columnDefinition = "jsonb")
+    private String newValue;
+
+    @Column(name = "changed_by")
+    private String changedBy;
+
+    @Column(name = "changed_at", nullable = false)
+    private LocalDateTime changedAt;
+}
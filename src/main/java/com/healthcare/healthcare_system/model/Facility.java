@@ -1,6 +1,7 @@
 package com.healthcare.healthcare_system.model;
 
 import com.healthcare.healthcare_system.enums.FacilityType;
+import com.healthcare.healthcare_system.model.listener.NameSearchEntityListener;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
@@ -15,6 +16,7 @@ import java.util.List;
  */
 @Entity
 @Table(name = "facilities")
+@EntityListeners(NameSearchEntityListener.class)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -23,7 +25,8 @@ import java.util.List;
 @Where(clause = "deleted = false")
 public class Facility {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "facilities_id_seq")
+    @SequenceGenerator(name = "facilities_id_seq", sequenceName = "facilities_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, unique = true)
@@ -39,6 +42,14 @@ public class Facility {
     @Column(name = "deleted", nullable = false)
     private boolean deleted = false;
 
+    /**
+     * Denormalized count of active patients. Only changed through
+     * {@link com.healthcare.healthcare_system.repository.FacilityRepository#adjustPatientCount}
+     * and the reconciliation job, never by entity flushes.
+     */
+    @Column(name = "patient_count", nullable = false, insertable = false, updatable = false)
+    private long patientCount;
+
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
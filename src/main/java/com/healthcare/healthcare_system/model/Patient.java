@@ -1,6 +1,7 @@
 package com.healthcare.healthcare_system.model;
 
 
+import com.healthcare.healthcare_system.model.listener.NameSearchEntityListener;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
@@ -15,6 +16,7 @@ import java.time.LocalDateTime;
  */
 @Entity
 @Table(name = "patients")
+@EntityListeners(NameSearchEntityListener.class)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -23,7 +25,8 @@ import java.time.LocalDateTime;
 @Where(clause = "deleted = false")
 public class Patient {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "patients_id_seq")
+    @SequenceGenerator(name = "patients_id_seq", sequenceName = "patients_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -0,0 +1,14 @@
+package com.healthcare.healthcare_system.model.listener;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published by {@link NameSearchEntityListener} for a patient or facility that was inserted or updated. Listeners
+ * bound to the transaction see it only once the write is committed.
+ */
+@Getter
+@AllArgsConstructor
+public class EntitySavedEvent {
+    private final Object entity;
+}
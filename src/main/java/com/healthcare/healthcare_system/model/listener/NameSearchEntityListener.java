@@ -0,0 +1,28 @@
+package com.healthcare.healthcare_system.model.listener;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes an {@link EntitySavedEvent} for every patient and facility write, so the name search index can follow
+ * them once the transaction commits. Soft deletes arrive as updates.
+ */
+@Component
+@RequiredArgsConstructor
+public class NameSearchEntityListener {
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * After save.
+     *
+     * @param entity the entity
+     */
+    @PostPersist
+    @PostUpdate
+    public void afterSave(Object entity) {
+        eventPublisher.publishEvent(new EntitySavedEvent(entity));
+    }
+}
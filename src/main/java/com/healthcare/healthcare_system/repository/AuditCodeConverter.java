@@ -0,0 +1,33 @@
+package com.healthcare.healthcare_system.repository;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Maps audit entity types and actions to their {@code audit_code} codes. Saves give new names a code first (see
+ * {@link JpaAuditLogStore}), so a name without one only gets here as a query filter, and matches nothing.
+ */
+@Component
+@Converter
+@RequiredArgsConstructor
+public class AuditCodeConverter implements AttributeConverter<String, Short> {
+    static final short UNKNOWN_CODE = 0;
+
+    private final AuditCodeRepository auditCodeRepository;
+
+    @Override
+    public Short convertToDatabaseColumn(String name) {
+        if (name == null) {
+            return null;
+        }
+        Short code = auditCodeRepository.findCode(name);
+        return code != null ? code : UNKNOWN_CODE;
+    }
+
+    @Override
+    public String convertToEntityAttribute(Short code) {
+        return code == null ? null : auditCodeRepository.findName(code);
+    }
+}
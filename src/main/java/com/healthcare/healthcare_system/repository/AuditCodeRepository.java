@@ -0,0 +1,153 @@
+package com.healthcare.healthcare_system.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import static com.healthcare.healthcare_system.util.MessageUtils.*;
+
+/**
+ * The {@code audit_code} dictionary created by the {@code 014-compact-audit-log} changeset, which maps the entity
+ * types and actions of audit events to the SMALLINT codes {@code audit_log} stores. The ones in {@code MessageUtils}
+ * have fixed codes; any other name gets the next free code the first time it is saved. Codes are never changed or
+ * reused, so they are cached for good and the table is only read again for a name or code the cache does not know.
+ * A name that is still unknown after that, typically a query filter naming an entity type or action that was never
+ * saved, is not looked up in the table again until {@code audit.code.miss-reload-interval-ms} has passed, so unknown
+ * filters cannot make every request scan the table.
+ */
+@Repository
+@RequiredArgsConstructor
+public class AuditCodeRepository {
+    static final Map<String, Short> FIXED_CODES = Map.of(
+            FACILITY_ENTITY, (short) 1,
+            PATIENT_ENTITY_TYPE, (short) 2,
+            CREATE_ACTION, (short) 11,
+            UPDATE_ACTION, (short) 12,
+            DELETE_ACTION, (short) 13,
+            IMPORT_ACTION, (short) 14);
+
+    private static final String FIND_ALL_SQL = "SELECT code, name FROM audit_code";
+    private static final String REGISTER_SQL = "INSERT INTO audit_code (name) VALUES (?) ON CONFLICT (name) DO NOTHING";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${audit.code.miss-reload-interval-ms:1000}")
+    private long missReloadIntervalMs = 1000;
+
+    private LongSupplier nanoTime = System::nanoTime;
+
+    private volatile Codes codes = new Codes(FIXED_CODES);
+    private long lastMissReload;
+    private volatile boolean missReloaded;
+
+    /**
+     * Both directions of the dictionary, replaced whole when the table is read again.
+     */
+    private static final class Codes {
+        private final Map<String, Short> byName;
+        private final Map<Short, String> byCode = new HashMap<>();
+
+        private Codes(Map<String, Short> byName) {
+            this.byName = byName;
+            byName.forEach((name, code) -> byCode.put(code, name));
+        }
+    }
+
+    /**
+     * Find the code of an entity type or action.
+     *
+     * @param name the entity type or action
+     * @return the code, or null when it has never been saved
+     */
+    public Short findCode(String name) {
+        Short code = codes.byName.get(name);
+        if (code == null && missReloadDue()) {
+            code = reload().byName.get(name);
+        }
+        return code;
+    }
+
+    /**
+     * Find the entity type or action of a code.
+     *
+     * @param code the code
+     * @return the entity type or action
+     */
+    public String findName(short code) {
+        String name = codes.byCode.get(code);
+        if (name == null) {
+            name = reload().byCode.get(code);
+        }
+        if (name == null) {
+            throw new IllegalStateException("Unknown audit code " + code);
+        }
+        return name;
+    }
+
+    /**
+     * Find the names that have no code yet.
+     *
+     * @param names the entity types and actions
+     * @return the ones without a code
+     */
+    public List<String> findUnknown(Collection<String> names) {
+        Codes known = codes;
+        if (known.byName.keySet().containsAll(names)) {
+            return List.of();
+        }
+        known = reload();
+        List<String> unknown = new ArrayList<>();
+        for (String name : new LinkedHashSet<>(names)) {
+            if (!known.byName.containsKey(name)) {
+                unknown.add(name);
+            }
+        }
+        return unknown;
+    }
+
+    /**
+     * Give codes to new names. Runs in a transaction of its own, so the codes are committed before any event uses
+     * them and cannot be rolled back with those events; they are cached the next time they are looked up.
+     *
+     * @param names the entity types and actions without a code
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void register(Collection<String> names) {
+        for (String name : names) {
+            jdbcTemplate.update(REGISTER_SQL, name);
+        }
+        // The saves about to use these codes must not wait for the miss interval
+        missReloaded = false;
+    }
+
+    private synchronized boolean missReloadDue() {
+        long now = nanoTime.getAsLong();
+        if (missReloaded && now - lastMissReload < TimeUnit.MILLISECONDS.toNanos(missReloadIntervalMs)) {
+            return false;
+        }
+        missReloaded = true;
+        lastMissReload = now;
+        return true;
+    }
+
+    private Codes reload() {
+        Map<String, Short> byName = new HashMap<>(FIXED_CODES);
+        jdbcTemplate.query(FIND_ALL_SQL, (RowCallbackHandler) rs -> byName.put(rs.getString(2), rs.getShort(1)));
+        Codes reloaded = new Codes(byName);
+        codes = reloaded;
+        return reloaded;
+    }
+}
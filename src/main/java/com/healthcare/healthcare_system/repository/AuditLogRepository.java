@@ -9,38 +9,16 @@ import java.util.List;
 /**
  * The interface Audit log repository.
  */
-public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
-    /**
-     * Find by entity type order by changed at desc list.
-     *
-     * @param entityType the entity type
-     * @return the list
-     */
-    List<AuditLog> findByEntityTypeOrderByChangedAtDesc(String entityType);
+public interface AuditLogRepository extends JpaRepository<AuditLog, Long>, AuditLogRepositoryCustom {
 
     /**
-     * Find by entity type and entity id order by changed at desc list.
+     * Find the audit entries of an entity up to a point in time, oldest first.
      *
      * @param entityType the entity type
      * @param entityId the entity id
+     * @param at the point in time
      * @return the list
      */
-    List<AuditLog> findByEntityTypeAndEntityIdOrderByChangedAtDesc(String entityType, Long entityId);
-
-    /**
-     * Find by action order by changed at desc list.
-     *
-     * @param action the action
-     * @return the list
-     */
-    List<AuditLog> findByActionOrderByChangedAtDesc(String action);
-
-    /**
-     * Find by changed at between order by changed at desc list.
-     *
-     * @param start the start
-     * @param end the end
-     * @return the list
-     */
-    List<AuditLog> findByChangedAtBetweenOrderByChangedAtDesc(LocalDateTime start, LocalDateTime end);
-}
\ No newline at end of file
+    List<AuditLog> findByEntityTypeAndEntityIdAndChangedAtLessThanEqualOrderByChangedAtAscIdAsc(
+            String entityType, Long entityId, LocalDateTime at);
+}
@@ -0,0 +1,26 @@
+package com.healthcare.healthcare_system.repository;
+
+import com.healthcare.healthcare_system.dto.KeysetCursor;
+import com.healthcare.healthcare_system.model.AuditLog;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Hand-written audit log queries that Spring Data cannot derive.
+ */
+public interface AuditLogRepositoryCustom {
+
+    /**
+     * Keyset (seek) query: audit entries strictly after the cursor position, ordered by change time and id.
+     * Issues a single query with a row limit and no count query.
+     *
+     * @param filter the filter, may be null
+     * @param direction the sort direction
+     * @param after the position to continue after, null for the first slice
+     * @param limit the maximum number of rows
+     * @return the audit entries
+     */
+    List<AuditLog> scroll(Specification<AuditLog> filter, Sort.Direction direction, KeysetCursor after, int limit);
+}
@@ -0,0 +1,81 @@
+package com.healthcare.healthcare_system.repository;
+
+import com.healthcare.healthcare_system.dto.KeysetCursor;
+import com.healthcare.healthcare_system.model.AuditLog;
+import com.healthcare.healthcare_system.util.CursorUtils;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.healthcare.healthcare_system.util.MessageUtils.AUDIT_LOG_ENTITY;
+
+/**
+ * The type Audit log repository impl.
+ */
+public class AuditLogRepositoryImpl implements AuditLogRepositoryCustom {
+    private static final String ID = "id";
+    private static final String CHANGED_AT = "changedAt";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<AuditLog> scroll(Specification<AuditLog> filter, Sort.Direction direction, KeysetCursor after,
+                                 int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<AuditLog> query = cb.createQuery(AuditLog.class);
+        Root<AuditLog> root = query.from(AuditLog.class);
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (filter != null) {
+            Predicate predicate = filter.toPredicate(root, query, cb);
+            if (predicate != null) {
+                predicates.add(predicate);
+            }
+        }
+        if (after != null) {
+            predicates.add(seekPredicate(cb, root, direction, after));
+        }
+        query.where(predicates.toArray(new Predicate[0]));
+
+        Expression<LocalDateTime> changedAt = root.get(CHANGED_AT);
+        Expression<Long> id = root.get(ID);
+        query.orderBy(direction.isAscending()
+                ? List.of(cb.asc(changedAt), cb.asc(id))
+                : List.of(cb.desc(changedAt), cb.desc(id)));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * For descending order: {@code changed_at <= v AND (changed_at < v OR id < lastId)}. The redundant range bound
+     * lets the database start the index scan at the cursor instead of filtering from the beginning.
+     */
+    private Predicate seekPredicate(CriteriaBuilder cb, Root<AuditLog> root, Sort.Direction direction,
+                                    KeysetCursor after) {
+        Expression<LocalDateTime> changedAt = root.get(CHANGED_AT);
+        Expression<Long> id = root.get(ID);
+        LocalDateTime value = (LocalDateTime) CursorUtils.parseSortValue(
+                after.getSortValue(), LocalDateTime.class, AUDIT_LOG_ENTITY);
+        if (direction.isAscending()) {
+            return cb.and(
+                    cb.greaterThanOrEqualTo(changedAt, value),
+                    cb.or(cb.greaterThan(changedAt, value), cb.greaterThan(id, after.getId())));
+        }
+        return cb.and(
+                cb.lessThanOrEqualTo(changedAt, value),
+                cb.or(cb.lessThan(changedAt, value), cb.lessThan(id, after.getId())));
+    }
+}
@@ -0,0 +1,69 @@
+package com.healthcare.healthcare_system.repository;
+
+import com.healthcare.healthcare_system.model.AuditLog;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+
+/**
+ * Composable audit log query predicates. Each listing combines them so that its equality columns lead one of the
+ * {@code 011-audit-log-query-indexes} indexes, followed by {@code (changed_at, id)} for the keyset.
+ */
+public class AuditLogSpecifications {
+
+    private AuditLogSpecifications() {
+    }
+
+    /**
+     * Audit entries of the given entity type.
+     *
+     * @param entityType the entity type
+     * @return the specification
+     */
+    public static Specification<AuditLog> hasEntityType(String entityType) {
+        return (root, query, cb) -> cb.equal(root.get("entityType"), entityType);
+    }
+
+    /**
+     * Audit entries of one entity.
+     *
+     * @param entityType the entity type
+     * @param entityId the entity id
+     * @return the specification
+     */
+    public static Specification<AuditLog> hasEntity(String entityType, Long entityId) {
+        return (root, query, cb) -> cb.and(
+                cb.equal(root.get("entityType"), entityType),
+                cb.equal(root.get("entityId"), entityId));
+    }
+
+    /**
+     * Audit entries with the given action.
+     *
+     * @param action the action
+     * @return the specification
+     */
+    public static Specification<AuditLog> hasAction(String action) {
+        return (root, query, cb) -> cb.equal(root.get("action"), action);
+    }
+
+    /**
+     * Audit entries changed at or after the given time.
+     *
+     * @param start the start, inclusive
+     * @return the specification
+     */
+    public static Specification<AuditLog> changedOnOrAfter(LocalDateTime start) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("changedAt"), start);
+    }
+
+    /**
+     * Audit entries changed at or before the given time.
+     *
+     * @param end the end, inclusive
+     * @return the specification
+     */
+    public static Specification<AuditLog> changedOnOrBefore(LocalDateTime end) {
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("changedAt"), end);
+    }
+}
@@ -0,0 +1,68 @@
+package com.healthcare.healthcare_system.repository;
+
+import com.healthcare.healthcare_system.dto.AuditLogCriteria;
+import com.healthcare.healthcare_system.dto.AuditSegmentCompactionResultDto;
+import com.healthcare.healthcare_system.dto.KeysetCursor;
+import com.healthcare.healthcare_system.model.AuditLog;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Where audit events are kept, chosen with {@code audit.store}: {@code JPA} keeps them in the partitioned
+ * {@code audit_log} table, {@code SEGMENT} in memory-mapped segment files on local disk.
+ */
+public interface AuditLogStore {
+
+    /**
+     * Save a batch of audit events and assign their ids.
+     *
+     * @param auditLogs the audit events
+     * @return the saved audit events
+     */
+    List<AuditLog> saveAll(List<AuditLog> auditLogs);
+
+    /**
+     * Audit events strictly after the cursor position, ordered by change time and id.
+     *
+     * @param criteria the criteria
+     * @param direction the sort direction
+     * @param after the position to continue after, null for the first slice
+     * @param limit the maximum number of events
+     * @return the audit events
+     */
+    List<AuditLog> scroll(AuditLogCriteria criteria, Sort.Direction direction, KeysetCursor after, int limit);
+
+    /**
+     * The audit events of an entity up to a point in time, oldest first.
+     *
+     * @param entityType the entity type
+     * @param entityId the entity id
+     * @param at the point in time
+     * @return the audit events
+     */
+    List<AuditLog> findHistory(String entityType, Long entityId, LocalDateTime at);
+
+    /**
+     * A page of all audit events.
+     *
+     * @param pageable the pageable
+     * @return the page
+     */
+    Page<AuditLog> findAll(Pageable pageable);
+
+    /**
+     * Compact the store. Only the segment store has anything to compact.
+     *
+     * @return the compaction result
+     */
+    default AuditSegmentCompactionResultDto compact() {
+        return AuditSegmentCompactionResultDto.builder()
+                .compactedSegments(List.of())
+                .writtenSegments(List.of())
+                .build();
+    }
+}
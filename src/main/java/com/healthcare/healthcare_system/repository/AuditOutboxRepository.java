@@ -0,0 +1,34 @@
+package com.healthcare.healthcare_system.repository;
+
+import com.healthcare.healthcare_system.model.AuditOutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The interface Audit outbox repository.
+ */
+public interface AuditOutboxRepository extends JpaRepository<AuditOutboxEvent, Long> {
+    /**
+     * Lock the oldest outbox events, skipping rows another relay has already locked.
+     *
+     * @param limit the maximum number of events
+     * @return the events in id order
+     */
+    @Query(value = "SELECT * FROM audit_outbox ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<AuditOutboxEvent> lockNextBatch(@Param("limit") int limit);
+
+    /**
+     * Delete outbox events by id.
+     *
+     * @param ids the ids
+     * @return the number of deleted rows
+     */
+    @Modifying
+    @Query("DELETE FROM AuditOutboxEvent e WHERE e.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,192 @@
+package com.healthcare.healthcare_system.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Statement;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Maintenance of the monthly {@code audit_log} partitions created by the {@code 012-partition-audit-log} changeset.
+ * Partitions are named {@code audit_log_yYYYYmMM}; names are only ever built from a {@link YearMonth}, so they are
+ * safe to put into DDL. Archives are moved with {@code COPY} in CSV, which the restore reads back unchanged.
+ */
+@Repository
+@RequiredArgsConstructor
+public class AuditPartitionRepository {
+    static final String COLUMNS =
+            "id, entity_id, changed_at, entity_type_code, action_code, changed_by, old_value, new_value";
+    // Archives written before 014-compact-audit-log hold names and JSON instead of codes and stored values
+    static final String LEGACY_COLUMNS =
+            "id, entity_type, entity_id, action, old_value, new_value, changed_by, changed_at";
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("audit_log_y(\\d{4})m(\\d{2})");
+    private static final String RESTORED_COMMENT = "restored from ";
+
+    private static final String CREATE_PARTITION_SQL = "SELECT audit_log_create_partition(?)";
+    private static final String CREATE_LEGACY_RESTORE_SQL = "CREATE TEMPORARY TABLE audit_log_legacy_restore (" +
+            "id BIGINT, entity_type VARCHAR(255), entity_id BIGINT, action VARCHAR(255), old_value TEXT, " +
+            "new_value TEXT, changed_by VARCHAR(255), changed_at TIMESTAMP(6)) ON COMMIT DROP";
+    private static final String REGISTER_LEGACY_CODES_SQL = "INSERT INTO audit_code (name) " +
+            "SELECT entity_type FROM audit_log_legacy_restore UNION SELECT action FROM audit_log_legacy_restore " +
+            "ON CONFLICT (name) DO NOTHING";
+    private static final String INSERT_LEGACY_SQL = "INSERT INTO %s (" + COLUMNS + ") " +
+            "SELECT r.id, r.entity_id, r.changed_at, t.code, a.code, r.changed_by, " +
+            "convert_to(r.old_value, 'UTF8'), convert_to(r.new_value, 'UTF8') FROM audit_log_legacy_restore r " +
+            "JOIN audit_code t ON t.name = r.entity_type JOIN audit_code a ON a.name = r.action";
+    private static final String FIND_PARTITIONS_SQL = "SELECT c.relname, obj_description(c.oid, 'pg_class') " +
+            "FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+            "WHERE i.inhparent = 'audit_log'::regclass ORDER BY c.relname";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * A monthly partition of the audit log.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class AuditPartition {
+        private final String name;
+        private final YearMonth month;
+        private final boolean restored;
+    }
+
+    /**
+     * The name of the partition holding a month.
+     *
+     * @param month the month
+     * @return the partition name
+     */
+    public static String partitionName(YearMonth month) {
+        return String.format("audit_log_y%04dm%02d", month.getYear(), month.getMonthValue());
+    }
+
+    /**
+     * Create the partition of a month unless it exists.
+     *
+     * @param month the month
+     * @return the partition name
+     */
+    public String createPartition(YearMonth month) {
+        return jdbcTemplate.queryForObject(CREATE_PARTITION_SQL, String.class, Date.valueOf(month.atDay(1)));
+    }
+
+    /**
+     * Find the monthly partitions, oldest first. The default partition is not included.
+     *
+     * @return the partitions
+     */
+    public List<AuditPartition> findPartitions() {
+        return jdbcTemplate.query(FIND_PARTITIONS_SQL, (rs, rowNum) -> {
+                    Matcher matcher = PARTITION_NAME.matcher(rs.getString(1));
+                    if (!matcher.matches()) {
+                        return null;
+                    }
+                    String comment = rs.getString(2);
+                    return new AuditPartition(rs.getString(1),
+                            YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))),
+                            comment != null && comment.startsWith(RESTORED_COMMENT));
+                }).stream()
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /**
+     * Write every row of a partition to a stream as CSV with a header. The partition is locked against writes until
+     * the surrounding transaction ends, so it must be called in the transaction that goes on to detach it.
+     *
+     * @param month the month
+     * @param out the stream
+     * @return the number of rows written
+     */
+    public long copyOut(YearMonth month, OutputStream out) {
+        String partition = partitionName(month);
+        return jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try (Statement lock = connection.createStatement()) {
+                lock.execute("LOCK TABLE " + partition + " IN SHARE MODE");
+            }
+            try {
+                return connection.unwrap(PGConnection.class).getCopyAPI().copyOut(
+                        "COPY " + partition + " (" + COLUMNS + ") TO STDOUT (FORMAT csv, HEADER true)", out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Detach a partition from the audit log and drop it.
+     *
+     * @param month the month
+     */
+    public void detachAndDrop(YearMonth month) {
+        String partition = partitionName(month);
+        jdbcTemplate.execute("ALTER TABLE audit_log DETACH PARTITION " + partition);
+        jdbcTemplate.execute("DROP TABLE " + partition);
+    }
+
+    /**
+     * Create the partition of a month for a restore and load an archive written by {@link #copyOut} into it. The
+     * partition is marked as restored, so retention leaves it alone. Archives from before the audit log stored
+     * codes are recognized by their header; their names get codes and their values are stored as plain JSON. Must
+     * be called in a transaction.
+     *
+     * @param month the month
+     * @param source the archive name, recorded on the partition
+     * @param in the CSV stream
+     * @return the number of rows loaded
+     */
+    public long restore(YearMonth month, String source, InputStream in) {
+        String partition = createPartition(month);
+        jdbcTemplate.update("COMMENT ON TABLE " + partition + " IS '"
+                + RESTORED_COMMENT + source.replace("'", "''") + "'");
+        boolean legacy = LEGACY_COLUMNS.replace(" ", "").equals(readHeader(in));
+        if (!legacy) {
+            return copyIn("COPY " + partition + " (" + COLUMNS + ") FROM STDIN (FORMAT csv)", in);
+        }
+
+        jdbcTemplate.execute(CREATE_LEGACY_RESTORE_SQL);
+        long rows = copyIn("COPY audit_log_legacy_restore (" + LEGACY_COLUMNS + ") FROM STDIN (FORMAT csv)", in);
+        jdbcTemplate.update(REGISTER_LEGACY_CODES_SQL);
+        jdbcTemplate.update(String.format(INSERT_LEGACY_SQL, partition));
+        return rows;
+    }
+
+    private long copyIn(String sql, InputStream in) {
+        return jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try {
+                return connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql, in);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private String readHeader(InputStream in) {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        try {
+            for (int b = in.read(); b != -1 && b != '\n'; b = in.read()) {
+                header.write(b);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return header.toString(StandardCharsets.UTF_8).strip();
+    }
+}
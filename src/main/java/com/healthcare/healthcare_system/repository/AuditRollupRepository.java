@@ -0,0 +1,339 @@
+package com.healthcare.healthcare_system.repository;
+
+import com.healthcare.healthcare_system.dto.AuditActivityDto;
+import com.healthcare.healthcare_system.dto.AuditEntityActivityDto;
+import com.healthcare.healthcare_system.enums.AuditRollupGranularity;
+import com.healthcare.healthcare_system.model.AuditLog;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The audit rollup tables created by the {@code 013-audit-rollups} changeset: event counts per hour and per day for
+ * each entity type and action, and per day and per month for each entity. Top entities over a long range are summed
+ * from the months it covers and the days at either end.
+ * <p>
+ * Saves add their counts with upserts in a fixed key order, so concurrent saves cannot deadlock on the rollup rows.
+ * A save first takes a shared advisory lock on each month and day it touches and a rebuild takes an exclusive one on
+ * its month or day, so a rebuild sees every event whose counts it replaces, and a save it waited for adds its counts
+ * afterwards.
+ */
+@Repository
+@RequiredArgsConstructor
+public class AuditRollupRepository {
+    static final int DAY_LOCK = 0x524f4c44;
+    static final int MONTH_LOCK = 0x524f4c4d;
+
+    private static final Comparator<ActivityKey> ACTIVITY_ORDER = Comparator.comparing(ActivityKey::bucket)
+            .thenComparing(ActivityKey::entityType)
+            .thenComparing(ActivityKey::action);
+    private static final Comparator<EntityKey> ENTITY_ORDER = Comparator.comparing(EntityKey::bucket)
+            .thenComparing(EntityKey::entityType)
+            .thenComparingLong(EntityKey::entityId);
+
+    private static final String[] HOURLY_COLUMN_TYPES = {"timestamp", "varchar", "varchar", "int8"};
+    private static final String[] DAILY_COLUMN_TYPES = {"date", "varchar", "varchar", "int8"};
+    private static final String[] ENTITY_COLUMN_TYPES = {"date", "varchar", "int8", "int8"};
+
+    private static final String LOCK_SHARED_SQL = "SELECT pg_advisory_xact_lock_shared(?, ?)";
+    private static final String LOCK_SQL = "SELECT pg_advisory_xact_lock(?, ?)";
+
+    private static final String UPSERT_HOURLY_SQL = "INSERT INTO audit_rollup_hourly " +
+            "(bucket, entity_type, action, event_count) SELECT * FROM unnest(CAST(? AS TIMESTAMP[]), " +
+            "CAST(? AS VARCHAR[]), CAST(? AS VARCHAR[]), CAST(? AS BIGINT[])) " +
+            "ON CONFLICT (bucket, entity_type, action) " +
+            "DO UPDATE SET event_count = audit_rollup_hourly.event_count + EXCLUDED.event_count";
+    private static final String UPSERT_DAILY_SQL = "INSERT INTO audit_rollup_daily " +
+            "(bucket, entity_type, action, event_count) SELECT * FROM unnest(CAST(? AS DATE[]), " +
+            "CAST(? AS VARCHAR[]), CAST(? AS VARCHAR[]), CAST(? AS BIGINT[])) " +
+            "ON CONFLICT (bucket, entity_type, action) " +
+            "DO UPDATE SET event_count = audit_rollup_daily.event_count + EXCLUDED.event_count";
+    private static final String UPSERT_ENTITY_SQL = "INSERT INTO audit_rollup_entity_daily " +
+            "(bucket, entity_type, entity_id, event_count) SELECT * FROM unnest(CAST(? AS DATE[]), " +
+            "CAST(? AS VARCHAR[]), CAST(? AS BIGINT[]), CAST(? AS BIGINT[])) " +
+            "ON CONFLICT (bucket, entity_type, entity_id) " +
+            "DO UPDATE SET event_count = audit_rollup_entity_daily.event_count + EXCLUDED.event_count";
+    private static final String UPSERT_ENTITY_MONTHLY_SQL = "INSERT INTO audit_rollup_entity_monthly " +
+            "(bucket, entity_type, entity_id, event_count) SELECT * FROM unnest(CAST(? AS DATE[]), " +
+            "CAST(? AS VARCHAR[]), CAST(? AS BIGINT[]), CAST(? AS BIGINT[])) " +
+            "ON CONFLICT (bucket, entity_type, entity_id) " +
+            "DO UPDATE SET event_count = audit_rollup_entity_monthly.event_count + EXCLUDED.event_count";
+
+    private static final String HAS_EVENTS_SQL =
+            "SELECT EXISTS (SELECT 1 FROM audit_log WHERE changed_at >= ? AND changed_at < ?)";
+    private static final String DELETE_HOURLY_SQL =
+            "DELETE FROM audit_rollup_hourly WHERE bucket >= ? AND bucket < ?";
+    private static final String DELETE_DAILY_SQL = "DELETE FROM audit_rollup_daily WHERE bucket = ?";
+    private static final String DELETE_ENTITY_SQL = "DELETE FROM audit_rollup_entity_daily WHERE bucket = ?";
+    private static final String REBUILD_HOURLY_SQL = "INSERT INTO audit_rollup_hourly " +
+            "(bucket, entity_type, action, event_count) " +
+            "SELECT l.bucket, t.name, a.name, l.events FROM (" +
+            "SELECT date_trunc('hour', changed_at) AS bucket, entity_type_code, action_code, count(*) AS events " +
+            "FROM audit_log WHERE changed_at >= ? AND changed_at < ? GROUP BY 1, 2, 3) l " +
+            "JOIN audit_code t ON t.code = l.entity_type_code JOIN audit_code a ON a.code = l.action_code";
+    private static final String REBUILD_DAILY_SQL = "INSERT INTO audit_rollup_daily " +
+            "(bucket, entity_type, action, event_count) " +
+            "SELECT ?, entity_type, action, sum(event_count) FROM audit_rollup_hourly " +
+            "WHERE bucket >= ? AND bucket < ? GROUP BY entity_type, action";
+    private static final String REBUILD_ENTITY_SQL = "INSERT INTO audit_rollup_entity_daily " +
+            "(bucket, entity_type, entity_id, event_count) " +
+            "SELECT ?, t.name, l.entity_id, l.events FROM (" +
+            "SELECT entity_type_code, entity_id, count(*) AS events FROM audit_log " +
+            "WHERE changed_at >= ? AND changed_at < ? GROUP BY entity_type_code, entity_id) l " +
+            "JOIN audit_code t ON t.code = l.entity_type_code";
+    private static final String COUNT_DAY_SQL =
+            "SELECT COALESCE(sum(event_count), 0) FROM audit_rollup_daily WHERE bucket = ?";
+    private static final String DELETE_ENTITY_MONTHLY_SQL = "DELETE FROM audit_rollup_entity_monthly WHERE bucket = ?";
+    private static final String REBUILD_ENTITY_MONTHLY_SQL = "INSERT INTO audit_rollup_entity_monthly " +
+            "(bucket, entity_type, entity_id, event_count) " +
+            "SELECT ?, entity_type, entity_id, sum(event_count) FROM audit_rollup_entity_daily " +
+            "WHERE bucket >= ? AND bucket < ? GROUP BY entity_type, entity_id";
+
+    private static final String FIND_EVENT_DAYS_SQL =
+            "SELECT CAST(min(changed_at) AS DATE), CAST(max(changed_at) AS DATE) FROM audit_log";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private record ActivityKey(LocalDateTime bucket, String entityType, String action) {
+    }
+
+    private record EntityKey(LocalDate bucket, String entityType, long entityId) {
+    }
+
+    /**
+     * Add saved audit events to the rollups, in the caller's transaction if there is one.
+     *
+     * @param auditLogs the saved audit events
+     */
+    @Transactional
+    public void increment(List<AuditLog> auditLogs) {
+        if (auditLogs.isEmpty()) {
+            return;
+        }
+        Map<ActivityKey, Long> hourly = new TreeMap<>(ACTIVITY_ORDER);
+        Map<ActivityKey, Long> daily = new TreeMap<>(ACTIVITY_ORDER);
+        Map<EntityKey, Long> entities = new TreeMap<>(ENTITY_ORDER);
+        Map<EntityKey, Long> entityMonths = new TreeMap<>(ENTITY_ORDER);
+        TreeSet<LocalDate> months = new TreeSet<>();
+        TreeSet<LocalDate> days = new TreeSet<>();
+        for (AuditLog auditLog : auditLogs) {
+            LocalDateTime changedAt = auditLog.getChangedAt();
+            LocalDate day = changedAt.toLocalDate();
+            LocalDate month = day.withDayOfMonth(1);
+            months.add(month);
+            days.add(day);
+            hourly.merge(new ActivityKey(changedAt.truncatedTo(ChronoUnit.HOURS), auditLog.getEntityType(),
+                    auditLog.getAction()), 1L, Long::sum);
+            daily.merge(new ActivityKey(day.atStartOfDay(), auditLog.getEntityType(), auditLog.getAction()),
+                    1L, Long::sum);
+            entities.merge(new EntityKey(day, auditLog.getEntityType(), auditLog.getEntityId()), 1L, Long::sum);
+            entityMonths.merge(new EntityKey(month, auditLog.getEntityType(), auditLog.getEntityId()),
+                    1L, Long::sum);
+        }
+
+        for (LocalDate month : months) {
+            lock(LOCK_SHARED_SQL, MONTH_LOCK, month);
+        }
+        for (LocalDate day : days) {
+            lock(LOCK_SHARED_SQL, DAY_LOCK, day);
+        }
+        List<Object[]> hourlyRows = new ArrayList<>(hourly.size());
+        hourly.forEach((key, count) -> hourlyRows.add(new Object[]{
+                Timestamp.valueOf(key.bucket()), key.entityType(), key.action(), count}));
+        List<Object[]> dailyRows = new ArrayList<>(daily.size());
+        daily.forEach((key, count) -> dailyRows.add(new Object[]{
+                Date.valueOf(key.bucket().toLocalDate()), key.entityType(), key.action(), count}));
+        upsert(UPSERT_HOURLY_SQL, HOURLY_COLUMN_TYPES, hourlyRows);
+        upsert(UPSERT_DAILY_SQL, DAILY_COLUMN_TYPES, dailyRows);
+        upsert(UPSERT_ENTITY_SQL, ENTITY_COLUMN_TYPES, entityRows(entities));
+        upsert(UPSERT_ENTITY_MONTHLY_SQL, ENTITY_COLUMN_TYPES, entityRows(entityMonths));
+    }
+
+    /**
+     * Replace the rollups of a day with counts of its rows in {@code audit_log}. A day without rows is left alone,
+     * since its events may have been archived after they were counted. Must be called in a transaction.
+     *
+     * @param day the day
+     * @return the number of events counted, or empty if the day has no rows
+     */
+    public OptionalLong rebuildDay(LocalDate day) {
+        Timestamp from = Timestamp.valueOf(day.atStartOfDay());
+        Timestamp to = Timestamp.valueOf(day.plusDays(1).atStartOfDay());
+        Date bucket = Date.valueOf(day);
+
+        lock(LOCK_SQL, DAY_LOCK, day);
+        if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(HAS_EVENTS_SQL, Boolean.class, from, to))) {
+            return OptionalLong.empty();
+        }
+        jdbcTemplate.update(DELETE_HOURLY_SQL, from, to);
+        jdbcTemplate.update(DELETE_DAILY_SQL, bucket);
+        jdbcTemplate.update(DELETE_ENTITY_SQL, bucket);
+        jdbcTemplate.update(REBUILD_HOURLY_SQL, from, to);
+        jdbcTemplate.update(REBUILD_DAILY_SQL, bucket, from, to);
+        jdbcTemplate.update(REBUILD_ENTITY_SQL, bucket, from, to);
+        return OptionalLong.of(jdbcTemplate.queryForObject(COUNT_DAY_SQL, Long.class, bucket));
+    }
+
+    /**
+     * Replace the entity counts of a month with the sum of its days. Must be called in a transaction, after the days
+     * of the month have been rebuilt.
+     *
+     * @param month the month
+     */
+    public void rebuildMonth(YearMonth month) {
+        LocalDate first = month.atDay(1);
+        lock(LOCK_SQL, MONTH_LOCK, first);
+        jdbcTemplate.update(DELETE_ENTITY_MONTHLY_SQL, Date.valueOf(first));
+        jdbcTemplate.update(REBUILD_ENTITY_MONTHLY_SQL, Date.valueOf(first), Date.valueOf(first),
+                Date.valueOf(month.plusMonths(1).atDay(1)));
+    }
+
+    /**
+     * Find the days of the oldest and the newest event in {@code audit_log}.
+     *
+     * @return the first and the last day, or an empty list if there are no events
+     */
+    public List<LocalDate> findEventDays() {
+        return jdbcTemplate.query(FIND_EVENT_DAYS_SQL, (ResultSetExtractor<List<LocalDate>>) rs -> {
+            if (!rs.next() || rs.getDate(1) == null) {
+                return List.of();
+            }
+            return List.of(rs.getDate(1).toLocalDate(), rs.getDate(2).toLocalDate());
+        });
+    }
+
+    /**
+     * Find the event counts of the buckets that start between two points in time, oldest first.
+     *
+     * @param granularity the bucket size
+     * @param start the start, moved back to the start of its bucket
+     * @param end the end, inclusive
+     * @param entityType the entity type, or null for all
+     * @param action the action, or null for all
+     * @return the counts per bucket, entity type and action
+     */
+    public List<AuditActivityDto> findActivity(AuditRollupGranularity granularity, LocalDateTime start,
+                                               LocalDateTime end, String entityType, String action) {
+        boolean hourly = granularity == AuditRollupGranularity.HOUR;
+        StringBuilder sql = new StringBuilder("SELECT bucket, entity_type, action, event_count FROM ")
+                .append(hourly ? "audit_rollup_hourly" : "audit_rollup_daily")
+                .append(" WHERE bucket >= ? AND bucket <= ?");
+        List<Object> args = new ArrayList<>();
+        if (hourly) {
+            args.add(Timestamp.valueOf(start.truncatedTo(ChronoUnit.HOURS)));
+            args.add(Timestamp.valueOf(end));
+        } else {
+            args.add(Date.valueOf(start.toLocalDate()));
+            args.add(Date.valueOf(end.toLocalDate()));
+        }
+        if (entityType != null) {
+            sql.append(" AND entity_type = ?");
+            args.add(entityType);
+        }
+        if (action != null) {
+            sql.append(" AND action = ?");
+            args.add(action);
+        }
+        sql.append(" ORDER BY bucket, entity_type, action");
+
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> AuditActivityDto.builder()
+                .bucket(rs.getTimestamp(1).toLocalDateTime())
+                .entityType(rs.getString(2))
+                .action(rs.getString(3))
+                .eventCount(rs.getLong(4))
+                .build(), args.toArray());
+    }
+
+    /**
+     * Find the entities with the most events over a range of days, most first.
+     *
+     * @param firstDay the first day
+     * @param lastDay the last day, inclusive
+     * @param entityType the entity type, or null for all
+     * @param limit the number of entities
+     * @return the entities and their event counts
+     */
+    public List<AuditEntityActivityDto> findTopEntities(LocalDate firstDay, LocalDate lastDay, String entityType,
+                                                        int limit) {
+        // Whole months between the first and the last day are read from the monthly counts, the rest by day
+        LocalDate monthsFrom = firstDay.getDayOfMonth() == 1 ? firstDay : firstDay.withDayOfMonth(1).plusMonths(1);
+        LocalDate monthsTo = lastDay.plusDays(1).withDayOfMonth(1);
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT entity_type, entity_id, sum(event_count) AS events FROM (");
+        if (monthsFrom.isBefore(monthsTo)) {
+            sql.append("SELECT entity_type, entity_id, event_count FROM audit_rollup_entity_monthly " +
+                    "WHERE bucket >= ? AND bucket < ?");
+            args.addAll(List.of(Date.valueOf(monthsFrom), Date.valueOf(monthsTo)));
+            appendEntityType(sql, args, entityType);
+            sql.append(" UNION ALL SELECT entity_type, entity_id, event_count FROM audit_rollup_entity_daily " +
+                    "WHERE (bucket >= ? AND bucket < ? OR bucket >= ? AND bucket <= ?)");
+            args.addAll(List.of(Date.valueOf(firstDay), Date.valueOf(monthsFrom), Date.valueOf(monthsTo),
+                    Date.valueOf(lastDay)));
+        } else {
+            sql.append("SELECT entity_type, entity_id, event_count FROM audit_rollup_entity_daily " +
+                    "WHERE bucket >= ? AND bucket <= ?");
+            args.addAll(List.of(Date.valueOf(firstDay), Date.valueOf(lastDay)));
+        }
+        appendEntityType(sql, args, entityType);
+        sql.append(") counts GROUP BY entity_type, entity_id ORDER BY events DESC, entity_type, entity_id LIMIT ?");
+        args.add(limit);
+
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> AuditEntityActivityDto.builder()
+                .entityType(rs.getString(1))
+                .entityId(rs.getLong(2))
+                .eventCount(rs.getLong(3))
+                .build(), args.toArray());
+    }
+
+    private void appendEntityType(StringBuilder sql, List<Object> args, String entityType) {
+        if (entityType != null) {
+            sql.append(" AND entity_type = ?");
+            args.add(entityType);
+        }
+    }
+
+    private List<Object[]> entityRows(Map<EntityKey, Long> counts) {
+        List<Object[]> rows = new ArrayList<>(counts.size());
+        counts.forEach((key, count) -> rows.add(new Object[]{
+                Date.valueOf(key.bucket()), key.entityType(), key.entityId(), count}));
+        return rows;
+    }
+
+    /**
+     * Send the rows as one array per column, so a batch is a single statement however many keys it touches.
+     */
+    private void upsert(String sql, String[] types, List<Object[]> rows) {
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            for (int column = 0; column < types.length; column++) {
+                Object[] values = new Object[rows.size()];
+                for (int row = 0; row < rows.size(); row++) {
+                    values[row] = rows.get(row)[column];
+                }
+                statement.setArray(column + 1, connection.createArrayOf(types[column], values));
+            }
+            return statement;
+        });
+    }
+
+    private void lock(String sql, int lockClass, LocalDate day) {
+        jdbcTemplate.query(sql, (ResultSetExtractor<Void>) rs -> null, lockClass, (int) day.toEpochDay());
+    }
+}
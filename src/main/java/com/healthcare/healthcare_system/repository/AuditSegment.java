@@ -0,0 +1,614 @@
+package com.healthcare.healthcare_system.repository;
+
+import com.healthcare.healthcare_system.dto.AuditLogCriteria;
+import com.healthcare.healthcare_system.model.AuditLog;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+
+/**
+ * One fixed-size, memory-mapped file of the {@link SegmentAuditLogStore}, together with the sparse index of its
+ * records. The file starts with a 64 byte header followed by records of {@code [length][crc32c][payload]}; a length
+ * of 0 marks the end. Every {@value #BLOCK_RECORDS} records form a block, and the index keeps, per block, its time
+ * range and the entity types and actions in it, and, per entity, the blocks holding its events. A query reads only
+ * the blocks the index cannot rule out.
+ * <p>
+ * Segments are written by one thread at a time and only ever appended to, so readers holding the store's read lock
+ * never see a record change.
+ */
+@Slf4j
+class AuditSegment {
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_HEADER_SIZE = 8;
+    static final int BLOCK_RECORDS = 256;
+    static final String TEMP_SUFFIX = ".tmp";
+
+    private static final Pattern FILE_NAME = Pattern.compile("audit-(\\d{16})-(\\d{4})\\.seg");
+    private static final int MAGIC = 0x41554454;
+    private static final int VERSION = 1;
+    private static final int NULL_LENGTH = -1;
+    // Payload layout: id, epoch second, nano, entity id, then length-prefixed strings
+    private static final int ENTITY_ID_OFFSET = 8 + 8 + 4;
+
+    @Getter
+    private final Path file;
+    @Getter
+    private final long seq;
+    @Getter
+    private final int generation;
+    private final MappedByteBuffer buffer;
+
+    private final List<Block> blocks = new ArrayList<>();
+    private final Map<EntityKey, BlockList> entityBlocks = new HashMap<>();
+    @Getter
+    private int end = HEADER_SIZE;
+    @Getter
+    private long count;
+    @Getter
+    private long maxId;
+    @Getter
+    private boolean sorted = true;
+    private LocalDateTime lastChangedAt;
+    private long lastId;
+    private long minMicros = Long.MAX_VALUE;
+    private long maxMicros = Long.MIN_VALUE;
+
+    private AuditSegment(Path file, long seq, int generation, MappedByteBuffer buffer) {
+        this.file = file;
+        this.seq = seq;
+        this.generation = generation;
+        this.buffer = buffer;
+    }
+
+    /**
+     * What a segment file says about itself.
+     *
+     * @param seq the position of the segment in the store
+     * @param generation 0 for appended segments, higher for each compaction
+     * @param replacesFrom the first seq a compacted segment replaces, -1 otherwise
+     * @param replacesTo the last seq a compacted segment replaces, -1 otherwise
+     */
+    record Header(long seq, int generation, long replacesFrom, long replacesTo) {
+
+        /**
+         * Whether this segment supersedes another one.
+         *
+         * @param other the other segment
+         * @return the boolean
+         */
+        boolean replaces(Header other) {
+            return other.seq >= replacesFrom && other.seq <= replacesTo && other.generation < generation;
+        }
+    }
+
+    /**
+     * A run of up to {@value #BLOCK_RECORDS} consecutive records.
+     */
+    static final class Block {
+        final AuditSegment segment;
+        final int number;
+        final int offset;
+        int count;
+        long minMicros = Long.MAX_VALUE;
+        long maxMicros = Long.MIN_VALUE;
+        final Set<String> entityTypes = new HashSet<>(4);
+        final Set<String> actions = new HashSet<>(4);
+
+        Block(AuditSegment segment, int number, int offset) {
+            this.segment = segment;
+            this.number = number;
+            this.offset = offset;
+        }
+
+        /**
+         * Read every record of the block.
+         *
+         * @return the audit events, in file order
+         */
+        List<AuditLog> read() {
+            return read(null);
+        }
+
+        /**
+         * Read the records of the block that belong to an entity id. The id is compared before the rest of the
+         * record is decoded.
+         *
+         * @param entityId the entity id, null for every record
+         * @return the audit events, in file order
+         */
+        List<AuditLog> read(Long entityId) {
+            List<AuditLog> auditLogs = new ArrayList<>(entityId == null ? count : 4);
+            int position = offset;
+            for (int i = 0; i < count; i++) {
+                if (entityId == null
+                        || segment.buffer.getLong(position + RECORD_HEADER_SIZE + ENTITY_ID_OFFSET) == entityId) {
+                    auditLogs.add(segment.read(position));
+                }
+                position += RECORD_HEADER_SIZE + segment.buffer.getInt(position);
+            }
+            return auditLogs;
+        }
+    }
+
+    private record EntityKey(String entityType, long entityId) {
+    }
+
+    /**
+     * Growable list of block numbers in ascending order.
+     */
+    private static final class BlockList {
+        private int[] numbers = new int[2];
+        private int size;
+
+        void add(int number) {
+            if (size > 0 && numbers[size - 1] == number) {
+                return;
+            }
+            if (size == numbers.length) {
+                numbers = Arrays.copyOf(numbers, size * 2);
+            }
+            numbers[size++] = number;
+        }
+    }
+
+    /**
+     * The file name of a segment.
+     *
+     * @param seq the seq
+     * @param generation the generation
+     * @return the file name
+     */
+    static String fileName(long seq, int generation) {
+        return String.format("audit-%016d-%04d.seg", seq, generation);
+    }
+
+    /**
+     * Whether a file name is one of a segment.
+     *
+     * @param name the file name
+     * @return the boolean
+     */
+    static boolean isSegmentFile(String name) {
+        return FILE_NAME.matcher(name).matches();
+    }
+
+    /**
+     * The time of an event in whole microseconds since the epoch, rounded down, as kept in the index.
+     *
+     * @param changedAt the time
+     * @return the microseconds
+     */
+    static long micros(LocalDateTime changedAt) {
+        return changedAt.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + changedAt.getNano() / 1000;
+    }
+
+    /**
+     * Read the header of a segment file.
+     *
+     * @param file the file
+     * @return the header, null when the file has none, which happens when it was being created during a crash
+     * @throws IOException the io exception
+     */
+    static Header readHeader(Path file) throws IOException {
+        Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading
+            }
+        }
+        header.flip();
+        if (!matcher.matches() || header.remaining() < HEADER_SIZE
+                || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            return null;
+        }
+        return new Header(header.getLong(8), header.getInt(16), header.getLong(24), header.getLong(32));
+    }
+
+    /**
+     * Create an empty segment to append to.
+     *
+     * @param dir the directory
+     * @param seq the seq
+     * @param capacity the file size
+     * @return the segment
+     * @throws IOException the io exception
+     */
+    static AuditSegment create(Path dir, long seq, int capacity) throws IOException {
+        Path file = dir.resolve(fileName(seq, 0));
+        MappedByteBuffer buffer = map(file, capacity, true);
+        writeHeader(buffer, new Header(seq, 0, -1, -1));
+        buffer.force();
+        return new AuditSegment(file, seq, 0, buffer);
+    }
+
+    /**
+     * Open a segment and rebuild its index by reading every record. Reading stops at the first record that is cut
+     * short or fails its checksum. In the tail segment that is where a crash interrupted a write: everything after
+     * it is zeroed and appends continue there. In a sealed segment it means the file was damaged, and only the
+     * records before the damage are kept.
+     *
+     * @param file the file
+     * @param header the header read by {@link #readHeader}
+     * @param tail whether this is the segment appends go to
+     * @return the segment
+     * @throws IOException the io exception
+     */
+    static AuditSegment open(Path file, Header header, boolean tail) throws IOException {
+        AuditSegment segment = new AuditSegment(file, header.seq(), header.generation(), map(file, 0, false));
+        segment.recover(tail);
+        return segment;
+    }
+
+    /**
+     * Write a compacted segment holding the given events, which must be sorted and fit. The file is written under
+     * a temporary name, flushed to disk, and then renamed into place, so a crash never leaves half of it.
+     *
+     * @param dir the directory
+     * @param header the header, naming the segments it replaces
+     * @param auditLogs the audit events
+     * @param capacity the minimum file size
+     * @return the segment
+     * @throws IOException the io exception
+     */
+    static AuditSegment write(Path dir, Header header, Collection<AuditLog> auditLogs, int capacity)
+            throws IOException {
+        List<byte[]> records = new ArrayList<>(auditLogs.size());
+        long required = HEADER_SIZE;
+        for (AuditLog auditLog : auditLogs) {
+            byte[] payload = encode(auditLog);
+            records.add(payload);
+            required += RECORD_HEADER_SIZE + payload.length;
+        }
+        if (required > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("compacted segment of " + required + " bytes is too large");
+        }
+
+        Path file = dir.resolve(fileName(header.seq(), header.generation()));
+        Path temp = dir.resolve(file.getFileName() + TEMP_SUFFIX);
+        Files.deleteIfExists(temp);
+        MappedByteBuffer buffer = map(temp, (int) Math.max(capacity, required), true);
+        writeHeader(buffer, header);
+        AuditSegment segment = new AuditSegment(file, header.seq(), header.generation(), buffer);
+        int i = 0;
+        for (AuditLog auditLog : auditLogs) {
+            segment.append(auditLog, records.get(i++));
+        }
+        buffer.force();
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(dir);
+        return segment;
+    }
+
+    /**
+     * Flush a directory entry change, such as a rename, to disk.
+     *
+     * @param dir the directory
+     */
+    static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not every platform can open a directory; the rename is then only as durable as the file system makes it
+            log.debug("Could not sync directory {}", dir, e);
+        }
+    }
+
+    /**
+     * Encode an event as a record payload.
+     *
+     * @param auditLog the audit event, with its id and time set
+     * @return the payload
+     */
+    static byte[] encode(AuditLog auditLog) {
+        byte[] entityType = utf8(auditLog.getEntityType());
+        byte[] action = utf8(auditLog.getAction());
+        byte[] oldValue = utf8(auditLog.getOldValue());
+        byte[] newValue = utf8(auditLog.getNewValue());
+        byte[] changedBy = utf8(auditLog.getChangedBy());
+        int size = 8 + 8 + 4 + 8 + 5 * 4 + length(entityType) + length(action) + length(oldValue)
+                + length(newValue) + length(changedBy);
+        LocalDateTime changedAt = auditLog.getChangedAt();
+        ByteBuffer payload = ByteBuffer.allocate(size)
+                .putLong(auditLog.getId())
+                .putLong(changedAt.toEpochSecond(ZoneOffset.UTC))
+                .putInt(changedAt.getNano())
+                .putLong(auditLog.getEntityId());
+        put(payload, entityType);
+        put(payload, action);
+        put(payload, oldValue);
+        put(payload, newValue);
+        put(payload, changedBy);
+        return payload.array();
+    }
+
+    /**
+     * The bytes a record with this payload takes, header included.
+     *
+     * @param payload the payload
+     * @return the size
+     */
+    static int recordSize(byte[] payload) {
+        return RECORD_HEADER_SIZE + payload.length;
+    }
+
+    /**
+     * The file size.
+     *
+     * @return the capacity
+     */
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Append a record, unless the segment is too full for it.
+     *
+     * @param auditLog the audit event
+     * @param payload the event encoded by {@link #encode}
+     * @return whether it was appended
+     */
+    boolean append(AuditLog auditLog, byte[] payload) {
+        if ((long) end + recordSize(payload) > buffer.capacity()) {
+            return false;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        buffer.putInt(end + 4, (int) crc.getValue());
+        buffer.put(end + RECORD_HEADER_SIZE, payload);
+        buffer.putInt(end, payload.length);
+        index(auditLog, end);
+        end += recordSize(payload);
+        return true;
+    }
+
+    /**
+     * Drop the records appended from an offset on, as if they had never been written. Their bytes are zeroed and
+     * flushed, so a restart does not find them either, and the index is rebuilt from the records before them.
+     *
+     * @param offset the end of the records to keep
+     */
+    void truncate(int offset) {
+        if (offset >= end) {
+            return;
+        }
+        buffer.put(offset, new byte[end - offset]);
+        buffer.force(offset, end - offset);
+        blocks.clear();
+        entityBlocks.clear();
+        count = 0;
+        maxId = 0;
+        sorted = true;
+        lastChangedAt = null;
+        lastId = 0;
+        minMicros = Long.MAX_VALUE;
+        maxMicros = Long.MIN_VALUE;
+        recover(false);
+    }
+
+    /**
+     * Flush the records appended since an offset to disk.
+     *
+     * @param from the offset
+     */
+    void force(int from) {
+        if (end > from) {
+            buffer.force(from, end - from);
+        }
+    }
+
+    /**
+     * Flush the whole file to disk.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * Add the blocks that may hold events matching the criteria within a time range to a list.
+     *
+     * @param criteria the criteria
+     * @param fromMicros the earliest time, see {@link #micros}
+     * @param toMicros the latest time, see {@link #micros}
+     * @param candidates the list
+     */
+    void collectBlocks(AuditLogCriteria criteria, long fromMicros, long toMicros, List<Block> candidates) {
+        if (count == 0 || maxMicros < fromMicros || minMicros > toMicros) {
+            return;
+        }
+        if (criteria.getEntityType() != null && criteria.getEntityId() != null) {
+            BlockList entity = entityBlocks.get(new EntityKey(criteria.getEntityType(), criteria.getEntityId()));
+            if (entity == null) {
+                return;
+            }
+            for (int i = 0; i < entity.size; i++) {
+                Block block = blocks.get(entity.numbers[i]);
+                if (mayMatch(block, criteria, fromMicros, toMicros)) {
+                    candidates.add(block);
+                }
+            }
+            return;
+        }
+        for (Block block : blocks) {
+            if (mayMatch(block, criteria, fromMicros, toMicros)) {
+                candidates.add(block);
+            }
+        }
+    }
+
+    /**
+     * The blocks, in file order.
+     *
+     * @return the blocks
+     */
+    List<Block> blocks() {
+        return blocks;
+    }
+
+    private static boolean mayMatch(Block block, AuditLogCriteria criteria, long fromMicros, long toMicros) {
+        return block.maxMicros >= fromMicros && block.minMicros <= toMicros
+                && (criteria.getEntityType() == null || block.entityTypes.contains(criteria.getEntityType()))
+                && (criteria.getAction() == null || block.actions.contains(criteria.getAction()));
+    }
+
+    private AuditLog read(int offset) {
+        ByteBuffer payload = buffer.slice(offset + RECORD_HEADER_SIZE, buffer.getInt(offset));
+        long id = payload.getLong();
+        LocalDateTime changedAt = LocalDateTime.ofEpochSecond(payload.getLong(), payload.getInt(), ZoneOffset.UTC);
+        long entityId = payload.getLong();
+        return AuditLog.builder()
+                .id(id)
+                .changedAt(changedAt)
+                .entityId(entityId)
+                .entityType(string(payload))
+                .action(string(payload))
+                .oldValue(string(payload))
+                .newValue(string(payload))
+                .changedBy(string(payload))
+                .build();
+    }
+
+    private void recover(boolean tail) {
+        CRC32C crc = new CRC32C();
+        int position = HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length == 0) {
+                break;
+            }
+            if (length < 0 || length > buffer.capacity() - position - RECORD_HEADER_SIZE) {
+                log.warn("Audit segment {} has a record of invalid length at {}", file, position);
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.slice(position + RECORD_HEADER_SIZE, length));
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                log.warn("Audit segment {} has a record failing its checksum at {}", file, position);
+                break;
+            }
+            index(read(position), position);
+            position += RECORD_HEADER_SIZE + length;
+        }
+        end = position;
+        if (tail) {
+            truncateTail();
+        }
+    }
+
+    /**
+     * Zero whatever a crashed write left after the last good record, so it can never be read as a record once new
+     * ones are appended in front of it.
+     */
+    private void truncateTail() {
+        int dirtyEnd = end;
+        int position = end;
+        for (; position + 8 <= buffer.capacity(); position += 8) {
+            if (buffer.getLong(position) != 0) {
+                dirtyEnd = position + 8;
+            }
+        }
+        for (; position < buffer.capacity(); position++) {
+            if (buffer.get(position) != 0) {
+                dirtyEnd = position + 1;
+            }
+        }
+        if (dirtyEnd > end) {
+            log.warn("Discarding {} bytes after the last complete record of audit segment {}", dirtyEnd - end, file);
+            buffer.put(end, new byte[dirtyEnd - end]);
+            buffer.force();
+        }
+    }
+
+    private void index(AuditLog auditLog, int offset) {
+        Block block = blocks.isEmpty() ? null : blocks.get(blocks.size() - 1);
+        if (block == null || block.count == BLOCK_RECORDS) {
+            block = new Block(this, blocks.size(), offset);
+            blocks.add(block);
+        }
+        long micros = micros(auditLog.getChangedAt());
+        block.count++;
+        block.minMicros = Math.min(block.minMicros, micros);
+        block.maxMicros = Math.max(block.maxMicros, micros);
+        block.entityTypes.add(auditLog.getEntityType());
+        block.actions.add(auditLog.getAction());
+        entityBlocks.computeIfAbsent(new EntityKey(auditLog.getEntityType(), auditLog.getEntityId()),
+                key -> new BlockList()).add(block.number);
+
+        minMicros = Math.min(minMicros, micros);
+        maxMicros = Math.max(maxMicros, micros);
+        maxId = Math.max(maxId, auditLog.getId());
+        if (lastChangedAt != null) {
+            int order = auditLog.getChangedAt().compareTo(lastChangedAt);
+            sorted &= order > 0 || order == 0 && auditLog.getId() > lastId;
+        }
+        lastChangedAt = auditLog.getChangedAt();
+        lastId = auditLog.getId();
+        count++;
+    }
+
+    private static MappedByteBuffer map(Path file, int capacity, boolean create) throws IOException {
+        try (FileChannel channel = create
+                ? FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, create ? capacity : channel.size());
+        }
+    }
+
+    private static void writeHeader(MappedByteBuffer buffer, Header header) {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(8, header.seq());
+        buffer.putInt(16, header.generation());
+        buffer.putLong(24, header.replacesFrom());
+        buffer.putLong(32, header.replacesTo());
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] value) {
+        return value == null ? 0 : value.length;
+    }
+
+    private static void put(ByteBuffer payload, byte[] value) {
+        if (value == null) {
+            payload.putInt(NULL_LENGTH);
+        } else {
+            payload.putInt(value.length).put(value);
+        }
+    }
+
+    private static String string(ByteBuffer payload) {
+        int length = payload.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        payload.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,176 @@
+package com.healthcare.healthcare_system.repository;
+
+import com.healthcare.healthcare_system.model.AuditLog;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The audit snapshot tables created by the {@code 015-audit-snapshots} changeset: full states of patients and
+ * facilities at the position of an audit event, and per entity the number of changes saved since its latest
+ * snapshot. States are stored like audit values, see {@link AuditValueConverter}.
+ * <p>
+ * Saved batches count their changes with one upsert in a fixed key order, which also locks the counter rows of their
+ * entities until the transaction ends, so two batches of the same entity take their snapshots one after the other.
+ */
+@Repository
+@RequiredArgsConstructor
+public class AuditSnapshotRepository {
+    private static final Comparator<EntityKey> ENTITY_ORDER = Comparator.comparingInt(EntityKey::entityTypeCode)
+            .thenComparingLong(EntityKey::entityId);
+
+    private static final String[] COUNTER_COLUMN_TYPES = {"int2", "int8", "int4"};
+
+    private static final String COUNT_CHANGES_SQL = "INSERT INTO audit_snapshot_counter AS c " +
+            "(entity_type_code, entity_id, changes) SELECT * FROM unnest(CAST(? AS SMALLINT[]), " +
+            "CAST(? AS BIGINT[]), CAST(? AS INTEGER[])) " +
+            "ON CONFLICT (entity_type_code, entity_id) DO UPDATE SET changes = c.changes + EXCLUDED.changes " +
+            "RETURNING entity_type_code, entity_id, changes, snapshot_at";
+    private static final String FIND_LATEST_SQL = "SELECT changed_at, audit_log_id, state FROM audit_snapshot " +
+            "WHERE entity_type_code = ? AND entity_id = ? AND changed_at <= ? " +
+            "ORDER BY changed_at DESC, audit_log_id DESC LIMIT 1";
+    private static final String INSERT_SQL = "INSERT INTO audit_snapshot " +
+            "(entity_type_code, entity_id, changed_at, audit_log_id, state) VALUES (?, ?, ?, ?, ?) " +
+            "ON CONFLICT DO NOTHING";
+    private static final String RESET_COUNTER_SQL = "UPDATE audit_snapshot_counter SET changes = 0, snapshot_at = ? " +
+            "WHERE entity_type_code = ? AND entity_id = ?";
+    private static final String DELETE_FROM_SQL =
+            "DELETE FROM audit_snapshot WHERE entity_type_code = ? AND entity_id = ? AND changed_at >= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AuditCodeRepository auditCodeRepository;
+    private final AuditValueConverter auditValueConverter;
+
+    private record EntityKey(short entityTypeCode, long entityId) {
+    }
+
+    private record Saved(String entityType, int count, LocalDateTime first, LocalDateTime last) {
+        private Saved add(Saved other) {
+            return new Saved(entityType, count + other.count, first.isAfter(other.first) ? other.first : first,
+                    last.isBefore(other.last) ? other.last : last);
+        }
+    }
+
+    /**
+     * The state of an entity at the position of an audit event.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Snapshot {
+        private final LocalDateTime changedAt;
+        private final long auditLogId;
+        private final String state;
+    }
+
+    /**
+     * The changes of an entity since its latest snapshot, after a save.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class PendingChanges {
+        private final String entityType;
+        private final long entityId;
+        private final int changes;
+        private final LocalDateTime snapshotAt;
+        private final LocalDateTime firstSavedAt;
+        private final LocalDateTime lastSavedAt;
+    }
+
+    /**
+     * Count saved audit events against the snapshots of their entities. Must be called in the transaction that takes
+     * the snapshots due.
+     *
+     * @param auditLogs the saved audit events, of entity types with fixed codes
+     * @return per entity, the changes since its latest snapshot and the change times of the saved events
+     */
+    public List<PendingChanges> countChanges(List<AuditLog> auditLogs) {
+        Map<EntityKey, Saved> saved = new TreeMap<>(ENTITY_ORDER);
+        for (AuditLog auditLog : auditLogs) {
+            LocalDateTime changedAt = auditLog.getChangedAt();
+            saved.merge(new EntityKey(auditCodeRepository.findCode(auditLog.getEntityType()), auditLog.getEntityId()),
+                    new Saved(auditLog.getEntityType(), 1, changedAt, changedAt), Saved::add);
+        }
+
+        List<PendingChanges> pending = new ArrayList<>(saved.size());
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(COUNT_CHANGES_SQL);
+            List<Object[]> columns = List.of(
+                    saved.keySet().stream().map(EntityKey::entityTypeCode).toArray(),
+                    saved.keySet().stream().map(EntityKey::entityId).toArray(),
+                    saved.values().stream().map(Saved::count).toArray());
+            for (int column = 0; column < COUNTER_COLUMN_TYPES.length; column++) {
+                statement.setArray(column + 1,
+                        connection.createArrayOf(COUNTER_COLUMN_TYPES[column], columns.get(column)));
+            }
+            return statement;
+        }, (RowCallbackHandler) rs -> {
+            EntityKey key = new EntityKey(rs.getShort(1), rs.getLong(2));
+            Saved events = saved.get(key);
+            Timestamp snapshotAt = rs.getTimestamp(4);
+            pending.add(new PendingChanges(events.entityType(), key.entityId(), rs.getInt(3),
+                    snapshotAt != null ? snapshotAt.toLocalDateTime() : null, events.first(), events.last()));
+        });
+        return pending;
+    }
+
+    /**
+     * Find the latest snapshot of an entity taken at or before a point in time.
+     *
+     * @param entityType the entity type
+     * @param entityId the entity id
+     * @param at the point in time
+     * @return the snapshot, or null if there is none
+     */
+    public Snapshot findLatest(String entityType, Long entityId, LocalDateTime at) {
+        Short code = auditCodeRepository.findCode(entityType);
+        if (code == null) {
+            return null;
+        }
+        List<Snapshot> snapshots = jdbcTemplate.query(FIND_LATEST_SQL, (rs, rowNum) -> new Snapshot(
+                        rs.getTimestamp(1).toLocalDateTime(), rs.getLong(2),
+                        auditValueConverter.convertToEntityAttribute(rs.getBytes(3))),
+                code, entityId, Timestamp.valueOf(at));
+        return snapshots.isEmpty() ? null : snapshots.get(0);
+    }
+
+    /**
+     * Save a snapshot of an entity and restart the count of its changes. Must be called in the transaction that
+     * counted them.
+     *
+     * @param entityType the entity type
+     * @param entityId the entity id
+     * @param position the last audit event the state includes
+     * @param state the state as JSON, or null if the entity is deleted
+     */
+    public void save(String entityType, Long entityId, AuditLog position, String state) {
+        short code = auditCodeRepository.findCode(entityType);
+        Timestamp changedAt = Timestamp.valueOf(position.getChangedAt());
+        jdbcTemplate.update(INSERT_SQL, code, entityId, changedAt, position.getId(),
+                auditValueConverter.convertToDatabaseColumn(state));
+        jdbcTemplate.update(RESET_COUNTER_SQL, changedAt, code, entityId);
+    }
+
+    /**
+     * Delete the snapshots of an entity taken at or after a point in time, when an event before them was saved late.
+     *
+     * @param entityType the entity type
+     * @param entityId the entity id
+     * @param from the point in time
+     */
+    public void deleteFrom(String entityType, Long entityId, LocalDateTime from) {
+        jdbcTemplate.update(DELETE_FROM_SQL, auditCodeRepository.findCode(entityType), entityId,
+                Timestamp.valueOf(from));
+    }
+}
@@ -0,0 +1,28 @@
+package com.healthcare.healthcare_system.repository;
+
+import com.healthcare.healthcare_system.util.AuditValueCodec;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stores audit values with {@link AuditValueCodec}, deflating those of at least
+ * {@code audit.values.compression-threshold} bytes, and hands them back as JSON when they are read.
+ */
+@Component
+@Converter
+public class AuditValueConverter implements AttributeConverter<String, byte[]> {
+    @Value("${audit.values.compression-threshold:64}")
+    private int compressionThreshold = 64;
+
+    @Override
+    public byte[] convertToDatabaseColumn(String json) {
+        return AuditValueCodec.encode(json, compressionThreshold);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] stored) {
+        return AuditValueCodec.decode(stored);
+    }
+}
@@ -5,10 +5,13 @@ import com.healthcare.healthcare_system.model.Facility;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -60,7 +63,7 @@ public interface FacilityRepository extends JpaRepository<Facility, Long> {
      * @param count the count
      * @return the list
      */
-    @Query("SELECT f FROM Facility f WHERE SIZE(f.patients) > :count")
+    @Query("SELECT f FROM Facility f WHERE f.patientCount > :count")
     List<Facility> findFacilitiesWithPatientCountGreaterThan(int count);
 
     /**
@@ -69,7 +72,54 @@ public interface FacilityRepository extends JpaRepository<Facility, Long> {
      * @param count the count
      * @return the list
      */
-    @Query("SELECT f FROM Facility f WHERE SIZE(f.patients) > :count")
+    @Query("SELECT f FROM Facility f WHERE f.patientCount > :count")
     List<Facility> findByPatientCountGreaterThan(@Param("count") int count);
 
+    /**
+     * Atomically adjust the denormalized patient count of a facility.
+     *
+     * @param facilityId the facility id
+     * @param delta the delta
+     * @return the number of updated rows
+     */
+    @Modifying
+    @Query(value = "UPDATE facilities SET patient_count = patient_count + :delta WHERE id = :facilityId",
+            nativeQuery = true)
+    int adjustPatientCount(@Param("facilityId") Long facilityId, @Param("delta") long delta);
+
+    /**
+     * Find which of the given facility ids belong to active facilities.
+     *
+     * @param facilityIds the facility ids
+     * @return the existing facility ids
+     */
+    @Query("SELECT f.id FROM Facility f WHERE f.id IN :facilityIds")
+    List<Long> findExistingIds(@Param("facilityIds") Collection<Long> facilityIds);
+
+    /**
+     * Find facility ids after the given id, in id order.
+     *
+     * @param afterId the id to continue after
+     * @param pageable the pageable limiting the chunk size
+     * @return the facility ids
+     */
+    @Query("SELECT f.id FROM Facility f WHERE f.id > :afterId ORDER BY f.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Recompute the patient count of the given facilities, touching only rows that drifted.
+     *
+     * @param facilityIds the facility ids
+     * @return the number of corrected rows
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE facilities f SET patient_count = c.actual " +
+            "FROM (SELECT f2.id, (SELECT count(*) FROM patients p " +
+            "      WHERE p.facility_id = f2.id AND p.deleted = FALSE) AS actual " +
+            "      FROM facilities f2 WHERE f2.id IN (:facilityIds)) c " +
+            "WHERE f.id = c.id AND f.patient_count <> c.actual",
+            nativeQuery = true)
+    int reconcilePatientCounts(@Param("facilityIds") Collection<Long> facilityIds);
+
 }
\ No newline at end of file
@@ -0,0 +1,87 @@
+package com.healthcare.healthcare_system.repository;
+
+import com.healthcare.healthcare_system.dto.NameMatch;
+import com.healthcare.healthcare_system.model.Facility;
+import com.healthcare.healthcare_system.model.Patient;
+import com.healthcare.healthcare_system.model.listener.EntitySavedEvent;
+import com.healthcare.healthcare_system.util.TrigramIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+
+/**
+ * Name search for the {@code test} profile, where the database has no {@code pg_trgm}. The index is filled from
+ * the repositories at startup and kept current by the {@link EntitySavedEvent}s of committed writes, so a rolled back
+ * change never reaches it.
+ */
+@Slf4j
+@Repository
+@Profile("test")
+@RequiredArgsConstructor
+public class InMemoryNameSearchBackend implements NameSearchBackend {
+    private final PatientRepository patientRepository;
+    private final FacilityRepository facilityRepository;
+    private final TrigramIndex patientIndex = new TrigramIndex();
+    private final TrigramIndex facilityIndex = new TrigramIndex();
+
+    /**
+     * Rebuild both indexes from the database.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        patientIndex.clear();
+        facilityIndex.clear();
+        patientRepository.findAll().forEach(this::patientChanged);
+        facilityRepository.findAll().forEach(this::facilityChanged);
+        log.info("Indexed {} patients and {} facilities for name search", patientIndex.size(), facilityIndex.size());
+    }
+
+    /**
+     * Index a patient or facility once its write is committed, or straight away when it was saved outside a
+     * transaction.
+     *
+     * @param event the saved event
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSaved(EntitySavedEvent event) {
+        if (event.getEntity() instanceof Patient patient) {
+            patientChanged(patient);
+        } else if (event.getEntity() instanceof Facility facility) {
+            facilityChanged(facility);
+        }
+    }
+
+    @Override
+    public List<NameMatch> searchPatients(String term, int limit) {
+        return patientIndex.search(term, limit);
+    }
+
+    @Override
+    public List<NameMatch> searchFacilities(String term, int limit) {
+        return facilityIndex.search(term, limit);
+    }
+
+    @Override
+    public void patientChanged(Patient patient) {
+        if (patient.isDeleted()) {
+            patientIndex.remove(patient.getId());
+        } else {
+            patientIndex.put(patient.getId(), patient.getLastName(), patient.getFirstName());
+        }
+    }
+
+    @Override
+    public void facilityChanged(Facility facility) {
+        if (facility.isDeleted()) {
+            facilityIndex.remove(facility.getId());
+        } else {
+            facilityIndex.put(facility.getId(), facility.getName());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.healthcare.healthcare_system.repository;
+
+import com.healthcare.healthcare_system.dto.AuditLogCriteria;
+import com.healthcare.healthcare_system.dto.AuditLogsSavedEvent;
+import com.healthcare.healthcare_system.dto.KeysetCursor;
+import com.healthcare.healthcare_system.model.AuditLog;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The default audit store: the partitioned {@code audit_log} table. Saves join the caller's transaction, and the
+ * rollups are brought up to date in the same transaction. Each batch is announced as an {@link AuditLogsSavedEvent}.
+ * Entity types and actions are stored as {@code audit_code} codes, and a batch holding a new one registers it first.
+ */
+@Repository
+@ConditionalOnProperty(name = "audit.store", havingValue = "JPA", matchIfMissing = true)
+@RequiredArgsConstructor
+public class JpaAuditLogStore implements AuditLogStore {
+    private final AuditLogRepository auditLogRepository;
+    private final AuditCodeRepository auditCodeRepository;
+    private final AuditRollupRepository auditRollupRepository;
+    private final ApplicationEventPublisher applicationEventPublisher;
+
+    @Override
+    @Transactional
+    public List<AuditLog> saveAll(List<AuditLog> auditLogs) {
+        Set<String> names = new HashSet<>();
+        for (AuditLog auditLog : auditLogs) {
+            names.add(auditLog.getEntityType());
+            names.add(auditLog.getAction());
+        }
+        List<String> unknown = auditCodeRepository.findUnknown(names);
+        if (!unknown.isEmpty()) {
+            auditCodeRepository.register(unknown);
+        }
+
+        List<AuditLog> saved = auditLogRepository.saveAll(auditLogs);
+        auditRollupRepository.increment(saved);
+        applicationEventPublisher.publishEvent(new AuditLogsSavedEvent(saved));
+        return saved;
+    }
+
+    @Override
+    public List<AuditLog> scroll(AuditLogCriteria criteria, Sort.Direction direction, KeysetCursor after, int limit) {
+        return auditLogRepository.scroll(toSpecification(criteria), direction, after, limit);
+    }
+
+    @Override
+    public List<AuditLog> findHistory(String entityType, Long entityId, LocalDateTime at) {
+        return auditLogRepository.findByEntityTypeAndEntityIdAndChangedAtLessThanEqualOrderByChangedAtAscIdAsc(
+                entityType, entityId, at);
+    }
+
+    @Override
+    public Page<AuditLog> findAll(Pageable pageable) {
+        return auditLogRepository.findAll(pageable);
+    }
+
+    static Specification<AuditLog> toSpecification(AuditLogCriteria criteria) {
+        Specification<AuditLog> specification = Specification.where(null);
+        if (criteria.getEntityType() != null) {
+            specification = specification.and(criteria.getEntityId() != null
+                    ? AuditLogSpecifications.hasEntity(criteria.getEntityType(), criteria.getEntityId())
+                    : AuditLogSpecifications.hasEntityType(criteria.getEntityType()));
+        }
+        if (criteria.getAction() != null) {
+            specification = specification.and(AuditLogSpecifications.hasAction(criteria.getAction()));
+        }
+        if (criteria.getFrom() != null) {
+            specification = specification.and(AuditLogSpecifications.changedOnOrAfter(criteria.getFrom()));
+        }
+        if (criteria.getTo() != null) {
+            specification = specification.and(AuditLogSpecifications.changedOnOrBefore(criteria.getTo()));
+        }
+        return specification;
+    }
+}
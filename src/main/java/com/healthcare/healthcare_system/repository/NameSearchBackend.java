@@ -0,0 +1,48 @@
+package com.healthcare.healthcare_system.repository;
+
+import com.healthcare.healthcare_system.model.Facility;
+import com.healthcare.healthcare_system.model.Patient;
+import com.healthcare.healthcare_system.dto.NameMatch;
+
+import java.util.List;
+
+/**
+ * Ranked partial-name lookup over active patients and facilities. PostgreSQL answers it from {@code pg_trgm}
+ * GIN indexes; the {@code test} profile uses an in-process trigram index instead.
+ */
+public interface NameSearchBackend {
+
+    /**
+     * Search patients by first or last name.
+     *
+     * @param term the lower-case search term
+     * @param limit the maximum number of matches
+     * @return the matches, best first
+     */
+    List<NameMatch> searchPatients(String term, int limit);
+
+    /**
+     * Search facilities by name.
+     *
+     * @param term the lower-case search term
+     * @param limit the maximum number of matches
+     * @return the matches, best first
+     */
+    List<NameMatch> searchFacilities(String term, int limit);
+
+    /**
+     * Called after a patient is inserted or updated and committed. Backends that read the table directly ignore it.
+     *
+     * @param patient the patient
+     */
+    default void patientChanged(Patient patient) {
+    }
+
+    /**
+     * Called after a facility is inserted or updated and committed. Backends that read the table directly ignore it.
+     *
+     * @param facility the facility
+     */
+    default void facilityChanged(Facility facility) {
+    }
+}
@@ -0,0 +1,149 @@
+package com.healthcare.healthcare_system.repository;
+
+import com.healthcare.healthcare_system.dto.PatientDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Plain JDBC writes for bulk patient import. Rows go through one batched prepared statement per chunk instead of
+ * a Hibernate persist each; {@code ON CONFLICT DO NOTHING} lets the partial unique indexes from the
+ * {@code 006-patient-unique-contact-fields} changeset skip rows that raced with another writer instead of
+ * aborting the chunk. Ids are reserved from the entity sequences in the same 50-id blocks Hibernate's pooled
+ * optimizer uses, so bulk rows do not leave gaps in them.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PatientImportRepository {
+    static final String INSERT_PATIENT_SQL = "INSERT INTO patients (id, facility_id, first_name, last_name, " +
+            "date_of_birth, gender, address, phone_number, email, insurance_number, deleted, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, FALSE, ?, ?) " +
+            "ON CONFLICT DO NOTHING";
+
+    /**
+     * Ids handed out per {@code nextval}; matches the {@code allocationSize} of the entity sequence generators and
+     * the {@code INCREMENT BY} set by the {@code 007-pooled-id-sequences} changeset.
+     */
+    static final int ID_BLOCK_SIZE = 50;
+
+    private static final String RESERVE_IDS_SQL = "SELECT nextval(?::regclass) FROM generate_series(1, ?)";
+
+    private static final String ACTIVE_EMAILS_SQL = "SELECT email FROM patients " +
+            "WHERE deleted = FALSE AND email <> '' AND email = ANY (?)";
+    private static final String ACTIVE_PHONE_NUMBERS_SQL = "SELECT phone_number FROM patients " +
+            "WHERE deleted = FALSE AND phone_number <> '' AND phone_number = ANY (?)";
+    private static final String ACTIVE_INSURANCE_NUMBERS_SQL = "SELECT insurance_number FROM patients " +
+            "WHERE deleted = FALSE AND insurance_number <> '' AND insurance_number = ANY (?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Find which of the given emails belong to active patients.
+     *
+     * @param emails the emails
+     * @return the emails in use
+     */
+    public Set<String> findActiveEmails(Collection<String> emails) {
+        return findActiveValues(ACTIVE_EMAILS_SQL, emails);
+    }
+
+    /**
+     * Find which of the given phone numbers belong to active patients.
+     *
+     * @param phoneNumbers the phone numbers
+     * @return the phone numbers in use
+     */
+    public Set<String> findActivePhoneNumbers(Collection<String> phoneNumbers) {
+        return findActiveValues(ACTIVE_PHONE_NUMBERS_SQL, phoneNumbers);
+    }
+
+    /**
+     * Find which of the given insurance numbers belong to active patients.
+     *
+     * @param insuranceNumbers the insurance numbers
+     * @return the insurance numbers in use
+     */
+    public Set<String> findActiveInsuranceNumbers(Collection<String> insuranceNumbers) {
+        return findActiveValues(ACTIVE_INSURANCE_NUMBERS_SQL, insuranceNumbers);
+    }
+
+    /**
+     * Insert the patients as one JDBC batch.
+     *
+     * @param patients the patients
+     * @return the id of each patient in order, null where a unique index skipped the row
+     */
+    public List<Long> insertPatients(List<PatientDto> patients) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Long> ids = reserveIds("patients_id_seq", patients.size());
+        return jdbcTemplate.execute((ConnectionCallback<List<Long>>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_PATIENT_SQL)) {
+                for (int i = 0; i < patients.size(); i++) {
+                    PatientDto patient = patients.get(i);
+                    ps.setLong(1, ids.get(i));
+                    ps.setLong(2, patient.getFacilityId());
+                    ps.setString(3, patient.getFirstName());
+                    ps.setString(4, patient.getLastName());
+                    ps.setDate(5, Date.valueOf(patient.getDateOfBirth()));
+                    ps.setString(6, patient.getGender());
+                    ps.setString(7, patient.getAddress());
+                    ps.setString(8, patient.getPhoneNumber());
+                    ps.setString(9, patient.getEmail());
+                    ps.setString(10, patient.getInsuranceNumber());
+                    ps.setTimestamp(11, now);
+                    ps.setTimestamp(12, now);
+                    ps.addBatch();
+                }
+                int[] counts = ps.executeBatch();
+
+                List<Long> inserted = new ArrayList<>(patients.size());
+                for (int i = 0; i < counts.length; i++) {
+                    inserted.add(counts[i] > 0 ? ids.get(i) : null);
+                }
+                return inserted;
+            }
+        });
+    }
+
+    /**
+     * Reserve ids the way Hibernate's pooled optimizer does: {@code nextval} returns the last id of a block. The
+     * first value of an unused sequence is 1, which only yields the id 1, so the loop asks again until enough ids
+     * are reserved.
+     */
+    private List<Long> reserveIds(String sequence, int count) {
+        List<Long> ids = new ArrayList<>(count + ID_BLOCK_SIZE);
+        while (ids.size() < count) {
+            int blocks = (count - ids.size() + ID_BLOCK_SIZE - 1) / ID_BLOCK_SIZE;
+            for (Long blockEnd : jdbcTemplate.queryForList(RESERVE_IDS_SQL, Long.class, sequence, blocks)) {
+                for (long id = Math.max(1, blockEnd - ID_BLOCK_SIZE + 1); id <= blockEnd; id++) {
+                    ids.add(id);
+                }
+            }
+        }
+        return ids.subList(0, count);
+    }
+
+    private Set<String> findActiveValues(String sql, Collection<String> values) {
+        Set<String> active = new HashSet<>();
+        if (values.isEmpty()) {
+            return active;
+        }
+        jdbcTemplate.query(sql,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", values.toArray())),
+                rs -> {
+                    active.add(rs.getString(1));
+                });
+        return active;
+    }
+}
@@ -4,16 +4,16 @@ import com.healthcare.healthcare_system.model.Patient;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
-import java.time.LocalDate;
-
 /**
  * The interface Patient repository.
  */
 @Repository
-public interface PatientRepository extends JpaRepository<Patient, Long> {
+public interface PatientRepository extends JpaRepository<Patient, Long>, JpaSpecificationExecutor<Patient>,
+        PatientRepositoryCustom {
     Page<Patient> findAll(Pageable pageable);
 
     /**
@@ -25,35 +25,6 @@ public interface PatientRepository extends JpaRepository<Patient, Long> {
      */
     Page<Patient> findByFacilityId(Long facilityId, Pageable pageable);
 
-    /**
-     * Find by last name containing ignore case or first name containing ignore case page.
-     *
-     * @param lastName the last name
-     * @param firstName the first name
-     * @param pageable the pageable
-     * @return the page
-     */
-    Page<Patient> findByLastNameContainingIgnoreCaseOrFirstNameContainingIgnoreCase(
-            String lastName, String firstName, Pageable pageable);
-
-    /**
-     * Find by date of birth page.
-     *
-     * @param dateOfBirth the date of birth
-     * @param pageable the pageable
-     * @return the page
-     */
-    Page<Patient> findByDateOfBirth(LocalDate dateOfBirth, Pageable pageable);
-
-    /**
-     * Find by gender page.
-     *
-     * @param gender the gender
-     * @param pageable the pageable
-     * @return the page
-     */
-    Page<Patient> findByGender(String gender, Pageable pageable);
-
     /**
      * Count by facility id long.
      *
@@ -0,0 +1,40 @@
+package com.healthcare.healthcare_system.repository;
+
+import com.healthcare.healthcare_system.dto.KeysetCursor;
+import com.healthcare.healthcare_system.model.Patient;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Hand-written patient queries that Spring Data cannot derive.
+ */
+public interface PatientRepositoryCustom {
+
+    /**
+     * Keyset (seek) query: patients strictly after the cursor position, ordered by the sort property and id.
+     * Issues a single query with a row limit and no count query.
+     *
+     * @param filter the filter, may be null
+     * @param sortProperty the sort property
+     * @param direction the sort direction
+     * @param after the position to continue after, null for the first slice
+     * @param limit the maximum number of rows
+     * @return the patients
+     */
+    List<Patient> scroll(Specification<Patient> filter, String sortProperty, Sort.Direction direction,
+                         KeysetCursor after, int limit);
+
+    /**
+     * Stream patients matching the filter in id order. The rows are read through a database cursor
+     * {@code fetchSize} at a time and loaded read-only; callers must consume the stream inside a transaction, close
+     * it, and detach each patient once done with it.
+     *
+     * @param filter the filter, may be null
+     * @param fetchSize the number of rows fetched per round trip
+     * @return the patients
+     */
+    Stream<Patient> stream(Specification<Patient> filter, int fetchSize);
+}
@@ -0,0 +1,110 @@
+package com.healthcare.healthcare_system.repository;
+
+import com.healthcare.healthcare_system.dto.KeysetCursor;
+import com.healthcare.healthcare_system.model.Patient;
+import com.healthcare.healthcare_system.util.CursorUtils;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.healthcare.healthcare_system.util.MessageUtils.PATIENT_ENTITY_TYPE;
+
+/**
+ * The type Patient repository impl.
+ */
+public class PatientRepositoryImpl implements PatientRepositoryCustom {
+    private static final String ID = "id";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Patient> scroll(Specification<Patient> filter, String sortProperty, Sort.Direction direction,
+                               KeysetCursor after, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Patient> query = cb.createQuery(Patient.class);
+        Root<Patient> root = query.from(Patient.class);
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (filter != null) {
+            Predicate predicate = filter.toPredicate(root, query, cb);
+            if (predicate != null) {
+                predicates.add(predicate);
+            }
+        }
+        if (after != null) {
+            predicates.add(seekPredicate(cb, root, sortProperty, direction, after));
+        }
+        query.where(predicates.toArray(new Predicate[0]));
+
+        if (ID.equals(sortProperty)) {
+            query.orderBy(order(cb, root.get(ID), direction));
+        } else {
+            query.orderBy(order(cb, root.get(sortProperty), direction), order(cb, root.get(ID), direction));
+        }
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public Stream<Patient> stream(Specification<Patient> filter, int fetchSize) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Patient> query = cb.createQuery(Patient.class);
+        Root<Patient> root = query.from(Patient.class);
+
+        if (filter != null) {
+            Predicate predicate = filter.toPredicate(root, query, cb);
+            if (predicate != null) {
+                query.where(predicate);
+            }
+        }
+        query.orderBy(cb.asc(root.get(ID)));
+
+        return entityManager.createQuery(query)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+
+    /**
+     * For ascending order: {@code key >= v AND (key > v OR id > lastId)}. The redundant range bound lets the
+     * database start the index scan at the cursor instead of filtering from the beginning.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Predicate seekPredicate(CriteriaBuilder cb, Root<Patient> root, String sortProperty,
+                                    Sort.Direction direction, KeysetCursor after) {
+        Expression<Long> id = root.get(ID);
+        if (ID.equals(sortProperty)) {
+            return direction.isAscending() ? cb.greaterThan(id, after.getId()) : cb.lessThan(id, after.getId());
+        }
+
+        Expression key = root.get(sortProperty);
+        Comparable value = CursorUtils.parseSortValue(after.getSortValue(), key.getJavaType(), PATIENT_ENTITY_TYPE);
+        if (direction.isAscending()) {
+            return cb.and(
+                    cb.greaterThanOrEqualTo(key, value),
+                    cb.or(cb.greaterThan(key, value), cb.greaterThan(id, after.getId())));
+        }
+        return cb.and(
+                cb.lessThanOrEqualTo(key, value),
+                cb.or(cb.lessThan(key, value), cb.lessThan(id, after.getId())));
+    }
+
+    private Order order(CriteriaBuilder cb, Expression<?> expression, Sort.Direction direction) {
+        return direction.isAscending() ? cb.asc(expression) : cb.desc(expression);
+    }
+}
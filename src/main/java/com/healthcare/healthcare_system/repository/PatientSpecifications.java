@@ -0,0 +1,141 @@
+package com.healthcare.healthcare_system.repository;
+
+import com.healthcare.healthcare_system.dto.PatientSearchCriteria;
+import com.healthcare.healthcare_system.model.Patient;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Composable patient query predicates. Each one is backed by a partial index from the
+ * {@code 004-patient-search-indexes} changeset, so any combination can be answered without a table scan.
+ */
+public class PatientSpecifications {
+    private static final char LIKE_ESCAPE = '\\';
+
+    private PatientSpecifications() {
+    }
+
+    /**
+     * Combine every filter set on the criteria with AND.
+     *
+     * @param criteria the criteria
+     * @return the specification
+     */
+    public static Specification<Patient> matching(PatientSearchCriteria criteria) {
+        Specification<Patient> spec = Specification.where(null);
+        if (criteria.getSearch() != null) {
+            spec = spec.and(nameContains(criteria.getSearch()));
+        }
+        if (criteria.getName() != null) {
+            spec = spec.and(nameStartsWith(criteria.getName()));
+        }
+        if (criteria.getDobFrom() != null) {
+            spec = spec.and(bornOnOrAfter(criteria.getDobFrom()));
+        }
+        if (criteria.getDobTo() != null) {
+            spec = spec.and(bornOnOrBefore(criteria.getDobTo()));
+        }
+        if (criteria.getGender() != null) {
+            spec = spec.and(hasGender(criteria.getGender()));
+        }
+        if (criteria.getFacilityId() != null) {
+            spec = spec.and(hasFacility(criteria.getFacilityId()));
+        }
+        if (criteria.getInsuranceNumber() != null) {
+            spec = spec.and(hasInsuranceNumber(criteria.getInsuranceNumber()));
+        }
+        return spec;
+    }
+
+    /**
+     * Patients registered at the given facility.
+     *
+     * @param facilityId the facility id
+     * @return the specification
+     */
+    public static Specification<Patient> hasFacility(Long facilityId) {
+        return (root, query, cb) -> cb.equal(root.get("facility").get("id"), facilityId);
+    }
+
+    /**
+     * Patients whose first or last name starts with the given text, case insensitive.
+     *
+     * @param prefix the prefix
+     * @return the specification
+     */
+    public static Specification<Patient> nameStartsWith(String prefix) {
+        String pattern = escapeLike(prefix.toLowerCase()) + "%";
+        return (root, query, cb) -> cb.or(
+                cb.like(cb.lower(root.get("lastName")), pattern, LIKE_ESCAPE),
+                cb.like(cb.lower(root.get("firstName")), pattern, LIKE_ESCAPE));
+    }
+
+    /**
+     * Patients whose first or last name contains the given text, case insensitive.
+     *
+     * @param text the text
+     * @return the specification
+     */
+    public static Specification<Patient> nameContains(String text) {
+        String pattern = "%" + escapeLike(text.toLowerCase()) + "%";
+        return (root, query, cb) -> cb.or(
+                cb.like(cb.lower(root.get("lastName")), pattern, LIKE_ESCAPE),
+                cb.like(cb.lower(root.get("firstName")), pattern, LIKE_ESCAPE));
+    }
+
+    /**
+     * Patients born on or after the given date.
+     *
+     * @param date the date
+     * @return the specification
+     */
+    public static Specification<Patient> bornOnOrAfter(LocalDate date) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("dateOfBirth"), date);
+    }
+
+    /**
+     * Patients born on or before the given date.
+     *
+     * @param date the date
+     * @return the specification
+     */
+    public static Specification<Patient> bornOnOrBefore(LocalDate date) {
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("dateOfBirth"), date);
+    }
+
+    /**
+     * Patients of the given gender.
+     *
+     * @param gender the gender
+     * @return the specification
+     */
+    public static Specification<Patient> hasGender(String gender) {
+        return (root, query, cb) -> cb.equal(root.get("gender"), gender);
+    }
+
+    /**
+     * Patients with the given insurance number.
+     *
+     * @param insuranceNumber the insurance number
+     * @return the specification
+     */
+    public static Specification<Patient> hasInsuranceNumber(String insuranceNumber) {
+        return (root, query, cb) -> cb.equal(root.get("insuranceNumber"), insuranceNumber);
+    }
+
+    /**
+     * Patients created or changed at or after the given time.
+     *
+     * @param since the time
+     * @return the specification
+     */
+    public static Specification<Patient> updatedSince(LocalDateTime since) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("updatedAt"), since);
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
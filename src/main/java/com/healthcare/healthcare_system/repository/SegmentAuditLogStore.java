@@ -0,0 +1,454 @@
+package com.healthcare.healthcare_system.repository;
+
+import com.healthcare.healthcare_system.dto.AuditLogCriteria;
+import com.healthcare.healthcare_system.dto.AuditLogsSavedEvent;
+import com.healthcare.healthcare_system.dto.AuditSegmentCompactionResultDto;
+import com.healthcare.healthcare_system.dto.KeysetCursor;
+import com.healthcare.healthcare_system.exception.ServiceException;
+import com.healthcare.healthcare_system.model.AuditLog;
+import com.healthcare.healthcare_system.util.CursorUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import static com.healthcare.healthcare_system.util.MessageUtils.*;
+
+/**
+ * Audit store on local disk, selected with {@code audit.store=SEGMENT}. Events are appended to fixed-size
+ * memory-mapped segment files of {@code audit.segment.size-bytes} in {@code audit.segment.dir}; when the tail
+ * segment is full a new one is started. Ids are handed out by the store. Every batch is flushed to disk before
+ * {@link #saveAll} returns unless {@code audit.segment.force-on-write} is off. The sparse index of each segment (see
+ * {@link AuditSegment}) is rebuilt from the files at startup, which is also when a write cut short by a crash is
+ * found and discarded.
+ * <p>
+ * A batch is stored whole or not at all: every event is checked to fit in a segment before any is appended, and a
+ * batch that still fails, for instance when the next segment cannot be created, is removed again from the tail
+ * segment, together with the segments it started, before the error is thrown.
+ * <p>
+ * Segments are appended in the order events are saved, which the writer and the outbox relay only roughly keep in
+ * time order. Compaction rewrites sealed segments sorted by change time and id, merging neighbours whose events fit
+ * in one segment, so block time ranges stop overlapping and time-ordered queries can stop early. A compacted segment
+ * records which segments it replaces; it is renamed into place before they are deleted, and a restart that finds
+ * both deletes the replaced ones.
+ * <p>
+ * Saves do not take part in database transactions. An event saved in a transaction that then rolls back stays in the
+ * store, and the outbox relay may save a batch again if deleting it from the outbox fails. The rollups in the
+ * database are updated after each batch is on disk; if that fails the batch is kept and only logged, so the rollups
+ * can fall behind the segments. Each batch is then announced as an {@link AuditLogsSavedEvent}.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "audit.store", havingValue = "SEGMENT")
+@RequiredArgsConstructor
+public class SegmentAuditLogStore implements AuditLogStore {
+    private static final Comparator<AuditLog> POSITION = Comparator.comparing(AuditLog::getChangedAt)
+            .thenComparing(AuditLog::getId);
+
+    private final AuditRollupRepository auditRollupRepository;
+    private final ApplicationEventPublisher applicationEventPublisher;
+
+    @Value("${audit.segment.dir:audit-segments}")
+    private String dir = "audit-segments";
+
+    @Value("${audit.segment.size-bytes:67108864}")
+    private int segmentSize = 64 * 1024 * 1024;
+
+    @Value("${audit.segment.force-on-write:true}")
+    private boolean forceOnWrite = true;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object compactionLock = new Object();
+    private final List<AuditSegment> segments = new ArrayList<>();
+    private long nextId = 1;
+
+    /**
+     * Open the segments and rebuild their index. Files left behind by an interrupted compaction are removed first.
+     */
+    @PostConstruct
+    public void open() {
+        Path directory = Paths.get(dir);
+        try {
+            Files.createDirectories(directory);
+            Map<Path, AuditSegment.Header> headers = new HashMap<>();
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.sorted().toList()) {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(AuditSegment.TEMP_SUFFIX)) {
+                        Files.delete(file);
+                    } else if (AuditSegment.isSegmentFile(name)) {
+                        AuditSegment.Header header = AuditSegment.readHeader(file);
+                        if (header == null) {
+                            log.warn("Deleting audit segment {} without a valid header", file);
+                            Files.delete(file);
+                        } else {
+                            headers.put(file, header);
+                        }
+                    }
+                }
+            }
+
+            List<Path> live = new ArrayList<>();
+            for (Map.Entry<Path, AuditSegment.Header> entry : headers.entrySet()) {
+                if (headers.values().stream().anyMatch(other -> other.replaces(entry.getValue()))) {
+                    log.info("Deleting audit segment {}, which a compacted segment replaces", entry.getKey());
+                    Files.delete(entry.getKey());
+                } else {
+                    live.add(entry.getKey());
+                }
+            }
+            live.sort(Comparator.comparingLong(file -> headers.get(file).seq()));
+
+            segments.clear();
+            for (int i = 0; i < live.size(); i++) {
+                AuditSegment segment = AuditSegment.open(live.get(i), headers.get(live.get(i)), i == live.size() - 1);
+                segments.add(segment);
+                nextId = Math.max(nextId, segment.getMaxId() + 1);
+            }
+            if (segments.isEmpty()) {
+                segments.add(AuditSegment.create(directory, 1, segmentSize));
+            }
+            log.info("Opened {} audit segments in {} holding {} events", segments.size(), directory,
+                    segments.stream().mapToLong(AuditSegment::getCount).sum());
+        } catch (IOException e) {
+            throw new ServiceException(String.format(AUDIT_SEGMENT_OPEN_ERROR, directory), AUDIT_LOG_ENTITY, e);
+        }
+    }
+
+    /**
+     * Flush the tail segment.
+     */
+    @PreDestroy
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (!segments.isEmpty()) {
+                tail().force();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Scheduled compaction.
+     */
+    @Scheduled(cron = "${audit.segment.compaction-cron:0 45 0 * * *}")
+    public void scheduledCompaction() {
+        AuditSegmentCompactionResultDto result = compact();
+        if (!result.getCompactedSegments().isEmpty()) {
+            log.info("Compacted audit segments {} into {} in {} ms", result.getCompactedSegments(),
+                    result.getWrittenSegments(), result.getDurationMs());
+        }
+    }
+
+    @Override
+    public List<AuditLog> saveAll(List<AuditLog> auditLogs) {
+        lock.writeLock().lock();
+        long firstId = nextId;
+        AuditSegment tail = tail();
+        int tailEnd = tail.getEnd();
+        int segmentCount = segments.size();
+        AuditSegment segment = tail;
+        try {
+            List<byte[]> payloads = new ArrayList<>(auditLogs.size());
+            for (AuditLog auditLog : auditLogs) {
+                if (auditLog.getId() == null) {
+                    auditLog.setId(nextId);
+                }
+                if (auditLog.getChangedAt() == null) {
+                    auditLog.setChangedAt(LocalDateTime.now());
+                }
+                nextId = Math.max(nextId, auditLog.getId() + 1);
+
+                byte[] payload = AuditSegment.encode(auditLog);
+                if (AuditSegment.HEADER_SIZE + AuditSegment.recordSize(payload) > segmentSize) {
+                    throw new IllegalArgumentException("audit event " + auditLog.getId() + " of "
+                            + payload.length + " bytes does not fit in a segment");
+                }
+                payloads.add(payload);
+            }
+
+            int flushFrom = tailEnd;
+            for (int i = 0; i < auditLogs.size(); i++) {
+                if (!segment.append(auditLogs.get(i), payloads.get(i))) {
+                    segment.force();
+                    segment = AuditSegment.create(Paths.get(dir), segment.getSeq() + 1, segmentSize);
+                    segments.add(segment);
+                    flushFrom = segment.getEnd();
+                    segment.append(auditLogs.get(i), payloads.get(i));
+                }
+            }
+            if (forceOnWrite) {
+                segment.force(flushFrom);
+            }
+        } catch (IOException | RuntimeException e) {
+            discard(tail, tailEnd, segmentCount);
+            nextId = firstId;
+            throw new ServiceException(String.format(AUDIT_SEGMENT_WRITE_ERROR, segment.getFile()),
+                    AUDIT_LOG_ENTITY, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        try {
+            auditRollupRepository.increment(auditLogs);
+        } catch (DataAccessException e) {
+            log.warn("Could not add {} audit events to the rollups", auditLogs.size(), e);
+        }
+        applicationEventPublisher.publishEvent(new AuditLogsSavedEvent(auditLogs));
+        return auditLogs;
+    }
+
+    /**
+     * Remove a failed batch: the segments it started are emptied and deleted, and the tail it began in is cut back
+     * to where the batch started. A segment that cannot be deleted stays, empty, so the next one is not named after
+     * a file that still exists.
+     */
+    private void discard(AuditSegment tail, int tailEnd, int segmentCount) {
+        for (int i = segments.size() - 1; i >= segmentCount; i--) {
+            segments.get(i).truncate(AuditSegment.HEADER_SIZE);
+        }
+        while (segments.size() > segmentCount) {
+            AuditSegment started = segments.get(segments.size() - 1);
+            try {
+                Files.deleteIfExists(started.getFile());
+            } catch (IOException e) {
+                log.warn("Could not delete audit segment {} of a failed batch", started.getFile(), e);
+                break;
+            }
+            segments.remove(segments.size() - 1);
+        }
+        tail.truncate(tailEnd);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Candidate blocks are read in the order of their time bounds while the best {@code limit} events are kept;
+     * reading stops at the first block that cannot hold anything better than the worst of them.
+     */
+    @Override
+    public List<AuditLog> scroll(AuditLogCriteria criteria, Sort.Direction direction, KeysetCursor after, int limit) {
+        long fromMicros = criteria.getFrom() == null ? Long.MIN_VALUE : AuditSegment.micros(criteria.getFrom());
+        long toMicros = criteria.getTo() == null ? Long.MAX_VALUE : AuditSegment.micros(criteria.getTo());
+        AuditLog position = null;
+        if (after != null) {
+            position = AuditLog.builder()
+                    .changedAt((LocalDateTime) CursorUtils.parseSortValue(after.getSortValue(), LocalDateTime.class,
+                            AUDIT_LOG_ENTITY))
+                    .id(after.getId())
+                    .build();
+            long cursorMicros = AuditSegment.micros(position.getChangedAt());
+            if (direction.isAscending()) {
+                fromMicros = Math.max(fromMicros, cursorMicros);
+            } else {
+                toMicros = Math.min(toMicros, cursorMicros);
+            }
+        }
+
+        // Ordered so the head of the queue is the worst event kept
+        Comparator<AuditLog> order = direction.isAscending() ? POSITION : POSITION.reversed();
+        PriorityQueue<AuditLog> best = new PriorityQueue<>(Math.min(limit, 1024) + 1, order.reversed());
+
+        lock.readLock().lock();
+        try {
+            List<AuditSegment.Block> candidates = new ArrayList<>();
+            for (AuditSegment segment : segments) {
+                segment.collectBlocks(criteria, fromMicros, toMicros, candidates);
+            }
+            candidates.sort(direction.isAscending()
+                    ? Comparator.comparingLong(block -> block.minMicros)
+                    : Comparator.comparingLong((AuditSegment.Block block) -> block.maxMicros).reversed());
+
+            for (AuditSegment.Block block : candidates) {
+                if (best.size() == limit) {
+                    long worst = AuditSegment.micros(best.peek().getChangedAt());
+                    if (direction.isAscending() ? block.minMicros > worst : block.maxMicros < worst) {
+                        break;
+                    }
+                }
+                Long entityId = criteria.getEntityType() == null ? null : criteria.getEntityId();
+                for (AuditLog auditLog : block.read(entityId)) {
+                    if (matches(auditLog, criteria) && (position == null || order.compare(auditLog, position) > 0)) {
+                        best.offer(auditLog);
+                        if (best.size() > limit) {
+                            best.poll();
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<AuditLog> auditLogs = new ArrayList<>(best);
+        auditLogs.sort(order);
+        return auditLogs;
+    }
+
+    @Override
+    public List<AuditLog> findHistory(String entityType, Long entityId, LocalDateTime at) {
+        return scroll(AuditLogCriteria.builder().entityType(entityType).entityId(entityId).to(at).build(),
+                Sort.Direction.ASC, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Events are ordered by change time and id whatever the sort property; only its direction is used.
+     */
+    @Override
+    public Page<AuditLog> findAll(Pageable pageable) {
+        Sort.Direction direction = pageable.getSort().stream()
+                .findFirst()
+                .map(Sort.Order::getDirection)
+                .orElse(Sort.Direction.ASC);
+        long total;
+        lock.readLock().lock();
+        try {
+            total = segments.stream().mapToLong(AuditSegment::getCount).sum();
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(scroll(new AuditLogCriteria(), direction, null, (int) Math.min(total,
+                    Integer.MAX_VALUE)), pageable, total);
+        }
+        if (pageable.getOffset() >= total) {
+            return new PageImpl<>(List.of(), pageable, total);
+        }
+        List<AuditLog> upToPage = scroll(new AuditLogCriteria(), direction, null,
+                (int) Math.min(pageable.getOffset() + pageable.getPageSize(), Integer.MAX_VALUE));
+        return new PageImpl<>(upToPage.subList((int) Math.min(pageable.getOffset(), upToPage.size()),
+                upToPage.size()), pageable, total);
+    }
+
+    /**
+     * Rewrite sealed segments that are out of time order, or that fit into one segment with their neighbours, as
+     * single sorted segments. The tail segment is never compacted. Only one compaction runs at a time; saves and
+     * queries only wait while the new segment is swapped in.
+     *
+     * @return the compaction result
+     */
+    @Override
+    public AuditSegmentCompactionResultDto compact() {
+        long start = System.currentTimeMillis();
+        List<String> compacted = new ArrayList<>();
+        List<String> written = new ArrayList<>();
+        synchronized (compactionLock) {
+            for (List<AuditSegment> group : compactionGroups()) {
+                List<String> names = group.stream().map(segment -> segment.getFile().getFileName().toString())
+                        .toList();
+                AuditSegment first = group.get(0);
+                AuditSegment last = group.get(group.size() - 1);
+                try {
+                    List<AuditLog> auditLogs = new ArrayList<>();
+                    for (AuditSegment segment : group) {
+                        segment.blocks().forEach(block -> auditLogs.addAll(block.read()));
+                    }
+                    auditLogs.sort(POSITION);
+                    AuditSegment.Header header = new AuditSegment.Header(last.getSeq(),
+                            group.stream().mapToInt(AuditSegment::getGeneration).max().orElse(0) + 1,
+                            first.getSeq(), last.getSeq());
+                    AuditSegment replacement = AuditSegment.write(Paths.get(dir), header, auditLogs, segmentSize);
+
+                    lock.writeLock().lock();
+                    try {
+                        int index = segments.indexOf(first);
+                        segments.subList(index, index + group.size()).clear();
+                        segments.add(index, replacement);
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                    for (AuditSegment segment : group) {
+                        Files.delete(segment.getFile());
+                    }
+                    compacted.addAll(names);
+                    written.add(replacement.getFile().getFileName().toString());
+                } catch (IOException | IllegalArgumentException e) {
+                    throw new ServiceException(String.format(AUDIT_SEGMENT_COMPACT_ERROR, names), AUDIT_LOG_ENTITY, e);
+                }
+            }
+        }
+        return AuditSegmentCompactionResultDto.builder()
+                .compactedSegments(compacted)
+                .writtenSegments(written)
+                .durationMs(System.currentTimeMillis() - start)
+                .build();
+    }
+
+    /**
+     * Runs of consecutive sealed segments whose records fit into one segment, kept when there is more than one
+     * segment in the run or its only segment is out of order.
+     */
+    private List<List<AuditSegment>> compactionGroups() {
+        List<AuditSegment> sealed;
+        lock.readLock().lock();
+        try {
+            sealed = new ArrayList<>(segments.subList(0, segments.size() - 1));
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<List<AuditSegment>> groups = new ArrayList<>();
+        List<AuditSegment> group = new ArrayList<>();
+        long groupBytes = 0;
+        for (AuditSegment segment : sealed) {
+            long bytes = segment.getEnd() - AuditSegment.HEADER_SIZE;
+            if (!group.isEmpty() && AuditSegment.HEADER_SIZE + groupBytes + bytes > segmentSize) {
+                addGroup(groups, group);
+                group = new ArrayList<>();
+                groupBytes = 0;
+            }
+            group.add(segment);
+            groupBytes += bytes;
+        }
+        addGroup(groups, group);
+        return groups;
+    }
+
+    private static void addGroup(List<List<AuditSegment>> groups, List<AuditSegment> group) {
+        if (group.size() > 1 || group.size() == 1 && !group.get(0).isSorted()) {
+            groups.add(group);
+        }
+    }
+
+    private static boolean matches(AuditLog auditLog, AuditLogCriteria criteria) {
+        return (criteria.getEntityType() == null || criteria.getEntityType().equals(auditLog.getEntityType()))
+                && (criteria.getEntityType() == null || criteria.getEntityId() == null
+                || criteria.getEntityId().equals(auditLog.getEntityId()))
+                && (criteria.getAction() == null || criteria.getAction().equals(auditLog.getAction()))
+                && (criteria.getFrom() == null || !auditLog.getChangedAt().isBefore(criteria.getFrom()))
+                && (criteria.getTo() == null || !auditLog.getChangedAt().isAfter(criteria.getTo()));
+    }
+
+    private AuditSegment tail() {
+        return segments.get(segments.size() - 1);
+    }
+}
@@ -0,0 +1,60 @@
+package com.healthcare.healthcare_system.repository;
+
+import com.healthcare.healthcare_system.dto.NameMatch;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * PostgreSQL name search. {@code <%} (word similarity above {@code pg_trgm.word_similarity_threshold}) catches
+ * typos and name prefixes, {@code LIKE} keeps plain substring matches; both are answered from the GIN trigram
+ * indexes created by the {@code 005-trigram-name-search} changeset and combined with a BitmapOr.
+ */
+@Repository
+@Profile("!test")
+@RequiredArgsConstructor
+public class TrigramNameSearchBackend implements NameSearchBackend {
+    static final String PATIENT_SEARCH_SQL = "SELECT p.id, GREATEST(word_similarity(:term, lower(p.last_name)), " +
+            "word_similarity(:term, lower(p.first_name))) AS score " +
+            "FROM patients p " +
+            "WHERE p.deleted = FALSE " +
+            "AND (:term <% lower(p.last_name) OR :term <% lower(p.first_name) " +
+            "OR lower(p.last_name) LIKE :pattern OR lower(p.first_name) LIKE :pattern) " +
+            "ORDER BY score DESC, p.id " +
+            "LIMIT :limit";
+
+    static final String FACILITY_SEARCH_SQL = "SELECT f.id, word_similarity(:term, upper(f.name)) AS score " +
+            "FROM facilities f " +
+            "WHERE f.deleted = FALSE " +
+            "AND (:term <% upper(f.name) OR upper(f.name) LIKE upper(:pattern)) " +
+            "ORDER BY score DESC, f.id " +
+            "LIMIT :limit";
+
+    private static final RowMapper<NameMatch> NAME_MATCH_MAPPER =
+            (rs, rowNum) -> new NameMatch(rs.getLong("id"), rs.getDouble("score"));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<NameMatch> searchPatients(String term, int limit) {
+        return jdbcTemplate.query(PATIENT_SEARCH_SQL, parameters(term, limit), NAME_MATCH_MAPPER);
+    }
+
+    @Override
+    public List<NameMatch> searchFacilities(String term, int limit) {
+        return jdbcTemplate.query(FACILITY_SEARCH_SQL, parameters(term, limit), NAME_MATCH_MAPPER);
+    }
+
+    private MapSqlParameterSource parameters(String term, int limit) {
+        String escaped = term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return new MapSqlParameterSource()
+                .addValue("term", term)
+                .addValue("pattern", "%" + escaped + "%")
+                .addValue("limit", limit);
+    }
+}
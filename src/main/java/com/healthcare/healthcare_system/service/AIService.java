@@ -1,31 +1,75 @@
 package com.healthcare.healthcare_system.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.healthcare.healthcare_system.dto.ChatRequest;
 import com.healthcare.healthcare_system.dto.ChatResponse;
+import com.healthcare.healthcare_system.dto.CursorPage;
 import com.healthcare.healthcare_system.dto.FacilityDto;
 import com.healthcare.healthcare_system.dto.PatientDto;
+import com.healthcare.healthcare_system.exception.ServiceBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
+import reactor.adapter.JdkFlowAdapter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.io.ByteArrayOutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * The type Ai service.
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class AIService {
+    static final String TOKEN_EVENT = "token";
+    static final String DONE_EVENT = "done";
+    static final String ERROR_EVENT = "error";
+
+    private static final int MAX_LISTED_PATIENTS = 100;
+    private static final Duration OLLAMA_TIMEOUT = Duration.ofSeconds(30);
+    private static final String QUERY_FAILED =
+            "Sorry, I encountered an error processing your request. Please try again.";
+
     private final FacilityService facilityService;
     private final PatientService patientService;
     private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final ChatResponseCache chatResponseCache;
+    private final EmbeddingBackend embeddingBackend;
+    private final OllamaConcurrencyLimiter ollamaConcurrencyLimiter;
 
     @Value("${ollama.api.base-url:http://localhost:11434}")
     private String ollamaBaseUrl;
@@ -33,98 +77,43 @@ public class AIService {
     @Value("${ollama.model:llama2}")
     private String ollamaModel;
 
-//    public ChatResponse processQuery(ChatRequest chatRequest) {
-//        String query = chatRequest.getQuery().toLowerCase();
-//        ChatResponse response = new ChatResponse();
-//
-//        // Handle known query patterns
-//        if (query.contains("list patients from facility") || query.contains("patients in facility")) {
-//            Long facilityId = extractIdFromQuery(query);
-//            if (facilityId != null) {
-//                List<PatientDto> patients = patientService.getPatientsByFacility(facilityId, Pageable.unpaged()).getContent();
-//                response.setResponse("Here are the patients from facility " + facilityId);
-//                response.setData(patients);
-//                return response;
-//            }
-//        } else if (query.contains("facilities with more than") || query.contains("facilities having more than")) {
-//            int count = extractNumberFromQuery(query);
-//            List<FacilityDto> facilities = facilityService.getFacilitiesWithPatientCountGreaterThan(count);
-//            response.setResponse("Facilities with more than " + count + " patients:");
-//            response.setData(facilities);
-//            return response;
-//        }
-//
-//        // Fallback to Ollama for complex queries
-//        return handleComplexQueryWithOllama(chatRequest);
-//    }
+    @Value("${ai.ollama.retry-after-seconds:10}")
+    private long retryAfterSeconds = 10;
+
+    private final Map<GenerationKey, CompletableFuture<String>> generations = new ConcurrentHashMap<>();
+
+    private Timer timeToFirstToken;
+    private Counter coalescedCounter;
+
+    private record GenerationKey(String model, String prompt) {
+    }
+
+    /**
+     * Register the metrics.
+     */
+    @PostConstruct
+    public void registerMetrics() {
+        timeToFirstToken = Timer.builder("ai.chat.time-to-first-token")
+                .description("Time from a streamed chat query to the first token from Ollama")
+                .register(meterRegistry);
+        coalescedCounter = Counter.builder("ai.chat.coalesced")
+                .description("Chat queries that joined an identical query already waiting on Ollama")
+                .register(meterRegistry);
+    }
 
     /**
-     * Process query chat response.
+     * Answer a query. Known query patterns are answered from the database before returning; anything else is sent to
+     * Ollama, and the returned future completes when Ollama answers, without a thread waiting for it.
      *
      * @param chatRequest the chat request
-     * @return the chat response
+     * @return the chat response, once it is ready
      */
-//    public ChatResponse processQuery(ChatRequest chatRequest) {
-//        String query = chatRequest.getQuery().toLowerCase();
-//        ChatResponse response = new ChatResponse();
-//
-//        try {
-//            // Handle known query patterns
-//            if (query.contains("list patients from facility") || query.contains("patients in facility")) {
-//                Long facilityId = extractIdFromQuery(query);
-//                if (facilityId != null) {
-//                    List<PatientDto> patients = patientService.getPatientsByFacility(facilityId, Pageable.unpaged()).getContent();
-//                    response.setResponse("Here are the patients from facility " + facilityId);
-//                    response.setData(patients);
-//                    return response;
-//                }
-//            } else if (query.contains("facilities with more than") || query.contains("facilities having more than")) {
-//                int count = extractNumberFromQuery(query);
-//                List<FacilityDto> facilities = facilityService.getFacilitiesWithPatientCountGreaterThan(count);
-//                System.out.println("***************************************************"+facilities.size());
-//                if (facilities != null && !facilities.isEmpty()) {
-//                    response.setResponse("Facilities with more than " + count + " patients:");
-//                    response.setData(facilities);
-//                } else {
-//                    response.setResponse("No facilities found with more than " + count + " patients.");
-//                }
-//                return response;
-//            }
-//
-//            // Fallback to Ollama for complex queries
-//            return handleComplexQueryWithOllama(chatRequest);
-//        } catch (Exception e) {
-//            ChatResponse errorResponse = new ChatResponse();
-//            errorResponse.setResponse("Sorry, I encountered an error processing your request: " + e.getMessage());
-//            return errorResponse;
-//        }
-//    }
-
-    public ChatResponse processQuery(ChatRequest chatRequest) {
-        String query = chatRequest.getQuery().toLowerCase();
-        ChatResponse response = new ChatResponse();
-
+    public CompletableFuture<ChatResponse> processQuery(ChatRequest chatRequest) {
         try {
             // Handle known query patterns
-            if (query.contains("patients from facility") || query.contains("patients in facility")) {
-                Long facilityId = extractIdFromQuery(query);
-                if (facilityId != null) {
-                    List<PatientDto> patients = patientService.getPatientsByFacility(facilityId, Pageable.unpaged()).getContent();
-                    response.setResponse("Here are the patients from facility " + facilityId);
-                    response.setData(patients);
-                    return response;
-                }
-            } else if (query.matches(".*facilit(y|ies).*more than.*\\d+.*patient.*") ||
-                    query.matches(".*which facilit(y|ies).*have more than.*\\d+.*patient.*")) {
-                int count = extractNumberFromQuery(query);
-                List<FacilityDto> facilities = facilityService.getFacilitiesWithPatientCountGreaterThan(count);
-                if (facilities != null && !facilities.isEmpty()) {
-                    response.setResponse("Facilities with more than " + count + " patients:");
-                    response.setData(facilities);
-                } else {
-                    response.setResponse("No facilities found with more than " + count + " patients.");
-                }
-                return response;
+            ChatResponse response = answerDirectly(chatRequest.getQuery().toLowerCase());
+            if (response != null) {
+                return CompletableFuture.completedFuture(response);
             }
 
             // Fallback to Ollama for complex queries
@@ -132,63 +121,285 @@ public class AIService {
         } catch (Exception e) {
             ChatResponse errorResponse = new ChatResponse();
             errorResponse.setResponse("Sorry, I encountered an error processing your request: " + e.getMessage());
-            return errorResponse;
+            return CompletableFuture.completedFuture(errorResponse);
         }
     }
 
-    private ChatResponse handleComplexQueryWithOllama(ChatRequest chatRequest) {
-        try {
-            String ollamaResponse = callOllamaApi(chatRequest.getQuery()).join();
+    /**
+     * Stream the answer to a query as Server-Sent Events: a {@code token} event for each piece of text as Ollama
+     * generates it, then a {@code done} event with the whole response. Known query patterns are answered from the
+     * database with the {@code done} event alone. If the query fails, an {@code error} event with a message is sent
+     * instead of {@code done}. Cancelling the stream, as happens when the client disconnects, cancels the request to
+     * Ollama.
+     *
+     * @param chatRequest the chat request
+     * @return the events
+     */
+    public Flux<ServerSentEvent<Object>> streamQuery(ChatRequest chatRequest) {
+        return Flux.defer(() -> {
+            ChatResponse direct = answerDirectly(chatRequest.getQuery().toLowerCase());
+            if (direct != null) {
+                return Flux.just(ServerSentEvent.builder().event(DONE_EVENT).data(direct).build());
+            }
 
-            ChatResponse response = new ChatResponse();
-            response.setResponse(ollamaResponse);
+            long start = System.nanoTime();
+            AtomicBoolean first = new AtomicBoolean(true);
+            StringBuilder text = new StringBuilder();
+            return streamOllamaApi(chatRequest.getQuery())
+                    .doOnNext(token -> {
+                        if (first.compareAndSet(true, false)) {
+                            timeToFirstToken.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        }
+                        text.append(token);
+                    })
+                    .map(token -> ServerSentEvent.builder().event(TOKEN_EVENT).data(token).build())
+                    .concatWith(Mono.fromSupplier(() -> {
+                        ChatResponse response = new ChatResponse();
+                        response.setResponse(text.toString());
+                        return ServerSentEvent.builder().event(DONE_EVENT).data(response).build();
+                    }));
+        }).onErrorResume(e -> Flux.just(ServerSentEvent.builder().event(ERROR_EVENT).data(QUERY_FAILED).build()));
+    }
+
+    /**
+     * Answer the known query patterns from the database.
+     *
+     * @param query the query, in lower case
+     * @return the response, or null if the query has no known pattern
+     */
+    private ChatResponse answerDirectly(String query) {
+        ChatResponse response = new ChatResponse();
+        if (query.contains("patients from facility") || query.contains("patients in facility")) {
+            Long facilityId = extractIdFromQuery(query);
+            if (facilityId != null) {
+                // Listing every patient would hold the whole facility in memory; larger ones point to the export
+                CursorPage<PatientDto> patients = patientService.scrollPatientsByFacility(
+                        facilityId, "", PageRequest.of(0, MAX_LISTED_PATIENTS));
+                response.setResponse(patients.isHasNext()
+                        ? String.format("Here are the first %d patients from facility %d. "
+                                + "The full list is available from /api/patients/export?facilityId=%d",
+                                patients.getSize(), facilityId, facilityId)
+                        : "Here are the patients from facility " + facilityId);
+                response.setData(patients.getContent());
+                return response;
+            }
+        } else if (query.matches(".*facilit(y|ies).*more than.*\\d+.*patient.*") ||
+                query.matches(".*which facilit(y|ies).*have more than.*\\d+.*patient.*")) {
+            int count = extractNumberFromQuery(query);
+            List<FacilityDto> facilities = facilityService.getFacilitiesWithPatientCountGreaterThan(count);
+            if (facilities != null && !facilities.isEmpty()) {
+                response.setResponse("Facilities with more than " + count + " patients:");
+                response.setData(facilities);
+            } else {
+                response.setResponse("No facilities found with more than " + count + " patients.");
+            }
             return response;
-        } catch (Exception e) {
-            ChatResponse errorResponse = new ChatResponse();
-            errorResponse.setResponse("Sorry, I encountered an error processing your request. Please try again.");
-            return errorResponse;
         }
+        return null;
     }
 
-    private CompletableFuture<String> callOllamaApi(String query) {
-        String requestBody = String.format("""
-                {
-                    "model": "%s",
-                    "prompt": "%s",
-                    "stream": false
+    /**
+     * Answer from the cache, or else from Ollama. Identical queries arriving while one is being answered share its
+     * answer instead of generating it again.
+     */
+    private CompletableFuture<ChatResponse> handleComplexQueryWithOllama(ChatRequest chatRequest) {
+        String query = chatRequest.getQuery();
+        String cached = chatResponseCache.get(ollamaModel, query);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(chatResponse(cached));
+        }
+
+        GenerationKey key = new GenerationKey(ollamaModel, ChatResponseCache.normalize(query));
+        CompletableFuture<String> answer = new CompletableFuture<>();
+        CompletableFuture<String> inFlight = generations.putIfAbsent(key, answer);
+        if (inFlight != null) {
+            coalescedCounter.increment();
+            answer = inFlight;
+        } else {
+            CompletableFuture<String> generation = answer;
+            answerWithOllama(query).whenComplete((text, e) -> {
+                // Removed first, so a query arriving once it is answered finds the answer in the cache instead
+                generations.remove(key, generation);
+                if (e != null) {
+                    generation.completeExceptionally(e);
+                } else {
+                    generation.complete(text);
                 }
-                """, ollamaModel, escapeJson(query));
+            });
+        }
+        return answer.thenApply(this::chatResponse)
+                .exceptionally(this::failedResponse);
+    }
 
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(ollamaBaseUrl + "/api/generate"))
-                .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(requestBody))
-                .timeout(Duration.ofSeconds(30))
-                .build();
+    /**
+     * Answer a failed query with an apology, unless the concurrency limiter shed it: a full queue is answered with
+     * 429 and a wait too long in the queue with 503, both with {@code Retry-After}, so clients back off.
+     */
+    private ChatResponse failedResponse(Throwable e) {
+        Throwable cause = e;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof RejectedExecutionException) {
+            throw new ServiceBusyException(HttpStatus.TOO_MANY_REQUESTS, "chat", retryAfterSeconds, cause);
+        }
+        if (cause instanceof TimeoutException) {
+            throw new ServiceBusyException(HttpStatus.SERVICE_UNAVAILABLE, "chat", retryAfterSeconds, cause);
+        }
+        return chatResponse(QUERY_FAILED);
+    }
 
-        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                .thenApply(HttpResponse::body)
-                .thenApply(this::extractResponseFromOllama);
+    private CompletableFuture<String> answerWithOllama(String query) {
+        // A question asked before in other words is answered from the cache too
+        return embed(query).thenCompose(embedding -> {
+            String similar = embedding != null ? chatResponseCache.findSimilar(ollamaModel, query, embedding) : null;
+            if (similar != null) {
+                return CompletableFuture.completedFuture(similar);
+            }
+            return ollamaConcurrencyLimiter.run(permit -> {
+                long start = System.nanoTime();
+                return callOllamaApi(query, permit).thenApply(ollamaResponse -> {
+                    chatResponseCache.put(ollamaModel, query, embedding, ollamaResponse, System.nanoTime() - start);
+                    return ollamaResponse;
+                });
+            });
+        });
     }
 
-    private String extractResponseFromOllama(String ollamaResponse) {
+    /**
+     * Embed a query for the cache. Without an embedding, for instance when the embedding model is not pulled, the
+     * query is still answered and cached, only not found by similarity.
+     */
+    private CompletableFuture<float[]> embed(String query) {
         try {
-            // Simple JSON parsing - in a real application you might want to use a proper JSON library
-            int responseStart = ollamaResponse.indexOf("\"response\":\"") + 12;
-            int responseEnd = ollamaResponse.indexOf("\"", responseStart);
-            return ollamaResponse.substring(responseStart, responseEnd)
-                    .replace("\\n", "\n")
-                    .replace("\\\"", "\"");
-        } catch (Exception e) {
-            return "I couldn't understand that. Could you rephrase your question?";
+            return embeddingBackend.embed(query).exceptionally(e -> {
+                log.debug("Could not embed a chat query, answering it without the similarity cache", e);
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.debug("Could not embed a chat query, answering it without the similarity cache", e);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private ChatResponse chatResponse(String text) {
+        ChatResponse response = new ChatResponse();
+        response.setResponse(text);
+        return response;
+    }
+
+    private CompletableFuture<String> callOllamaApi(String query, OllamaConcurrencyLimiter.Permit permit) {
+        return httpClient.sendAsync(ollamaRequest(query, false), HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+                        throw new IllegalStateException("Ollama answered with status " + response.statusCode());
+                    }
+                    JsonNode answer = readChunk(response.body());
+                    recordGeneration(permit, answer);
+                    return answer.path("response").asText("");
+                });
+    }
+
+    /**
+     * Generate with {@code "stream": true} and read Ollama's NDJSON chunks as they arrive, one JSON object per line,
+     * emitting the text of each. The body is read as a reactive stream, so cancelling cancels the request. The
+     * generation waits for the concurrency limiter like any other, and holds its permit until the stream ends.
+     */
+    private Flux<String> streamOllamaApi(String query) {
+        return Flux.usingWhen(Mono.fromFuture(ollamaConcurrencyLimiter::acquire),
+                permit -> Mono.fromFuture(() -> httpClient.sendAsync(ollamaRequest(query, true),
+                                HttpResponse.BodyHandlers.ofPublisher()))
+                        .flatMapMany(response -> {
+                            Flux<List<ByteBuffer>> body = JdkFlowAdapter.flowPublisherToFlux(response.body());
+                            if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+                                return body.then(Mono.error(new IllegalStateException(
+                                        "Ollama answered with status " + response.statusCode())));
+                            }
+                            LineSplitter lines = new LineSplitter();
+                            return body.concatMapIterable(lines::split)
+                                    .concatWith(Mono.fromSupplier(lines::rest));
+                        })
+                        .timeout(OLLAMA_TIMEOUT)
+                        .map(this::readChunk)
+                        .takeUntil(chunk -> chunk.path("done").asBoolean())
+                        .doOnNext(chunk -> recordGeneration(permit, chunk))
+                        .map(chunk -> chunk.path("response").asText(""))
+                        .filter(token -> !token.isEmpty()),
+                permit -> Mono.fromRunnable(permit::onSuccess),
+                (permit, e) -> Mono.fromRunnable(permit::onDropped),
+                permit -> Mono.fromRunnable(permit::onIgnore));
+    }
+
+    /**
+     * Pass the generation statistics of Ollama's final chunk to the limiter. Durations are in nanoseconds.
+     */
+    private void recordGeneration(OllamaConcurrencyLimiter.Permit permit, JsonNode chunk) {
+        if (chunk.path("done").asBoolean()) {
+            permit.recordGeneration(chunk.path("eval_count").asInt(0),
+                    chunk.path("load_duration").asLong(0) + chunk.path("prompt_eval_duration").asLong(0));
+        }
+    }
+
+    private JsonNode readChunk(String line) {
+        try {
+            JsonNode chunk = objectMapper.readTree(line);
+            if (chunk.hasNonNull("error")) {
+                throw new IllegalStateException("Ollama failed: " + chunk.get("error").asText());
+            }
+            return chunk;
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
-    private String escapeJson(String input) {
-        return input.replace("\"", "\\\"")
-                .replace("\n", "\\n")
-                .replace("\r", "\\r")
-                .replace("\t", "\\t");
+    private HttpRequest ollamaRequest(String query, boolean stream) {
+        ObjectNode body = objectMapper.createObjectNode()
+                .put("model", ollamaModel)
+                .put("prompt", query)
+                .put("stream", stream);
+        return HttpRequest.newBuilder()
+                .uri(URI.create(ollamaBaseUrl + "/api/generate"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .timeout(OLLAMA_TIMEOUT)
+                .build();
+    }
+
+    /**
+     * Splits a byte stream into UTF-8 lines. A multi-byte character never contains a newline byte, so splitting the
+     * bytes before decoding is safe.
+     */
+    private static class LineSplitter {
+        private final ByteArrayOutputStream partial = new ByteArrayOutputStream();
+
+        private List<String> split(List<ByteBuffer> buffers) {
+            List<String> lines = new ArrayList<>();
+            for (ByteBuffer buffer : buffers) {
+                while (buffer.hasRemaining()) {
+                    byte b = buffer.get();
+                    if (b == '\n') {
+                        addLine(lines);
+                    } else {
+                        partial.write(b);
+                    }
+                }
+            }
+            return lines;
+        }
+
+        private String rest() {
+            List<String> lines = new ArrayList<>(1);
+            addLine(lines);
+            return lines.isEmpty() ? null : lines.get(0);
+        }
+
+        private void addLine(List<String> lines) {
+            String line = partial.toString(StandardCharsets.UTF_8).trim();
+            partial.reset();
+            if (!line.isEmpty()) {
+                lines.add(line);
+            }
+        }
     }
 
     private Long extractIdFromQuery(String query) {
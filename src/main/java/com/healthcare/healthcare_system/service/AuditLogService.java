@@ -1,15 +1,41 @@
 package com.healthcare.healthcare_system.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.healthcare.healthcare_system.dto.AuditLogCriteria;
+import com.healthcare.healthcare_system.dto.AuditSegmentCompactionResultDto;
+import com.healthcare.healthcare_system.dto.CursorPage;
+import com.healthcare.healthcare_system.dto.FacilityDto;
+import com.healthcare.healthcare_system.dto.KeysetCursor;
+import com.healthcare.healthcare_system.dto.PatientDto;
+import com.healthcare.healthcare_system.enums.AuditCaptureMode;
+import com.healthcare.healthcare_system.exception.ResourceNotFoundException;
+import com.healthcare.healthcare_system.exception.ServiceException;
+import com.healthcare.healthcare_system.exception.ValidationException;
 import com.healthcare.healthcare_system.model.AuditLog;
-import com.healthcare.healthcare_system.repository.AuditLogRepository;
+import com.healthcare.healthcare_system.model.AuditOutboxEvent;
+import com.healthcare.healthcare_system.repository.AuditLogStore;
+import com.healthcare.healthcare_system.repository.AuditOutboxRepository;
+import com.healthcare.healthcare_system.repository.AuditSnapshotRepository;
+import com.healthcare.healthcare_system.util.AuditDiffUtils;
+import com.healthcare.healthcare_system.util.CursorUtils;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import static com.healthcare.healthcare_system.util.MessageUtils.*;
 
 /**
  * The type Audit log service.
@@ -17,10 +43,40 @@ import java.util.List;
 @Service
 @RequiredArgsConstructor
 public class AuditLogService {
-    private final AuditLogRepository auditLogRepository;
+    static final Map<String, Class<?>> RECONSTRUCTABLE_TYPES = Map.of(
+            PATIENT_ENTITY_TYPE, PatientDto.class,
+            FACILITY_ENTITY, FacilityDto.class);
+    static final String CURSOR_SORT = "changedAt";
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 1000;
+
+    private final AuditLogStore auditLogStore;
+    private final AuditLogWriter auditLogWriter;
+    private final AuditOutboxRepository auditOutboxRepository;
+    private final AuditSnapshotRepository auditSnapshotRepository;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * The state of an entity rebuilt from its audit entries: its fields, null if it does not exist at that point, and
+     * the last entry replayed, null if there was none after its snapshot.
+     */
+    @Getter
+    @AllArgsConstructor
+    static class ReplayedState {
+        private final ObjectNode state;
+        private final AuditLog lastReplayed;
+    }
+
+    @Value("${audit.capture-mode:QUEUE}")
+    private AuditCaptureMode captureMode = AuditCaptureMode.QUEUE;
+
+    @Value("${audit.feed.settle-ms:10000}")
+    private long feedSettleMs = 10000;
 
     /**
-     * Log audit.
+     * Log audit. The event is stamped now. In {@link AuditCaptureMode#OUTBOX} mode it is inserted into the outbox
+     * within the caller's transaction and relayed by {@link AuditOutboxRelay} after commit; otherwise it is handed
+     * to the {@link AuditLogWriter}, which saves it in a batch.
      *
      * @param entityType the entity type
      * @param entityId the entity id
@@ -28,17 +84,162 @@ public class AuditLogService {
      * @param oldValue the old value
      * @param newValue the new value
      */
-    @Async
     public void logAudit(String entityType, Long entityId, String action, String oldValue, String newValue) {
+        if (captureMode == AuditCaptureMode.OUTBOX) {
+            auditOutboxRepository.save(AuditOutboxEvent.builder()
+                    .entityType(entityType)
+                    .entityId(entityId)
+                    .action(action)
+                    .oldValue(oldValue)
+                    .newValue(newValue)
+                    .changedAt(LocalDateTime.now())
+                    .build());
+            return;
+        }
+
         AuditLog auditLog = AuditLog.builder()
                 .entityType(entityType)
                 .entityId(entityId)
                 .action(action)
                 .oldValue(oldValue)
                 .newValue(newValue)
+                .changedAt(LocalDateTime.now())
                 .build();
 
-        auditLogRepository.save(auditLog);
+        auditLogWriter.enqueue(auditLog);
+    }
+
+    /**
+     * Log the creation of an entity with a snapshot of its fields.
+     *
+     * @param entityType the entity type
+     * @param entityId the entity id
+     * @param created the created entity as a dto
+     */
+    public void logCreate(String entityType, Long entityId, Object created) {
+        logAudit(entityType, entityId, CREATE_ACTION, null, AuditDiffUtils.snapshot(created, objectMapper));
+    }
+
+    /**
+     * Log the fields an update changed, old values in {@code oldValue} and new ones in {@code newValue}. Nothing is
+     * logged when no field changed.
+     *
+     * @param entityType the entity type
+     * @param entityId the entity id
+     * @param before the entity before the update, as a dto
+     * @param after the entity after the update, as a dto
+     */
+    public void logUpdate(String entityType, Long entityId, Object before, Object after) {
+        AuditDiffUtils.FieldChanges changes = AuditDiffUtils.diff(before, after, objectMapper);
+        if (changes.isEmpty()) {
+            return;
+        }
+        logAudit(entityType, entityId, UPDATE_ACTION, AuditDiffUtils.write(changes.getOldValues(), objectMapper),
+                AuditDiffUtils.write(changes.getNewValues(), objectMapper));
+    }
+
+    /**
+     * Log the deletion of an entity. The last state can be rebuilt from the earlier entries, so no value is stored.
+     *
+     * @param entityType the entity type
+     * @param entityId the entity id
+     */
+    public void logDelete(String entityType, Long entityId) {
+        logAudit(entityType, entityId, DELETE_ACTION, null, null);
+    }
+
+    /**
+     * Rebuild an entity as it was at a point in time from its latest snapshot before then and the field-level audit
+     * entries after it, or from all its entries when it has no snapshot yet.
+     *
+     * @param entityType the entity type, Patient or Facility
+     * @param entityId the entity id
+     * @param at the point in time
+     * @return the patient or facility dto
+     */
+    public Object reconstruct(String entityType, Long entityId, LocalDateTime at) {
+        Class<?> dtoType = RECONSTRUCTABLE_TYPES.get(entityType);
+        if (dtoType == null) {
+            throw new ValidationException("entityType",
+                    String.format(AUDIT_RECONSTRUCT_UNSUPPORTED, entityType), AUDIT_LOG_ENTITY);
+        }
+
+        ObjectNode state = replay(entityType, entityId, at).getState();
+        if (state == null) {
+            throw new ResourceNotFoundException(entityType, entityId);
+        }
+
+        state.put("id", entityId);
+        try {
+            return objectMapper.treeToValue(state, dtoType);
+        } catch (JsonProcessingException e) {
+            throw new ServiceException(AUDIT_RECONSTRUCT_ERROR, entityType, e);
+        }
+    }
+
+    /**
+     * Replay the audit entries of an entity up to a point in time, starting from its latest snapshot before then.
+     *
+     * @param entityType the entity type
+     * @param entityId the entity id
+     * @param at the point in time
+     * @return the replayed state
+     */
+    ReplayedState replay(String entityType, Long entityId, LocalDateTime at) {
+        return replay(entityType, entityId, at, 0, null);
+    }
+
+    /**
+     * Replay the audit entries of an entity up to a point in time, starting from its latest snapshot before then, and
+     * hand the state after every {@code interval} entries but the last to a callback.
+     *
+     * @param entityType the entity type
+     * @param entityId the entity id
+     * @param at the point in time
+     * @param interval the number of entries between calls, 0 for none
+     * @param onInterval called with the entry reached and the state after it, which it must not keep
+     * @return the replayed state
+     */
+    ReplayedState replay(String entityType, Long entityId, LocalDateTime at, int interval,
+                         BiConsumer<AuditLog, ObjectNode> onInterval) {
+        AuditSnapshotRepository.Snapshot snapshot = auditSnapshotRepository.findLatest(entityType, entityId, at);
+        ObjectNode state = null;
+        List<AuditLog> auditLogs;
+        if (snapshot == null) {
+            auditLogs = auditLogStore.findHistory(entityType, entityId, at);
+        } else {
+            if (snapshot.getState() != null) {
+                state = objectMapper.createObjectNode();
+                AuditDiffUtils.apply(state, snapshot.getState(), objectMapper);
+            }
+            auditLogs = auditLogStore.scroll(
+                    AuditLogCriteria.builder().entityType(entityType).entityId(entityId).to(at).build(),
+                    Sort.Direction.ASC, new KeysetCursor(CURSOR_SORT, Sort.Direction.ASC,
+                            String.valueOf(snapshot.getChangedAt()), snapshot.getAuditLogId()),
+                    Integer.MAX_VALUE);
+        }
+
+        for (int i = 0; i < auditLogs.size(); i++) {
+            AuditLog auditLog = auditLogs.get(i);
+            switch (auditLog.getAction()) {
+                case CREATE_ACTION, IMPORT_ACTION -> {
+                    if (AuditDiffUtils.isStructured(auditLog.getNewValue(), objectMapper)) {
+                        state = objectMapper.createObjectNode();
+                        AuditDiffUtils.apply(state, auditLog.getNewValue(), objectMapper);
+                    }
+                }
+                case DELETE_ACTION -> state = null;
+                default -> {
+                    if (state != null) {
+                        AuditDiffUtils.apply(state, auditLog.getNewValue(), objectMapper);
+                    }
+                }
+            }
+            if (interval > 0 && (i + 1) % interval == 0 && i + 1 < auditLogs.size()) {
+                onInterval.accept(auditLog, state);
+            }
+        }
+        return new ReplayedState(state, auditLogs.isEmpty() ? null : auditLogs.get(auditLogs.size() - 1));
     }
 
     /**
@@ -48,59 +249,152 @@ public class AuditLogService {
      * @return the all audit logs
      */
     public Page<AuditLog> getAllAuditLogs(Pageable pageable) {
-        return auditLogRepository.findAll(pageable);
+        return auditLogStore.findAll(pageable);
     }
 
     /**
-     * Gets audit logs by entity type.
+     * Gets audit logs by entity type, newest first.
      *
      * @param entityType the entity type
-     * @return the audit logs by entity type
+     * @param cursor the continuation token, null or empty for the first slice
+     * @param size the slice size, null for the default
+     * @return the cursor page
      */
-    public List<AuditLog> getAuditLogsByEntityType(String entityType) {
-        return auditLogRepository.findByEntityTypeOrderByChangedAtDesc(entityType);
+    public CursorPage<AuditLog> getAuditLogsByEntityType(String entityType, String cursor, Integer size) {
+        return scroll(AuditLogCriteria.builder().entityType(entityType).build(), Sort.Direction.DESC, cursor, size);
     }
 
     /**
-     * Gets audit logs for entity.
+     * Gets audit logs for entity, newest first.
      *
      * @param entityType the entity type
      * @param entityId the entity id
-     * @return the audit logs for entity
+     * @param cursor the continuation token, null or empty for the first slice
+     * @param size the slice size, null for the default
+     * @return the cursor page
      */
-    public List<AuditLog> getAuditLogsForEntity(String entityType, Long entityId) {
-        return auditLogRepository.findByEntityTypeAndEntityIdOrderByChangedAtDesc(entityType, entityId);
+    public CursorPage<AuditLog> getAuditLogsForEntity(String entityType, Long entityId, String cursor, Integer size) {
+        return scroll(AuditLogCriteria.builder().entityType(entityType).entityId(entityId).build(),
+                Sort.Direction.DESC, cursor, size);
     }
 
     /**
-     * Gets audit logs by action.
+     * Gets audit logs by action, newest first.
      *
      * @param action the action
-     * @return the audit logs by action
+     * @param cursor the continuation token, null or empty for the first slice
+     * @param size the slice size, null for the default
+     * @return the cursor page
      */
-    public List<AuditLog> getAuditLogsByAction(String action) {
-        return auditLogRepository.findByActionOrderByChangedAtDesc(action);
+    public CursorPage<AuditLog> getAuditLogsByAction(String action, String cursor, Integer size) {
+        return scroll(AuditLogCriteria.builder().action(action).build(), Sort.Direction.DESC, cursor, size);
     }
 
     /**
-     * Gets audit logs by date range.
+     * Gets audit logs by date range, newest first.
      *
-     * @param start the start
-     * @param end the end
-     * @return the audit logs by date range
+     * @param start the start, inclusive
+     * @param end the end, inclusive
+     * @param cursor the continuation token, null or empty for the first slice
+     * @param size the slice size, null for the default
+     * @return the cursor page
      */
-    public List<AuditLog> getAuditLogsByDateRange(LocalDateTime start, LocalDateTime end) {
-        return auditLogRepository.findByChangedAtBetweenOrderByChangedAtDesc(start, end);
+    public CursorPage<AuditLog> getAuditLogsByDateRange(LocalDateTime start, LocalDateTime end, String cursor,
+                                                        Integer size) {
+        if (start.isAfter(end)) {
+            throw new ValidationException("start", INVALID_AUDIT_DATE_RANGE, AUDIT_LOG_ENTITY);
+        }
+        return scroll(AuditLogCriteria.builder().from(start).to(end).build(), Sort.Direction.DESC, cursor, size);
     }
 
     /**
-     * Gets entity history.
+     * Gets entity history, newest first.
      *
      * @param entityType the entity type
      * @param entityId the entity id
-     * @return the entity history
+     * @param cursor the continuation token, null or empty for the first slice
+     * @param size the slice size, null for the default
+     * @return the cursor page
      */
-    public List<AuditLog> getEntityHistory(String entityType, Long entityId) {
-        return auditLogRepository.findByEntityTypeAndEntityIdOrderByChangedAtDesc(entityType, entityId);
+    public CursorPage<AuditLog> getEntityHistory(String entityType, Long entityId, String cursor, Integer size) {
+        return getAuditLogsForEntity(entityType, entityId, cursor, size);
+    }
+
+    /**
+     * Feed of every audit entry after a cursor, oldest first, for export to a SIEM. The returned
+     * {@code nextCursor} is set whenever the slice is not empty and should be stored and passed back, even when
+     * {@code hasNext} is false; without a cursor the feed starts at {@code since}, or at the beginning.
+     * <p>
+     * Entries are saved a little after they are stamped, by the batching writer or the outbox relay, so the feed
+     * only returns entries older than {@code audit.feed.settle-ms}. An entry stamped before the cursor but saved
+     * after it was handed out would otherwise be skipped.
+     *
+     * @param cursor the continuation token, null or empty to start from {@code since}
+     * @param since the time to start from when there is no cursor, may be null
+     * @param size the slice size, null for the default
+     * @return the cursor page
+     */
+    public CursorPage<AuditLog> getChangesSince(String cursor, LocalDateTime since, Integer size) {
+        AuditLogCriteria criteria = AuditLogCriteria.builder()
+                .to(LocalDateTime.now().minus(Duration.ofMillis(feedSettleMs)))
+                .build();
+        if ((cursor == null || cursor.isEmpty()) && since != null) {
+            criteria.setFrom(since);
+        }
+
+        CursorPage<AuditLog> changes = scroll(criteria, Sort.Direction.ASC, cursor, size);
+        if (!changes.getContent().isEmpty()) {
+            changes.setNextCursor(positionOf(changes.getContent().get(changes.getContent().size() - 1),
+                    Sort.Direction.ASC));
+        } else if (cursor != null && !cursor.isEmpty()) {
+            changes.setNextCursor(cursor);
+        }
+        return changes;
+    }
+
+    private CursorPage<AuditLog> scroll(AuditLogCriteria criteria, Sort.Direction direction, String cursor,
+                                        Integer size) {
+        KeysetCursor after = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            after = CursorUtils.decode(cursor, AUDIT_LOG_ENTITY);
+            if (!CURSOR_SORT.equals(after.getSortProperty()) || after.getDirection() != direction) {
+                throw new ValidationException("cursor", INVALID_CURSOR, AUDIT_LOG_ENTITY);
+            }
+        }
+
+        int limit = clamp(size);
+        List<AuditLog> auditLogs = auditLogStore.scroll(criteria, direction, after, limit + 1);
+        boolean hasNext = auditLogs.size() > limit;
+        if (hasNext) {
+            auditLogs = auditLogs.subList(0, limit);
+        }
+
+        return CursorPage.<AuditLog>builder()
+                .content(auditLogs)
+                .size(auditLogs.size())
+                .hasNext(hasNext)
+                .nextCursor(hasNext ? positionOf(auditLogs.get(auditLogs.size() - 1), direction) : null)
+                .build();
+    }
+
+    /**
+     * Compact the audit store, see {@link AuditLogStore#compact()}.
+     *
+     * @return the compaction result
+     */
+    public AuditSegmentCompactionResultDto compactStore() {
+        return auditLogStore.compact();
+    }
+
+    static String positionOf(AuditLog auditLog, Sort.Direction direction) {
+        return CursorUtils.encode(new KeysetCursor(
+                CURSOR_SORT, direction, String.valueOf(auditLog.getChangedAt()), auditLog.getId()));
+    }
+
+    private int clamp(Integer size) {
+        if (size == null || size < 1) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(size, MAX_PAGE_SIZE);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,419 @@
+package com.healthcare.healthcare_system.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.healthcare.healthcare_system.enums.AuditOverflowPolicy;
+import com.healthcare.healthcare_system.model.AuditLog;
+import com.healthcare.healthcare_system.repository.AuditLogStore;
+import com.healthcare.healthcare_system.util.BoundedRingQueue;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Writes audit events to the {@link AuditLogStore} from a single background thread. Callers only put the event on a
+ * bounded lock-free queue; the writer drains it into batches that are saved with one {@code saveAll} each time either
+ * {@code audit.writer.batch-size} events are waiting or the oldest waiting event is
+ * {@code audit.writer.flush-interval-ms} old. When the queue is full the configured {@link AuditOverflowPolicy}
+ * decides whether the caller waits, the event goes to a spill file that is replayed once the writer is idle, or
+ * the event is dropped. Batches that fail to save are spilled as well, and spill files left over from a previous
+ * run are replayed after startup. Spill files hold complete audit values, patient details included, so the spill
+ * directory and the files in it are created readable by the owner only.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AuditLogWriter {
+    static final String SPILL_FILE = "audit-spill.ndjson";
+    static final String REPLAY_SUFFIX = ".replay";
+
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long REPLAY_RETRY_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final long REJECT_LOG_EVERY = 1000;
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    private static final Set<PosixFilePermission> OWNER_ONLY_DIRECTORY = PosixFilePermissions.fromString("rwx------");
+    private static final Set<PosixFilePermission> OWNER_ONLY_FILE = PosixFilePermissions.fromString("rw-------");
+
+    private final AuditLogStore auditLogStore;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${audit.writer.capacity:10000}")
+    private int capacity = 10000;
+
+    @Value("${audit.writer.batch-size:500}")
+    private int batchSize = 500;
+
+    @Value("${audit.writer.flush-interval-ms:200}")
+    private long flushIntervalMs = 200;
+
+    @Value("${audit.writer.overflow-policy:BLOCK}")
+    private AuditOverflowPolicy overflowPolicy = AuditOverflowPolicy.BLOCK;
+
+    @Value("${audit.writer.spill-dir:audit-spill}")
+    private String spillDir = "audit-spill";
+
+    @Value("${audit.writer.shutdown-timeout-ms:10000}")
+    private long shutdownTimeoutMs = 10000;
+
+    private final Object spillLock = new Object();
+    private BoundedRingQueue<AuditLog> queue;
+    private Thread writerThread;
+    private volatile boolean running;
+    private volatile boolean spillPending;
+    private long nextReplayAt;
+
+    private Timer flushTimer;
+    private Counter writtenCounter;
+    private Counter spilledCounter;
+    private Counter rejectedCounter;
+    private Counter failedCounter;
+
+    /**
+     * Create the queue, register the metrics and start the writer thread.
+     */
+    @PostConstruct
+    public void start() {
+        queue = new BoundedRingQueue<>(capacity);
+        Gauge.builder("audit.writer.queue.depth", queue, BoundedRingQueue::size)
+                .description("Audit events waiting to be written")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("audit.writer.flush")
+                .description("Time taken to write one batch of audit events")
+                .register(meterRegistry);
+        writtenCounter = eventCounter("written");
+        spilledCounter = eventCounter("spilled");
+        rejectedCounter = eventCounter("rejected");
+        failedCounter = eventCounter("failed");
+
+        spillPending = Files.exists(Paths.get(spillDir).resolve(SPILL_FILE)) || !replayFiles().isEmpty();
+        nextReplayAt = System.nanoTime();
+        running = true;
+        writerThread = new Thread(this::run, "audit-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        log.info("Audit writer started with capacity {}, batch size {}, flush interval {} ms and {} overflow policy",
+                queue.capacity(), batchSize, flushIntervalMs, overflowPolicy);
+    }
+
+    /**
+     * Stop accepting queued events and wait for the writer to flush what is left.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (writerThread == null) {
+            return;
+        }
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            log.warn("Audit writer did not finish within {} ms, {} events are still queued",
+                    shutdownTimeoutMs, queue.size());
+        }
+    }
+
+    /**
+     * Queue an audit event for writing.
+     *
+     * @param auditLog the audit log
+     * @return false when the event was rejected or could not be spilled
+     */
+    public boolean enqueue(AuditLog auditLog) {
+        if (!running) {
+            writeBatch(new ArrayList<>(List.of(auditLog)));
+            return true;
+        }
+        if (queue.offer(auditLog)) {
+            if (!running) {
+                // The writer stopped between the check above and the offer and may have missed this event
+                writeRemaining(new ArrayList<>(batchSize));
+            } else if (queue.size() >= batchSize) {
+                LockSupport.unpark(writerThread);
+            }
+            return true;
+        }
+
+        LockSupport.unpark(writerThread);
+        return switch (overflowPolicy) {
+            case BLOCK -> block(auditLog);
+            case SPILL -> spill(List.of(auditLog));
+            case REJECT -> reject();
+        };
+    }
+
+    /**
+     * Number of queued events.
+     *
+     * @return the queue depth
+     */
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    private boolean block(AuditLog auditLog) {
+        while (!queue.offer(auditLog)) {
+            if (!running || Thread.currentThread().isInterrupted()) {
+                return spill(List.of(auditLog));
+            }
+            LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+        }
+        return true;
+    }
+
+    private boolean reject() {
+        rejectedCounter.increment();
+        long rejected = (long) rejectedCounter.count();
+        if (rejected % REJECT_LOG_EVERY == 1) {
+            log.warn("Audit queue is full, {} events rejected so far", rejected);
+        }
+        return false;
+    }
+
+    private void run() {
+        List<AuditLog> batch = new ArrayList<>(batchSize);
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        long batchStartedAt = 0;
+
+        while (running) {
+            boolean wasEmpty = batch.isEmpty();
+            queue.drainTo(batch, batchSize - batch.size());
+            long now = System.nanoTime();
+            if (batch.isEmpty()) {
+                if (spillPending && now - nextReplayAt >= 0) {
+                    replaySpillFiles();
+                }
+                LockSupport.parkNanos(this, flushIntervalNanos);
+                continue;
+            }
+            if (wasEmpty) {
+                batchStartedAt = now;
+            }
+            long wait = batchStartedAt + flushIntervalNanos - now;
+            if (batch.size() >= batchSize || wait <= 0) {
+                writeBatch(batch);
+                batch.clear();
+            } else {
+                LockSupport.parkNanos(this, wait);
+            }
+        }
+
+        writeRemaining(batch);
+    }
+
+    private void writeRemaining(List<AuditLog> batch) {
+        do {
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                batch.clear();
+            }
+            queue.drainTo(batch, batchSize);
+        } while (!batch.isEmpty());
+    }
+
+    private void writeBatch(List<AuditLog> batch) {
+        long start = System.nanoTime();
+        try {
+            auditLogStore.saveAll(batch);
+            writtenCounter.increment(batch.size());
+        } catch (RuntimeException e) {
+            log.error("Failed to write {} audit events, spilling them for a later retry", batch.size(), e);
+            // Ids may already have been taken from the sequence; the retry draws new ones
+            batch.forEach(auditLog -> auditLog.setId(null));
+            spill(batch);
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private boolean spill(List<AuditLog> auditLogs) {
+        synchronized (spillLock) {
+            try {
+                Path spillFile = createSpillFile();
+                try (BufferedWriter writer = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                        StandardOpenOption.APPEND)) {
+                    for (AuditLog auditLog : auditLogs) {
+                        writer.write(objectMapper.writeValueAsString(auditLog));
+                        writer.newLine();
+                    }
+                }
+                spillPending = true;
+                spilledCounter.increment(auditLogs.size());
+                return true;
+            } catch (IOException e) {
+                log.error("Failed to spill {} audit events to {}", auditLogs.size(), spillDir, e);
+                failedCounter.increment(auditLogs.size());
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Create the spill directory and file if missing, both owner-only where the file system has POSIX permissions.
+     * The replay and temporary files are made by {@link Files#createTempFile}, which is owner-only already.
+     */
+    private Path createSpillFile() throws IOException {
+        Path directory = Paths.get(spillDir);
+        Path spillFile = directory.resolve(SPILL_FILE);
+        if (!POSIX) {
+            Files.createDirectories(directory);
+            if (!Files.exists(spillFile)) {
+                Files.createFile(spillFile);
+            }
+            return spillFile;
+        }
+        if (!Files.isDirectory(directory)) {
+            Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(OWNER_ONLY_DIRECTORY));
+        }
+        if (!Files.exists(spillFile)) {
+            Files.createFile(spillFile, PosixFilePermissions.asFileAttribute(OWNER_ONLY_FILE));
+        }
+        return spillFile;
+    }
+
+    private void replaySpillFiles() {
+        try {
+            synchronized (spillLock) {
+                Path spillFile = Paths.get(spillDir).resolve(SPILL_FILE);
+                if (Files.exists(spillFile)) {
+                    Path replayFile = Files.createTempFile(spillFile.getParent(), "audit-spill-", REPLAY_SUFFIX);
+                    Files.move(spillFile, replayFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+                spillPending = false;
+            }
+            for (Path replayFile : replayFiles()) {
+                if (!replay(replayFile)) {
+                    spillPending = true;
+                    nextReplayAt = System.nanoTime() + REPLAY_RETRY_NANOS;
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to replay spilled audit events from {}", spillDir, e);
+            spillPending = true;
+            nextReplayAt = System.nanoTime() + REPLAY_RETRY_NANOS;
+        }
+    }
+
+    private boolean replay(Path replayFile) throws IOException {
+        List<String> lines = new ArrayList<>(batchSize);
+        long replayed = 0;
+        try (BufferedReader reader = Files.newBufferedReader(replayFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    lines.add(line);
+                }
+                if (lines.size() >= batchSize) {
+                    if (!writeReplayed(lines)) {
+                        keepUnwritten(replayFile, lines, reader);
+                        return false;
+                    }
+                    replayed += lines.size();
+                    lines.clear();
+                }
+            }
+            if (!lines.isEmpty()) {
+                if (!writeReplayed(lines)) {
+                    keepUnwritten(replayFile, lines, reader);
+                    return false;
+                }
+                replayed += lines.size();
+            }
+        }
+        Files.delete(replayFile);
+        log.info("Replayed {} spilled audit events from {}", replayed, replayFile);
+        return true;
+    }
+
+    private boolean writeReplayed(List<String> lines) {
+        List<AuditLog> batch = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            try {
+                batch.add(objectMapper.readValue(line, AuditLog.class));
+            } catch (IOException e) {
+                log.error("Dropping unreadable spilled audit event: {}", line, e);
+                failedCounter.increment();
+            }
+        }
+        long start = System.nanoTime();
+        try {
+            auditLogStore.saveAll(batch);
+            writtenCounter.increment(batch.size());
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Failed to replay {} spilled audit events, retrying later", batch.size(), e);
+            return false;
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void keepUnwritten(Path replayFile, List<String> lines, BufferedReader rest) throws IOException {
+        Path remaining = Files.createTempFile(replayFile.getParent(), "audit-spill-", ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(remaining, StandardCharsets.UTF_8)) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.newLine();
+            }
+            String line;
+            while ((line = rest.readLine()) != null) {
+                writer.write(line);
+                writer.newLine();
+            }
+        }
+        Files.move(remaining, replayFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private List<Path> replayFiles() {
+        Path directory = Paths.get(spillDir);
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(REPLAY_SUFFIX))
+                    .sorted(Comparator.comparing(file -> file.toFile().lastModified()))
+                    .toList();
+        } catch (IOException e) {
+            log.error("Failed to list spilled audit events in {}", spillDir, e);
+            return List.of();
+        }
+    }
+
+    private Counter eventCounter(String outcome) {
+        return Counter.builder("audit.writer.events")
+                .description("Audit events by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
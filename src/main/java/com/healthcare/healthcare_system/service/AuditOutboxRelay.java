@@ -0,0 +1,91 @@
+package com.healthcare.healthcare_system.service;
+
+import com.healthcare.healthcare_system.exception.ServiceException;
+import com.healthcare.healthcare_system.model.AuditLog;
+import com.healthcare.healthcare_system.model.AuditOutboxEvent;
+import com.healthcare.healthcare_system.repository.AuditLogStore;
+import com.healthcare.healthcare_system.repository.AuditOutboxRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static com.healthcare.healthcare_system.util.MessageUtils.AUDIT_LOG_ENTITY;
+import static com.healthcare.healthcare_system.util.MessageUtils.AUDIT_OUTBOX_RELAY_ERROR;
+
+/**
+ * Moves committed audit events from the outbox table into the audit log. Each batch is locked with
+ * {@code FOR UPDATE SKIP LOCKED}, saved to the {@link AuditLogStore} with one batched {@code saveAll} and deleted
+ * from the outbox in the same transaction, so with the default JPA store an event is relayed exactly once even with
+ * several instances running.
+ * The relay runs in both capture modes so that events left in the outbox after switching back to the queue are
+ * still delivered.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AuditOutboxRelay {
+    private final AuditOutboxRepository auditOutboxRepository;
+    private final AuditLogStore auditLogStore;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${audit.outbox.batch-size:1000}")
+    private int batchSize = 1000;
+
+    /**
+     * Scheduled relay.
+     */
+    @Scheduled(fixedDelayString = "${audit.outbox.relay-interval-ms:500}")
+    public void scheduledRelay() {
+        long relayed = relay();
+        if (relayed > 0) {
+            log.debug("Relayed {} audit events from the outbox", relayed);
+        }
+    }
+
+    /**
+     * Relay every event currently in the outbox.
+     *
+     * @return the number of relayed events
+     */
+    public long relay() {
+        long relayed = 0;
+        try {
+            int moved;
+            do {
+                moved = transactionTemplate.execute(status -> relayBatch());
+                relayed += moved;
+            } while (moved == batchSize);
+        } catch (DataAccessException e) {
+            throw new ServiceException(AUDIT_OUTBOX_RELAY_ERROR, AUDIT_LOG_ENTITY, e);
+        }
+        return relayed;
+    }
+
+    private int relayBatch() {
+        List<AuditOutboxEvent> events = auditOutboxRepository.lockNextBatch(batchSize);
+        if (events.isEmpty()) {
+            return 0;
+        }
+        auditLogStore.saveAll(events.stream().map(this::toAuditLog).toList());
+        auditOutboxRepository.deleteByIds(events.stream().map(AuditOutboxEvent::getId).toList());
+        return events.size();
+    }
+
+    private AuditLog toAuditLog(AuditOutboxEvent event) {
+        return AuditLog.builder()
+                .entityType(event.getEntityType())
+                .entityId(event.getEntityId())
+                .action(event.getAction())
+                .oldValue(event.getOldValue())
+                .newValue(event.getNewValue())
+                .changedBy(event.getChangedBy())
+                .changedAt(event.getChangedAt())
+                .build();
+    }
+}
@@ -0,0 +1,259 @@
+package com.healthcare.healthcare_system.service;
+
+import com.healthcare.healthcare_system.dto.AuditArchiveRestoreResultDto;
+import com.healthcare.healthcare_system.dto.AuditPartitionMaintenanceResultDto;
+import com.healthcare.healthcare_system.exception.ResourceNotFoundException;
+import com.healthcare.healthcare_system.exception.ServiceException;
+import com.healthcare.healthcare_system.exception.ValidationException;
+import com.healthcare.healthcare_system.repository.AuditPartitionRepository;
+import com.healthcare.healthcare_system.repository.AuditPartitionRepository.AuditPartition;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static com.healthcare.healthcare_system.util.MessageUtils.*;
+
+/**
+ * Keeps the monthly {@code audit_log} partitions in shape. Partitions are created {@code audit.partitions.premake-months}
+ * ahead, so inserts never fall into the default partition, and months older than {@code audit.retention.months} are
+ * written to a gzipped CSV file in {@code audit.archive.dir}, then detached and dropped. Each month is archived in one
+ * transaction that locks the partition, copies it out and drops it, and the file is only moved into place once it is
+ * complete, so a failure leaves either the partition or the archive, never neither. An archive can be loaded back
+ * into its month with {@link #restore(String)}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AuditPartitionService {
+    static final String ARCHIVE_SUFFIX = ".csv.gz";
+
+    private static final Pattern ARCHIVE_NAME = Pattern.compile("audit_log_y(\\d{4})m(\\d{2})\\.csv\\.gz");
+    private static final String PARTIAL_SUFFIX = ".partial";
+
+    private final AuditPartitionRepository auditPartitionRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${audit.partitions.premake-months:3}")
+    private int premakeMonths = 3;
+
+    @Value("${audit.retention.months:0}")
+    private int retentionMonths = 0;
+
+    @Value("${audit.archive.dir:audit-archive}")
+    private String archiveDir = "audit-archive";
+
+    /**
+     * Create missing partitions once the application is up, in case it was down when the schedule should have run.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void createPartitionsOnStartup() {
+        List<String> created = createPartitions();
+        if (!created.isEmpty()) {
+            log.info("Created audit log partitions {}", created);
+        }
+    }
+
+    /**
+     * Scheduled maintenance.
+     */
+    @Scheduled(cron = "${audit.partitions.maintenance-cron:0 30 0 * * *}")
+    public void scheduledMaintenance() {
+        AuditPartitionMaintenanceResultDto result = maintain();
+        log.info("Audit log maintenance created partitions {} and archived {} in {} ms",
+                result.getCreatedPartitions(), result.getArchivedPartitions(), result.getDurationMs());
+    }
+
+    /**
+     * Create the partitions of the coming months and archive the ones past retention.
+     *
+     * @return the maintenance result
+     */
+    public AuditPartitionMaintenanceResultDto maintain() {
+        long start = System.currentTimeMillis();
+        List<String> created = createPartitions();
+        List<String> archived = archiveExpiredPartitions();
+        return AuditPartitionMaintenanceResultDto.builder()
+                .createdPartitions(created)
+                .archivedPartitions(archived)
+                .durationMs(System.currentTimeMillis() - start)
+                .build();
+    }
+
+    /**
+     * Create the partitions from the current month up to {@code audit.partitions.premake-months} ahead.
+     *
+     * @return the partitions that did not exist before
+     */
+    public List<String> createPartitions() {
+        try {
+            List<YearMonth> existing = auditPartitionRepository.findPartitions().stream()
+                    .map(AuditPartition::getMonth)
+                    .toList();
+            List<String> created = new ArrayList<>();
+            YearMonth current = YearMonth.now();
+            for (int i = 0; i <= premakeMonths; i++) {
+                YearMonth month = current.plusMonths(i);
+                if (!existing.contains(month)) {
+                    created.add(auditPartitionRepository.createPartition(month));
+                }
+            }
+            return created;
+        } catch (DataAccessException e) {
+            throw new ServiceException(AUDIT_PARTITION_ERROR, AUDIT_LOG_ENTITY, e);
+        }
+    }
+
+    /**
+     * Archive every partition older than {@code audit.retention.months}. Nothing is archived when retention is 0,
+     * and restored partitions are left alone, since their archive is still on disk.
+     *
+     * @return the archived partitions
+     */
+    public List<String> archiveExpiredPartitions() {
+        List<String> archived = new ArrayList<>();
+        if (retentionMonths <= 0) {
+            return archived;
+        }
+
+        YearMonth oldestKept = YearMonth.now().minusMonths(retentionMonths);
+        for (AuditPartition partition : auditPartitionRepository.findPartitions()) {
+            if (partition.getMonth().isBefore(oldestKept) && !partition.isRestored()) {
+                archive(partition);
+                archived.add(partition.getName());
+            }
+        }
+        return archived;
+    }
+
+    /**
+     * List the archive files, oldest first.
+     *
+     * @return the archive names
+     */
+    public List<String> listArchives() {
+        Path dir = Paths.get(archiveDir);
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> ARCHIVE_NAME.matcher(name).matches())
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new ServiceException(String.format(AUDIT_RESTORE_ERROR, archiveDir), AUDIT_LOG_ENTITY, e);
+        }
+    }
+
+    /**
+     * Load an archive back into the audit log as the partition of its month. The file is kept.
+     *
+     * @param archive the archive name, such as {@code audit_log_y2024m01.csv.gz}
+     * @return the restore result
+     */
+    public AuditArchiveRestoreResultDto restore(String archive) {
+        Matcher matcher = ARCHIVE_NAME.matcher(archive);
+        if (!matcher.matches()) {
+            throw new ValidationException("archive", INVALID_AUDIT_ARCHIVE, AUDIT_LOG_ENTITY);
+        }
+        YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+        Path file = Paths.get(archiveDir, archive);
+        if (!Files.isRegularFile(file)) {
+            throw new ResourceNotFoundException(String.format(AUDIT_ARCHIVE_RESOURCE, archive));
+        }
+        boolean attached = auditPartitionRepository.findPartitions().stream()
+                .anyMatch(partition -> partition.getMonth().equals(month));
+        if (attached) {
+            throw new ValidationException("archive",
+                    String.format(AUDIT_PARTITION_EXISTS, AuditPartitionRepository.partitionName(month)),
+                    AUDIT_LOG_ENTITY);
+        }
+
+        try {
+            long rows = transactionTemplate.execute(status -> {
+                try (InputStream in = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                    return auditPartitionRepository.restore(month, archive, in);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            log.info("Restored {} audit events from {}", rows, archive);
+            return AuditArchiveRestoreResultDto.builder()
+                    .archive(archive)
+                    .partition(AuditPartitionRepository.partitionName(month))
+                    .rowsRestored(rows)
+                    .build();
+        } catch (DataAccessException | UncheckedIOException e) {
+            throw new ServiceException(String.format(AUDIT_RESTORE_ERROR, archive), AUDIT_LOG_ENTITY, e);
+        }
+    }
+
+    private void archive(AuditPartition partition) {
+        Path dir = Paths.get(archiveDir);
+        Path target = dir.resolve(partition.getName() + ARCHIVE_SUFFIX);
+        Path partial = dir.resolve(partition.getName() + ARCHIVE_SUFFIX + PARTIAL_SUFFIX);
+        try {
+            Files.createDirectories(dir);
+            long rows = transactionTemplate.execute(status -> {
+                long copied;
+                try (FileOutputStream file = new FileOutputStream(partial.toFile());
+                     GZIPOutputStream out = new GZIPOutputStream(new BufferedOutputStream(file))) {
+                    copied = auditPartitionRepository.copyOut(partition.getMonth(), out);
+                    out.finish();
+                    out.flush();
+                    file.getFD().sync();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                move(partial, target);
+                auditPartitionRepository.detachAndDrop(partition.getMonth());
+                return copied;
+            });
+            log.info("Archived {} audit events from {} to {}", rows, partition.getName(), target);
+        } catch (IOException | UncheckedIOException | DataAccessException e) {
+            deletePartial(partial);
+            throw new ServiceException(String.format(AUDIT_ARCHIVE_ERROR, partition.getName()), AUDIT_LOG_ENTITY, e);
+        }
+    }
+
+    private void move(Path partial, Path target) {
+        try {
+            Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void deletePartial(Path partial) {
+        try {
+            Files.deleteIfExists(partial);
+        } catch (IOException e) {
+            log.warn("Could not delete partial audit archive {}", partial, e);
+        }
+    }
+}
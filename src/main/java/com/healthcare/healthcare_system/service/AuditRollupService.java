@@ -0,0 +1,178 @@
+package com.healthcare.healthcare_system.service;
+
+import com.healthcare.healthcare_system.dto.AuditActivityDto;
+import com.healthcare.healthcare_system.dto.AuditActivityStatsDto;
+import com.healthcare.healthcare_system.dto.AuditEntityActivityDto;
+import com.healthcare.healthcare_system.dto.AuditRollupBackfillResultDto;
+import com.healthcare.healthcare_system.enums.AuditRollupGranularity;
+import com.healthcare.healthcare_system.exception.ServiceException;
+import com.healthcare.healthcare_system.exception.ValidationException;
+import com.healthcare.healthcare_system.repository.AuditRollupRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.healthcare.healthcare_system.util.MessageUtils.*;
+
+/**
+ * Answers audit activity statistics from the rollup tables instead of the audit log. The rollups are kept up to date
+ * by the audit stores as events are saved; {@link #backfill} rebuilds them from {@code audit_log}, one day per
+ * transaction, {@code audit.rollup.backfill-threads} days at a time, then the monthly entity counts of the months
+ * those days fall in.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AuditRollupService {
+    private static final int DEFAULT_TOP_ENTITIES = 10;
+    private static final int MAX_TOP_ENTITIES = 100;
+
+    private final AuditRollupRepository auditRollupRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${audit.rollup.backfill-threads:4}")
+    private int backfillThreads = 4;
+
+    /**
+     * Gets the event counts per entity type and action for each hour or day between two points in time.
+     *
+     * @param granularity the bucket size
+     * @param start the start, moved back to the start of its bucket
+     * @param end the end
+     * @param entityType the entity type, or null for all
+     * @param action the action, or null for all
+     * @return the activity statistics
+     */
+    public AuditActivityStatsDto getActivity(AuditRollupGranularity granularity, LocalDateTime start,
+                                             LocalDateTime end, String entityType, String action) {
+        validateRange(start, end);
+        try {
+            List<AuditActivityDto> buckets = auditRollupRepository.findActivity(granularity, start, end,
+                    entityType, action);
+            return AuditActivityStatsDto.builder()
+                    .granularity(granularity)
+                    .start(start)
+                    .end(end)
+                    .totalEvents(buckets.stream().mapToLong(AuditActivityDto::getEventCount).sum())
+                    .buckets(buckets)
+                    .build();
+        } catch (DataAccessException e) {
+            throw new ServiceException(AUDIT_ROLLUP_READ_ERROR, AUDIT_LOG_ENTITY, e);
+        }
+    }
+
+    /**
+     * Gets the most modified entities over the days between two points in time.
+     *
+     * @param start the start, moved back to the start of its day
+     * @param end the end
+     * @param entityType the entity type, or null for all
+     * @param limit the number of entities, defaults to 10, at most 100
+     * @return the entities and their event counts, most first
+     */
+    public List<AuditEntityActivityDto> getTopEntities(LocalDateTime start, LocalDateTime end, String entityType,
+                                                       Integer limit) {
+        validateRange(start, end);
+        int n = limit == null ? DEFAULT_TOP_ENTITIES : Math.max(1, Math.min(limit, MAX_TOP_ENTITIES));
+        try {
+            return auditRollupRepository.findTopEntities(start.toLocalDate(), end.toLocalDate(), entityType, n);
+        } catch (DataAccessException e) {
+            throw new ServiceException(AUDIT_ROLLUP_READ_ERROR, AUDIT_LOG_ENTITY, e);
+        }
+    }
+
+    /**
+     * Rebuild the rollups of every day between two points in time from {@code audit_log}. Days without rows are left
+     * alone, so the counts of archived months survive.
+     *
+     * @param start the start, defaults to the oldest event
+     * @param end the end, defaults to the newest event
+     * @return the backfill result
+     */
+    public AuditRollupBackfillResultDto backfill(LocalDateTime start, LocalDateTime end) {
+        long begin = System.currentTimeMillis();
+        LocalDate firstDay;
+        LocalDate lastDay;
+        try {
+            List<LocalDate> eventDays = start == null || end == null ? auditRollupRepository.findEventDays() : null;
+            if (eventDays != null && eventDays.isEmpty()) {
+                return AuditRollupBackfillResultDto.builder().durationMs(System.currentTimeMillis() - begin).build();
+            }
+            firstDay = start != null ? start.toLocalDate() : eventDays.get(0);
+            lastDay = end != null ? end.toLocalDate() : eventDays.get(1);
+        } catch (DataAccessException e) {
+            throw new ServiceException(AUDIT_ROLLUP_BACKFILL_ERROR, AUDIT_LOG_ENTITY, e);
+        }
+        if (firstDay.isAfter(lastDay)) {
+            throw new ValidationException("start", INVALID_AUDIT_DATE_RANGE, AUDIT_LOG_ENTITY);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, backfillThreads));
+        try {
+            List<Future<OptionalLong>> days = new ArrayList<>();
+            for (LocalDate day = firstDay; !day.isAfter(lastDay); day = day.plusDays(1)) {
+                LocalDate chunk = day;
+                days.add(executor.submit(() -> transactionTemplate.execute(
+                        status -> auditRollupRepository.rebuildDay(chunk))));
+            }
+
+            int rebuilt = 0;
+            long events = 0;
+            for (Future<OptionalLong> day : days) {
+                OptionalLong counted = day.get();
+                if (counted.isPresent()) {
+                    rebuilt++;
+                    events += counted.getAsLong();
+                }
+            }
+
+            List<Future<?>> months = new ArrayList<>();
+            for (YearMonth month = YearMonth.from(firstDay); !month.isAfter(YearMonth.from(lastDay));
+                 month = month.plusMonths(1)) {
+                YearMonth chunk = month;
+                months.add(executor.submit(() -> transactionTemplate.executeWithoutResult(
+                        status -> auditRollupRepository.rebuildMonth(chunk))));
+            }
+            for (Future<?> month : months) {
+                month.get();
+            }
+            log.info("Rebuilt audit rollups of {} days from {} to {} holding {} events", rebuilt, firstDay, lastDay,
+                    events);
+            return AuditRollupBackfillResultDto.builder()
+                    .firstDay(firstDay)
+                    .lastDay(lastDay)
+                    .daysRebuilt(rebuilt)
+                    .daysSkipped(days.size() - rebuilt)
+                    .eventsCounted(events)
+                    .durationMs(System.currentTimeMillis() - begin)
+                    .build();
+        } catch (ExecutionException e) {
+            throw new ServiceException(AUDIT_ROLLUP_BACKFILL_ERROR, AUDIT_LOG_ENTITY, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException(AUDIT_ROLLUP_BACKFILL_ERROR, AUDIT_LOG_ENTITY, e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void validateRange(LocalDateTime start, LocalDateTime end) {
+        if (start.isAfter(end)) {
+            throw new ValidationException("start", INVALID_AUDIT_DATE_RANGE, AUDIT_LOG_ENTITY);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.healthcare.healthcare_system.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.healthcare.healthcare_system.dto.AuditLogsSavedEvent;
+import com.healthcare.healthcare_system.model.AuditLog;
+import com.healthcare.healthcare_system.repository.AuditSnapshotRepository;
+import com.healthcare.healthcare_system.util.AuditDiffUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Takes a full snapshot of a patient or facility every {@code audit.snapshots.interval} changes, so
+ * {@link AuditLogService#reconstruct} replays at most that many audit entries whatever the length of the history.
+ * Changes are counted and snapshots taken once the audit events are committed, in a transaction of their own, so a
+ * failure here never fails or repeats the audit write. It is logged and loses the count of that batch, which only
+ * delays the next snapshot of its entities.
+ * <p>
+ * An entry stamped before the latest snapshot of its entity, saved late by a retry of the audit writer, makes the
+ * snapshots from its time on stale; they are deleted and a new snapshot is taken after the entry.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AuditSnapshotService {
+    private final AuditLogService auditLogService;
+    private final AuditSnapshotRepository auditSnapshotRepository;
+    private final ObjectMapper objectMapper;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${audit.snapshots.interval:100}")
+    private int interval = 100;
+
+    /**
+     * Count the saved changes of patients and facilities and take the snapshots that are due, once the events are
+     * committed, or straight away when they were saved outside a transaction.
+     *
+     * @param event the saved events
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSaved(AuditLogsSavedEvent event) {
+        List<AuditLog> changes = event.getAuditLogs().stream()
+                .filter(auditLog -> AuditLogService.RECONSTRUCTABLE_TYPES.containsKey(auditLog.getEntityType()))
+                .toList();
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            transactionTemplate.executeWithoutResult(status -> takeDueSnapshots(changes));
+        } catch (RuntimeException e) {
+            log.warn("Could not count {} audit events for snapshots", changes.size(), e);
+        }
+    }
+
+    private void takeDueSnapshots(List<AuditLog> changes) {
+        for (AuditSnapshotRepository.PendingChanges pending : auditSnapshotRepository.countChanges(changes)) {
+            LocalDateTime snapshotAt = pending.getSnapshotAt();
+            boolean stale = snapshotAt != null && !pending.getFirstSavedAt().isAfter(snapshotAt);
+            if (stale) {
+                auditSnapshotRepository.deleteFrom(pending.getEntityType(), pending.getEntityId(),
+                        pending.getFirstSavedAt());
+            }
+            if (stale || pending.getChanges() >= interval) {
+                takeSnapshots(pending.getEntityType(), pending.getEntityId(), pending.getLastSavedAt());
+            }
+        }
+    }
+
+    /**
+     * Replay the entries after the latest snapshot, saving a snapshot every {@code interval} entries and after the
+     * last, so a batch holding many changes of one entity still leaves at most that many between snapshots.
+     */
+    private void takeSnapshots(String entityType, Long entityId, LocalDateTime at) {
+        AuditLogService.ReplayedState replayed = auditLogService.replay(entityType, entityId, at, interval,
+                (position, state) -> save(entityType, entityId, position, state));
+        if (replayed.getLastReplayed() != null) {
+            save(entityType, entityId, replayed.getLastReplayed(), replayed.getState());
+        }
+    }
+
+    private void save(String entityType, Long entityId, AuditLog position, ObjectNode state) {
+        auditSnapshotRepository.save(entityType, entityId, position,
+                state != null ? AuditDiffUtils.write(state, objectMapper) : null);
+    }
+}
@@ -0,0 +1,241 @@
+package com.healthcare.healthcare_system.service;
+
+import com.healthcare.healthcare_system.dto.AuditLogCriteria;
+import com.healthcare.healthcare_system.dto.AuditLogsSavedEvent;
+import com.healthcare.healthcare_system.dto.KeysetCursor;
+import com.healthcare.healthcare_system.exception.ValidationException;
+import com.healthcare.healthcare_system.model.AuditLog;
+import com.healthcare.healthcare_system.repository.AuditLogStore;
+import com.healthcare.healthcare_system.util.CursorUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.healthcare.healthcare_system.util.MessageUtils.AUDIT_LOG_ENTITY;
+import static com.healthcare.healthcare_system.util.MessageUtils.INVALID_CURSOR;
+
+/**
+ * Pushes audit events to Server-Sent Event subscribers as they are committed. Every event carries the {@code /feed}
+ * cursor of its position as its id, so a reconnecting client that sends it back as {@code Last-Event-ID} first gets
+ * what it missed from the store, at most {@code audit.stream.max-replay} events, then the live events.
+ * <p>
+ * Each subscriber has its own buffer of {@code audit.stream.buffer-size} events. When a client reads too slowly for
+ * it, new events are dropped for that client only and the next thing it receives is one {@code overflow} event with
+ * the number dropped, so it can fill the gap from {@code /feed}.
+ */
+@Service
+@RequiredArgsConstructor
+public class AuditStreamService {
+    static final String OVERFLOW_EVENT = "overflow";
+    static final String REPLAY_TRUNCATED_EVENT = "replay-truncated";
+
+    private static final int REPLAY_PAGE_SIZE = 500;
+
+    private final AuditLogStore auditLogStore;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${audit.stream.buffer-size:1000}")
+    private int bufferSize = 1000;
+
+    @Value("${audit.stream.max-replay:10000}")
+    private int maxReplay = 10000;
+
+    @Value("${audit.stream.heartbeat-ms:15000}")
+    private long heartbeatMs = 15000;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private Counter droppedCounter;
+
+    /**
+     * Register the metrics.
+     */
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("audit.stream.subscribers", subscribers, List::size)
+                .description("Clients following the live audit stream")
+                .register(meterRegistry);
+        droppedCounter = Counter.builder("audit.stream.dropped")
+                .description("Audit events dropped for stream clients that read too slowly")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Hand saved audit events to every subscriber once they are committed, or straight away when they were saved
+     * outside a transaction.
+     *
+     * @param event the saved events
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSaved(AuditLogsSavedEvent event) {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(event.getAuditLogs());
+        }
+    }
+
+    /**
+     * Follow the audit events, optionally only those of an entity type or an action.
+     *
+     * @param entityType the entity type, or null for all
+     * @param action the action, or null for all
+     * @param lastEventId the id of the last event the client received, or null to start with the next live event
+     * @return the events
+     */
+    public Flux<ServerSentEvent<Object>> stream(String entityType, String action, String lastEventId) {
+        KeysetCursor after = null;
+        if (lastEventId != null && !lastEventId.isEmpty()) {
+            after = CursorUtils.decode(lastEventId, AUDIT_LOG_ENTITY);
+            if (!AuditLogService.CURSOR_SORT.equals(after.getSortProperty())
+                    || after.getDirection() != Sort.Direction.ASC) {
+                throw new ValidationException("Last-Event-ID", INVALID_CURSOR, AUDIT_LOG_ENTITY);
+            }
+        }
+        KeysetCursor resumeAfter = after;
+
+        return Flux.defer(() -> {
+            // Subscribe before replaying, so nothing committed in between is missed; what both see is sent once
+            Subscriber subscriber = new Subscriber(entityType, action);
+            subscribers.add(subscriber);
+            Set<Long> replayed = ConcurrentHashMap.newKeySet();
+
+            Flux<ServerSentEvent<Object>> replay = resumeAfter == null ? Flux.empty()
+                    : replay(AuditLogCriteria.builder().entityType(entityType).action(action).build(), resumeAfter,
+                    replayed).subscribeOn(Schedulers.boundedElastic());
+            Flux<ServerSentEvent<Object>> live = subscriber.sink.asFlux()
+                    .map(delivery -> delivery.auditLog() != null && replayed.remove(delivery.auditLog().getId())
+                            ? new Delivery(null, delivery.droppedBefore())
+                            : delivery)
+                    .flatMapIterable(this::toEvents, 1);
+            Flux<ServerSentEvent<Object>> heartbeats = Flux.interval(Duration.ofMillis(heartbeatMs))
+                    .doOnNext(tick -> subscriber.flushDropped())
+                    .map(tick -> ServerSentEvent.builder().comment("keep-alive").build());
+
+            // Prefetch one at a time, so the subscriber's buffer is the only place events pile up
+            return Flux.merge(1, Flux.concat(replay, live), heartbeats)
+                    .doFinally(signal -> subscribers.remove(subscriber));
+        });
+    }
+
+    /**
+     * Read the events after a position from the store, one page per request, oldest first.
+     */
+    private Flux<ServerSentEvent<Object>> replay(AuditLogCriteria criteria, KeysetCursor after, Set<Long> replayed) {
+        AtomicInteger count = new AtomicInteger();
+        return Flux.<List<ServerSentEvent<Object>>, KeysetCursor>generate(() -> after, (cursor, sink) -> {
+            int limit = Math.min(REPLAY_PAGE_SIZE, maxReplay - count.get());
+            if (limit <= 0) {
+                sink.next(List.of(ServerSentEvent.builder()
+                        .event(REPLAY_TRUNCATED_EVENT)
+                        .data(CursorUtils.encode(cursor))
+                        .build()));
+                sink.complete();
+                return cursor;
+            }
+
+            List<AuditLog> page = auditLogStore.scroll(criteria, Sort.Direction.ASC, cursor, limit);
+            List<ServerSentEvent<Object>> events = new ArrayList<>(page.size());
+            for (AuditLog auditLog : page) {
+                replayed.add(auditLog.getId());
+                events.add(toEvent(auditLog));
+            }
+            count.addAndGet(page.size());
+            if (!events.isEmpty()) {
+                sink.next(events);
+            }
+            if (page.size() < limit) {
+                sink.complete();
+                return cursor;
+            }
+            AuditLog last = page.get(page.size() - 1);
+            return new KeysetCursor(AuditLogService.CURSOR_SORT, Sort.Direction.ASC,
+                    String.valueOf(last.getChangedAt()), last.getId());
+        }).flatMapIterable(events -> events);
+    }
+
+    private List<ServerSentEvent<Object>> toEvents(Delivery delivery) {
+        List<ServerSentEvent<Object>> events = new ArrayList<>(2);
+        if (delivery.droppedBefore() > 0) {
+            events.add(ServerSentEvent.builder()
+                    .event(OVERFLOW_EVENT)
+                    .data(Map.of("dropped", delivery.droppedBefore()))
+                    .build());
+        }
+        if (delivery.auditLog() != null) {
+            events.add(toEvent(delivery.auditLog()));
+        }
+        return events;
+    }
+
+    private ServerSentEvent<Object> toEvent(AuditLog auditLog) {
+        return ServerSentEvent.builder()
+                .id(AuditLogService.positionOf(auditLog, Sort.Direction.ASC))
+                .data(auditLog)
+                .build();
+    }
+
+    /**
+     * An event for a subscriber, with the number of events dropped for it just before.
+     */
+    private record Delivery(AuditLog auditLog, long droppedBefore) {
+    }
+
+    /**
+     * A client of the stream and its bounded buffer. Offers are serialized, since the buffer takes one producer.
+     */
+    private final class Subscriber {
+        private final String entityType;
+        private final String action;
+        private final Sinks.Many<Delivery> sink = Sinks.many().unicast()
+                .onBackpressureBuffer(Queues.<Delivery>get(bufferSize).get());
+        private long dropped;
+
+        private Subscriber(String entityType, String action) {
+            this.entityType = entityType;
+            this.action = action;
+        }
+
+        synchronized void offer(List<AuditLog> auditLogs) {
+            for (AuditLog auditLog : auditLogs) {
+                if ((entityType == null || entityType.equals(auditLog.getEntityType()))
+                        && (action == null || action.equals(auditLog.getAction()))) {
+                    emit(new Delivery(auditLog, dropped));
+                }
+            }
+        }
+
+        synchronized void flushDropped() {
+            if (dropped > 0) {
+                emit(new Delivery(null, dropped));
+            }
+        }
+
+        private void emit(Delivery delivery) {
+            Sinks.EmitResult result = sink.tryEmitNext(delivery);
+            if (result.isSuccess()) {
+                dropped = 0;
+            } else if (result == Sinks.EmitResult.FAIL_OVERFLOW && delivery.auditLog() != null) {
+                dropped++;
+                droppedCounter.increment();
+            }
+        }
+    }
+}
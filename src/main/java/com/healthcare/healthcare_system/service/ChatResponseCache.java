@@ -0,0 +1,304 @@
+package com.healthcare.healthcare_system.service;
+
+import com.healthcare.healthcare_system.dto.AuditLogsSavedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.regex.MatchResult;
+import java.util.regex.Pattern;
+
+/**
+ * Answers from Ollama, kept so that a question asked again is answered without generating. Entries are keyed by the
+ * model and the prompt folded to lower case with punctuation dropped and whitespace collapsed, so "What is triage?"
+ * and "what is  triage" share one. At most {@code ai.chat.cache.max-entries} are kept, the least recently used going
+ * first, and each expires {@code ai.chat.cache.ttl-ms} after it was stored.
+ * <p>
+ * Entries also keep the embedding of their prompt, when one could be computed. A prompt without an exact match is
+ * then answered by the entry of the same model whose embedding is the most similar to its own, if the cosine
+ * similarity reaches {@code ai.chat.cache.similarity-threshold} and both prompts contain the same numbers, so "which
+ * clinics have over 40 beds" may reuse the answer to "clinics with more than 40 beds" but never the one for 50. The
+ * embeddings are searched exhaustively, which takes well under a millisecond at the default size.
+ * <p>
+ * Answers to prompts about patients or facilities may describe data that has since changed, so they are dropped
+ * whenever a change to a patient or facility is saved. {@link #invalidateAll()} drops everything, for instance after
+ * switching models.
+ */
+@Component
+@RequiredArgsConstructor
+public class ChatResponseCache {
+    private static final Pattern PUNCTUATION = Pattern.compile("\\p{IsPunctuation}+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern DATA_DEPENDENT = Pattern.compile("\\b(patient|facilit)");
+    private static final Pattern NUMBER = Pattern.compile("\\d+");
+    private static final String EXACT = "exact";
+    private static final String SEMANTIC = "semantic";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ai.chat.cache.max-entries:1000}")
+    private int maxEntries = 1000;
+
+    @Value("${ai.chat.cache.ttl-ms:3600000}")
+    private long ttlMs = 3_600_000;
+
+    @Value("${ai.chat.cache.similarity-threshold:0.9}")
+    private double similarityThreshold = 0.9;
+
+    private LongSupplier nanoTime = System::nanoTime;
+
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            if (size() > maxEntries) {
+                evictedCounter.increment();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private Counter hitCounter;
+    private Counter missCounter;
+    private Counter semanticHitCounter;
+    private Counter semanticMissCounter;
+    private Counter timeSavedCounter;
+    private Counter semanticTimeSavedCounter;
+    private Counter evictedCounter;
+    private Counter expiredCounter;
+    private Counter invalidatedCounter;
+
+    private record Key(String model, String prompt) {
+    }
+
+    private record Entry(String response, long expiresAt, boolean dataDependent, List<String> numbers,
+                         float[] embedding, long generationNanos) {
+    }
+
+    /**
+     * Register the metrics.
+     */
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("ai.chat.cache.size", this, ChatResponseCache::size)
+                .description("Ollama answers in the chat response cache")
+                .register(meterRegistry);
+        Gauge.builder("ai.chat.cache.hit-ratio", this, ChatResponseCache::hitRatio)
+                .description("Share of chat queries for Ollama answered from the cache, exactly or by similarity")
+                .register(meterRegistry);
+        hitCounter = lookupCounter(EXACT, "hit");
+        missCounter = lookupCounter(EXACT, "miss");
+        semanticHitCounter = lookupCounter(SEMANTIC, "hit");
+        semanticMissCounter = lookupCounter(SEMANTIC, "miss");
+        timeSavedCounter = timeSavedCounter(EXACT);
+        semanticTimeSavedCounter = timeSavedCounter(SEMANTIC);
+        evictedCounter = removalCounter("evicted");
+        expiredCounter = removalCounter("expired");
+        invalidatedCounter = removalCounter("invalidated");
+    }
+
+    /**
+     * Fold a prompt to its cache key: lower case, without punctuation, with single spaces between words.
+     *
+     * @param prompt the prompt
+     * @return the normalized prompt
+     */
+    static String normalize(String prompt) {
+        String folded = PUNCTUATION.matcher(prompt.toLowerCase(Locale.ROOT)).replaceAll(" ");
+        return WHITESPACE.matcher(folded).replaceAll(" ").trim();
+    }
+
+    /**
+     * Get the cached answer to a prompt.
+     *
+     * @param model the model
+     * @param prompt the prompt
+     * @return the answer, or null if none is cached or it has expired
+     */
+    public String get(String model, String prompt) {
+        Key key = new Key(model, normalize(prompt));
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && expired(entry, nanoTime.getAsLong())) {
+                entries.remove(key);
+                expiredCounter.increment();
+                entry = null;
+            }
+            if (entry == null) {
+                missCounter.increment();
+                return null;
+            }
+            hitCounter.increment();
+            timeSavedCounter.increment(entry.generationNanos() / 1e9);
+            return entry.response();
+        }
+    }
+
+    /**
+     * Get the cached answer to the prompt of the same model most similar to a prompt, for a prompt without an exact
+     * match.
+     *
+     * @param model the model
+     * @param prompt the prompt
+     * @param embedding the embedding of the prompt
+     * @return the answer, or null if no prompt is similar enough
+     */
+    public String findSimilar(String model, String prompt, float[] embedding) {
+        float[] unit = unit(embedding);
+        List<String> numbers = numbers(normalize(prompt));
+        long now = nanoTime.getAsLong();
+        synchronized (entries) {
+            Key best = null;
+            double bestSimilarity = similarityThreshold;
+            for (Map.Entry<Key, Entry> candidate : entries.entrySet()) {
+                Entry entry = candidate.getValue();
+                if (!candidate.getKey().model().equals(model) || entry.embedding() == null
+                        || entry.embedding().length != unit.length || expired(entry, now)
+                        || !entry.numbers().equals(numbers)) {
+                    continue;
+                }
+                double similarity = dot(unit, entry.embedding());
+                if (similarity >= bestSimilarity) {
+                    best = candidate.getKey();
+                    bestSimilarity = similarity;
+                }
+            }
+            if (best == null) {
+                semanticMissCounter.increment();
+                return null;
+            }
+            // Looked up again so it counts as recently used
+            Entry entry = entries.get(best);
+            semanticHitCounter.increment();
+            semanticTimeSavedCounter.increment(entry.generationNanos() / 1e9);
+            return entry.response();
+        }
+    }
+
+    /**
+     * Cache the answer to a prompt.
+     *
+     * @param model the model
+     * @param prompt the prompt
+     * @param embedding the embedding of the prompt, or null if it could not be computed
+     * @param response the answer
+     * @param generationNanos how long the model took to answer
+     */
+    public void put(String model, String prompt, float[] embedding, String response, long generationNanos) {
+        String normalized = normalize(prompt);
+        Entry entry = new Entry(response, nanoTime.getAsLong() + TimeUnit.MILLISECONDS.toNanos(ttlMs),
+                DATA_DEPENDENT.matcher(normalized).find(), numbers(normalized),
+                embedding != null ? unit(embedding) : null, generationNanos);
+        synchronized (entries) {
+            entries.put(new Key(model, normalized), entry);
+        }
+    }
+
+    /**
+     * Drop the answers about patients and facilities once a change to them is committed, or straight away when it was
+     * saved outside a transaction.
+     *
+     * @param event the saved events
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSaved(AuditLogsSavedEvent event) {
+        synchronized (entries) {
+            for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+                if (it.next().dataDependent()) {
+                    it.remove();
+                    invalidatedCounter.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Drop every cached answer.
+     *
+     * @return the number of answers dropped
+     */
+    public int invalidateAll() {
+        synchronized (entries) {
+            int dropped = entries.size();
+            entries.clear();
+            invalidatedCounter.increment(dropped);
+            return dropped;
+        }
+    }
+
+    /**
+     * The number of cached answers, including expired ones not yet looked up.
+     *
+     * @return the size
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private double hitRatio() {
+        double lookups = hitCounter.count() + missCounter.count();
+        return lookups > 0 ? (hitCounter.count() + semanticHitCounter.count()) / lookups : 0;
+    }
+
+    private boolean expired(Entry entry, long now) {
+        return entry.expiresAt() - now <= 0;
+    }
+
+    private static List<String> numbers(String normalized) {
+        return NUMBER.matcher(normalized).results().map(MatchResult::group).toList();
+    }
+
+    private static float[] unit(float[] vector) {
+        double norm = Math.sqrt(dot(vector, vector));
+        float[] unit = new float[vector.length];
+        for (int i = 0; i < vector.length && norm > 0; i++) {
+            unit[i] = (float) (vector[i] / norm);
+        }
+        return unit;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private Counter lookupCounter(String match, String result) {
+        return Counter.builder("ai.chat.cache.lookups")
+                .description("Chat response cache lookups by match and result")
+                .tag("match", match)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private Counter timeSavedCounter(String match) {
+        return Counter.builder("ai.chat.cache.time-saved")
+                .description("Generation time of the answers served from the chat response cache")
+                .baseUnit("seconds")
+                .tag("match", match)
+                .register(meterRegistry);
+    }
+
+    private Counter removalCounter(String cause) {
+        return Counter.builder("ai.chat.cache.removals")
+                .description("Answers removed from the chat response cache by cause")
+                .tag("cause", cause)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,19 @@
+package com.healthcare.healthcare_system.service;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Turns chat prompts into embedding vectors, so {@link ChatResponseCache} can recognise a question it has answered
+ * before in other words. Ollama computes them with its embedding model; the {@code test} profile uses a deterministic
+ * local stand-in instead.
+ */
+public interface EmbeddingBackend {
+
+    /**
+     * Embed a prompt.
+     *
+     * @param text the prompt
+     * @return the embedding, once it is computed
+     */
+    CompletableFuture<float[]> embed(String text);
+}
@@ -5,13 +5,12 @@ import com.healthcare.healthcare_system.exception.DuplicateResourceException;
 import com.healthcare.healthcare_system.exception.ResourceNotFoundException;
 import com.healthcare.healthcare_system.exception.ServiceException;
 import com.healthcare.healthcare_system.exception.ValidationException;
+import com.healthcare.healthcare_system.mapper.FacilityMapper;
 import com.healthcare.healthcare_system.model.Facility;
 import com.healthcare.healthcare_system.repository.FacilityRepository;
-import com.healthcare.healthcare_system.repository.PatientRepository;
 import com.healthcare.healthcare_system.util.FacilityUtils;
 import com.healthcare.healthcare_system.util.MessageUtils;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
@@ -35,8 +34,7 @@ public class FacilityService {
 
 
     private final FacilityRepository facilityRepository;
-    private final PatientRepository patientRepository;
-    private final ModelMapper modelMapper;
+    private final FacilityMapper facilityMapper;
     private final AuditLogService auditLogService;
 
     /**
@@ -50,7 +48,7 @@ public class FacilityService {
     public Page<FacilityDto> getAllFacilities(Pageable pageable, String name, String type) {
         try {
             Page<Facility> facilities = findFacilitiesByCriteria(pageable, name, type);
-            return convertToDtoPage(facilities, modelMapper, patientRepository);
+            return convertToDtoPage(facilities, facilityMapper);
         } catch (DataAccessException e) {
             throw new ServiceException(MessageUtils.FACILITIES_RETRIEVE_ERROR, FACILITY_ENTITY, e);
         }
@@ -65,7 +63,7 @@ public class FacilityService {
     public FacilityDto getFacilityById(Long id) {
         try {
             Facility facility = findFacilityByIdOrThrow(id);
-            return convertToDto(facility, modelMapper, patientRepository);
+            return convertToDto(facility, facilityMapper);
         } catch (DataAccessException e) {
             throw new ServiceException(MessageUtils.FACILITY_RETRIEVE_ERROR, FACILITY_ENTITY, e);
         }
@@ -83,12 +81,11 @@ public class FacilityService {
             validateFacilityDto(facilityDto);
             checkForDuplicateFacility(facilityDto);
 
-            Facility facility = modelMapper.map(facilityDto, Facility.class);
+            Facility facility = facilityMapper.toEntity(facilityDto);
             Facility savedFacility = facilityRepository.save(facility);
 
-            auditLogService.logAudit(FACILITY_ENTITY, savedFacility.getId(),
-                    CREATE_ACTION, null, savedFacility.toString());
-            return convertToDto(savedFacility, modelMapper, patientRepository);
+            auditLogService.logCreate(FACILITY_ENTITY, savedFacility.getId(), facilityMapper.toDto(savedFacility));
+            return convertToDto(savedFacility, facilityMapper);
         } catch (DataIntegrityViolationException e) {
             throw new DuplicateResourceException(facilityDto.getName(), MessageUtils.DUPLICATE_ENTRY, FACILITY_ENTITY);
         } catch (DataAccessException e) {
@@ -108,14 +105,14 @@ public class FacilityService {
         try {
             validateFacilityDto(facilityDto);
             Facility existingFacility = findFacilityByIdOrThrow(id);
-            String oldValue = existingFacility.toString();
+            FacilityDto previousFacility = facilityMapper.toDto(existingFacility);
 
-            modelMapper.map(facilityDto, existingFacility);
+            facilityMapper.updateEntity(facilityDto, existingFacility);
             Facility updatedFacility = facilityRepository.save(existingFacility);
 
-            auditLogService.logAudit(FACILITY_ENTITY, updatedFacility.getId(),
-                    UPDATE_ACTION, oldValue, updatedFacility.toString());
-            return convertToDto(updatedFacility, modelMapper, patientRepository);
+            auditLogService.logUpdate(FACILITY_ENTITY, updatedFacility.getId(),
+                    previousFacility, facilityMapper.toDto(updatedFacility));
+            return convertToDto(updatedFacility, facilityMapper);
         } catch (DataIntegrityViolationException e) {
             throw new DuplicateResourceException(facilityDto.getName(), MessageUtils.DUPLICATE_ENTRY, FACILITY_ENTITY);
         } catch (DataAccessException e) {
@@ -135,8 +132,7 @@ public class FacilityService {
             facility.setDeleted(true);
             facilityRepository.save(facility);
 
-            auditLogService.logAudit(FACILITY_ENTITY, facility.getId(),
-                    DELETE_ACTION, facility.toString(), null);
+            auditLogService.logDelete(FACILITY_ENTITY, facility.getId());
         } catch (DataAccessException e) {
             throw new ServiceException(MessageUtils.FACILITY_DELETE_ERROR, FACILITY_ENTITY, e);
         }
@@ -151,7 +147,7 @@ public class FacilityService {
     public List<FacilityDto> getFacilitiesWithPatientCountGreaterThan(int count) {
         try {
             List<Facility> facilities = facilityRepository.findFacilitiesWithPatientCountGreaterThan(count);
-            List<FacilityDto> facilityDtos = FacilityUtils.convertToDtoList(facilities, modelMapper, patientRepository);
+            List<FacilityDto> facilityDtos = FacilityUtils.convertToDtoList(facilities, facilityMapper);
             return facilityDtos;
         } catch (DataAccessException e) {
             throw new ServiceException(MessageUtils.FACILITY_PATIENT_COUNT_ERROR, FACILITY_ENTITY, e);
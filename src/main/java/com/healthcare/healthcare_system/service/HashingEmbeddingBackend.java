@@ -0,0 +1,40 @@
+package com.healthcare.healthcare_system.service;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32;
+
+/**
+ * Embeddings for the {@code test} profile, where there is no Ollama. Each word of the normalized prompt and each
+ * character trigram within a word is hashed to one of {@link #DIMENSIONS} signed components, so the same prompt
+ * always gets the same vector and prompts sharing most of their words get similar ones. It knows nothing of meaning:
+ * synonyms are as far apart as any other words.
+ */
+@Service
+@Profile("test")
+public class HashingEmbeddingBackend implements EmbeddingBackend {
+    static final int DIMENSIONS = 256;
+
+    @Override
+    public CompletableFuture<float[]> embed(String text) {
+        float[] embedding = new float[DIMENSIONS];
+        for (String word : ChatResponseCache.normalize(text).split(" ")) {
+            add(embedding, word, 1.0f);
+            String padded = " " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                add(embedding, padded.substring(i, i + 3), 0.5f);
+            }
+        }
+        return CompletableFuture.completedFuture(embedding);
+    }
+
+    private void add(float[] embedding, String feature, float weight) {
+        CRC32 crc = new CRC32();
+        crc.update(feature.getBytes(StandardCharsets.UTF_8));
+        long hash = crc.getValue();
+        embedding[(int) (hash % DIMENSIONS)] += (hash & (1L << 31)) != 0 ? -weight : weight;
+    }
+}
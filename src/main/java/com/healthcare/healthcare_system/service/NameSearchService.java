@@ -0,0 +1,122 @@
+package com.healthcare.healthcare_system.service;
+
+import com.healthcare.healthcare_system.dto.FacilityDto;
+import com.healthcare.healthcare_system.dto.NameMatch;
+import com.healthcare.healthcare_system.dto.PatientDto;
+import com.healthcare.healthcare_system.dto.SearchResultDto;
+import com.healthcare.healthcare_system.exception.ServiceException;
+import com.healthcare.healthcare_system.exception.ValidationException;
+import com.healthcare.healthcare_system.mapper.FacilityMapper;
+import com.healthcare.healthcare_system.mapper.PatientMapper;
+import com.healthcare.healthcare_system.model.Facility;
+import com.healthcare.healthcare_system.model.Patient;
+import com.healthcare.healthcare_system.repository.FacilityRepository;
+import com.healthcare.healthcare_system.repository.NameSearchBackend;
+import com.healthcare.healthcare_system.repository.PatientRepository;
+import com.healthcare.healthcare_system.util.FacilityUtils;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.healthcare.healthcare_system.util.MessageUtils.FACILITY_ENTITY;
+import static com.healthcare.healthcare_system.util.MessageUtils.NAME_SEARCH_ERROR;
+import static com.healthcare.healthcare_system.util.MessageUtils.PATIENT_ENTITY_TYPE;
+import static com.healthcare.healthcare_system.util.MessageUtils.SEARCH_TERM_TOO_SHORT;
+
+/**
+ * Similarity-ranked partial-name search. The backend returns ranked ids; the records are then loaded with one
+ * query and returned in rank order.
+ */
+@Service
+@RequiredArgsConstructor
+public class NameSearchService {
+    /**
+     * Shorter terms have no complete trigram, so they cannot use the trigram indexes.
+     */
+    static final int MIN_TERM_LENGTH = 3;
+    static final int DEFAULT_LIMIT = 20;
+    static final int MAX_LIMIT = 100;
+
+    private final NameSearchBackend nameSearchBackend;
+    private final PatientRepository patientRepository;
+    private final FacilityRepository facilityRepository;
+    private final PatientMapper patientMapper;
+    private final FacilityMapper facilityMapper;
+
+    /**
+     * Search patients by partial first or last name.
+     *
+     * @param term the term
+     * @param limit the maximum number of results, null for the default
+     * @return the results, best match first
+     */
+    public List<SearchResultDto<PatientDto>> searchPatients(String term, Integer limit) {
+        String normalized = normalize(term, PATIENT_ENTITY_TYPE);
+        try {
+            List<NameMatch> matches = nameSearchBackend.searchPatients(normalized, clamp(limit));
+            Map<Long, PatientDto> patients = patientRepository.findAllById(ids(matches)).stream()
+                    .collect(Collectors.toMap(Patient::getId, patientMapper::toDto));
+            return inRankOrder(matches, patients);
+        } catch (DataAccessException e) {
+            throw new ServiceException(NAME_SEARCH_ERROR, PATIENT_ENTITY_TYPE, e);
+        }
+    }
+
+    /**
+     * Search facilities by partial name.
+     *
+     * @param term the term
+     * @param limit the maximum number of results, null for the default
+     * @return the results, best match first
+     */
+    public List<SearchResultDto<FacilityDto>> searchFacilities(String term, Integer limit) {
+        String normalized = normalize(term, FACILITY_ENTITY);
+        try {
+            List<NameMatch> matches = nameSearchBackend.searchFacilities(normalized, clamp(limit));
+            List<Facility> facilities = facilityRepository.findAllById(ids(matches));
+            Map<Long, FacilityDto> dtos = FacilityUtils.convertToDtoList(facilities, facilityMapper)
+                    .stream()
+                    .collect(Collectors.toMap(FacilityDto::getId, Function.identity()));
+            return inRankOrder(matches, dtos);
+        } catch (DataAccessException e) {
+            throw new ServiceException(NAME_SEARCH_ERROR, FACILITY_ENTITY, e);
+        }
+    }
+
+    private String normalize(String term, String entityType) {
+        String normalized = term == null ? "" : term.trim().toLowerCase(Locale.ROOT);
+        if (normalized.length() < MIN_TERM_LENGTH) {
+            throw new ValidationException("q", String.format(SEARCH_TERM_TOO_SHORT, MIN_TERM_LENGTH), entityType);
+        }
+        return normalized;
+    }
+
+    private int clamp(Integer limit) {
+        if (limit == null || limit < 1) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.min(limit, MAX_LIMIT);
+    }
+
+    private List<Long> ids(List<NameMatch> matches) {
+        return matches.stream().map(NameMatch::getId).collect(Collectors.toList());
+    }
+
+    private <T> List<SearchResultDto<T>> inRankOrder(List<NameMatch> matches, Map<Long, T> records) {
+        List<SearchResultDto<T>> results = new ArrayList<>(matches.size());
+        for (NameMatch match : matches) {
+            T record = records.get(match.getId());
+            if (record != null) {
+                results.add(new SearchResultDto<>(match.getScore(), record));
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,288 @@
+package com.healthcare.healthcare_system.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounds the generations running on Ollama at once, so a burst of chats waits its turn instead of making the model
+ * thrash between them. The limit adapts between {@code ai.ollama.concurrency.min-limit} and
+ * {@code ai.ollama.concurrency.max-limit}, additive increase, multiplicative decrease: it grows by one when a call
+ * completes in time while at least half the limit is in use, and shrinks by a tenth when a call fails or its latency
+ * per generated token is more than {@code ai.ollama.concurrency.latency-tolerance} times the lowest of the recent
+ * calls, the sign that Ollama is queueing rather than batching.
+ * <p>
+ * The latency per token is the time the call held its permit, less the model loading and prompt processing Ollama
+ * reports, divided by the tokens it generated, so long and short answers compare while the time Ollama kept the call
+ * waiting still counts. A call that reports no tokens only frees its permit.
+ * <p>
+ * Calls over the limit wait, without holding a thread, in a queue of {@code ai.ollama.concurrency.queue-capacity},
+ * first come first served. A call that waits longer than {@code ai.ollama.concurrency.queue-timeout-ms} fails with a
+ * {@link TimeoutException}; one that finds the queue full fails straight away with a
+ * {@link RejectedExecutionException}.
+ */
+@Component
+@RequiredArgsConstructor
+public class OllamaConcurrencyLimiter {
+    private static final int LATENCY_WINDOW = 100;
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ai.ollama.concurrency.initial-limit:4}")
+    private int limit = 4;
+
+    @Value("${ai.ollama.concurrency.min-limit:1}")
+    private int minLimit = 1;
+
+    @Value("${ai.ollama.concurrency.max-limit:16}")
+    private int maxLimit = 16;
+
+    @Value("${ai.ollama.concurrency.latency-tolerance:2.0}")
+    private double latencyTolerance = 2.0;
+
+    @Value("${ai.ollama.concurrency.queue-capacity:200}")
+    private int queueCapacity = 200;
+
+    @Value("${ai.ollama.concurrency.queue-timeout-ms:10000}")
+    private long queueTimeoutMs = 10_000;
+
+    private LongSupplier nanoTime = System::nanoTime;
+
+    private final Deque<CompletableFuture<Permit>> queue = new ArrayDeque<>();
+    private int inFlight;
+    private long minLatency = Long.MAX_VALUE;
+    private long windowMinLatency = Long.MAX_VALUE;
+    private int windowSamples;
+
+    private Counter queueFullCounter;
+    private Counter queueTimeoutCounter;
+
+    /**
+     * A granted call. Exactly one of its methods must be called when the call ends.
+     */
+    public final class Permit {
+        private final long grantedAt = nanoTime.getAsLong();
+        private boolean released;
+        private int generatedTokens;
+        private long setupNanos;
+
+        /**
+         * Record what Ollama reported for the generation, from {@code eval_count}, {@code load_duration} and
+         * {@code prompt_eval_duration}.
+         *
+         * @param tokens the tokens generated
+         * @param setupNanos the time spent loading the model and processing the prompt
+         */
+        public synchronized void recordGeneration(int tokens, long setupNanos) {
+            this.generatedTokens = tokens;
+            this.setupNanos = setupNanos;
+        }
+
+        /**
+         * The call completed; its latency per generated token feeds the limit.
+         */
+        public void onSuccess() {
+            long latency = nanoTime.getAsLong() - grantedAt;
+            int tokens;
+            long setup;
+            synchronized (this) {
+                tokens = generatedTokens;
+                setup = setupNanos;
+            }
+            if (tokens <= 0) {
+                release(Outcome.IGNORED, 0, this);
+            } else {
+                release(Outcome.SUCCESS, Math.max(0, latency - setup) / tokens, this);
+            }
+        }
+
+        /**
+         * The call failed or timed out; the limit shrinks.
+         */
+        public void onDropped() {
+            release(Outcome.DROPPED, 0, this);
+        }
+
+        /**
+         * The call ended for reasons unrelated to Ollama's load, such as the client going away; the limit is left
+         * alone.
+         */
+        public void onIgnore() {
+            release(Outcome.IGNORED, 0, this);
+        }
+    }
+
+    private enum Outcome {
+        SUCCESS, DROPPED, IGNORED
+    }
+
+    /**
+     * Register the metrics.
+     */
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("ai.ollama.in-flight", this, OllamaConcurrencyLimiter::getInFlight)
+                .description("Generations running on Ollama")
+                .register(meterRegistry);
+        Gauge.builder("ai.ollama.queued", this, OllamaConcurrencyLimiter::getQueued)
+                .description("Generations waiting for the concurrency limit")
+                .register(meterRegistry);
+        Gauge.builder("ai.ollama.concurrency-limit", this, OllamaConcurrencyLimiter::getLimit)
+                .description("Current adaptive limit on concurrent generations")
+                .register(meterRegistry);
+        queueFullCounter = rejectedCounter("queue-full");
+        queueTimeoutCounter = rejectedCounter("queue-timeout");
+    }
+
+    /**
+     * Run a call once the limit allows, releasing its permit when the call's future completes.
+     *
+     * @param <T> the result type
+     * @param call starts the call with its permit, on which it records the generation
+     * @return the result of the call
+     */
+    public <T> CompletableFuture<T> run(Function<Permit, CompletableFuture<T>> call) {
+        return acquire().thenCompose(permit -> {
+            CompletableFuture<T> result;
+            try {
+                result = call.apply(permit);
+            } catch (RuntimeException e) {
+                result = CompletableFuture.failedFuture(e);
+            }
+            return result.whenComplete((value, e) -> {
+                if (e == null) {
+                    permit.onSuccess();
+                } else {
+                    permit.onDropped();
+                }
+            });
+        });
+    }
+
+    /**
+     * Wait for a permit.
+     *
+     * @return the permit, once granted
+     */
+    public CompletableFuture<Permit> acquire() {
+        CompletableFuture<Permit> waiter;
+        synchronized (this) {
+            if (inFlight < limit && queue.isEmpty()) {
+                inFlight++;
+                return CompletableFuture.completedFuture(new Permit());
+            }
+            if (queue.size() >= queueCapacity) {
+                queueFullCounter.increment();
+                return CompletableFuture.failedFuture(new RejectedExecutionException(
+                        "Ollama is busy: " + inFlight + " generations running and " + queue.size() + " waiting"));
+            }
+            waiter = new CompletableFuture<>();
+            queue.addLast(waiter);
+        }
+        waiter.orTimeout(queueTimeoutMs, TimeUnit.MILLISECONDS).whenComplete((permit, e) -> {
+            if (e != null) {
+                synchronized (this) {
+                    queue.remove(waiter);
+                }
+                if (e instanceof TimeoutException) {
+                    queueTimeoutCounter.increment();
+                }
+            }
+        });
+        return waiter;
+    }
+
+    /**
+     * The generations running.
+     *
+     * @return the number in flight
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * The generations waiting.
+     *
+     * @return the number queued
+     */
+    public synchronized int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * The current limit.
+     *
+     * @return the limit
+     */
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    private void release(Outcome outcome, long latency, Permit permit) {
+        List<CompletableFuture<Permit>> granted = new ArrayList<>();
+        synchronized (this) {
+            if (permit.released) {
+                return;
+            }
+            permit.released = true;
+            adjustLimit(outcome, latency);
+            inFlight--;
+            while (inFlight < limit && !queue.isEmpty()) {
+                granted.add(queue.pollFirst());
+                inFlight++;
+            }
+        }
+        // Completed outside the lock, as the waiters' continuations start their calls
+        for (CompletableFuture<Permit> waiter : granted) {
+            Permit next = new Permit();
+            if (!waiter.complete(next)) {
+                // Timed out or cancelled meanwhile: hand the permit on
+                next.onIgnore();
+            }
+        }
+    }
+
+    private void adjustLimit(Outcome outcome, long latency) {
+        if (outcome == Outcome.DROPPED) {
+            limit = Math.max(minLimit, (int) (limit * BACKOFF_RATIO));
+        } else if (outcome == Outcome.SUCCESS) {
+            windowMinLatency = Math.min(windowMinLatency, latency);
+            minLatency = Math.min(minLatency, latency);
+            if (++windowSamples == LATENCY_WINDOW) {
+                // Forget latencies older than the last window, so the baseline follows model or hardware changes
+                minLatency = windowMinLatency;
+                windowMinLatency = Long.MAX_VALUE;
+                windowSamples = 0;
+            }
+            if (latency > minLatency * latencyTolerance) {
+                limit = Math.max(minLimit, (int) (limit * BACKOFF_RATIO));
+            } else if (inFlight * 2 >= limit) {
+                limit = Math.min(maxLimit, limit + 1);
+            }
+        }
+    }
+
+    private Counter rejectedCounter(String reason) {
+        return Counter.builder("ai.ollama.rejected")
+                .description("Generations refused by the concurrency limiter by reason")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
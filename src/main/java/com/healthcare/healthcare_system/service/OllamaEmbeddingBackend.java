@@ -0,0 +1,74 @@
+package com.healthcare.healthcare_system.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Embeddings from Ollama's {@code /api/embeddings} endpoint, computed by {@code ollama.embedding-model}.
+ */
+@Service
+@Profile("!test")
+@RequiredArgsConstructor
+public class OllamaEmbeddingBackend implements EmbeddingBackend {
+    private static final Duration EMBEDDING_TIMEOUT = Duration.ofSeconds(10);
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+
+    @Value("${ollama.api.base-url:http://localhost:11434}")
+    private String ollamaBaseUrl;
+
+    @Value("${ollama.embedding-model:nomic-embed-text}")
+    private String embeddingModel;
+
+    @Override
+    public CompletableFuture<float[]> embed(String text) {
+        ObjectNode body = objectMapper.createObjectNode()
+                .put("model", embeddingModel)
+                .put("prompt", text);
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(ollamaBaseUrl + "/api/embeddings"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .timeout(EMBEDDING_TIMEOUT)
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+                        throw new IllegalStateException("Ollama answered with status " + response.statusCode());
+                    }
+                    return readEmbedding(response.body());
+                });
+    }
+
+    private float[] readEmbedding(String body) {
+        try {
+            JsonNode values = objectMapper.readTree(body).path("embedding");
+            if (values.isEmpty()) {
+                throw new IllegalStateException("Ollama returned no embedding");
+            }
+            float[] embedding = new float[values.size()];
+            for (int i = 0; i < embedding.length; i++) {
+                embedding[i] = (float) values.get(i).asDouble();
+            }
+            return embedding;
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.healthcare.healthcare_system.service;
+
+import com.healthcare.healthcare_system.dto.PatientDto;
+import com.healthcare.healthcare_system.repository.PatientRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Works out which contact fields of a rejected patient write collide with another active patient. Only called
+ * after a unique index has refused the write, so it runs in its own read-only transaction: the caller's
+ * transaction is already aborted.
+ */
+@Service
+@RequiredArgsConstructor
+public class PatientConflictService {
+    private final PatientRepository patientRepository;
+
+    /**
+     * Find conflicting fields list.
+     *
+     * @param patientDto the patient dto
+     * @param excludePatientId the id of the patient being updated, null on create
+     * @return the descriptions of the conflicting fields, empty when the conflict is gone
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public List<String> findConflictingFields(PatientDto patientDto, Long excludePatientId) {
+        List<String> conflictingFields = new ArrayList<>();
+
+        // Check for duplicate email
+        if (patientDto.getEmail() != null && !patientDto.getEmail().isEmpty()) {
+            boolean emailExists = excludePatientId != null ?
+                    patientRepository.existsByEmailAndIdNotAndDeletedFalse(patientDto.getEmail(), excludePatientId) :
+                    patientRepository.existsByEmailAndDeletedFalse(patientDto.getEmail());
+            if (emailExists) {
+                conflictingFields.add(emailField(patientDto));
+            }
+        }
+
+        // Check for duplicate phone number
+        if (patientDto.getPhoneNumber() != null && !patientDto.getPhoneNumber().isEmpty()) {
+            boolean phoneExists = excludePatientId != null ?
+                    patientRepository.existsByPhoneNumberAndIdNotAndDeletedFalse(patientDto.getPhoneNumber(), excludePatientId) :
+                    patientRepository.existsByPhoneNumberAndDeletedFalse(patientDto.getPhoneNumber());
+            if (phoneExists) {
+                conflictingFields.add(phoneNumberField(patientDto));
+            }
+        }
+
+        // Check for duplicate insurance number
+        if (patientDto.getInsuranceNumber() != null && !patientDto.getInsuranceNumber().isEmpty()) {
+            boolean insuranceNumberExists = excludePatientId != null ?
+                    patientRepository.existsByInsuranceNumberAndIdNotAndDeletedFalse(patientDto.getInsuranceNumber(), excludePatientId) :
+                    patientRepository.existsByInsuranceNumberAndDeletedFalse(patientDto.getInsuranceNumber());
+            if (insuranceNumberExists) {
+                conflictingFields.add(insuranceNumberField(patientDto));
+            }
+        }
+
+        return conflictingFields;
+    }
+
+    /**
+     * Email field description.
+     *
+     * @param patientDto the patient dto
+     * @return the string
+     */
+    static String emailField(PatientDto patientDto) {
+        return "email address '" + patientDto.getEmail() + "'";
+    }
+
+    /**
+     * Phone number field description.
+     *
+     * @param patientDto the patient dto
+     * @return the string
+     */
+    static String phoneNumberField(PatientDto patientDto) {
+        return "phone number '" + patientDto.getPhoneNumber() + "'";
+    }
+
+    /**
+     * Insurance number field description.
+     *
+     * @param patientDto the patient dto
+     * @return the string
+     */
+    static String insuranceNumberField(PatientDto patientDto) {
+        return "insurance number '" + patientDto.getInsuranceNumber() + "'";
+    }
+}
@@ -0,0 +1,71 @@
+package com.healthcare.healthcare_system.service;
+
+import com.healthcare.healthcare_system.dto.ReconciliationResultDto;
+import com.healthcare.healthcare_system.exception.ServiceException;
+import com.healthcare.healthcare_system.repository.FacilityRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+import static com.healthcare.healthcare_system.util.MessageUtils.FACILITY_ENTITY;
+import static com.healthcare.healthcare_system.util.MessageUtils.PATIENT_COUNT_RECONCILE_ERROR;
+
+/**
+ * Recomputes the denormalized {@code facilities.patient_count} column in id-ordered chunks,
+ * each chunk in its own short transaction, and reports how many rows had drifted.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PatientCountReconciliationService {
+    private final FacilityRepository facilityRepository;
+
+    @Value("${facility.patient-count.reconcile-chunk-size:500}")
+    private int chunkSize = 500;
+
+    /**
+     * Scheduled reconciliation.
+     */
+    @Scheduled(cron = "${facility.patient-count.reconcile-cron:0 0 3 * * *}")
+    public void scheduledReconcile() {
+        ReconciliationResultDto result = reconcile();
+        log.info("Patient count reconciliation scanned {} facilities and corrected {} in {} ms",
+                result.getFacilitiesScanned(), result.getFacilitiesCorrected(), result.getDurationMs());
+    }
+
+    /**
+     * Reconcile all facility patient counts.
+     *
+     * @return the reconciliation result
+     */
+    public ReconciliationResultDto reconcile() {
+        long start = System.currentTimeMillis();
+        long scanned = 0;
+        long corrected = 0;
+        long lastId = 0L;
+
+        try {
+            List<Long> ids = facilityRepository.findIdsAfter(lastId, PageRequest.of(0, chunkSize));
+            while (!ids.isEmpty()) {
+                corrected += facilityRepository.reconcilePatientCounts(ids);
+                scanned += ids.size();
+                lastId = ids.get(ids.size() - 1);
+                ids = facilityRepository.findIdsAfter(lastId, PageRequest.of(0, chunkSize));
+            }
+        } catch (DataAccessException e) {
+            throw new ServiceException(PATIENT_COUNT_RECONCILE_ERROR, FACILITY_ENTITY, e);
+        }
+
+        return ReconciliationResultDto.builder()
+                .facilitiesScanned(scanned)
+                .facilitiesCorrected(corrected)
+                .durationMs(System.currentTimeMillis() - start)
+                .build();
+    }
+}
@@ -0,0 +1,154 @@
+package com.healthcare.healthcare_system.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.healthcare.healthcare_system.dto.PatientDto;
+import com.healthcare.healthcare_system.enums.DataFormat;
+import com.healthcare.healthcare_system.exception.ResourceNotFoundException;
+import com.healthcare.healthcare_system.mapper.PatientMapper;
+import com.healthcare.healthcare_system.model.Patient;
+import com.healthcare.healthcare_system.repository.FacilityRepository;
+import com.healthcare.healthcare_system.repository.PatientRepository;
+import com.healthcare.healthcare_system.repository.PatientSpecifications;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import static com.healthcare.healthcare_system.util.MessageUtils.FACILITY_NOT_FOUND;
+
+/**
+ * Writes active patients to an output stream as NDJSON or CSV while reading them through a database cursor, so
+ * memory use does not grow with the number of rows. Each patient is detached from the persistence context as soon
+ * as it has been written.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PatientExportService {
+    private static final CsvMapper CSV_MAPPER = CsvMapper.builder()
+            .addModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    // Same columns as the bulk import reads, so an export can be loaded elsewhere as is
+    private static final CsvSchema CSV_SCHEMA = CsvSchema.builder()
+            .addColumn("id")
+            .addColumn("facilityId")
+            .addColumn("firstName")
+            .addColumn("lastName")
+            .addColumn("dateOfBirth")
+            .addColumn("gender")
+            .addColumn("address")
+            .addColumn("phoneNumber")
+            .addColumn("email")
+            .addColumn("insuranceNumber")
+            .build()
+            .withHeader();
+
+    private final PatientRepository patientRepository;
+    private final FacilityRepository facilityRepository;
+    private final PatientMapper patientMapper;
+    private final ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${patient.export.fetch-size:500}")
+    private int fetchSize = 500;
+
+    @Value("${patient.export.timeout:30m}")
+    private Duration timeout = Duration.ofMinutes(30);
+
+    /**
+     * How long an export may run before the request times out.
+     *
+     * @return the timeout
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Check the export filters before the response is committed.
+     *
+     * @param facilityId the facility id, may be null
+     */
+    public void validateFilters(Long facilityId) {
+        if (facilityId != null && !facilityRepository.existsById(facilityId)) {
+            throw new ResourceNotFoundException(String.format(FACILITY_NOT_FOUND, facilityId));
+        }
+    }
+
+    /**
+     * Export patients.
+     *
+     * @param facilityId the facility id, may be null
+     * @param updatedSince only patients created or changed at or after this time, may be null
+     * @param format the output format
+     * @param out the output stream
+     * @return the number of exported patients
+     * @throws IOException when writing to the output stream fails
+     */
+    @Transactional(readOnly = true)
+    public long exportPatients(Long facilityId, LocalDateTime updatedSince, DataFormat format, OutputStream out)
+            throws IOException {
+        long start = System.currentTimeMillis();
+        long exported = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        SequenceWriter csvWriter = format == DataFormat.CSV ? CSV_MAPPER.writer(CSV_SCHEMA).writeValues(writer) : null;
+
+        try (Stream<Patient> patients = patientRepository.stream(filter(facilityId, updatedSince), fetchSize)) {
+            Iterator<Patient> iterator = patients.iterator();
+            while (iterator.hasNext()) {
+                Patient patient = iterator.next();
+                PatientDto patientDto = patientMapper.toDto(patient);
+                if (csvWriter != null) {
+                    csvWriter.write(patientDto);
+                } else {
+                    writer.write(objectMapper.writeValueAsString(patientDto));
+                    writer.write('\n');
+                }
+                entityManager.detach(patient);
+                exported++;
+            }
+        }
+
+        if (csvWriter != null) {
+            csvWriter.flush();
+        }
+        writer.flush();
+        log.info("Exported {} patients in {} ms", exported, System.currentTimeMillis() - start);
+        return exported;
+    }
+
+    private Specification<Patient> filter(Long facilityId, LocalDateTime updatedSince) {
+        Specification<Patient> spec = Specification.where(null);
+        if (facilityId != null) {
+            spec = spec.and(PatientSpecifications.hasFacility(facilityId));
+        }
+        if (updatedSince != null) {
+            spec = spec.and(PatientSpecifications.updatedSince(updatedSince));
+        }
+        return spec;
+    }
+}
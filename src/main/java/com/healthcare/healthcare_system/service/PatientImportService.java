@@ -0,0 +1,433 @@
+package com.healthcare.healthcare_system.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.healthcare.healthcare_system.dto.PatientDto;
+import com.healthcare.healthcare_system.dto.PatientImportResultDto;
+import com.healthcare.healthcare_system.dto.PatientImportRowResultDto;
+import com.healthcare.healthcare_system.enums.DataFormat;
+import com.healthcare.healthcare_system.enums.ImportRowStatus;
+import com.healthcare.healthcare_system.exception.ServiceException;
+import com.healthcare.healthcare_system.model.AuditLog;
+import com.healthcare.healthcare_system.model.Patient;
+import com.healthcare.healthcare_system.repository.AuditLogStore;
+import com.healthcare.healthcare_system.repository.FacilityRepository;
+import com.healthcare.healthcare_system.repository.NameSearchBackend;
+import com.healthcare.healthcare_system.repository.PatientImportRepository;
+import com.healthcare.healthcare_system.util.AuditDiffUtils;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.healthcare.healthcare_system.util.MessageUtils.*;
+
+/**
+ * Imports patients streamed as NDJSON or CSV. Rows are validated against the {@link PatientDto} constraints as they
+ * are read and written in chunks of {@code patient.import.batch-size}; each chunk is checked against the database
+ * and earlier imported rows for duplicate contact fields, inserted with one JDBC batch, audited and counted in its own
+ * transaction. A failing chunk rolls back alone: its rows are reported as {@link ImportRowStatus#FAILED}, chunks
+ * before it stay imported and the rows after it are still read.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PatientImportService {
+    private static final CsvMapper CSV_MAPPER = CsvMapper.builder()
+            .enable(CsvParser.Feature.TRIM_SPACES)
+            .enable(CsvParser.Feature.SKIP_EMPTY_LINES)
+            .enable(CsvParser.Feature.IGNORE_TRAILING_UNMAPPABLE)
+            .build();
+
+    private final PatientImportRepository patientImportRepository;
+    private final AuditLogStore auditLogStore;
+    private final FacilityRepository facilityRepository;
+    private final NameSearchBackend nameSearchBackend;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+
+    @Value("${patient.import.batch-size:1000}")
+    private int batchSize = 1000;
+
+    /**
+     * Import patients.
+     *
+     * @param body the request body
+     * @param format the body format
+     * @return the per-row import report
+     */
+    public PatientImportResultDto importPatients(InputStream body, DataFormat format) {
+        long start = System.currentTimeMillis();
+        ImportRun run = new ImportRun();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            if (format == DataFormat.CSV) {
+                readCsv(reader, run);
+            } else {
+                readNdjson(reader, run);
+            }
+            writeBatch(run);
+        } catch (IOException e) {
+            throw new ServiceException(PATIENT_IMPORT_ERROR, PATIENT_ENTITY_TYPE, e);
+        }
+
+        run.results.sort(Comparator.comparingLong(PatientImportRowResultDto::getRow));
+        PatientImportResultDto result = PatientImportResultDto.builder()
+                .totalRows(run.results.size())
+                .imported(run.count(ImportRowStatus.IMPORTED))
+                .duplicates(run.count(ImportRowStatus.DUPLICATE))
+                .invalid(run.count(ImportRowStatus.INVALID))
+                .failed(run.count(ImportRowStatus.FAILED))
+                .durationMs(System.currentTimeMillis() - start)
+                .rows(run.results)
+                .build();
+        log.info("Imported {} of {} patients in {} ms", result.getImported(), result.getTotalRows(),
+                result.getDurationMs());
+        return result;
+    }
+
+    private void readNdjson(BufferedReader reader, ImportRun run) throws IOException {
+        ObjectReader patientReader = objectMapper.readerFor(PatientDto.class);
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                accept(run, lineNumber, patientReader.readValue(line));
+            } catch (JsonProcessingException e) {
+                run.reject(lineNumber, ImportRowStatus.INVALID,
+                        List.of(String.format(IMPORT_MALFORMED_ROW, e.getOriginalMessage())));
+            }
+        }
+    }
+
+    private void readCsv(Reader reader, ImportRun run) throws IOException {
+        try (MappingIterator<Map<String, String>> records = CSV_MAPPER.readerForMapOf(String.class)
+                .with(CsvSchema.emptySchema().withHeader())
+                .readValues(reader)) {
+            long recordNumber = 0;
+            while (true) {
+                recordNumber++;
+                Map<String, String> values;
+                try {
+                    if (!records.hasNextValue()) {
+                        return;
+                    }
+                    values = records.nextValue();
+                } catch (JsonProcessingException | RuntimeJsonMappingException e) {
+                    // The parser cannot resynchronise after a broken record, so the rest of the body is not read
+                    run.reject(recordNumber, ImportRowStatus.INVALID,
+                            List.of(String.format(IMPORT_MALFORMED_ROW, e.getMessage())));
+                    return;
+                }
+
+                // CSV has no null, an empty cell means the field is not set
+                values.values().removeIf(String::isBlank);
+                PatientDto patientDto;
+                try {
+                    patientDto = objectMapper.convertValue(values, PatientDto.class);
+                } catch (IllegalArgumentException e) {
+                    String reason = e.getCause() instanceof JsonProcessingException cause
+                            ? cause.getOriginalMessage() : e.getMessage();
+                    run.reject(recordNumber, ImportRowStatus.INVALID,
+                            List.of(String.format(IMPORT_MALFORMED_ROW, reason)));
+                    continue;
+                }
+                accept(run, recordNumber, patientDto);
+            }
+        }
+    }
+
+    private void accept(ImportRun run, long row, PatientDto patientDto) {
+        if (patientDto == null) {
+            run.reject(row, ImportRowStatus.INVALID, List.of(String.format(IMPORT_MALFORMED_ROW, "empty row")));
+            return;
+        }
+        patientDto.setId(null);
+
+        Set<ConstraintViolation<PatientDto>> violations = validator.validate(patientDto);
+        if (!violations.isEmpty()) {
+            run.reject(row, ImportRowStatus.INVALID, violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.toList()));
+            return;
+        }
+
+        run.pending.add(new PendingRow(row, patientDto));
+        if (run.pending.size() >= batchSize) {
+            writeBatch(run);
+        }
+    }
+
+    private void writeBatch(ImportRun run) {
+        if (run.pending.isEmpty()) {
+            return;
+        }
+        List<PendingRow> pending = run.pending;
+        run.pending = new ArrayList<>(batchSize);
+
+        List<PatientImportRowResultDto> results;
+        try {
+            List<PendingRow> batch = rejectUnknownFacilities(run, pending);
+            results = transactionTemplate.execute(status -> insertBatch(run, batch));
+        } catch (RuntimeException e) {
+            long first = pending.get(0).row;
+            long last = pending.get(pending.size() - 1).row;
+            log.error("Failed to import rows {} to {}, continuing with the next chunk", first, last, e);
+            Set<Long> reported = run.results.stream()
+                    .map(PatientImportRowResultDto::getRow)
+                    .collect(Collectors.toSet());
+            for (PendingRow pendingRow : pending) {
+                if (!reported.contains(pendingRow.row)) {
+                    run.reject(pendingRow.row, ImportRowStatus.FAILED,
+                            List.of(String.format(IMPORT_CHUNK_FAILED, first, last, e.getMessage())));
+                }
+            }
+            return;
+        }
+
+        run.results.addAll(results);
+        for (PendingRow pendingRow : pending) {
+            if (pendingRow.patientId == null) {
+                continue;
+            }
+            // Only committed rows count as earlier rows of the file
+            for (ContactField field : ContactField.values()) {
+                String value = field.value.apply(pendingRow.patient);
+                if (value != null && !value.isEmpty()) {
+                    run.seen.get(field).put(value, pendingRow.row);
+                }
+            }
+            nameSearchBackend.patientChanged(Patient.builder()
+                    .id(pendingRow.patientId)
+                    .firstName(pendingRow.patient.getFirstName())
+                    .lastName(pendingRow.patient.getLastName())
+                    .build());
+        }
+    }
+
+    private List<PendingRow> rejectUnknownFacilities(ImportRun run, List<PendingRow> batch) {
+        Set<Long> unchecked = batch.stream()
+                .map(pendingRow -> pendingRow.patient.getFacilityId())
+                .filter(facilityId -> !run.facilities.containsKey(facilityId))
+                .collect(Collectors.toSet());
+        if (!unchecked.isEmpty()) {
+            Set<Long> existing = new LinkedHashSet<>(facilityRepository.findExistingIds(unchecked));
+            unchecked.forEach(facilityId -> run.facilities.put(facilityId, existing.contains(facilityId)));
+        }
+
+        List<PendingRow> known = new ArrayList<>(batch.size());
+        for (PendingRow pendingRow : batch) {
+            Long facilityId = pendingRow.patient.getFacilityId();
+            if (run.facilities.get(facilityId)) {
+                known.add(pendingRow);
+            } else {
+                run.reject(pendingRow.row, ImportRowStatus.INVALID,
+                        List.of("facilityId: " + String.format(FACILITY_NOT_FOUND, facilityId)));
+            }
+        }
+        return known;
+    }
+
+    /**
+     * Insert the rows of a chunk that do not repeat a contact field, returning the report of every row. Rows that
+     * repeat an earlier row of the same chunk are reported once it is known whether that row was inserted: if the
+     * database skipped it, the value belongs to a patient saved meanwhile.
+     */
+    private List<PatientImportRowResultDto> insertBatch(ImportRun run, List<PendingRow> batch) {
+        Map<ContactField, Set<String>> active = new EnumMap<>(ContactField.class);
+        for (ContactField field : ContactField.values()) {
+            Set<String> values = batch.stream()
+                    .map(pendingRow -> field.value.apply(pendingRow.patient))
+                    .filter(value -> value != null && !value.isEmpty())
+                    .collect(Collectors.toSet());
+            active.put(field, findActive(field, values));
+        }
+
+        Map<ContactField, Map<String, PendingRow>> claimed = new EnumMap<>(ContactField.class);
+        for (ContactField field : ContactField.values()) {
+            claimed.put(field, new HashMap<>());
+        }
+        List<PendingRow> unique = new ArrayList<>(batch.size());
+        List<PendingRow> duplicates = new ArrayList<>();
+        for (PendingRow pendingRow : batch) {
+            for (ContactField field : ContactField.values()) {
+                String value = field.value.apply(pendingRow.patient);
+                if (value == null || value.isEmpty()) {
+                    continue;
+                }
+                Long earlierRow = run.seen.get(field).get(value);
+                PendingRow earlierInChunk = claimed.get(field).get(value);
+                if (earlierRow != null) {
+                    pendingRow.conflicts.add(String.format(IMPORT_DUPLICATE_IN_FILE,
+                            field.description.apply(pendingRow.patient), earlierRow));
+                } else if (active.get(field).contains(value)) {
+                    pendingRow.conflicts.add(String.format(IMPORT_DUPLICATE_IN_DATABASE,
+                            field.description.apply(pendingRow.patient)));
+                } else if (earlierInChunk != null) {
+                    pendingRow.earlierInChunk.put(field, earlierInChunk);
+                }
+            }
+            if (!pendingRow.conflicts.isEmpty() || !pendingRow.earlierInChunk.isEmpty()) {
+                duplicates.add(pendingRow);
+                continue;
+            }
+            for (ContactField field : ContactField.values()) {
+                String value = field.value.apply(pendingRow.patient);
+                if (value != null && !value.isEmpty()) {
+                    claimed.get(field).put(value, pendingRow);
+                }
+            }
+            unique.add(pendingRow);
+        }
+
+        List<PatientImportRowResultDto> results = new ArrayList<>(batch.size());
+        List<PendingRow> inserted = new ArrayList<>(unique.size());
+        if (!unique.isEmpty()) {
+            List<Long> ids = patientImportRepository.insertPatients(unique.stream()
+                    .map(pendingRow -> pendingRow.patient)
+                    .collect(Collectors.toList()));
+            for (int i = 0; i < unique.size(); i++) {
+                PendingRow pendingRow = unique.get(i);
+                Long id = ids.get(i);
+                if (id == null) {
+                    results.add(rejected(pendingRow.row, ImportRowStatus.DUPLICATE, List.of(IMPORT_INSERT_SKIPPED)));
+                    continue;
+                }
+                pendingRow.patientId = id;
+                inserted.add(pendingRow);
+                results.add(PatientImportRowResultDto.builder()
+                        .row(pendingRow.row)
+                        .status(ImportRowStatus.IMPORTED)
+                        .patientId(id)
+                        .build());
+            }
+        }
+        for (PendingRow pendingRow : duplicates) {
+            pendingRow.earlierInChunk.forEach((field, earlier) -> pendingRow.conflicts.add(earlier.patientId != null
+                    ? String.format(IMPORT_DUPLICATE_IN_FILE, field.description.apply(pendingRow.patient), earlier.row)
+                    : String.format(IMPORT_DUPLICATE_IN_DATABASE, field.description.apply(pendingRow.patient))));
+            results.add(rejected(pendingRow.row, ImportRowStatus.DUPLICATE, pendingRow.conflicts));
+        }
+
+        if (!inserted.isEmpty()) {
+            Map<Long, Long> addedPerFacility = new TreeMap<>();
+            inserted.forEach(pendingRow -> addedPerFacility.merge(pendingRow.patient.getFacilityId(), 1L, Long::sum));
+            // Ascending facility order keeps concurrent imports from deadlocking on the counter rows
+            addedPerFacility.forEach(facilityRepository::adjustPatientCount);
+            // Saved last: a store outside the database cannot be rolled back
+            LocalDateTime now = LocalDateTime.now();
+            auditLogStore.saveAll(inserted.stream()
+                    .map(pendingRow -> AuditLog.builder()
+                            .entityType(PATIENT_ENTITY_TYPE)
+                            .entityId(pendingRow.patientId)
+                            .action(IMPORT_ACTION)
+                            .newValue(AuditDiffUtils.snapshot(pendingRow.patient, objectMapper))
+                            .changedAt(now)
+                            .build())
+                    .collect(Collectors.toList()));
+        }
+        return results;
+    }
+
+    private Set<String> findActive(ContactField field, Collection<String> values) {
+        switch (field) {
+            case EMAIL:
+                return patientImportRepository.findActiveEmails(values);
+            case PHONE_NUMBER:
+                return patientImportRepository.findActivePhoneNumbers(values);
+            default:
+                return patientImportRepository.findActiveInsuranceNumbers(values);
+        }
+    }
+
+    private enum ContactField {
+        EMAIL(PatientDto::getEmail, PatientConflictService::emailField),
+        PHONE_NUMBER(PatientDto::getPhoneNumber, PatientConflictService::phoneNumberField),
+        INSURANCE_NUMBER(PatientDto::getInsuranceNumber, PatientConflictService::insuranceNumberField);
+
+        private final Function<PatientDto, String> value;
+        private final Function<PatientDto, String> description;
+
+        ContactField(Function<PatientDto, String> value, Function<PatientDto, String> description) {
+            this.value = value;
+            this.description = description;
+        }
+    }
+
+    private static PatientImportRowResultDto rejected(long row, ImportRowStatus status, List<String> errors) {
+        return PatientImportRowResultDto.builder()
+                .row(row)
+                .status(status)
+                .errors(errors)
+                .build();
+    }
+
+    private static class PendingRow {
+        private final long row;
+        private final PatientDto patient;
+        private final List<String> conflicts = new ArrayList<>();
+        private final Map<ContactField, PendingRow> earlierInChunk = new EnumMap<>(ContactField.class);
+        private Long patientId;
+
+        PendingRow(long row, PatientDto patient) {
+            this.row = row;
+            this.patient = patient;
+        }
+    }
+
+    private class ImportRun {
+        private final List<PatientImportRowResultDto> results = new ArrayList<>();
+        private final Map<Long, Boolean> facilities = new HashMap<>();
+        private final Map<ContactField, Map<String, Long>> seen = new EnumMap<>(ContactField.class);
+        private List<PendingRow> pending = new ArrayList<>(batchSize);
+
+        ImportRun() {
+            for (ContactField field : ContactField.values()) {
+                seen.put(field, new HashMap<>());
+            }
+        }
+
+        void reject(long row, ImportRowStatus status, List<String> errors) {
+            results.add(rejected(row, status, errors));
+        }
+
+        long count(ImportRowStatus status) {
+            return results.stream().filter(result -> result.getStatus() == status).count();
+        }
+    }
+}
@@ -1,25 +1,36 @@
 package com.healthcare.healthcare_system.service;
 
+import com.healthcare.healthcare_system.dto.CursorPage;
+import com.healthcare.healthcare_system.dto.KeysetCursor;
 import com.healthcare.healthcare_system.dto.PatientDto;
+import com.healthcare.healthcare_system.dto.PatientSearchCriteria;
 import com.healthcare.healthcare_system.exception.DuplicateResourceException;
 import com.healthcare.healthcare_system.exception.ResourceNotFoundException;
 import com.healthcare.healthcare_system.exception.ServiceException;
+import com.healthcare.healthcare_system.exception.ValidationException;
+import com.healthcare.healthcare_system.mapper.PatientMapper;
 import com.healthcare.healthcare_system.model.Facility;
 import com.healthcare.healthcare_system.model.Patient;
 import com.healthcare.healthcare_system.repository.FacilityRepository;
 import com.healthcare.healthcare_system.repository.PatientRepository;
+import com.healthcare.healthcare_system.repository.PatientSpecifications;
+import com.healthcare.healthcare_system.util.CursorUtils;
 import com.healthcare.healthcare_system.util.PatientUtils;
-import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDate;
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static com.healthcare.healthcare_system.util.MessageUtils.*;
 
@@ -30,32 +41,38 @@ import static com.healthcare.healthcare_system.util.MessageUtils.*;
 @RequiredArgsConstructor
 public class PatientService {
 
+    private static final String DEFAULT_CURSOR_SORT = "id";
+    private static final int DEFAULT_CURSOR_PAGE_SIZE = 20;
+    private static final Map<String, Function<Patient, Object>> CURSOR_SORT_KEYS = new LinkedHashMap<>();
+
+    static {
+        CURSOR_SORT_KEYS.put("id", Patient::getId);
+        CURSOR_SORT_KEYS.put("lastName", Patient::getLastName);
+    }
+
+    private static final Map<String, Function<PatientDto, String>> UNIQUE_CONSTRAINT_FIELDS = Map.of(
+            "uq_patients_email", PatientConflictService::emailField,
+            "uq_patients_phone_number", PatientConflictService::phoneNumberField,
+            "uq_patients_insurance_number", PatientConflictService::insuranceNumberField);
+
     private final PatientRepository patientRepository;
     private final FacilityRepository facilityRepository;
-    private final ModelMapper modelMapper;
+    private final PatientMapper patientMapper;
     private final AuditLogService auditLogService;
+    private final PatientConflictService patientConflictService;
 
     /**
-     * Configure model mapper.
-     */
-    @PostConstruct
-    public void configureModelMapper() {
-        PatientUtils.configurePatientModelMapper(modelMapper);
-    }
-
-    /**
-     * Gets all patients.
+     * Gets all patients matching every filter set on the criteria.
      *
      * @param pageable the pageable
-     * @param search the search
-     * @param dob the dob
-     * @param gender the gender
+     * @param criteria the criteria
      * @return the all patients
      */
-    public Page<PatientDto> getAllPatients(Pageable pageable, String search, LocalDate dob, String gender) {
+    public Page<PatientDto> getAllPatients(Pageable pageable, PatientSearchCriteria criteria) {
+        validateCriteria(criteria);
         try {
-            Page<Patient> patients = findPatientsByCriteria(pageable, search, dob, gender);
-            return PatientUtils.mapPatientPageToDto(patients, modelMapper);
+            Page<Patient> patients = findPatientsByCriteria(pageable, criteria);
+            return PatientUtils.mapPatientPageToDto(patients, patientMapper);
         } catch (Exception e) {
             throw new ServiceException("retrieving patients", PATIENT_ENTITY_TYPE, e);
         }
@@ -77,7 +94,7 @@ public class PatientService {
                     String.format(DELETED_PATIENT_ACCESS, id));
         }
 
-        return modelMapper.map(patient, PatientDto.class);
+        return patientMapper.toDto(patient);
     }
 
     /**
@@ -91,7 +108,7 @@ public class PatientService {
         try {
             validateFacilityExists(facilityId);
             Page<Patient> patients = patientRepository.findByFacilityId(facilityId, pageable);
-            return PatientUtils.mapPatientPageToDto(patients, modelMapper);
+            return PatientUtils.mapPatientPageToDto(patients, patientMapper);
         } catch (ResourceNotFoundException e) {
             throw new ResourceNotFoundException(
                     "Medical Facility",
@@ -105,6 +122,52 @@ public class PatientService {
         }
     }
 
+    /**
+     * Scroll patients matching the criteria with a keyset cursor instead of offset paging.
+     *
+     * @param cursor the continuation token, empty for the first slice
+     * @param pageable the pageable supplying slice size and initial sort
+     * @param criteria the criteria
+     * @return the cursor page
+     */
+    public CursorPage<PatientDto> scrollPatients(String cursor, Pageable pageable, PatientSearchCriteria criteria) {
+        validateCriteria(criteria);
+        try {
+            return scroll(criteria.isEmpty() ? null : PatientSpecifications.matching(criteria), cursor, pageable);
+        } catch (ValidationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ServiceException("retrieving patients", PATIENT_ENTITY_TYPE, e);
+        }
+    }
+
+    /**
+     * Scroll patients of a facility with a keyset cursor instead of offset paging.
+     *
+     * @param facilityId the facility id
+     * @param cursor the continuation token, empty for the first slice
+     * @param pageable the pageable supplying slice size and initial sort
+     * @return the cursor page
+     */
+    public CursorPage<PatientDto> scrollPatientsByFacility(Long facilityId, String cursor, Pageable pageable) {
+        try {
+            validateFacilityExists(facilityId);
+            return scroll(PatientSpecifications.hasFacility(facilityId), cursor, pageable);
+        } catch (ResourceNotFoundException e) {
+            throw new ResourceNotFoundException(
+                    "Medical Facility",
+                    facilityId);
+        } catch (ValidationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ServiceException(
+                    "retrieving facility patients",
+                    PATIENT_ENTITY_TYPE,
+                    e
+            );
+        }
+    }
+
     /**
      * Create patient patient dto.
      *
@@ -115,20 +178,15 @@ public class PatientService {
     public PatientDto createPatient(PatientDto patientDto) {
         try {
             Facility facility = findFacilityByIdOrThrow(patientDto.getFacilityId());
-            checkForDuplicatePatient(patientDto);
 
-            Patient patient = PatientUtils.mapToEntity(patientDto, modelMapper, facility);
-            Patient savedPatient = patientRepository.save(patient);
+            Patient patient = PatientUtils.mapToEntity(patientDto, patientMapper, facility);
+            Patient savedPatient = saveUnique(patient, null);
+            facilityRepository.adjustPatientCount(facility.getId(), 1);
 
-            auditLogService.logAudit(
-                    PATIENT_ENTITY_TYPE,
-                    savedPatient.getId(),
-                    "CREATE",
-                    null,
-                    savedPatient.toString()
-            );
+            PatientDto createdPatient = patientMapper.toDto(savedPatient);
+            auditLogService.logCreate(PATIENT_ENTITY_TYPE, savedPatient.getId(), createdPatient);
 
-            return modelMapper.map(savedPatient, PatientDto.class);
+            return createdPatient;
         } catch (ResourceNotFoundException e) {
             throw new ResourceNotFoundException(
                     "Medical Facility",
@@ -162,23 +220,17 @@ public class PatientService {
             Patient existingPatient = findPatientByIdOrThrow(id);
             Facility facility = findFacilityByIdOrThrow(patientDto.getFacilityId());
 
-            // Check for duplicates excluding the current patient
-            checkForDuplicatePatient(patientDto, id);
-
-            String oldValue = existingPatient.toString();
-            modelMapper.map(patientDto, existingPatient);
+            PatientDto previousPatient = patientMapper.toDto(existingPatient);
+            Long previousFacilityId = existingPatient.getFacility() != null ? existingPatient.getFacility().getId() : null;
+            patientMapper.updateEntity(patientDto, existingPatient);
             existingPatient.setFacility(facility);
-            Patient updatedPatient = patientRepository.save(existingPatient);
+            Patient updatedPatient = saveUnique(existingPatient, id);
+            moveFacilityPatientCount(previousFacilityId, facility.getId());
 
-            auditLogService.logAudit(
-                    PATIENT_ENTITY_TYPE,
-                    updatedPatient.getId(),
-                    "UPDATE",
-                    oldValue,
-                    updatedPatient.toString()
-            );
+            PatientDto patient = patientMapper.toDto(updatedPatient);
+            auditLogService.logUpdate(PATIENT_ENTITY_TYPE, updatedPatient.getId(), previousPatient, patient);
 
-            return modelMapper.map(updatedPatient, PatientDto.class);
+            return patient;
         } catch (ResourceNotFoundException | DuplicateResourceException e) {
             throw e;
         } catch (Exception e) {
@@ -199,13 +251,7 @@ public class PatientService {
         try {
             Patient patient = findPatientByIdOrThrow(id);
             performSoftDelete(patient);
-            auditLogService.logAudit(
-                    PATIENT_ENTITY_TYPE,
-                    patient.getId(),
-                    "DELETE",
-                    patient.toString(),
-                    null
-            );
+            auditLogService.logDelete(PATIENT_ENTITY_TYPE, patient.getId());
         } catch (ResourceNotFoundException e) {
             throw e;
         } catch (Exception e) {
@@ -216,78 +262,114 @@ public class PatientService {
         }
     }
 
-    private void checkForDuplicatePatient(PatientDto patientDto) {
-        checkForDuplicatePatient(patientDto, null);
-    }
-
-    private void checkForDuplicatePatient(PatientDto patientDto, Long excludePatientId) {
-        List<String> conflictingFields = new ArrayList<>();
-
-        // Check for duplicate email
-        if (patientDto.getEmail() != null && !patientDto.getEmail().isEmpty()) {
-            boolean emailExists = excludePatientId != null ?
-                    patientRepository.existsByEmailAndIdNotAndDeletedFalse(patientDto.getEmail(), excludePatientId) :
-                    patientRepository.existsByEmailAndDeletedFalse(patientDto.getEmail());
-            if (emailExists) {
-                conflictingFields.add("email address '" + patientDto.getEmail() + "'");
+    /**
+     * Save and flush so the partial unique indexes on email, phone number and insurance number reject a duplicate
+     * here rather than at commit, then describe every conflicting field the way the old pre-checks did.
+     */
+    private Patient saveUnique(Patient patient, Long excludePatientId) {
+        try {
+            return patientRepository.saveAndFlush(patient);
+        } catch (DataIntegrityViolationException e) {
+            Function<PatientDto, String> violatedField = UNIQUE_CONSTRAINT_FIELDS.get(violatedConstraint(e));
+            if (violatedField == null) {
+                throw e;
             }
-        }
-
-        // Check for duplicate phone number
-        if (patientDto.getPhoneNumber() != null && !patientDto.getPhoneNumber().isEmpty()) {
-            boolean phoneExists = excludePatientId != null ?
-                    patientRepository.existsByPhoneNumberAndIdNotAndDeletedFalse(patientDto.getPhoneNumber(), excludePatientId) :
-                    patientRepository.existsByPhoneNumberAndDeletedFalse(patientDto.getPhoneNumber());
-            if (phoneExists) {
-                conflictingFields.add("phone number '" + patientDto.getPhoneNumber() + "'");
+            PatientDto patientDto = patientMapper.toDto(patient);
+            List<String> conflictingFields = patientConflictService.findConflictingFields(patientDto, excludePatientId);
+            if (conflictingFields.isEmpty()) {
+                conflictingFields = List.of(violatedField.apply(patientDto));
             }
+            throw duplicatePatient(conflictingFields);
         }
+    }
 
-        // Check for duplicate insurance number
-        if (patientDto.getInsuranceNumber() != null && !patientDto.getInsuranceNumber().isEmpty()) {
-            boolean insuranceNumberExists = excludePatientId != null ?
-                    patientRepository.existsByInsuranceNumberAndIdNotAndDeletedFalse(patientDto.getInsuranceNumber(), excludePatientId) :
-                    patientRepository.existsByInsuranceNumberAndDeletedFalse(patientDto.getInsuranceNumber());
-            if (insuranceNumberExists) {
-                conflictingFields.add("insurance number '" + patientDto.getInsuranceNumber() + "'");
+    private String violatedConstraint(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation && violation.getConstraintName() != null) {
+                return violation.getConstraintName().toLowerCase();
             }
         }
+        return null;
+    }
 
-        if (!conflictingFields.isEmpty()) {
-            String fieldsList = String.join(", ", conflictingFields);
-            if (conflictingFields.size() > 1) {
-                // Replace the last comma with " and"
-                int lastCommaIndex = fieldsList.lastIndexOf(",");
-                if (lastCommaIndex != -1) {
-                    fieldsList = fieldsList.substring(0, lastCommaIndex) + " and" + fieldsList.substring(lastCommaIndex + 1);
-                }
+    private DuplicateResourceException duplicatePatient(List<String> conflictingFields) {
+        String fieldsList = String.join(", ", conflictingFields);
+        if (conflictingFields.size() > 1) {
+            // Replace the last comma with " and"
+            int lastCommaIndex = fieldsList.lastIndexOf(",");
+            if (lastCommaIndex != -1) {
+                fieldsList = fieldsList.substring(0, lastCommaIndex) + " and" + fieldsList.substring(lastCommaIndex + 1);
             }
-            throw new DuplicateResourceException("",
-                    String.format("Another patient record exists with the same %s. %s",
-                            fieldsList,
-                            "Please verify the patient details or contact support if you need to merge records."),
-                    PATIENT_ENTITY_TYPE);
         }
+        return new DuplicateResourceException("",
+                String.format("Another patient record exists with the same %s. %s",
+                        fieldsList,
+                        "Please verify the patient details or contact support if you need to merge records."),
+                PATIENT_ENTITY_TYPE);
     }
 
-    private Page<Patient> findPatientsByCriteria(Pageable pageable, String search, LocalDate dob, String gender) {
+    private Page<Patient> findPatientsByCriteria(Pageable pageable, PatientSearchCriteria criteria) {
         try {
-            if (search != null) {
-                return patientRepository.findByLastNameContainingIgnoreCaseOrFirstNameContainingIgnoreCase(
-                        search, search, pageable);
-            }
-            if (dob != null) {
-                return patientRepository.findByDateOfBirth(dob, pageable);
-            }
-            if (gender != null) {
-                return patientRepository.findByGender(gender, pageable);
+            if (criteria.isEmpty()) {
+                return patientRepository.findAll(pageable);
             }
-            return patientRepository.findAll(pageable);
+            return patientRepository.findAll(PatientSpecifications.matching(criteria), pageable);
         } catch (Exception e) {
             throw new RuntimeException("Failed to search patients. Please check your search criteria.", e);
         }
     }
 
+    private void validateCriteria(PatientSearchCriteria criteria) {
+        if (criteria.getDobFrom() != null && criteria.getDobTo() != null
+                && criteria.getDobFrom().isAfter(criteria.getDobTo())) {
+            throw new ValidationException("dobFrom", INVALID_DOB_RANGE, PATIENT_ENTITY_TYPE);
+        }
+    }
+
+    private CursorPage<PatientDto> scroll(Specification<Patient> filter, String cursor, Pageable pageable) {
+        KeysetCursor after = null;
+        String sortProperty = DEFAULT_CURSOR_SORT;
+        Sort.Direction direction = Sort.Direction.ASC;
+
+        if (cursor != null && !cursor.isEmpty()) {
+            after = CursorUtils.decode(cursor, PATIENT_ENTITY_TYPE);
+            sortProperty = after.getSortProperty();
+            direction = after.getDirection();
+        } else if (pageable.getSort().isSorted()) {
+            Sort.Order order = pageable.getSort().iterator().next();
+            sortProperty = order.getProperty();
+            direction = order.getDirection();
+        }
+
+        Function<Patient, Object> sortKey = CURSOR_SORT_KEYS.get(sortProperty);
+        if (sortKey == null) {
+            throw new ValidationException("sort",
+                    String.format(UNSUPPORTED_CURSOR_SORT, String.join(", ", CURSOR_SORT_KEYS.keySet())),
+                    PATIENT_ENTITY_TYPE);
+        }
+
+        int size = pageable.isPaged() ? pageable.getPageSize() : DEFAULT_CURSOR_PAGE_SIZE;
+        List<Patient> patients = patientRepository.scroll(filter, sortProperty, direction, after, size + 1);
+        boolean hasNext = patients.size() > size;
+        if (hasNext) {
+            patients = patients.subList(0, size);
+        }
+
+        String nextCursor = null;
+        if (hasNext) {
+            Patient last = patients.get(patients.size() - 1);
+            nextCursor = CursorUtils.encode(new KeysetCursor(
+                    sortProperty, direction, String.valueOf(sortKey.apply(last)), last.getId()));
+        }
+
+        return CursorPage.<PatientDto>builder()
+                .content(patients.stream().map(patientMapper::toDto).collect(Collectors.toList()))
+                .size(patients.size())
+                .hasNext(hasNext)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
     private Patient findPatientByIdOrThrow(Long id) {
         Patient patient = patientRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException(
@@ -314,10 +396,23 @@ public class PatientService {
         }
     }
 
+    private void moveFacilityPatientCount(Long fromFacilityId, Long toFacilityId) {
+        if (toFacilityId.equals(fromFacilityId)) {
+            return;
+        }
+        if (fromFacilityId != null) {
+            facilityRepository.adjustPatientCount(fromFacilityId, -1);
+        }
+        facilityRepository.adjustPatientCount(toFacilityId, 1);
+    }
+
     private void performSoftDelete(Patient patient) {
         try {
             patient.setDeleted(true);
             patientRepository.save(patient);
+            if (patient.getFacility() != null) {
+                facilityRepository.adjustPatientCount(patient.getFacility().getId(), -1);
+            }
         } catch (Exception e) {
             throw new RuntimeException(
                     String.format("Failed to soft delete patient with ID: %d", patient.getId()),
@@ -0,0 +1,169 @@
+package com.healthcare.healthcare_system.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Field-level change capture for audit values. A DTO is flattened to a JSON object of its non-null fields; a
+ * creation is recorded as that object, and an update as two objects holding only the fields that changed, with
+ * {@code null} for a field that was unset or cleared. Replaying those objects in order rebuilds the DTO.
+ */
+public class AuditDiffUtils {
+    /**
+     * Fields that identify the record or are derived from other tables, so they are never recorded.
+     */
+    private static final Set<String> IGNORED_FIELDS = Set.of("id", "patientCount");
+
+    private AuditDiffUtils() {
+    }
+
+    /**
+     * The changed fields of an update.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class FieldChanges {
+        private final ObjectNode oldValues;
+        private final ObjectNode newValues;
+
+        /**
+         * Is empty.
+         *
+         * @return true when no field changed
+         */
+        public boolean isEmpty() {
+            return newValues.isEmpty();
+        }
+    }
+
+    /**
+     * The recorded fields of a DTO.
+     *
+     * @param dto the dto
+     * @param objectMapper the object mapper
+     * @return the non-null fields, without ignored ones
+     */
+    public static ObjectNode fields(Object dto, ObjectMapper objectMapper) {
+        ObjectNode fields = objectMapper.valueToTree(dto);
+        Iterator<Map.Entry<String, JsonNode>> iterator = fields.fields();
+        while (iterator.hasNext()) {
+            Map.Entry<String, JsonNode> field = iterator.next();
+            if (IGNORED_FIELDS.contains(field.getKey()) || field.getValue().isNull()) {
+                iterator.remove();
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Full snapshot of a DTO as JSON.
+     *
+     * @param dto the dto
+     * @param objectMapper the object mapper
+     * @return the snapshot
+     */
+    public static String snapshot(Object dto, ObjectMapper objectMapper) {
+        return write(fields(dto, objectMapper), objectMapper);
+    }
+
+    /**
+     * Compare two states of a DTO.
+     *
+     * @param before the state before the change
+     * @param after the state after the change
+     * @param objectMapper the object mapper
+     * @return the changed fields
+     */
+    public static FieldChanges diff(Object before, Object after, ObjectMapper objectMapper) {
+        ObjectNode oldFields = fields(before, objectMapper);
+        ObjectNode newFields = fields(after, objectMapper);
+        ObjectNode oldValues = objectMapper.createObjectNode();
+        ObjectNode newValues = objectMapper.createObjectNode();
+
+        Set<String> names = new TreeSet<>();
+        oldFields.fieldNames().forEachRemaining(names::add);
+        newFields.fieldNames().forEachRemaining(names::add);
+        for (String name : names) {
+            JsonNode oldValue = oldFields.get(name);
+            JsonNode newValue = newFields.get(name);
+            if (!Objects.equals(oldValue, newValue)) {
+                oldValues.set(name, oldValue != null ? oldValue : NullNode.getInstance());
+                newValues.set(name, newValue != null ? newValue : NullNode.getInstance());
+            }
+        }
+        return new FieldChanges(oldValues, newValues);
+    }
+
+    /**
+     * Apply a recorded value to a reconstructed state. Values that are not JSON objects, such as audit rows written
+     * before field-level capture, are ignored.
+     *
+     * @param state the state to update
+     * @param recorded the recorded JSON value, may be null
+     * @param objectMapper the object mapper
+     */
+    public static void apply(ObjectNode state, String recorded, ObjectMapper objectMapper) {
+        if (recorded == null) {
+            return;
+        }
+        try {
+            JsonNode changes = objectMapper.readTree(recorded);
+            if (changes.isObject()) {
+                changes.fields().forEachRemaining(field -> {
+                    if (field.getValue().isNull()) {
+                        state.remove(field.getKey());
+                    } else {
+                        state.set(field.getKey(), field.getValue());
+                    }
+                });
+            }
+        } catch (JsonProcessingException e) {
+            // Not structured, nothing to replay
+        }
+    }
+
+    /**
+     * Is structured.
+     *
+     * @param recorded the recorded JSON value, may be null
+     * @param objectMapper the object mapper
+     * @return true when the value is a JSON object of fields
+     */
+    public static boolean isStructured(String recorded, ObjectMapper objectMapper) {
+        if (recorded == null) {
+            return false;
+        }
+        try {
+            return objectMapper.readTree(recorded).isObject();
+        } catch (JsonProcessingException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Write a JSON value.
+     *
+     * @param value the value
+     * @param objectMapper the object mapper
+     * @return the JSON text
+     */
+    public static String write(JsonNode value, ObjectMapper objectMapper) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.healthcare.healthcare_system.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The stored form of audit values. A value is its UTF-8 JSON, unless it is at least the threshold long and deflating
+ * it saves space: then it is a {@link #DEFLATE_V1} marker byte followed by raw deflate data. JSON text never starts
+ * with that byte, so both forms, and every value written before compression existed, decode the same way.
+ * <p>
+ * Audit values are small, far below the 2 kB where PostgreSQL compresses on its own, and deflate alone gains little
+ * on a few hundred bytes. The preset dictionary holds the field names and common values of audited patients and
+ * facilities, which is what makes those snapshots compress. Changing it needs a new marker, so that values written
+ * with the old one still decode.
+ */
+public class AuditValueCodec {
+    /**
+     * Marks a value deflated with {@link #DICTIONARY_V1}.
+     */
+    public static final byte DEFLATE_V1 = 1;
+
+    // Most frequent strings last, where deflate reaches them with the shortest distances
+    private static final byte[] DICTIONARY_V1 = ("\"type\":\"Hospital\",\"Clinic\",\"Diagnostic Center\","
+            + "\"Pharmacy\",\"Nursing Home\",\"Rehabilitation Center\",\"Urgent Care\",\"Specialty Center\","
+            + "\"Dental Clinic\",\"Primary Care Facility\",\"Medical Laboratory\",\"Imaging Center\","
+            + "{\"name\":\"\",\"patientCount\":0,"
+            + "Metropolis\",Downtown\",Sunrise\",Greenfield\",Central\",Hillside\",Riverside\",Coastal\",Midtown\","
+            + " Main St, Oak Ave, Pine Rd, Elm St, Maple Dr, Cedar Ln, Hilltop Blvd, Valley View, Ocean Dr, "
+            + "\"gender\":\"Other\",\"gender\":\"Female\",\"gender\":\"Male\",\"dateOfBirth\":\"19"
+            + "{\"facilityId\":1,\"firstName\":\"\",\"lastName\":\"\",\"dateOfBirth\":\"19\","
+            + "\"address\":\"\",\"phoneNumber\":\"(\",\"email\":\"@example.com\",\"insuranceNumber\":\"INS")
+            .getBytes(StandardCharsets.UTF_8);
+
+    // A Deflater holds a few hundred kB of native state, so each thread keeps one
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(
+            () -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private AuditValueCodec() {
+    }
+
+    /**
+     * Encode a value for storage.
+     *
+     * @param json the value as JSON, or null
+     * @param threshold the length in bytes from which the value is deflated
+     * @return the stored form, or null
+     */
+    public static byte[] encode(String json, int threshold) {
+        if (json == null) {
+            return null;
+        }
+        byte[] raw = json.getBytes(StandardCharsets.UTF_8);
+        if (raw.length < threshold) {
+            return raw;
+        }
+
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setDictionary(DICTIONARY_V1);
+        deflater.setInput(raw);
+        deflater.finish();
+        // Only worth keeping when it is smaller, marker included
+        byte[] deflated = new byte[raw.length];
+        deflated[0] = DEFLATE_V1;
+        int length = 1;
+        while (!deflater.finished() && length < deflated.length) {
+            length += deflater.deflate(deflated, length, deflated.length - length);
+        }
+        return deflater.finished() && length < raw.length ? Arrays.copyOf(deflated, length) : raw;
+    }
+
+    /**
+     * Decode a stored value.
+     *
+     * @param stored the stored form, or null
+     * @return the value as JSON, or null
+     */
+    public static String decode(byte[] stored) {
+        if (stored == null) {
+            return null;
+        }
+        if (stored.length == 0 || stored[0] != DEFLATE_V1) {
+            return new String(stored, StandardCharsets.UTF_8);
+        }
+
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        // Raw deflate data does not ask for its dictionary, so it is set up front
+        inflater.setDictionary(DICTIONARY_V1);
+        inflater.setInput(stored, 1, stored.length - 1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(stored.length * 3);
+        byte[] buffer = new byte[512];
+        try {
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && inflater.needsInput()) {
+                    throw new IllegalArgumentException("Truncated audit value");
+                }
+                out.write(buffer, 0, length);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt audit value", e);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,136 @@
+package com.healthcare.healthcare_system.util;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded multi-producer queue on a fixed array, using one sequence number per slot so that producers and the
+ * consumer only ever contend on a compare-and-set of the enqueue or dequeue position (D. Vyukov's bounded queue).
+ * {@link #offer} fails instead of waiting when the queue is full, leaving the overflow policy to the caller.
+ *
+ * @param <E> the element type
+ */
+public class BoundedRingQueue<E> {
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong enqueuePosition = new AtomicLong();
+    private final AtomicLong dequeuePosition = new AtomicLong();
+
+    /**
+     * Instantiates a new Bounded ring queue.
+     *
+     * @param capacity the requested capacity, rounded up to the next power of two
+     */
+    public BoundedRingQueue(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.mask = size - 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Add an element if there is room.
+     *
+     * @param element the element, not null
+     * @return false when the queue is full
+     */
+    public boolean offer(E element) {
+        long position = enqueuePosition.get();
+        while (true) {
+            int slot = (int) (position & mask);
+            long difference = sequences.get(slot) - position;
+            if (difference == 0) {
+                if (enqueuePosition.compareAndSet(position, position + 1)) {
+                    elements.set(slot, element);
+                    sequences.set(slot, position + 1);
+                    return true;
+                }
+                position = enqueuePosition.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = enqueuePosition.get();
+            }
+        }
+    }
+
+    /**
+     * Remove the oldest element.
+     *
+     * @return the element, or null when the queue is empty
+     */
+    public E poll() {
+        long position = dequeuePosition.get();
+        while (true) {
+            int slot = (int) (position & mask);
+            long difference = sequences.get(slot) - (position + 1);
+            if (difference == 0) {
+                if (dequeuePosition.compareAndSet(position, position + 1)) {
+                    E element = elements.get(slot);
+                    elements.set(slot, null);
+                    sequences.set(slot, position + mask + 1);
+                    return element;
+                }
+                position = dequeuePosition.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = dequeuePosition.get();
+            }
+        }
+    }
+
+    /**
+     * Move up to {@code maxElements} elements into a collection.
+     *
+     * @param target the target collection
+     * @param maxElements the maximum number of elements to move
+     * @return the number of elements moved
+     */
+    public int drainTo(Collection<? super E> target, int maxElements) {
+        int drained = 0;
+        E element;
+        while (drained < maxElements && (element = poll()) != null) {
+            target.add(element);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * Approximate number of queued elements.
+     *
+     * @return the size
+     */
+    public int size() {
+        long size = enqueuePosition.get() - dequeuePosition.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    /**
+     * Is empty.
+     *
+     * @return true when nothing is queued
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * The actual capacity.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,98 @@
+package com.healthcare.healthcare_system.util;
+
+import com.healthcare.healthcare_system.dto.KeysetCursor;
+import com.healthcare.healthcare_system.exception.ValidationException;
+import org.springframework.data.domain.Sort;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Encoding and decoding of opaque keyset cursors.
+ */
+public class CursorUtils {
+    private static final String SEPARATOR = ":";
+
+    private CursorUtils() {
+    }
+
+    /**
+     * Encode a cursor into an opaque url-safe token.
+     *
+     * @param cursor the cursor
+     * @return the token
+     */
+    public static String encode(KeysetCursor cursor) {
+        String raw = String.join(SEPARATOR,
+                urlEncode(cursor.getSortProperty()),
+                cursor.getDirection().name(),
+                urlEncode(cursor.getSortValue() != null ? cursor.getSortValue() : ""),
+                String.valueOf(cursor.getId()));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a token produced by {@link #encode(KeysetCursor)}.
+     *
+     * @param token the token
+     * @param entityType the entity type, used in validation errors
+     * @return the cursor
+     */
+    public static KeysetCursor decode(String token, String entityType) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(SEPARATOR, -1);
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("Unexpected cursor layout");
+            }
+            return new KeysetCursor(
+                    urlDecode(parts[0]),
+                    Sort.Direction.valueOf(parts[1]),
+                    urlDecode(parts[2]),
+                    Long.parseLong(parts[3]));
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("cursor", MessageUtils.INVALID_CURSOR, entityType);
+        }
+    }
+
+    /**
+     * Convert the string form of a sort key back to the attribute type.
+     *
+     * @param value the value
+     * @param type the attribute java type
+     * @param entityType the entity type, used in validation errors
+     * @return the typed value
+     */
+    public static Comparable<?> parseSortValue(String value, Class<?> type, String entityType) {
+        try {
+            if (String.class.equals(type)) {
+                return value;
+            }
+            if (Long.class.equals(type) || long.class.equals(type)) {
+                return Long.valueOf(value);
+            }
+            if (LocalDate.class.equals(type)) {
+                return LocalDate.parse(value);
+            }
+            if (LocalDateTime.class.equals(type)) {
+                return LocalDateTime.parse(value);
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new ValidationException("cursor", MessageUtils.INVALID_CURSOR, entityType);
+        }
+        throw new IllegalArgumentException("Unsupported keyset sort type " + type);
+    }
+
+    private static String urlEncode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static String urlDecode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+}
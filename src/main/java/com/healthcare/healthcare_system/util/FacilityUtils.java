@@ -2,9 +2,8 @@ package com.healthcare.healthcare_system.util;
 
 
 import com.healthcare.healthcare_system.dto.FacilityDto;
+import com.healthcare.healthcare_system.mapper.FacilityMapper;
 import com.healthcare.healthcare_system.model.Facility;
-import com.healthcare.healthcare_system.repository.PatientRepository;
-import org.modelmapper.ModelMapper;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 
@@ -23,43 +22,37 @@ public class FacilityUtils {
      * Convert to dto facility dto.
      *
      * @param facility the facility
-     * @param modelMapper the model mapper
-     * @param patientRepository the patient repository
+     * @param facilityMapper the facility mapper
      * @return the facility dto
      */
-    public static FacilityDto convertToDto(Facility facility, ModelMapper modelMapper, PatientRepository patientRepository) {
-        FacilityDto dto = modelMapper.map(facility, FacilityDto.class);
-        dto.setPatientCount(patientRepository.countByFacilityId(facility.getId()));
-        return dto;
+    public static FacilityDto convertToDto(Facility facility, FacilityMapper facilityMapper) {
+        return facilityMapper.toDto(facility);
     }
 
     /**
      * Convert to dto page page.
      *
      * @param facilities the facilities
-     * @param modelMapper the model mapper
-     * @param patientRepository the patient repository
+     * @param facilityMapper the facility mapper
      * @return the page
      */
-    public static Page<FacilityDto> convertToDtoPage(Page<Facility> facilities, ModelMapper modelMapper, PatientRepository patientRepository) {
-        List<FacilityDto> dtos = facilities.getContent().stream()
-                .map(facility -> convertToDto(facility, modelMapper, patientRepository))
-                .collect(Collectors.toList());
+    public static Page<FacilityDto> convertToDtoPage(Page<Facility> facilities, FacilityMapper facilityMapper) {
+        List<FacilityDto> dtos = convertToDtoList(facilities.getContent(), facilityMapper);
 
         return new PageImpl<>(dtos, facilities.getPageable(), facilities.getTotalElements());
     }
 
     /**
-     * Convert to dto list list.
+     * Convert to dto list list. Patient counts come from the maintained {@code patient_count} column, so no query is
+     * needed beyond loading the facilities.
      *
      * @param facilities the facilities
-     * @param modelMapper the model mapper
-     * @param patientRepository the patient repository
+     * @param facilityMapper the facility mapper
      * @return the list
      */
-    public static List<FacilityDto> convertToDtoList(List<Facility> facilities, ModelMapper modelMapper, PatientRepository patientRepository) {
+    public static List<FacilityDto> convertToDtoList(List<Facility> facilities, FacilityMapper facilityMapper) {
         return facilities.stream()
-                .map(facility -> convertToDto(facility, modelMapper, patientRepository))
+                .map(facilityMapper::toDto)
                 .collect(Collectors.toList());
     }
 }
@@ -22,6 +22,10 @@ public class MessageUtils {
      * The constant DELETE_ACTION.
      */
     public static final String DELETE_ACTION = "DELETE";
+    /**
+     * The constant IMPORT_ACTION.
+     */
+    public static final String IMPORT_ACTION = "IMPORT";
     /**
      * The constant DATABASE_ERROR.
      */
@@ -80,6 +84,10 @@ public class MessageUtils {
      * The constant FACILITY_PATIENT_COUNT_ERROR.
      */
     public static final String FACILITY_PATIENT_COUNT_ERROR = "Failed to retrieve facilities with patient count";
+    /**
+     * The constant PATIENT_COUNT_RECONCILE_ERROR.
+     */
+    public static final String PATIENT_COUNT_RECONCILE_ERROR = "Failed to reconcile facility patient counts";
 
     /**
      * The constant PATIENT_ENTITY_TYPE.
@@ -118,6 +126,114 @@ public class MessageUtils {
      * The constant PATIENT_DELETE_FAILED.
      */
     public static final String PATIENT_DELETE_FAILED = "We couldn't archive patient ID %d due to: %s. The record remains active. Please try again or contact system administration for assistance.";
+    /**
+     * The constant INVALID_CURSOR.
+     */
+    public static final String INVALID_CURSOR = "The cursor is malformed or was issued for a different listing. Start again from the first page.";
+    /**
+     * The constant UNSUPPORTED_CURSOR_SORT.
+     */
+    public static final String UNSUPPORTED_CURSOR_SORT = "Cursor paging only supports sorting by %s.";
+    /**
+     * The constant INVALID_DOB_RANGE.
+     */
+    public static final String INVALID_DOB_RANGE = "The date of birth range is empty: dobFrom must not be after dobTo.";
+    /**
+     * The constant SEARCH_TERM_TOO_SHORT.
+     */
+    public static final String SEARCH_TERM_TOO_SHORT = "Enter at least %d characters to search by name.";
+    /**
+     * The constant NAME_SEARCH_ERROR.
+     */
+    public static final String NAME_SEARCH_ERROR = "Failed to search by name";
+    /**
+     * The constant PATIENT_IMPORT_ERROR.
+     */
+    public static final String PATIENT_IMPORT_ERROR = "Failed to import patients";
+    /**
+     * The constant IMPORT_MALFORMED_ROW.
+     */
+    public static final String IMPORT_MALFORMED_ROW = "The row could not be read: %s";
+    /**
+     * The constant IMPORT_DUPLICATE_IN_DATABASE.
+     */
+    public static final String IMPORT_DUPLICATE_IN_DATABASE = "Another patient record exists with the same %s.";
+    /**
+     * The constant IMPORT_DUPLICATE_IN_FILE.
+     */
+    public static final String IMPORT_DUPLICATE_IN_FILE = "The %s is already used by row %d of this import.";
+    /**
+     * The constant IMPORT_INSERT_SKIPPED.
+     */
+    public static final String IMPORT_INSERT_SKIPPED = "Another patient record with the same email address, phone number or insurance number was saved while this import was running.";
+    /**
+     * The constant IMPORT_CHUNK_FAILED.
+     */
+    public static final String IMPORT_CHUNK_FAILED = "The rows %d to %d could not be saved and were not imported: %s";
+    /**
+     * The constant AUDIT_LOG_ENTITY.
+     */
+    public static final String AUDIT_LOG_ENTITY = "AuditLog";
+    /**
+     * The constant AUDIT_OUTBOX_RELAY_ERROR.
+     */
+    public static final String AUDIT_OUTBOX_RELAY_ERROR = "Failed to relay audit events from the outbox";
+    /**
+     * The constant AUDIT_RECONSTRUCT_UNSUPPORTED.
+     */
+    public static final String AUDIT_RECONSTRUCT_UNSUPPORTED = "only Patient and Facility history can be reconstructed, not %s";
+    /**
+     * The constant AUDIT_RECONSTRUCT_ERROR.
+     */
+    public static final String AUDIT_RECONSTRUCT_ERROR = "Failed to reconstruct entity from audit history";
+    /**
+     * The constant INVALID_AUDIT_DATE_RANGE.
+     */
+    public static final String INVALID_AUDIT_DATE_RANGE = "The date range is empty: start must not be after end.";
+    /**
+     * The constant AUDIT_ARCHIVE_ERROR.
+     */
+    public static final String AUDIT_ARCHIVE_ERROR = "Failed to archive audit log partition %s";
+    /**
+     * The constant AUDIT_RESTORE_ERROR.
+     */
+    public static final String AUDIT_RESTORE_ERROR = "Failed to restore audit log archive %s";
+    /**
+     * The constant AUDIT_PARTITION_ERROR.
+     */
+    public static final String AUDIT_PARTITION_ERROR = "Failed to create audit log partitions";
+    /**
+     * The constant INVALID_AUDIT_ARCHIVE.
+     */
+    public static final String INVALID_AUDIT_ARCHIVE = "must name an archive like audit_log_y2024m01.csv.gz";
+    /**
+     * The constant AUDIT_ARCHIVE_RESOURCE.
+     */
+    public static final String AUDIT_ARCHIVE_RESOURCE = "audit log archive %s";
+    /**
+     * The constant AUDIT_PARTITION_EXISTS.
+     */
+    public static final String AUDIT_PARTITION_EXISTS = "names a month that is already in the audit log: %s";
+    /**
+     * The constant AUDIT_SEGMENT_OPEN_ERROR.
+     */
+    public static final String AUDIT_SEGMENT_OPEN_ERROR = "Failed to open audit segments in %s";
+    /**
+     * The constant AUDIT_SEGMENT_WRITE_ERROR.
+     */
+    public static final String AUDIT_SEGMENT_WRITE_ERROR = "Failed to append to audit segment %s";
+    /**
+     * The constant AUDIT_SEGMENT_COMPACT_ERROR.
+     */
+    public static final String AUDIT_SEGMENT_COMPACT_ERROR = "Failed to compact audit segments %s";
+    /**
+     * The constant AUDIT_ROLLUP_READ_ERROR.
+     */
+    public static final String AUDIT_ROLLUP_READ_ERROR = "Failed to read audit rollups";
+    /**
+     * The constant AUDIT_ROLLUP_BACKFILL_ERROR.
+     */
+    public static final String AUDIT_ROLLUP_BACKFILL_ERROR = "Failed to rebuild audit rollups";
     /**
      * The constant SEARCH_FAILED.
      */
@@ -0,0 +1,17 @@
+package com.healthcare.healthcare_system.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+import java.io.IOException;
+
+/**
+ * Reads any JSON value into a string holding its JSON text, the counterpart of {@code @JsonRawValue}.
+ */
+public class RawJsonDeserializer extends JsonDeserializer<String> {
+    @Override
+    public String deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        return parser.readValueAsTree().toString();
+    }
+}
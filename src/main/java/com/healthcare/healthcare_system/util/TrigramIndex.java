@@ -0,0 +1,151 @@
+package com.healthcare.healthcare_system.util;
+
+import com.healthcare.healthcare_system.dto.NameMatch;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-process inverted index from trigrams to record ids. Trigrams are extracted the way {@code pg_trgm} does it
+ * (lower case, words padded with two leading and one trailing blank) and a record matches when the search term
+ * is a substring of one of its names or when enough of the term's trigrams occur in that name, which
+ * approximates {@code word_similarity} with the default 0.6 threshold.
+ */
+public class TrigramIndex {
+    /**
+     * The pg_trgm default for {@code pg_trgm.word_similarity_threshold}.
+     */
+    public static final double WORD_SIMILARITY_THRESHOLD = 0.6;
+
+    private final Map<String, Set<Long>> postings = new HashMap<>();
+    private final Map<Long, List<String>> names = new HashMap<>();
+
+    /**
+     * Add or replace the names of a record.
+     *
+     * @param id the id
+     * @param values the names, null entries are ignored
+     */
+    public synchronized void put(Long id, String... values) {
+        remove(id);
+        List<String> normalized = new ArrayList<>();
+        for (String value : values) {
+            if (value != null && !value.isBlank()) {
+                normalized.add(value.toLowerCase(Locale.ROOT));
+            }
+        }
+        names.put(id, normalized);
+        for (String value : normalized) {
+            for (String trigram : trigrams(value)) {
+                postings.computeIfAbsent(trigram, key -> new HashSet<>()).add(id);
+            }
+        }
+    }
+
+    /**
+     * Remove a record.
+     *
+     * @param id the id
+     */
+    public synchronized void remove(Long id) {
+        List<String> previous = names.remove(id);
+        if (previous == null) {
+            return;
+        }
+        for (String value : previous) {
+            for (String trigram : trigrams(value)) {
+                Set<Long> ids = postings.get(trigram);
+                if (ids != null) {
+                    ids.remove(id);
+                    if (ids.isEmpty()) {
+                        postings.remove(trigram);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove every record.
+     */
+    public synchronized void clear() {
+        postings.clear();
+        names.clear();
+    }
+
+    /**
+     * Search list, best match first and ties broken by id.
+     *
+     * @param term the term
+     * @param limit the maximum number of matches
+     * @return the matches
+     */
+    public synchronized List<NameMatch> search(String term, int limit) {
+        String normalized = term.toLowerCase(Locale.ROOT).trim();
+        Set<String> termTrigrams = trigrams(normalized);
+        if (termTrigrams.isEmpty()) {
+            return List.of();
+        }
+
+        Set<Long> candidates = new HashSet<>();
+        for (String trigram : termTrigrams) {
+            candidates.addAll(postings.getOrDefault(trigram, Set.of()));
+        }
+
+        List<NameMatch> matches = new ArrayList<>();
+        for (Long id : candidates) {
+            double best = 0;
+            boolean contains = false;
+            for (String value : names.get(id)) {
+                best = Math.max(best, wordSimilarity(termTrigrams, trigrams(value)));
+                contains |= value.contains(normalized);
+            }
+            if (contains || best >= WORD_SIMILARITY_THRESHOLD) {
+                matches.add(new NameMatch(id, best));
+            }
+        }
+
+        matches.sort(Comparator.comparingDouble(NameMatch::getScore).reversed().thenComparing(NameMatch::getId));
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    /**
+     * Number of indexed records.
+     *
+     * @return the int
+     */
+    public synchronized int size() {
+        return names.size();
+    }
+
+    private static double wordSimilarity(Set<String> termTrigrams, Set<String> valueTrigrams) {
+        int shared = 0;
+        for (String trigram : termTrigrams) {
+            if (valueTrigrams.contains(trigram)) {
+                shared++;
+            }
+        }
+        return (double) shared / termTrigrams.size();
+    }
+
+    private static Set<String> trigrams(String value) {
+        Set<String> trigrams = new LinkedHashSet<>();
+        for (String word : value.split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            String padded = "  " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                trigrams.add(padded.substring(i, i + 3));
+            }
+        }
+        return trigrams;
+    }
+}
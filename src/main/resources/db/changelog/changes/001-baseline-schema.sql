@@ -0,0 +1,50 @@
+--liquibase formatted sql
+
+-- Baseline matching the schema previously generated by hibernate.ddl-auto=update.
+-- Existing databases already have these tables, so each changeset is only marked as ran there.
+
+--changeset healthcare:001-create-facilities
+--preconditions onFail:MARK_RAN
+--precondition-sql-check expectedResult:0 SELECT count(*) FROM information_schema.tables WHERE table_schema = current_schema() AND table_name = 'facilities'
+CREATE TABLE facilities (
+    id BIGSERIAL PRIMARY KEY,
+    name VARCHAR(255) NOT NULL UNIQUE,
+    type VARCHAR(255) NOT NULL,
+    address VARCHAR(255) NOT NULL,
+    deleted BOOLEAN NOT NULL DEFAULT FALSE,
+    created_at TIMESTAMP(6),
+    updated_at TIMESTAMP(6)
+);
+
+--changeset healthcare:001-create-patients
+--preconditions onFail:MARK_RAN
+--precondition-sql-check expectedResult:0 SELECT count(*) FROM information_schema.tables WHERE table_schema = current_schema() AND table_name = 'patients'
+CREATE TABLE patients (
+    id BIGSERIAL PRIMARY KEY,
+    facility_id BIGINT REFERENCES facilities (id),
+    first_name VARCHAR(255) NOT NULL,
+    last_name VARCHAR(255) NOT NULL,
+    date_of_birth DATE NOT NULL,
+    gender VARCHAR(255) NOT NULL,
+    address VARCHAR(255),
+    phone_number VARCHAR(255),
+    email VARCHAR(255),
+    insurance_number VARCHAR(255),
+    deleted BOOLEAN NOT NULL DEFAULT FALSE,
+    created_at TIMESTAMP(6),
+    updated_at TIMESTAMP(6)
+);
+
+--changeset healthcare:001-create-audit-log
+--preconditions onFail:MARK_RAN
+--precondition-sql-check expectedResult:0 SELECT count(*) FROM information_schema.tables WHERE table_schema = current_schema() AND table_name = 'audit_log'
+CREATE TABLE audit_log (
+    id BIGSERIAL PRIMARY KEY,
+    entity_type VARCHAR(255) NOT NULL,
+    entity_id BIGINT NOT NULL,
+    action VARCHAR(255) NOT NULL,
+    old_value VARCHAR(255),
+    new_value VARCHAR(255),
+    changed_by VARCHAR(255),
+    changed_at TIMESTAMP(6)
+);
@@ -0,0 +1,11 @@
+--liquibase formatted sql
+
+--changeset healthcare:002-add-facility-patient-count
+ALTER TABLE facilities ADD COLUMN patient_count BIGINT NOT NULL DEFAULT 0;
+
+UPDATE facilities f
+SET patient_count = (SELECT count(*) FROM patients p WHERE p.facility_id = f.id AND p.deleted = FALSE);
+
+CREATE INDEX idx_facilities_patient_count ON facilities (patient_count) WHERE deleted = FALSE;
+--rollback DROP INDEX idx_facilities_patient_count;
+--rollback ALTER TABLE facilities DROP COLUMN patient_count;
@@ -0,0 +1,10 @@
+--liquibase formatted sql
+
+--changeset healthcare:003-patient-keyset-indexes
+-- Support keyset paging over (sort key, id) for active patients, globally and per facility.
+CREATE INDEX idx_patients_last_name_id ON patients (last_name, id) WHERE deleted = FALSE;
+CREATE INDEX idx_patients_facility_id_id ON patients (facility_id, id) WHERE deleted = FALSE;
+CREATE INDEX idx_patients_facility_last_name_id ON patients (facility_id, last_name, id) WHERE deleted = FALSE;
+--rollback DROP INDEX idx_patients_facility_last_name_id;
+--rollback DROP INDEX idx_patients_facility_id_id;
+--rollback DROP INDEX idx_patients_last_name_id;
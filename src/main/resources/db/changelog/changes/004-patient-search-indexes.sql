@@ -0,0 +1,15 @@
+--liquibase formatted sql
+
+--changeset healthcare:004-patient-search-indexes
+-- One index per search filter so the planner can combine them (BitmapAnd/BitmapOr) for any subset.
+-- text_pattern_ops lets prefix LIKE on the lowered names use the index regardless of the database collation.
+CREATE INDEX idx_patients_lower_last_name ON patients (lower(last_name) text_pattern_ops) WHERE deleted = FALSE;
+CREATE INDEX idx_patients_lower_first_name ON patients (lower(first_name) text_pattern_ops) WHERE deleted = FALSE;
+CREATE INDEX idx_patients_date_of_birth ON patients (date_of_birth) WHERE deleted = FALSE;
+CREATE INDEX idx_patients_gender ON patients (gender) WHERE deleted = FALSE;
+CREATE INDEX idx_patients_insurance_number ON patients (insurance_number) WHERE deleted = FALSE;
+--rollback DROP INDEX idx_patients_insurance_number;
+--rollback DROP INDEX idx_patients_gender;
+--rollback DROP INDEX idx_patients_date_of_birth;
+--rollback DROP INDEX idx_patients_lower_first_name;
+--rollback DROP INDEX idx_patients_lower_last_name;
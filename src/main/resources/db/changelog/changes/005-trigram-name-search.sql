@@ -0,0 +1,13 @@
+--liquibase formatted sql
+
+--changeset healthcare:005-trigram-name-search
+-- GIN trigram indexes answer substring LIKE and similarity (%, <%) lookups on names without a table scan.
+-- The patient expressions match PatientSpecifications and TrigramNameSearchBackend; the facility expression
+-- matches the upper(name) LIKE upper(?) that Spring Data generates for ...ContainingIgnoreCase.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX idx_patients_last_name_trgm ON patients USING gin (lower(last_name) gin_trgm_ops) WHERE deleted = FALSE;
+CREATE INDEX idx_patients_first_name_trgm ON patients USING gin (lower(first_name) gin_trgm_ops) WHERE deleted = FALSE;
+CREATE INDEX idx_facilities_name_trgm ON facilities USING gin (upper(name) gin_trgm_ops) WHERE deleted = FALSE;
+--rollback DROP INDEX idx_facilities_name_trgm;
+--rollback DROP INDEX idx_patients_first_name_trgm;
+--rollback DROP INDEX idx_patients_last_name_trgm;
@@ -0,0 +1,13 @@
+--liquibase formatted sql
+
+--changeset healthcare:006-patient-unique-contact-fields
+--preconditions onFail:HALT onError:HALT
+--precondition-sql-check expectedResult:0 SELECT (SELECT count(*) FROM (SELECT email FROM patients WHERE deleted = FALSE AND email <> '' GROUP BY email HAVING count(*) > 1) e) + (SELECT count(*) FROM (SELECT phone_number FROM patients WHERE deleted = FALSE AND phone_number <> '' GROUP BY phone_number HAVING count(*) > 1) p) + (SELECT count(*) FROM (SELECT insurance_number FROM patients WHERE deleted = FALSE AND insurance_number <> '' GROUP BY insurance_number HAVING count(*) > 1) i)
+-- Active patients may not share an email, phone number or insurance number; soft-deleted rows and blanks are exempt.
+-- The precondition halts the migration while duplicates exist: merge or soft delete them, then rerun.
+CREATE UNIQUE INDEX uq_patients_email ON patients (email) WHERE deleted = FALSE AND email <> '';
+CREATE UNIQUE INDEX uq_patients_phone_number ON patients (phone_number) WHERE deleted = FALSE AND phone_number <> '';
+CREATE UNIQUE INDEX uq_patients_insurance_number ON patients (insurance_number) WHERE deleted = FALSE AND insurance_number <> '';
+--rollback DROP INDEX uq_patients_insurance_number;
+--rollback DROP INDEX uq_patients_phone_number;
+--rollback DROP INDEX uq_patients_email;
@@ -0,0 +1,16 @@
+--liquibase formatted sql
+
+--changeset healthcare:007-pooled-id-sequences
+-- Entities take ids from these sequences through Hibernate's pooled optimizer: each nextval reserves the 50 ids
+-- up to and including the returned value, so inserts no longer need a round trip per row and can be batched.
+-- Existing ids are untouched. On tables that already hold rows, setval moves the sequence to at least the highest
+-- id so the first reserved block starts past every existing row; unused sequences keep starting at 1.
+ALTER SEQUENCE facilities_id_seq INCREMENT BY 50;
+ALTER SEQUENCE patients_id_seq INCREMENT BY 50;
+ALTER SEQUENCE audit_log_id_seq INCREMENT BY 50;
+SELECT setval('facilities_id_seq', GREATEST(max(id), (SELECT last_value FROM facilities_id_seq))) FROM facilities HAVING count(*) > 0;
+SELECT setval('patients_id_seq', GREATEST(max(id), (SELECT last_value FROM patients_id_seq))) FROM patients HAVING count(*) > 0;
+SELECT setval('audit_log_id_seq', GREATEST(max(id), (SELECT last_value FROM audit_log_id_seq))) FROM audit_log HAVING count(*) > 0;
+--rollback ALTER SEQUENCE audit_log_id_seq INCREMENT BY 1;
+--rollback ALTER SEQUENCE patients_id_seq INCREMENT BY 1;
+--rollback ALTER SEQUENCE facilities_id_seq INCREMENT BY 1;
@@ -0,0 +1,6 @@
+--liquibase formatted sql
+
+--changeset healthcare:008-patient-updated-at-index
+-- Incremental exports ask for active patients changed since a point in time.
+CREATE INDEX idx_patients_updated_at ON patients (updated_at) WHERE deleted = FALSE;
+--rollback DROP INDEX idx_patients_updated_at;
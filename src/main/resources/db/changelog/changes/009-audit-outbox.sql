@@ -0,0 +1,18 @@
+--liquibase formatted sql
+
+--changeset healthcare:009-audit-outbox
+-- Audit events captured in the same transaction as the change they describe. AuditOutboxRelay moves them into
+-- audit_log in bulk and deletes them, so the table only holds events that have not been relayed yet.
+CREATE SEQUENCE audit_outbox_id_seq INCREMENT BY 50;
+CREATE TABLE audit_outbox (
+    id BIGINT PRIMARY KEY DEFAULT nextval('audit_outbox_id_seq'),
+    entity_type VARCHAR(255) NOT NULL,
+    entity_id BIGINT NOT NULL,
+    action VARCHAR(255) NOT NULL,
+    old_value TEXT,
+    new_value TEXT,
+    changed_by VARCHAR(255),
+    changed_at TIMESTAMP(6) NOT NULL
+);
+ALTER SEQUENCE audit_outbox_id_seq OWNED BY audit_outbox.id;
+--rollback DROP TABLE audit_outbox;
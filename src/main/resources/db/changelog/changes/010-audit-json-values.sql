@@ -0,0 +1,13 @@
+--liquibase formatted sql
+
+--changeset healthcare:010-audit-json-values
+-- Audit values are field-level JSON diffs from now on. Older rows hold entity toString() output, which is kept as
+-- a JSON string so the columns can be JSONB throughout; the same applies to events still waiting in the outbox.
+ALTER TABLE audit_log
+    ALTER COLUMN old_value TYPE JSONB USING to_jsonb(old_value),
+    ALTER COLUMN new_value TYPE JSONB USING to_jsonb(new_value);
+ALTER TABLE audit_outbox
+    ALTER COLUMN old_value TYPE JSONB USING to_jsonb(old_value),
+    ALTER COLUMN new_value TYPE JSONB USING to_jsonb(new_value);
+--rollback ALTER TABLE audit_outbox ALTER COLUMN old_value TYPE TEXT USING old_value #>> '{}', ALTER COLUMN new_value TYPE TEXT USING new_value #>> '{}';
+--rollback ALTER TABLE audit_log ALTER COLUMN old_value TYPE TEXT USING old_value #>> '{}', ALTER COLUMN new_value TYPE TEXT USING new_value #>> '{}';
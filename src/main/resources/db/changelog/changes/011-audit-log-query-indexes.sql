@@ -0,0 +1,12 @@
+--liquibase formatted sql
+
+--changeset healthcare:011-audit-log-query-indexes
+-- Support keyset paging over (changed_at, id) for each audit log listing and the change feed.
+CREATE INDEX idx_audit_log_entity_changed_at ON audit_log (entity_type, entity_id, changed_at, id);
+CREATE INDEX idx_audit_log_entity_type_changed_at ON audit_log (entity_type, changed_at, id);
+CREATE INDEX idx_audit_log_action_changed_at ON audit_log (action, changed_at, id);
+CREATE INDEX idx_audit_log_changed_at ON audit_log (changed_at, id);
+--rollback DROP INDEX idx_audit_log_changed_at;
+--rollback DROP INDEX idx_audit_log_action_changed_at;
+--rollback DROP INDEX idx_audit_log_entity_type_changed_at;
+--rollback DROP INDEX idx_audit_log_entity_changed_at;
@@ -0,0 +1,78 @@
+--liquibase formatted sql
+
+--changeset healthcare:012-partition-audit-log splitStatements:false
+-- Rebuild audit_log as a table range-partitioned by month on changed_at, so date-range queries only touch the
+-- months they ask for and old months can be detached and archived whole (see AuditPartitionService). The primary
+-- key has to include the partition key. Rows with no changed_at, which the entity has never written, go to the
+-- default partition under the epoch; the default partition otherwise only catches rows outside every month that
+-- has been created.
+ALTER SEQUENCE audit_log_id_seq OWNED BY NONE;
+ALTER TABLE audit_log RENAME TO audit_log_unpartitioned;
+ALTER TABLE audit_log_unpartitioned DROP CONSTRAINT IF EXISTS audit_log_pkey;
+DROP INDEX idx_audit_log_entity_changed_at;
+DROP INDEX idx_audit_log_entity_type_changed_at;
+DROP INDEX idx_audit_log_action_changed_at;
+DROP INDEX idx_audit_log_changed_at;
+
+CREATE TABLE audit_log (
+    id BIGINT NOT NULL DEFAULT nextval('audit_log_id_seq'),
+    entity_type VARCHAR(255) NOT NULL,
+    entity_id BIGINT NOT NULL,
+    action VARCHAR(255) NOT NULL,
+    old_value JSONB,
+    new_value JSONB,
+    changed_by VARCHAR(255),
+    changed_at TIMESTAMP(6) NOT NULL,
+    CONSTRAINT audit_log_pkey PRIMARY KEY (id, changed_at)
+) PARTITION BY RANGE (changed_at);
+ALTER SEQUENCE audit_log_id_seq OWNED BY audit_log.id;
+CREATE TABLE audit_log_default PARTITION OF audit_log DEFAULT;
+
+-- Creates the partition holding the month of the given date, named audit_log_yYYYYmMM, unless it exists.
+CREATE FUNCTION audit_log_create_partition(month DATE) RETURNS TEXT AS $$
+DECLARE
+    month_start DATE := date_trunc('month', month)::DATE;
+    partition_name TEXT := 'audit_log_' || to_char(month_start, '"y"YYYY"m"MM');
+BEGIN
+    EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF audit_log FOR VALUES FROM (%L) TO (%L)',
+                   partition_name, month_start, (month_start + INTERVAL '1 month')::DATE);
+    RETURN partition_name;
+END;
+$$ LANGUAGE plpgsql;
+
+DO $$
+DECLARE
+    month DATE;
+BEGIN
+    SELECT date_trunc('month', COALESCE(min(changed_at), now()))::DATE INTO month FROM audit_log_unpartitioned;
+    WHILE month <= date_trunc('month', now() + INTERVAL '3 months') LOOP
+        PERFORM audit_log_create_partition(month);
+        month := month + INTERVAL '1 month';
+    END LOOP;
+END;
+$$;
+
+INSERT INTO audit_log (id, entity_type, entity_id, action, old_value, new_value, changed_by, changed_at)
+SELECT id, entity_type, entity_id, action, old_value, new_value, changed_by,
+       COALESCE(changed_at, TIMESTAMP '1970-01-01')
+FROM audit_log_unpartitioned;
+DROP TABLE audit_log_unpartitioned;
+
+CREATE INDEX idx_audit_log_entity_changed_at ON audit_log (entity_type, entity_id, changed_at, id);
+CREATE INDEX idx_audit_log_entity_type_changed_at ON audit_log (entity_type, changed_at, id);
+CREATE INDEX idx_audit_log_action_changed_at ON audit_log (action, changed_at, id);
+CREATE INDEX idx_audit_log_changed_at ON audit_log (changed_at, id);
+ANALYZE audit_log;
+--rollback ALTER SEQUENCE audit_log_id_seq OWNED BY NONE;
+--rollback ALTER TABLE audit_log RENAME TO audit_log_partitioned;
+--rollback ALTER TABLE audit_log_partitioned DROP CONSTRAINT audit_log_pkey;
+--rollback DROP INDEX idx_audit_log_entity_changed_at, idx_audit_log_entity_type_changed_at, idx_audit_log_action_changed_at, idx_audit_log_changed_at;
+--rollback CREATE TABLE audit_log (id BIGINT PRIMARY KEY DEFAULT nextval('audit_log_id_seq'), entity_type VARCHAR(255) NOT NULL, entity_id BIGINT NOT NULL, action VARCHAR(255) NOT NULL, old_value JSONB, new_value JSONB, changed_by VARCHAR(255), changed_at TIMESTAMP(6));
+--rollback INSERT INTO audit_log SELECT id, entity_type, entity_id, action, old_value, new_value, changed_by, changed_at FROM audit_log_partitioned;
+--rollback DROP TABLE audit_log_partitioned;
+--rollback DROP FUNCTION audit_log_create_partition(DATE);
+--rollback ALTER SEQUENCE audit_log_id_seq OWNED BY audit_log.id;
+--rollback CREATE INDEX idx_audit_log_entity_changed_at ON audit_log (entity_type, entity_id, changed_at, id);
+--rollback CREATE INDEX idx_audit_log_entity_type_changed_at ON audit_log (entity_type, changed_at, id);
+--rollback CREATE INDEX idx_audit_log_action_changed_at ON audit_log (action, changed_at, id);
+--rollback CREATE INDEX idx_audit_log_changed_at ON audit_log (changed_at, id);
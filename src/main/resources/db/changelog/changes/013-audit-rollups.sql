@@ -0,0 +1,37 @@
+--liquibase formatted sql
+
+--changeset healthcare:013-audit-rollups
+-- Event counts per hour and per day for each entity type and action, and per day and per month for each entity, kept
+-- up to date as audit events are saved. Rebuilt from audit_log by the rollup backfill.
+CREATE TABLE audit_rollup_hourly (
+    bucket TIMESTAMP(0) NOT NULL,
+    entity_type VARCHAR(255) NOT NULL,
+    action VARCHAR(255) NOT NULL,
+    event_count BIGINT NOT NULL,
+    CONSTRAINT audit_rollup_hourly_pkey PRIMARY KEY (bucket, entity_type, action)
+);
+CREATE TABLE audit_rollup_daily (
+    bucket DATE NOT NULL,
+    entity_type VARCHAR(255) NOT NULL,
+    action VARCHAR(255) NOT NULL,
+    event_count BIGINT NOT NULL,
+    CONSTRAINT audit_rollup_daily_pkey PRIMARY KEY (bucket, entity_type, action)
+);
+CREATE TABLE audit_rollup_entity_daily (
+    bucket DATE NOT NULL,
+    entity_type VARCHAR(255) NOT NULL,
+    entity_id BIGINT NOT NULL,
+    event_count BIGINT NOT NULL,
+    CONSTRAINT audit_rollup_entity_daily_pkey PRIMARY KEY (bucket, entity_type, entity_id)
+);
+CREATE TABLE audit_rollup_entity_monthly (
+    bucket DATE NOT NULL,
+    entity_type VARCHAR(255) NOT NULL,
+    entity_id BIGINT NOT NULL,
+    event_count BIGINT NOT NULL,
+    CONSTRAINT audit_rollup_entity_monthly_pkey PRIMARY KEY (bucket, entity_type, entity_id)
+);
+--rollback DROP TABLE audit_rollup_entity_monthly;
+--rollback DROP TABLE audit_rollup_entity_daily;
+--rollback DROP TABLE audit_rollup_daily;
+--rollback DROP TABLE audit_rollup_hourly;
@@ -0,0 +1,91 @@
+--liquibase formatted sql
+
+--changeset healthcare:014-compact-audit-log splitStatements:false
+-- Store entity types and actions as SMALLINT codes from audit_code, and values as BYTEA: UTF-8 JSON, deflated by the
+-- application above a size threshold (see AuditValueCodec). audit_log is rebuilt with the fixed-width columns first,
+-- since with 8-byte alignment a code followed by a BIGINT saves nothing over a short VARCHAR. Existing values are
+-- copied as plain JSON, which reads back the same way. Partitions are recreated under their names and comments.
+CREATE SEQUENCE audit_code_seq AS SMALLINT START WITH 100;
+CREATE TABLE audit_code (
+    code SMALLINT NOT NULL DEFAULT nextval('audit_code_seq'),
+    name VARCHAR(255) NOT NULL,
+    CONSTRAINT audit_code_pkey PRIMARY KEY (code),
+    CONSTRAINT uk_audit_code_name UNIQUE (name)
+);
+ALTER SEQUENCE audit_code_seq OWNED BY audit_code.code;
+-- The entity types and actions of MessageUtils, under the codes AuditCodeRepository knows them by
+INSERT INTO audit_code (code, name) VALUES
+    (1, 'Facility'), (2, 'Patient'),
+    (11, 'CREATE'), (12, 'UPDATE'), (13, 'DELETE'), (14, 'IMPORT');
+INSERT INTO audit_code (name)
+SELECT entity_type FROM audit_log UNION SELECT action FROM audit_log
+ON CONFLICT (name) DO NOTHING;
+
+ALTER SEQUENCE audit_log_id_seq OWNED BY NONE;
+ALTER TABLE audit_log RENAME TO audit_log_uncompacted;
+ALTER TABLE audit_log_uncompacted DROP CONSTRAINT audit_log_pkey;
+DROP INDEX idx_audit_log_entity_changed_at;
+DROP INDEX idx_audit_log_entity_type_changed_at;
+DROP INDEX idx_audit_log_action_changed_at;
+DROP INDEX idx_audit_log_changed_at;
+
+CREATE TABLE audit_log (
+    id BIGINT NOT NULL DEFAULT nextval('audit_log_id_seq'),
+    entity_id BIGINT NOT NULL,
+    changed_at TIMESTAMP(6) NOT NULL,
+    entity_type_code SMALLINT NOT NULL,
+    action_code SMALLINT NOT NULL,
+    changed_by VARCHAR(255),
+    old_value BYTEA,
+    new_value BYTEA,
+    CONSTRAINT audit_log_pkey PRIMARY KEY (id, changed_at),
+    -- 0 is what a name missing from audit_code maps to, which a save must never write
+    CONSTRAINT ck_audit_log_codes CHECK (entity_type_code > 0 AND action_code > 0)
+) PARTITION BY RANGE (changed_at);
+ALTER SEQUENCE audit_log_id_seq OWNED BY audit_log.id;
+
+DO $$
+DECLARE
+    old RECORD;
+    partition_name TEXT;
+BEGIN
+    FOR old IN SELECT c.relname, obj_description(c.oid, 'pg_class') AS description
+               FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+               WHERE i.inhparent = 'audit_log_uncompacted'::regclass LOOP
+        EXECUTE format('ALTER TABLE %I RENAME TO %I', old.relname, old.relname || '_uncompacted');
+        IF old.relname = 'audit_log_default' THEN
+            CREATE TABLE audit_log_default PARTITION OF audit_log DEFAULT;
+            partition_name := old.relname;
+        ELSIF old.relname ~ '^audit_log_y\d{4}m\d{2}$' THEN
+            partition_name := audit_log_create_partition(to_date(substr(old.relname, 11), '"y"YYYY"m"MM'));
+        ELSE
+            RAISE EXCEPTION 'Unexpected audit_log partition %', old.relname;
+        END IF;
+        IF old.description IS NOT NULL THEN
+            EXECUTE format('COMMENT ON TABLE %I IS %L', partition_name, old.description);
+        END IF;
+    END LOOP;
+END;
+$$;
+
+INSERT INTO audit_log (id, entity_id, changed_at, entity_type_code, action_code, changed_by, old_value, new_value)
+SELECT l.id, l.entity_id, l.changed_at, t.code, a.code, l.changed_by,
+       convert_to(l.old_value::TEXT, 'UTF8'), convert_to(l.new_value::TEXT, 'UTF8')
+FROM audit_log_uncompacted l
+JOIN audit_code t ON t.name = l.entity_type
+JOIN audit_code a ON a.name = l.action;
+DROP TABLE audit_log_uncompacted;
+
+CREATE INDEX idx_audit_log_entity_changed_at ON audit_log (entity_type_code, entity_id, changed_at, id);
+CREATE INDEX idx_audit_log_entity_type_changed_at ON audit_log (entity_type_code, changed_at, id);
+CREATE INDEX idx_audit_log_action_changed_at ON audit_log (action_code, changed_at, id);
+CREATE INDEX idx_audit_log_changed_at ON audit_log (changed_at, id);
+ANALYZE audit_log;
+-- Deflated values cannot be turned back into JSON in SQL, so the rollback fails while any are left
+--rollback ALTER TABLE audit_log ADD COLUMN entity_type VARCHAR(255), ADD COLUMN action VARCHAR(255);
+--rollback UPDATE audit_log l SET entity_type = t.name, action = a.name FROM audit_code t, audit_code a WHERE t.code = l.entity_type_code AND a.code = l.action_code;
+--rollback ALTER TABLE audit_log ALTER COLUMN entity_type SET NOT NULL, ALTER COLUMN action SET NOT NULL, ALTER COLUMN old_value TYPE JSONB USING convert_from(old_value, 'UTF8')::JSONB, ALTER COLUMN new_value TYPE JSONB USING convert_from(new_value, 'UTF8')::JSONB, DROP COLUMN entity_type_code, DROP COLUMN action_code;
+--rollback CREATE INDEX idx_audit_log_entity_changed_at ON audit_log (entity_type, entity_id, changed_at, id);
+--rollback CREATE INDEX idx_audit_log_entity_type_changed_at ON audit_log (entity_type, changed_at, id);
+--rollback CREATE INDEX idx_audit_log_action_changed_at ON audit_log (action, changed_at, id);
+--rollback DROP TABLE audit_code;
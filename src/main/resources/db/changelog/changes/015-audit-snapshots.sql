@@ -0,0 +1,23 @@
+--liquibase formatted sql
+
+--changeset healthcare:015-audit-snapshots
+-- Full states of patients and facilities, taken every audit.snapshots.interval changes so a reconstruction replays
+-- only the changes after the latest snapshot before the requested time, and per entity the number of changes since
+-- its latest snapshot. A NULL state is a deleted entity. Fixed-width columns come first to avoid alignment padding.
+CREATE TABLE audit_snapshot (
+    entity_id BIGINT NOT NULL,
+    changed_at TIMESTAMP NOT NULL,
+    audit_log_id BIGINT NOT NULL,
+    entity_type_code SMALLINT NOT NULL,
+    state BYTEA,
+    CONSTRAINT audit_snapshot_pkey PRIMARY KEY (entity_type_code, entity_id, changed_at, audit_log_id)
+);
+CREATE TABLE audit_snapshot_counter (
+    entity_id BIGINT NOT NULL,
+    snapshot_at TIMESTAMP,
+    changes INTEGER NOT NULL,
+    entity_type_code SMALLINT NOT NULL,
+    CONSTRAINT audit_snapshot_counter_pkey PRIMARY KEY (entity_type_code, entity_id)
+);
+--rollback DROP TABLE audit_snapshot_counter;
+--rollback DROP TABLE audit_snapshot;
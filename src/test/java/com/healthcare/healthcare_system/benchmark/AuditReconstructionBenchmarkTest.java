@@ -0,0 +1,192 @@
+package com.healthcare.healthcare_system.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.healthcare.healthcare_system.dto.PatientDto;
+import com.healthcare.healthcare_system.model.AuditLog;
+import com.healthcare.healthcare_system.repository.AuditLogStore;
+import com.healthcare.healthcare_system.repository.AuditPartitionRepository;
+import com.healthcare.healthcare_system.service.AuditLogService;
+import com.healthcare.healthcare_system.util.AuditDiffUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static com.healthcare.healthcare_system.util.MessageUtils.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Latency of reconstructing a patient with 10k changes at random points in its history, from the periodic snapshots
+ * and then, after they are deleted, by replaying every change. The changes are saved through the audit store in
+ * batches the size the audit writer uses, so the snapshots are taken as in production, and every reconstruction is
+ * checked against the state it should return. Everything is written to a month far in the future, whose partition
+ * and rollups are dropped afterwards. Needs a migrated PostgreSQL database:
+ * {@code mvn test -Dgroups=benchmark -DexcludedGroups=none -Dtest=AuditReconstructionBenchmarkTest
+ * -Dspring.datasource.url=jdbc:postgresql://localhost:5432/healthcare}.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+class AuditReconstructionBenchmarkTest {
+    private static final YearMonth MONTH = YearMonth.of(2099, 8);
+    private static final long ENTITY_ID = 900_000_001L;
+    private static final int CHANGES = 10_000;
+    private static final int BATCH_SIZE = 500;
+    private static final int WARMUP = 100;
+    private static final int SAMPLES = 500;
+    private static final int REPLAY_SAMPLES = 50;
+
+    @Autowired
+    private AuditLogStore auditLogStore;
+
+    @Autowired
+    private AuditLogService auditLogService;
+
+    @Autowired
+    private AuditPartitionRepository auditPartitionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${audit.snapshots.interval}")
+    private int interval;
+
+    @AfterEach
+    void dropMonth() {
+        jdbcTemplate.update("DELETE FROM audit_snapshot WHERE entity_type_code = 2 AND entity_id = ?", ENTITY_ID);
+        jdbcTemplate.update("DELETE FROM audit_snapshot_counter WHERE entity_type_code = 2 AND entity_id = ?",
+                ENTITY_ID);
+        transactionTemplate.executeWithoutResult(status -> auditPartitionRepository.detachAndDrop(MONTH));
+        for (String table : new String[]{"audit_rollup_hourly", "audit_rollup_daily", "audit_rollup_entity_daily",
+                "audit_rollup_entity_monthly"}) {
+            jdbcTemplate.update("DELETE FROM " + table + " WHERE bucket >= ?", MONTH.atDay(1));
+        }
+    }
+
+    @Test
+    void reconstructPatientWith10kChanges() {
+        transactionTemplate.executeWithoutResult(status -> auditPartitionRepository.createPartition(MONTH));
+        List<LocalDateTime> times = new ArrayList<>(CHANGES);
+        List<PatientDto> states = new ArrayList<>(CHANGES);
+        save(times, states);
+
+        Random random = new Random(20);
+        int[] samples = random.ints(WARMUP + SAMPLES, 0, CHANGES).toArray();
+        long snapshots = jdbcTemplate.queryForObject("SELECT count(*) FROM audit_snapshot " +
+                "WHERE entity_type_code = 2 AND entity_id = ?", Long.class, ENTITY_ID);
+        double[] fromSnapshots = measure(samples, WARMUP, times, states);
+
+        jdbcTemplate.update("DELETE FROM audit_snapshot WHERE entity_type_code = 2 AND entity_id = ?", ENTITY_ID);
+        double[] fullReplay = measure(Arrays.copyOf(samples, WARMUP / 10 + REPLAY_SAMPLES), WARMUP / 10, times,
+                states);
+
+        System.out.printf("Patient with %d changes, a snapshot every %d (%d snapshots)%n", CHANGES, interval,
+                snapshots);
+        print("from snapshots", fromSnapshots);
+        print("full replay", fullReplay);
+    }
+
+    /**
+     * Save a creation and then updates of one or two fields, captured the way the patient service captures them.
+     */
+    private void save(List<LocalDateTime> times, List<PatientDto> states) {
+        Random random = new Random(19);
+        PatientDto state = PatientDto.builder()
+                .id(ENTITY_ID)
+                .facilityId(1L)
+                .firstName("Ada")
+                .lastName("Lovelace")
+                .dateOfBirth(LocalDate.of(1980, 12, 10))
+                .gender("Female")
+                .address("12 Elm St, Central")
+                .phoneNumber("(555) 010-4477")
+                .email("ada.lovelace@example.com")
+                .insuranceNumber("INS7777123")
+                .build();
+        LocalDateTime start = MONTH.atDay(1).atStartOfDay();
+        List<AuditLog> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < CHANGES; i++) {
+            LocalDateTime changedAt = start.plusMinutes(i);
+            AuditLog.AuditLogBuilder auditLog = AuditLog.builder()
+                    .entityType(PATIENT_ENTITY_TYPE)
+                    .entityId(ENTITY_ID)
+                    .changedAt(changedAt);
+            if (i == 0) {
+                auditLog.action(CREATE_ACTION).newValue(AuditDiffUtils.snapshot(state, objectMapper));
+            } else {
+                PatientDto before = state;
+                state = change(state, random);
+                AuditDiffUtils.FieldChanges changes = AuditDiffUtils.diff(before, state, objectMapper);
+                auditLog.action(UPDATE_ACTION)
+                        .oldValue(AuditDiffUtils.write(changes.getOldValues(), objectMapper))
+                        .newValue(AuditDiffUtils.write(changes.getNewValues(), objectMapper));
+            }
+            batch.add(auditLog.build());
+            times.add(changedAt);
+            states.add(state);
+            if (batch.size() == BATCH_SIZE) {
+                auditLogStore.saveAll(batch);
+                batch = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            auditLogStore.saveAll(batch);
+        }
+    }
+
+    private PatientDto change(PatientDto state, Random random) {
+        PatientDto changed = objectMapper.convertValue(state, PatientDto.class);
+        int n = random.nextInt(10_000);
+        switch (random.nextInt(random.nextInt(4) == 0 ? 6 : 3)) {
+            case 0 -> changed.setPhoneNumber(String.format("(555) %03d-%04d", n % 1000, n));
+            case 1 -> changed.setEmail("ada.lovelace" + n + "@example.com");
+            case 2 -> changed.setAddress(n + " Elm St, Central");
+            case 3 -> {
+                changed.setLastName("Lovelace-" + n);
+                changed.setInsuranceNumber("INS" + (7_000_000 + n));
+            }
+            case 4 -> changed.setFacilityId(1L + n % 5);
+            default -> changed.setAddress(null);
+        }
+        return changed;
+    }
+
+    private double[] measure(int[] samples, int warmup, List<LocalDateTime> times, List<PatientDto> states) {
+        double[] millis = new double[samples.length - warmup];
+        for (int i = 0; i < samples.length; i++) {
+            int change = samples[i];
+            long start = System.nanoTime();
+            Object reconstructed = auditLogService.reconstruct(PATIENT_ENTITY_TYPE, ENTITY_ID, times.get(change));
+            long elapsed = System.nanoTime() - start;
+            assertEquals(states.get(change), reconstructed);
+            if (i >= warmup) {
+                millis[i - warmup] = elapsed / 1_000_000.0;
+            }
+        }
+        Arrays.sort(millis);
+        return millis;
+    }
+
+    private void print(String label, double[] millis) {
+        System.out.printf("%-15s %4d reconstructions: mean %7.2f ms  p50 %7.2f ms  p95 %7.2f ms  max %7.2f ms%n",
+                label, millis.length, Arrays.stream(millis).average().orElse(0), millis[millis.length / 2],
+                millis[(int) (millis.length * 0.95)], millis[millis.length - 1]);
+    }
+}
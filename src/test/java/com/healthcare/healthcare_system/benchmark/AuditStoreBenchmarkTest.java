@@ -0,0 +1,122 @@
+package com.healthcare.healthcare_system.benchmark;
+
+import com.healthcare.healthcare_system.dto.AuditLogCriteria;
+import com.healthcare.healthcare_system.model.AuditLog;
+import com.healthcare.healthcare_system.repository.AuditLogStore;
+import com.healthcare.healthcare_system.repository.AuditRollupRepository;
+import com.healthcare.healthcare_system.repository.SegmentAuditLogStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sustained write throughput of the audit stores, saving events in batches the size the audit writer uses, each
+ * batch committed (JPA) or flushed to disk (segments) before the next, followed by the latency of an entity history
+ * query over what was written. Both stores also update the rollups. The events and their rollups are deleted
+ * afterwards. Needs a migrated PostgreSQL database:
+ * {@code mvn test -Dgroups=benchmark -DexcludedGroups=none -Dtest=AuditStoreBenchmarkTest
+ * -Dspring.datasource.url=jdbc:postgresql://localhost:5432/healthcare}.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+class AuditStoreBenchmarkTest {
+    private static final String ENTITY_TYPE = "StoreBenchmark";
+    private static final int EVENTS = 200_000;
+    private static final int WARMUP_EVENTS = 20_000;
+    private static final int BATCH_SIZE = 500;
+    private static final int ENTITIES = 10_000;
+
+    @Autowired
+    private AuditLogStore jpaAuditLogStore;
+
+    @Autowired
+    private AuditRollupRepository auditRollupRepository;
+
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    Path segmentDir;
+
+    @AfterEach
+    void deleteJpaEvents() {
+        jdbcTemplate.update("DELETE FROM audit_log WHERE entity_type_code = " +
+                "(SELECT code FROM audit_code WHERE name = ?)", ENTITY_TYPE);
+        for (String table : new String[]{"audit_rollup_hourly", "audit_rollup_daily", "audit_rollup_entity_daily"}) {
+            jdbcTemplate.update("DELETE FROM " + table + " WHERE entity_type = ?", ENTITY_TYPE);
+        }
+    }
+
+    @Test
+    void jpaStore() {
+        measure("JPA", jpaAuditLogStore);
+    }
+
+    @Test
+    void segmentStore() {
+        measure("segment", segmentStore("forced", true));
+    }
+
+    @Test
+    void segmentStoreWithoutForce() {
+        measure("segment, no force", segmentStore("unforced", false));
+    }
+
+    private SegmentAuditLogStore segmentStore(String name, boolean forceOnWrite) {
+        SegmentAuditLogStore store = new SegmentAuditLogStore(auditRollupRepository, applicationEventPublisher);
+        ReflectionTestUtils.setField(store, "dir", segmentDir.resolve(name).toString());
+        ReflectionTestUtils.setField(store, "forceOnWrite", forceOnWrite);
+        store.open();
+        return store;
+    }
+
+    private void measure(String label, AuditLogStore store) {
+        save(store, WARMUP_EVENTS);
+        long start = System.nanoTime();
+        save(store, EVENTS);
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        long queryStart = System.nanoTime();
+        int found = 0;
+        for (long entityId = 0; entityId < 100; entityId++) {
+            found += store.scroll(AuditLogCriteria.builder().entityType(ENTITY_TYPE).entityId(entityId).build(),
+                    Sort.Direction.DESC, null, 51).size();
+        }
+        double queryMs = (System.nanoTime() - queryStart) / 1_000_000.0 / 100;
+        System.out.printf("%-18s %d events in batches of %d: %7.2f s  %9.0f events/s   entity history: %6.2f ms"
+                        + " (%d rows)%n", label, EVENTS, BATCH_SIZE, seconds, EVENTS / seconds, queryMs, found);
+    }
+
+    private void save(AuditLogStore store, int events) {
+        for (int i = 0; i < events; i += BATCH_SIZE) {
+            List<AuditLog> batch = new ArrayList<>(BATCH_SIZE);
+            LocalDateTime now = LocalDateTime.now();
+            for (int j = i; j < i + BATCH_SIZE; j++) {
+                batch.add(AuditLog.builder()
+                        .entityType(ENTITY_TYPE)
+                        .entityId((long) (j % ENTITIES))
+                        .action("UPDATE")
+                        .oldValue("{\"email\":\"old" + j + "@example.com\",\"phoneNumber\":\"555-0100\"}")
+                        .newValue("{\"email\":\"new" + j + "@example.com\",\"phoneNumber\":\"555-0199\"}")
+                        .changedAt(now)
+                        .build());
+            }
+            store.saveAll(batch);
+        }
+    }
+}
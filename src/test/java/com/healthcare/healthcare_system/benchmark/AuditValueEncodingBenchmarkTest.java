@@ -0,0 +1,269 @@
+package com.healthcare.healthcare_system.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.healthcare.healthcare_system.util.AuditValueCodec;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Bytes per audit row before and after the {@code 014-compact-audit-log} layout. The same generated events are copied
+ * into two scratch tables, one shaped like {@code audit_log} was (VARCHAR names, JSONB values) and one like it is
+ * (SMALLINT codes first, values stored by {@link AuditValueCodec}), each with the four query indexes, and their sizes
+ * are compared. Events are 80% patients and 20% facilities; 10% creations and 10% imports with a full snapshot, 70%
+ * updates of one to three fields and 10% deletions. The tables are dropped afterwards. Needs a migrated PostgreSQL
+ * database and about 5 GB of disk for the default 10M events ({@code -Dbenchmark.events} changes it):
+ * {@code mvn test -Dgroups=benchmark -DexcludedGroups=none -Dtest=AuditValueEncodingBenchmarkTest
+ * -Dspring.datasource.url=jdbc:postgresql://localhost:5432/healthcare}.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+class AuditValueEncodingBenchmarkTest {
+    private static final String LEGACY_TABLE = "audit_encoding_benchmark_legacy";
+    private static final String COMPACT_TABLE = "audit_encoding_benchmark_compact";
+    private static final int COPY_CHUNK = 1 << 20;
+
+    private static final String[] FIRST_NAMES = {"John", "Mary", "Robert", "Jennifer", "Michael", "Linda", "William",
+            "Elizabeth", "David", "Susan", "Richard", "Jessica", "Joseph", "Sarah", "Thomas", "Karen"};
+    private static final String[] LAST_NAMES = {"Smith", "Johnson", "Williams", "Brown", "Jones", "Miller", "Davis",
+            "Garcia", "Rodriguez", "Wilson", "Martinez", "Anderson", "Taylor", "Thomas", "Hernandez", "Moore"};
+    private static final String[] STREETS = {"Main St", "Oak Ave", "Pine Rd", "Elm St", "Maple Dr", "Cedar Ln",
+            "Hilltop Blvd", "Valley View", "Ocean Dr", "Community Way"};
+    private static final String[] CITIES = {"Metropolis", "Downtown", "Sunrise", "Metro", "Greenfield", "Central",
+            "Hillside", "Riverside", "Coastal", "Midtown"};
+    private static final String[] GENDERS = {"Male", "Female", "Other"};
+    private static final String[] FACILITY_TYPES = {"Hospital", "Clinic", "Diagnostic Center", "Pharmacy",
+            "Nursing Home", "Urgent Care", "Dental Clinic", "Imaging Center"};
+    private static final String[] PATIENT_FIELDS = {"firstName", "lastName", "address", "phoneNumber", "email",
+            "insuranceNumber", "facilityId", "gender"};
+    private static final String[] FACILITY_FIELDS = {"name", "type", "address"};
+    private static final Map<String, Short> CODES = Map.of("Patient", (short) 2, "Facility", (short) 1,
+            "CREATE", (short) 11, "UPDATE", (short) 12, "DELETE", (short) 13, "IMPORT", (short) 14);
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${benchmark.events:10000000}")
+    private int events;
+
+    @Value("${audit.values.compression-threshold:64}")
+    private int compressionThreshold;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HexFormat hex = HexFormat.of();
+
+    @AfterEach
+    void dropTables() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + LEGACY_TABLE + ", " + COMPACT_TABLE);
+    }
+
+    @Test
+    void bytesPerRow() throws SQLException {
+        dropTables();
+        jdbcTemplate.execute("CREATE UNLOGGED TABLE " + LEGACY_TABLE + " (id BIGINT NOT NULL, " +
+                "entity_type VARCHAR(255) NOT NULL, entity_id BIGINT NOT NULL, action VARCHAR(255) NOT NULL, " +
+                "old_value JSONB, new_value JSONB, changed_by VARCHAR(255), changed_at TIMESTAMP(6) NOT NULL)");
+        jdbcTemplate.execute("CREATE UNLOGGED TABLE " + COMPACT_TABLE + " (id BIGINT NOT NULL, " +
+                "entity_id BIGINT NOT NULL, changed_at TIMESTAMP(6) NOT NULL, entity_type_code SMALLINT NOT NULL, " +
+                "action_code SMALLINT NOT NULL, changed_by VARCHAR(255), old_value BYTEA, new_value BYTEA)");
+
+        long start = System.nanoTime();
+        long encodeNanos = load();
+        System.out.printf("Generated and copied %d events in %.1f s, encoding values took %.1f s%n", events,
+                (System.nanoTime() - start) / 1e9, encodeNanos / 1e9);
+
+        for (String[] index : List.of(
+                new String[]{"entity_type", "entity_id, changed_at, id"},
+                new String[]{"entity_type", "changed_at, id"},
+                new String[]{"action", "changed_at, id"})) {
+            jdbcTemplate.execute("CREATE INDEX ON " + LEGACY_TABLE + " (" + index[0] + ", " + index[1] + ")");
+            jdbcTemplate.execute("CREATE INDEX ON " + COMPACT_TABLE + " (" + index[0] + "_code, " + index[1] + ")");
+        }
+        for (String table : new String[]{LEGACY_TABLE, COMPACT_TABLE}) {
+            jdbcTemplate.execute("ALTER TABLE " + table + " ADD PRIMARY KEY (id, changed_at)");
+            jdbcTemplate.execute("CREATE INDEX ON " + table + " (changed_at, id)");
+            jdbcTemplate.execute("VACUUM ANALYZE " + table);
+        }
+
+        double[] legacy = sizes(LEGACY_TABLE);
+        double[] compact = sizes(COMPACT_TABLE);
+        System.out.printf("%-8s %8s %8s %8s %10s%n", "layout", "heap", "indexes", "total", "values");
+        System.out.printf("%-8s %8.1f %8.1f %8.1f %10.1f  bytes per row%n", "before", legacy[0], legacy[1],
+                legacy[0] + legacy[1], legacy[2]);
+        System.out.printf("%-8s %8.1f %8.1f %8.1f %10.1f  bytes per row (values deflated from %d bytes)%n",
+                "after", compact[0], compact[1], compact[0] + compact[1], compact[2], compressionThreshold);
+        System.out.printf("%-8s %7.1f%% %7.1f%% %7.1f%% %9.1f%%%n", "saved", saved(legacy[0], compact[0]),
+                saved(legacy[1], compact[1]), saved(legacy[0] + legacy[1], compact[0] + compact[1]),
+                saved(legacy[2], compact[2]));
+        assertEquals(events, jdbcTemplate.queryForObject("SELECT count(*) FROM " + COMPACT_TABLE, Long.class));
+    }
+
+    /**
+     * Copy the same events into both tables, returning the time spent encoding values.
+     */
+    private long load() throws SQLException {
+        Random random = new Random(19);
+        LocalDateTime firstChange = LocalDate.of(2024, 1, 1).atStartOfDay();
+        long encodeNanos = 0;
+        try (Connection legacyConnection = dataSource.getConnection();
+             Connection compactConnection = dataSource.getConnection()) {
+            CopyIn legacyCopy = legacyConnection.unwrap(PGConnection.class).getCopyAPI().copyIn(
+                    "COPY " + LEGACY_TABLE + " FROM STDIN (FORMAT csv)");
+            CopyIn compactCopy = compactConnection.unwrap(PGConnection.class).getCopyAPI().copyIn(
+                    "COPY " + COMPACT_TABLE + " FROM STDIN (FORMAT csv)");
+            StringBuilder legacyRows = new StringBuilder(COPY_CHUNK + 4096);
+            StringBuilder compactRows = new StringBuilder(COPY_CHUNK + 4096);
+            for (int id = 1; id <= events; id++) {
+                boolean patient = random.nextInt(5) != 0;
+                String entityType = patient ? "Patient" : "Facility";
+                long entityId = random.nextInt(patient ? 1_000_000 : 2_000);
+                int roll = random.nextInt(10);
+                String action = roll == 0 ? "CREATE" : roll == 1 ? "IMPORT" : roll == 2 ? "DELETE" : "UPDATE";
+                String oldValue = null;
+                String newValue = null;
+                if ("CREATE".equals(action) || "IMPORT".equals(action)) {
+                    newValue = snapshot(patient, random);
+                } else if ("UPDATE".equals(action)) {
+                    ObjectNode[] diff = diff(patient, random);
+                    oldValue = diff[0].toString();
+                    newValue = diff[1].toString();
+                }
+                String changedAt = firstChange.plusSeconds(id / 3).toString().replace('T', ' ');
+
+                legacyRows.append(id).append(',').append(entityType).append(',').append(entityId).append(',')
+                        .append(action).append(',').append(csv(oldValue)).append(',').append(csv(newValue))
+                        .append(",,").append(changedAt).append('\n');
+                long encodeStart = System.nanoTime();
+                String oldStored = bytea(AuditValueCodec.encode(oldValue, compressionThreshold));
+                String newStored = bytea(AuditValueCodec.encode(newValue, compressionThreshold));
+                encodeNanos += System.nanoTime() - encodeStart;
+                compactRows.append(id).append(',').append(entityId).append(',').append(changedAt).append(',')
+                        .append(CODES.get(entityType)).append(',').append(CODES.get(action)).append(",,")
+                        .append(oldStored).append(',').append(newStored).append('\n');
+
+                if (legacyRows.length() >= COPY_CHUNK || id == events) {
+                    write(legacyCopy, legacyRows);
+                    write(compactCopy, compactRows);
+                }
+            }
+            legacyCopy.endCopy();
+            compactCopy.endCopy();
+        }
+        return encodeNanos;
+    }
+
+    private String snapshot(boolean patient, Random random) {
+        ObjectNode fields = objectMapper.createObjectNode();
+        if (patient) {
+            String firstName = pick(FIRST_NAMES, random);
+            String lastName = pick(LAST_NAMES, random);
+            fields.put("facilityId", 1 + random.nextInt(2_000));
+            fields.put("firstName", firstName);
+            fields.put("lastName", lastName);
+            fields.put("dateOfBirth", LocalDate.of(1940, 1, 1).plusDays(random.nextInt(60 * 365)).toString());
+            fields.put("gender", pick(GENDERS, random));
+            fields.put("address", address(random));
+            fields.put("phoneNumber", phoneNumber(random));
+            fields.put("email", firstName.toLowerCase() + "." + lastName.toLowerCase() + random.nextInt(100)
+                    + "@example.com");
+            fields.put("insuranceNumber", "INS" + (1_000_000 + random.nextInt(9_000_000)));
+        } else {
+            fields.put("name", pick(CITIES, random) + " " + pick(FACILITY_TYPES, random));
+            fields.put("type", pick(FACILITY_TYPES, random));
+            fields.put("address", address(random));
+        }
+        return fields.toString();
+    }
+
+    private ObjectNode[] diff(boolean patient, Random random) {
+        String[] candidates = patient ? PATIENT_FIELDS : FACILITY_FIELDS;
+        ObjectNode oldValues = objectMapper.createObjectNode();
+        ObjectNode newValues = objectMapper.createObjectNode();
+        int changed = 1 + random.nextInt(3);
+        for (int i = 0; i < changed; i++) {
+            String field = pick(candidates, random);
+            oldValues.put(field, value(field, random));
+            newValues.put(field, value(field, random));
+        }
+        return new ObjectNode[]{oldValues, newValues};
+    }
+
+    private String value(String field, Random random) {
+        return switch (field) {
+            case "firstName" -> pick(FIRST_NAMES, random);
+            case "lastName" -> pick(LAST_NAMES, random);
+            case "address" -> address(random);
+            case "phoneNumber" -> phoneNumber(random);
+            case "email" -> pick(FIRST_NAMES, random).toLowerCase() + random.nextInt(1000) + "@example.com";
+            case "insuranceNumber" -> "INS" + (1_000_000 + random.nextInt(9_000_000));
+            case "facilityId" -> String.valueOf(1 + random.nextInt(2_000));
+            case "gender" -> pick(GENDERS, random);
+            case "type" -> pick(FACILITY_TYPES, random);
+            default -> pick(CITIES, random) + " " + pick(FACILITY_TYPES, random);
+        };
+    }
+
+    private String address(Random random) {
+        return (100 + random.nextInt(1000)) + " " + pick(STREETS, random) + ", " + pick(CITIES, random);
+    }
+
+    private String phoneNumber(Random random) {
+        return String.format("(%03d) %03d-%04d", random.nextInt(1000), random.nextInt(1000), random.nextInt(10000));
+    }
+
+    private String pick(String[] values, Random random) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private String csv(String value) {
+        return value == null ? "" : '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private String bytea(byte[] value) {
+        return value == null ? "" : "\\x" + hex.formatHex(value);
+    }
+
+    private void write(CopyIn copy, StringBuilder rows) throws SQLException {
+        byte[] bytes = rows.toString().getBytes(StandardCharsets.UTF_8);
+        copy.writeToCopy(bytes, 0, bytes.length);
+        rows.setLength(0);
+    }
+
+    /**
+     * Heap, index and value bytes per row of a table.
+     */
+    private double[] sizes(String table) {
+        return jdbcTemplate.queryForObject("SELECT pg_table_size(?::regclass)::FLOAT8 / count(*), " +
+                        "pg_indexes_size(?::regclass)::FLOAT8 / count(*), " +
+                        "avg(COALESCE(pg_column_size(old_value), 0) + COALESCE(pg_column_size(new_value), 0)) " +
+                        "FROM " + table, (rs, rowNum) -> new double[]{rs.getDouble(1), rs.getDouble(2),
+                        rs.getDouble(3)}, table, table);
+    }
+
+    private double saved(double before, double after) {
+        return 100 * (before - after) / before;
+    }
+}
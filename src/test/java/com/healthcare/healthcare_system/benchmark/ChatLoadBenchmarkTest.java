@@ -0,0 +1,222 @@
+package com.healthcare.healthcare_system.benchmark;
+
+import com.healthcare.healthcare_system.dto.FacilityDto;
+import com.healthcare.healthcare_system.service.FacilityService;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Latency of reading a facility over HTTP on its own and while 500 chat queries wait on a slow Ollama. The stand-in
+ * Ollama holds every generation until the CRUD requests have been measured, so all chats are in flight for the whole
+ * measurement; with a chat holding a servlet thread until its answer, the 200 Tomcat threads would all be waiting on
+ * it and the CRUD requests would queue behind them. The Ollama concurrency limit is raised to let every chat through
+ * to the stand-in. Needs a migrated PostgreSQL database:
+ * {@code mvn test -Dgroups=benchmark -DexcludedGroups=none -Dtest=ChatLoadBenchmarkTest
+ * -Dspring.datasource.url=jdbc:postgresql://localhost:5432/healthcare}.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.jpa.show-sql=false", "ollama.model=slow-stand-in",
+                "ai.ollama.concurrency.initial-limit=500", "ai.ollama.concurrency.max-limit=500"})
+class ChatLoadBenchmarkTest {
+    private static final int CHATS = 500;
+    private static final int CRUD_CLIENTS = 8;
+    private static final int WARMUP = 500;
+    private static final int SAMPLES = 1_500;
+    private static final Duration CRUD_TIMEOUT = Duration.ofSeconds(5);
+
+    private static final ExecutorService ollamaThreads = Executors.newCachedThreadPool();
+    private static final AtomicInteger generating = new AtomicInteger();
+    private static final CountDownLatch answer = new CountDownLatch(1);
+    private static HttpServer ollama;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private FacilityService facilityService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private Long facilityId;
+
+    @DynamicPropertySource
+    static void ollama(DynamicPropertyRegistry registry) throws IOException {
+        // A stand-in for Ollama's /api/generate that answers only once the test lets it
+        ollama = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), CHATS * 2);
+        ollama.createContext("/api/generate", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            generating.incrementAndGet();
+            try {
+                answer.await(25, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "{\"response\":\"Triage sorts patients by urgency.\",\"done\":true}"
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        // The same embedding for every prompt; the level numbers differ, so no chat reuses another's answer
+        ollama.createContext("/api/embeddings", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            byte[] body = "{\"embedding\":[0.6,0.8]}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        ollama.setExecutor(ollamaThreads);
+        ollama.start();
+        registry.add("ollama.api.base-url", () -> "http://127.0.0.1:" + ollama.getAddress().getPort());
+    }
+
+    @AfterAll
+    static void stopOllama() {
+        answer.countDown();
+        ollama.stop(0);
+        ollamaThreads.shutdownNow();
+    }
+
+    @AfterEach
+    void deleteFacility() {
+        if (facilityId != null) {
+            jdbcTemplate.update("DELETE FROM facilities WHERE id = ?", facilityId);
+        }
+    }
+
+    @Test
+    void crudLatencyWith500ChatsInFlight() throws Exception {
+        facilityId = facilityService.createFacility(FacilityDto.builder()
+                .name("Chat Load Clinic")
+                .type("CLINIC")
+                .address("1 Benchmark Way")
+                .build()).getId();
+
+        measureCrud(WARMUP);
+        double[] alone = measureCrud(SAMPLES);
+
+        List<CompletableFuture<HttpResponse<String>>> chats = IntStream.range(0, CHATS)
+                .mapToObj(i -> client.sendAsync(HttpRequest.newBuilder()
+                        .uri(URI.create("http://localhost:" + port + "/api/chat"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(
+                                "{\"query\":\"Explain triage level " + i + " to a new nurse\"}"))
+                        .build(), HttpResponse.BodyHandlers.ofString()))
+                .toList();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (generating.get() < CHATS && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        int inFlight = generating.get();
+        double[] loaded = measureCrud(SAMPLES);
+        int stillInFlight = (int) chats.stream().filter(chat -> !chat.isDone()).count();
+        answer.countDown();
+
+        System.out.printf("%d chats reached Ollama, %d still waiting after the CRUD requests%n", inFlight,
+                stillInFlight);
+        print("alone", alone);
+        print("500 chats", loaded);
+
+        for (CompletableFuture<HttpResponse<String>> chat : chats) {
+            HttpResponse<String> response = chat.get(30, TimeUnit.SECONDS);
+            assertEquals(200, response.statusCode());
+            assertTrue(response.body().contains("Triage sorts patients by urgency."), response.body());
+        }
+        assertEquals(CHATS, inFlight);
+        assertEquals(CHATS, stillInFlight);
+        assertEquals(0, Arrays.stream(loaded).filter(millis -> millis >= CRUD_TIMEOUT.toMillis()).count(),
+                "CRUD requests timed out behind the chats");
+        double p99Alone = alone[(int) (alone.length * 0.99)];
+        double p99Loaded = loaded[(int) (loaded.length * 0.99)];
+        assertTrue(p99Loaded < Math.max(3 * p99Alone, p99Alone + 20),
+                String.format("CRUD p99 went from %.2f ms to %.2f ms with the chats in flight", p99Alone, p99Loaded));
+    }
+
+    /**
+     * Read the facility {@code samples} times from {@link #CRUD_CLIENTS} clients, each sending one request after the
+     * other; a request that times out counts as taking the timeout.
+     */
+    private double[] measureCrud(int samples) throws Exception {
+        HttpRequest read = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + port + "/api/facilities/" + facilityId))
+                .timeout(CRUD_TIMEOUT)
+                .GET()
+                .build();
+        AtomicInteger next = new AtomicInteger();
+        double[] millis = new double[samples];
+        ExecutorService clients = Executors.newFixedThreadPool(CRUD_CLIENTS);
+        try {
+            List<Future<?>> running = new ArrayList<>(CRUD_CLIENTS);
+            for (int c = 0; c < CRUD_CLIENTS; c++) {
+                running.add(clients.submit(() -> {
+                    for (int i = next.getAndIncrement(); i < samples; i = next.getAndIncrement()) {
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<String> response = client.send(read, HttpResponse.BodyHandlers.ofString());
+                            assertEquals(200, response.statusCode());
+                            millis[i] = (System.nanoTime() - start) / 1_000_000.0;
+                        } catch (HttpTimeoutException e) {
+                            millis[i] = CRUD_TIMEOUT.toMillis();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> client : running) {
+                client.get();
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+        Arrays.sort(millis);
+        return millis;
+    }
+
+    private void print(String label, double[] millis) {
+        System.out.printf("%-10s %5d facility reads: mean %7.2f ms  p50 %7.2f ms  p99 %7.2f ms  max %7.2f ms%n",
+                label, millis.length, Arrays.stream(millis).average().orElse(0), millis[millis.length / 2],
+                millis[(int) (millis.length * 0.99)], millis[millis.length - 1]);
+    }
+}
@@ -0,0 +1,91 @@
+package com.healthcare.healthcare_system.benchmark;
+
+import com.healthcare.healthcare_system.dto.PatientDto;
+import com.healthcare.healthcare_system.mapper.PatientMapper;
+import com.healthcare.healthcare_system.model.Facility;
+import com.healthcare.healthcare_system.model.Patient;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.modelmapper.ModelMapper;
+import org.modelmapper.convention.MatchingStrategies;
+
+import java.time.LocalDate;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Per-object mapping cost of the old reflective ModelMapper setup versus the generated MapStruct mapper.
+ * Run with {@code mvn test -Dgroups=benchmark -DexcludedGroups=none -Dtest=MappingBenchmarkTest}.
+ */
+@Tag("benchmark")
+class MappingBenchmarkTest {
+    private static final int WARMUP_ITERATIONS = 200_000;
+    private static final int MEASURED_ITERATIONS = 1_000_000;
+
+    @Test
+    void compareEntityToDtoMapping() {
+        ModelMapper modelMapper = legacyModelMapper();
+        PatientMapper patientMapper = Mappers.getMapper(PatientMapper.class);
+        Patient patient = samplePatient();
+
+        assertEquals(modelMapper.map(patient, PatientDto.class), patientMapper.toDto(patient));
+
+        double modelMapperNs = measure("ModelMapper  Patient -> PatientDto", i -> modelMapper.map(patient, PatientDto.class));
+        double mapStructNs = measure("MapStruct    Patient -> PatientDto", i -> patientMapper.toDto(patient));
+        System.out.printf("Entity -> dto speedup: %.1fx%n", modelMapperNs / mapStructNs);
+    }
+
+    @Test
+    void comparePartialUpdateMapping() {
+        ModelMapper modelMapper = legacyModelMapper();
+        PatientMapper patientMapper = Mappers.getMapper(PatientMapper.class);
+        PatientDto update = PatientDto.builder().firstName("Jane").phoneNumber("555-0100").build();
+        Patient target = samplePatient();
+
+        double modelMapperNs = measure("ModelMapper  PatientDto -> Patient (skip nulls)", i -> modelMapper.map(update, target));
+        double mapStructNs = measure("MapStruct    PatientDto -> Patient (skip nulls)", i -> patientMapper.updateEntity(update, target));
+        System.out.printf("Partial update speedup: %.1fx%n", modelMapperNs / mapStructNs);
+    }
+
+    private double measure(String label, Consumer<Integer> operation) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            operation.accept(i);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            operation.accept(i);
+        }
+        double nsPerOp = (System.nanoTime() - start) / (double) MEASURED_ITERATIONS;
+        System.out.printf("%-50s %10.1f ns/op%n", label, nsPerOp);
+        return nsPerOp;
+    }
+
+    private ModelMapper legacyModelMapper() {
+        ModelMapper modelMapper = new ModelMapper();
+        modelMapper.getConfiguration()
+                .setMatchingStrategy(MatchingStrategies.STRICT)
+                .setFieldMatchingEnabled(true)
+                .setSkipNullEnabled(true);
+        modelMapper.typeMap(Patient.class, PatientDto.class)
+                .addMapping(src -> src.getFacility().getId(), PatientDto::setFacilityId);
+        return modelMapper;
+    }
+
+    private Patient samplePatient() {
+        Facility facility = Facility.builder().id(3L).name("City General Hospital").build();
+        return Patient.builder()
+                .id(42L)
+                .facility(facility)
+                .firstName("John")
+                .lastName("Smith")
+                .dateOfBirth(LocalDate.of(1980, 5, 17))
+                .gender("Male")
+                .address("123 Main St, Metropolis")
+                .phoneNumber("(555) 123-4567")
+                .email("john.smith@example.com")
+                .insuranceNumber("INS1234567")
+                .build();
+    }
+}
@@ -0,0 +1,117 @@
+package com.healthcare.healthcare_system.benchmark;
+
+import com.healthcare.healthcare_system.enums.FacilityType;
+import com.healthcare.healthcare_system.model.AuditLog;
+import com.healthcare.healthcare_system.model.Facility;
+import com.healthcare.healthcare_system.model.Patient;
+import com.healthcare.healthcare_system.repository.AuditLogRepository;
+import com.healthcare.healthcare_system.repository.FacilityRepository;
+import com.healthcare.healthcare_system.repository.PatientRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Throughput of {@code saveAll} for 10k new entities, each run in a rolled-back transaction so the database is left
+ * as it was (sequences still advance). Needs a migrated PostgreSQL database:
+ * {@code mvn test -Dgroups=benchmark -DexcludedGroups=none -Dtest=SaveAllBenchmarkTest
+ * -Dspring.datasource.url=jdbc:postgresql://localhost:5432/healthcare}.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+})
+class SaveAllBenchmarkTest {
+    private static final int ENTITIES = 10_000;
+    private static final int WARMUP_ROUNDS = 2;
+    private static final int MEASURED_ROUNDS = 3;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private FacilityRepository facilityRepository;
+
+    @Autowired
+    private AuditLogRepository auditLogRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void saveAllPatients() {
+        measure("Patient", patientRepository, i -> Patient.builder()
+                .facility(facilityRepository.getReferenceById(1L + i % 10))
+                .firstName("Bench" + i)
+                .lastName("Mark")
+                .dateOfBirth(LocalDate.of(1980, 1, 1).plusDays(i))
+                .gender(i % 2 == 0 ? "Male" : "Female")
+                .email("bench" + i + "@benchmark.test")
+                .build());
+    }
+
+    @Test
+    void saveAllFacilities() {
+        measure("Facility", facilityRepository, i -> Facility.builder()
+                .name("Benchmark Facility " + i)
+                .type(FacilityType.CLINIC)
+                .address(i + " Benchmark Street")
+                .build());
+    }
+
+    @Test
+    void saveAllAuditLogs() {
+        measure("AuditLog", auditLogRepository, i -> AuditLog.builder()
+                .entityType("Patient")
+                .entityId((long) i)
+                .action("CREATE")
+                .build());
+    }
+
+    private <T> void measure(String label, JpaRepository<T, Long> repository, IntFunction<T> factory) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            saveAllAndRollBack(repository, factory);
+        }
+
+        long totalNanos = 0;
+        statistics.clear();
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            totalNanos += saveAllAndRollBack(repository, factory);
+        }
+        double ms = totalNanos / 1_000_000.0 / MEASURED_ROUNDS;
+        System.out.printf("%-8s saveAll(%d): %8.1f ms  %8.0f rows/s  %d statements prepared per round%n",
+                label, ENTITIES, ms, ENTITIES / (ms / 1000), statistics.getPrepareStatementCount() / MEASURED_ROUNDS);
+    }
+
+    private <T> long saveAllAndRollBack(JpaRepository<T, Long> repository, IntFunction<T> factory) {
+        return transactionTemplate.execute(status -> {
+            List<T> entities = new ArrayList<>(ENTITIES);
+            for (int i = 0; i < ENTITIES; i++) {
+                entities.add(factory.apply(i));
+            }
+            long start = System.nanoTime();
+            repository.saveAll(entities);
+            repository.flush();
+            long elapsed = System.nanoTime() - start;
+            status.setRollbackOnly();
+            return elapsed;
+        });
+    }
+}
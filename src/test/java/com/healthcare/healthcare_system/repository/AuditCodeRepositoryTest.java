@@ -0,0 +1,65 @@
+package com.healthcare.healthcare_system.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AuditCodeRepositoryTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private final AtomicLong now = new AtomicLong();
+    private AuditCodeRepository auditCodeRepository;
+
+    @BeforeEach
+    void setUp() {
+        auditCodeRepository = new AuditCodeRepository(jdbcTemplate);
+        ReflectionTestUtils.setField(auditCodeRepository, "nanoTime", (LongSupplier) now::get);
+    }
+
+    @Test
+    void findCode_ForUnknownNames_ShouldReadTheTableAtMostOncePerInterval() {
+        assertNull(auditCodeRepository.findCode("Nope"));
+        assertNull(auditCodeRepository.findCode("Other"));
+        assertNull(auditCodeRepository.findCode("Nope"));
+        verify(jdbcTemplate, times(1)).query(anyString(), any(RowCallbackHandler.class));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertNull(auditCodeRepository.findCode("Nope"));
+        verify(jdbcTemplate, times(2)).query(anyString(), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    void findCode_AfterRegister_ShouldReadTheNewCodeStraightAway() throws Exception {
+        assertNull(auditCodeRepository.findCode("Ward"));
+        doAnswer(invocation -> {
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getShort(1)).thenReturn((short) 15);
+            when(rs.getString(2)).thenReturn("Ward");
+            invocation.<RowCallbackHandler>getArgument(1).processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+
+        auditCodeRepository.register(List.of("Ward"));
+
+        assertEquals((short) 15, auditCodeRepository.findCode("Ward"));
+        assertEquals((short) 2, auditCodeRepository.findCode("Patient"));
+    }
+}
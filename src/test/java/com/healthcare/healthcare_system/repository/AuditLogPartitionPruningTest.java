@@ -0,0 +1,133 @@
+package com.healthcare.healthcare_system.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.healthcare.healthcare_system.dto.KeysetCursor;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Explains the SQL of audit log date-range slices and asserts that PostgreSQL only reads the monthly partitions the
+ * range overlaps, through their {@code (changed_at, id)} index. Synthetic partitions and rows far in the future are
+ * created in a rolled-back transaction. Needs a migrated PostgreSQL database:
+ * {@code mvn test -Dgroups=postgres -DexcludedGroups=none -Dtest=AuditLogPartitionPruningTest
+ * -Dspring.datasource.url=jdbc:postgresql://localhost:5432/healthcare}.
+ */
+@Tag("postgres")
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.criteria.value_handling_mode=inline",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.healthcare.healthcare_system.repository.AuditLogPartitionPruningTest$SqlCapture"
+})
+class AuditLogPartitionPruningTest {
+    private static final YearMonth FIRST_MONTH = YearMonth.of(2099, 1);
+    private static final int MONTHS = 6;
+
+    @Autowired
+    private AuditLogRepository auditLogRepository;
+
+    @Autowired
+    private AuditPartitionRepository auditPartitionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void dateRangeSlicesOnlyReadTheOverlappingPartitions() {
+        LocalDateTime start = LocalDateTime.of(2099, 2, 10, 0, 0);
+        LocalDateTime end = LocalDateTime.of(2099, 3, 20, 0, 0);
+        KeysetCursor after = new KeysetCursor("changedAt", Sort.Direction.DESC, "2099-03-05T00:00", 1L);
+        Set<String> expected = Set.of("audit_log_y2099m02", "audit_log_y2099m03");
+
+        List<JsonNode> plans = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            seedSyntheticMonths();
+            for (KeysetCursor cursor : new KeysetCursor[]{null, after}) {
+                SqlCapture.STATEMENTS.clear();
+                auditLogRepository.scroll(AuditLogSpecifications.changedOnOrAfter(start)
+                        .and(AuditLogSpecifications.changedOnOrBefore(end)), Sort.Direction.DESC, cursor, 51);
+                assertEquals(1, SqlCapture.STATEMENTS.size(), "expected one captured statement");
+                plans.add(readPlan(jdbcTemplate.queryForObject(
+                        "EXPLAIN (FORMAT JSON) " + SqlCapture.STATEMENTS.get(0).replace("?", "51"), String.class)));
+            }
+            status.setRollbackOnly();
+        });
+
+        assertAll(plans.stream().map(plan -> () -> {
+            List<JsonNode> nodes = new ArrayList<>();
+            collect(plan, nodes);
+            Set<String> relations = new TreeSet<>();
+            nodes.forEach(node -> {
+                if (node.has("Relation Name")) {
+                    relations.add(node.get("Relation Name").asText());
+                }
+            });
+            assertEquals(new TreeSet<>(expected), relations, "partitions read:\n" + plan.toPrettyString());
+            assertFalse(nodes.stream().anyMatch(node -> "Seq Scan".equals(node.path("Node Type").asText())),
+                    "scans a partition:\n" + plan.toPrettyString());
+        }));
+    }
+
+    private void seedSyntheticMonths() {
+        for (int i = 0; i < MONTHS; i++) {
+            auditPartitionRepository.createPartition(FIRST_MONTH.plusMonths(i));
+        }
+        jdbcTemplate.update("INSERT INTO audit_log (entity_type_code, entity_id, action_code, changed_at) " +
+                "SELECT 2, g % 1000, 12, TIMESTAMP '2099-01-01' + g * INTERVAL '1 minute' " +
+                "FROM generate_series(0, ?) g", MONTHS * 28 * 24 * 60);
+        jdbcTemplate.execute("ANALYZE audit_log");
+    }
+
+    private JsonNode readPlan(String json) {
+        try {
+            return objectMapper.readTree(json).get(0).get("Plan");
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void collect(JsonNode node, List<JsonNode> nodes) {
+        nodes.add(node);
+        node.path("Plans").forEach(child -> collect(child, nodes));
+    }
+
+    /**
+     * Records the SQL Hibernate sends so it can be explained verbatim.
+     */
+    public static class SqlCapture implements StatementInspector {
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            if (sql.toLowerCase().contains("from audit_log")) {
+                STATEMENTS.add(sql);
+            }
+            return sql;
+        }
+    }
+}
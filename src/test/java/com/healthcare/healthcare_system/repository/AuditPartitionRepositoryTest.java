@@ -0,0 +1,120 @@
+package com.healthcare.healthcare_system.repository;
+
+import com.healthcare.healthcare_system.dto.AuditLogCriteria;
+import com.healthcare.healthcare_system.model.AuditLog;
+import com.healthcare.healthcare_system.util.AuditValueCodec;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+
+import static com.healthcare.healthcare_system.util.MessageUtils.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Saves audit events in a month far in the future, checks how their names and values are stored, then archives the
+ * month and restores it, also from an archive written before the audit log stored codes. Everything happens in a
+ * rolled-back transaction. Needs a migrated PostgreSQL database:
+ * {@code mvn test -Dgroups=postgres -DexcludedGroups=none -Dtest=AuditPartitionRepositoryTest
+ * -Dspring.datasource.url=jdbc:postgresql://localhost:5432/healthcare}.
+ */
+@Tag("postgres")
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+class AuditPartitionRepositoryTest {
+    private static final YearMonth MONTH = YearMonth.of(2099, 5);
+    private static final String SNAPSHOT = "{\"facilityId\":1,\"firstName\":\"Ada\",\"lastName\":\"Lovelace\"," +
+            "\"dateOfBirth\":\"1980-12-10\",\"gender\":\"Female\",\"address\":\"12 Elm St, Central\"," +
+            "\"phoneNumber\":\"(555) 010-4477\",\"email\":\"ada.lovelace1@example.com\"," +
+            "\"insuranceNumber\":\"INS7777123\"}";
+
+    @Autowired
+    private AuditLogStore auditLogStore;
+
+    @Autowired
+    private AuditPartitionRepository auditPartitionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void archivedEventsAreRestoredAsTheyWereSaved() {
+        transactionTemplate.executeWithoutResult(status -> {
+            auditPartitionRepository.createPartition(MONTH);
+            LocalDateTime changedAt = MONTH.atDay(3).atTime(10, 0);
+            List<AuditLog> saved = auditLogStore.saveAll(List.of(
+                    AuditLog.builder().entityType(PATIENT_ENTITY_TYPE).entityId(1L).action(CREATE_ACTION)
+                            .newValue(SNAPSHOT).changedAt(changedAt).build(),
+                    AuditLog.builder().entityType(FACILITY_ENTITY).entityId(2L).action(UPDATE_ACTION)
+                            .oldValue("{\"type\":\"Clinic\"}").newValue("{\"type\":\"Hospital\"}")
+                            .changedAt(changedAt.plusMinutes(1)).build()));
+            entityManager.flush();
+
+            // Codes, then the deflated snapshot's marker and the short diff's plain '{'
+            assertEquals(List.of("2 11 " + AuditValueCodec.DEFLATE_V1, "1 12 " + (int) '{'),
+                    jdbcTemplate.queryForList("SELECT entity_type_code || ' ' || action_code || ' ' || " +
+                                    "get_byte(new_value, 0) FROM audit_log WHERE id IN (?, ?) ORDER BY changed_at",
+                            String.class, saved.get(0).getId(), saved.get(1).getId()));
+
+            ByteArrayOutputStream archive = new ByteArrayOutputStream();
+            assertEquals(2, auditPartitionRepository.copyOut(MONTH, archive));
+            auditPartitionRepository.detachAndDrop(MONTH);
+            assertEquals(2, auditPartitionRepository.restore(MONTH, "test",
+                    new ByteArrayInputStream(archive.toByteArray())));
+            entityManager.clear();
+
+            assertEquals(List.of(
+                            "Patient CREATE null " + SNAPSHOT,
+                            "Facility UPDATE {\"type\":\"Clinic\"} {\"type\":\"Hospital\"}"),
+                    readMonth(MONTH));
+            status.setRollbackOnly();
+        });
+    }
+
+    @Test
+    void archivesFromBeforeCodesAreRestored() {
+        YearMonth month = MONTH.plusMonths(1);
+        String legacyArchive = "id,entity_type,entity_id,action,old_value,new_value,changed_by,changed_at\n" +
+                "1,Patient,3,UPDATE,\"{\"\"address\"\": \"\"1 Main St\"\"}\"," +
+                "\"{\"\"address\"\": \"\"2 Oak Ave\"\"}\",,2099-06-02 00:00:00\n" +
+                "2,Facility,4,DELETE,,,,2099-06-03 00:00:00\n";
+
+        transactionTemplate.executeWithoutResult(status -> {
+            assertEquals(2, auditPartitionRepository.restore(month, "legacy",
+                    new ByteArrayInputStream(legacyArchive.getBytes(StandardCharsets.UTF_8))));
+
+            assertEquals(List.of(
+                            "Patient UPDATE {\"address\": \"1 Main St\"} {\"address\": \"2 Oak Ave\"}",
+                            "Facility DELETE null null"),
+                    readMonth(month));
+            status.setRollbackOnly();
+        });
+    }
+
+    private List<String> readMonth(YearMonth month) {
+        return auditLogStore.scroll(AuditLogCriteria.builder()
+                                .from(month.atDay(1).atStartOfDay())
+                                .to(month.atEndOfMonth().atTime(23, 59))
+                                .build(),
+                        Sort.Direction.ASC, null, 10).stream()
+                .map(auditLog -> auditLog.getEntityType() + " " + auditLog.getAction() + " "
+                        + auditLog.getOldValue() + " " + auditLog.getNewValue())
+                .toList();
+    }
+}
@@ -0,0 +1,127 @@
+package com.healthcare.healthcare_system.repository;
+
+import com.healthcare.healthcare_system.dto.AuditActivityDto;
+import com.healthcare.healthcare_system.dto.AuditEntityActivityDto;
+import com.healthcare.healthcare_system.enums.AuditRollupGranularity;
+import com.healthcare.healthcare_system.model.AuditLog;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Saves synthetic audit events far in the future through the JPA store and checks that the rollups it keeps up to
+ * date match a rebuild from {@code audit_log}, and what the statistics queries read from them. Everything happens in
+ * a rolled-back transaction. Needs a migrated PostgreSQL database:
+ * {@code mvn test -Dgroups=postgres -DexcludedGroups=none -Dtest=AuditRollupRepositoryTest
+ * -Dspring.datasource.url=jdbc:postgresql://localhost:5432/healthcare}.
+ */
+@Tag("postgres")
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+class AuditRollupRepositoryTest {
+    private static final LocalDate FIRST_DAY = LocalDate.of(2099, 1, 30);
+    private static final int DAYS = 4;
+    private static final String ROLLUPS_SQL = "SELECT 'h' || bucket || entity_type || action AS k, event_count " +
+            "FROM audit_rollup_hourly WHERE bucket >= ? UNION ALL " +
+            "SELECT 'd' || bucket || entity_type || action, event_count FROM audit_rollup_daily WHERE bucket >= ? " +
+            "UNION ALL SELECT 'e' || bucket || entity_type || entity_id, event_count " +
+            "FROM audit_rollup_entity_daily WHERE bucket >= ? " +
+            "UNION ALL SELECT 'm' || bucket || entity_type || entity_id, event_count " +
+            "FROM audit_rollup_entity_monthly WHERE bucket >= ? ORDER BY 1";
+
+    @Autowired
+    private AuditLogStore auditLogStore;
+
+    @Autowired
+    private AuditRollupRepository auditRollupRepository;
+
+    @Autowired
+    private AuditPartitionRepository auditPartitionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void savedEventsAreCountedLikeARebuildFromTheAuditLog() {
+        transactionTemplate.executeWithoutResult(status -> {
+            auditPartitionRepository.createPartition(YearMonth.of(2099, 1));
+            auditPartitionRepository.createPartition(YearMonth.of(2099, 2));
+            List<AuditLog> saved = saveRandom(3000);
+            entityManager.flush();
+            List<Map<String, Object>> incremental = rollups();
+
+            long counted = 0;
+            for (int i = 0; i < DAYS; i++) {
+                counted += auditRollupRepository.rebuildDay(FIRST_DAY.plusDays(i)).orElse(0);
+            }
+            auditRollupRepository.rebuildMonth(YearMonth.of(2099, 1));
+            auditRollupRepository.rebuildMonth(YearMonth.of(2099, 2));
+
+            assertEquals(saved.size(), counted);
+            assertEquals(incremental, rollups());
+
+            LocalDateTime start = FIRST_DAY.plusDays(1).atTime(6, 30);
+            LocalDateTime end = start.plusHours(10);
+            List<AuditActivityDto> hours = auditRollupRepository.findActivity(AuditRollupGranularity.HOUR,
+                    start, end, "Patient", "UPDATE");
+            assertEquals(saved.stream().filter(auditLog -> "Patient".equals(auditLog.getEntityType())
+                            && "UPDATE".equals(auditLog.getAction())
+                            && !auditLog.getChangedAt().isBefore(start.withMinute(0))
+                            && auditLog.getChangedAt().isBefore(end.plusHours(1).withMinute(0))).count(),
+                    hours.stream().mapToLong(AuditActivityDto::getEventCount).sum());
+
+            List<AuditEntityActivityDto> top = auditRollupRepository.findTopEntities(FIRST_DAY,
+                    FIRST_DAY.plusDays(DAYS - 1), "Patient", 3);
+            assertEquals(top, auditRollupRepository.findTopEntities(FIRST_DAY.withDayOfMonth(1),
+                    FIRST_DAY.plusMonths(1).withDayOfMonth(28), "Patient", 3));
+            assertEquals(3, top.size());
+            assertTrue(top.get(0).getEventCount() >= top.get(2).getEventCount());
+            assertEquals(saved.stream().filter(auditLog -> "Patient".equals(auditLog.getEntityType())
+                    && auditLog.getEntityId().equals(top.get(0).getEntityId())).count(), top.get(0).getEventCount());
+            status.setRollbackOnly();
+        });
+    }
+
+    private List<AuditLog> saveRandom(int count) {
+        Random random = new Random(7);
+        String[] actions = {"CREATE", "UPDATE", "UPDATE", "DELETE"};
+        List<AuditLog> saved = new ArrayList<>();
+        for (int i = 0; i < count; i += 250) {
+            List<AuditLog> batch = new ArrayList<>();
+            for (int j = 0; j < 250; j++) {
+                batch.add(AuditLog.builder()
+                        .entityType(random.nextInt(4) == 0 ? "Facility" : "Patient")
+                        .entityId((long) random.nextInt(50))
+                        .action(actions[random.nextInt(actions.length)])
+                        .changedAt(FIRST_DAY.atStartOfDay().plusSeconds(random.nextInt(DAYS * 24 * 3600)))
+                        .build());
+            }
+            saved.addAll(auditLogStore.saveAll(batch));
+        }
+        return saved;
+    }
+
+    private List<Map<String, Object>> rollups() {
+        return jdbcTemplate.queryForList(ROLLUPS_SQL, FIRST_DAY, FIRST_DAY, FIRST_DAY, FIRST_DAY.withDayOfMonth(1));
+    }
+}
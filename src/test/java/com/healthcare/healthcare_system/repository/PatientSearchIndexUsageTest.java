@@ -0,0 +1,198 @@
+package com.healthcare.healthcare_system.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.healthcare.healthcare_system.dto.PatientSearchCriteria;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Explains the SQL generated for every combination of patient search filters, and the trigram name search queries,
+ * and asserts that PostgreSQL drives each one from an index condition on a filtered column instead of scanning the
+ * table. The plans are taken inside a rolled-back transaction that first loads synthetic patients and analyzes the
+ * table, so the planner costs them as it would on a populated database. Needs a migrated PostgreSQL database:
+ * {@code mvn test -Dgroups=postgres -DexcludedGroups=none -Dtest=PatientSearchIndexUsageTest
+ * -Dspring.datasource.url=jdbc:postgresql://localhost:5432/healthcare}.
+ */
+@Tag("postgres")
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.criteria.value_handling_mode=inline",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.healthcare.healthcare_system.repository.PatientSearchIndexUsageTest$SqlCapture"
+})
+class PatientSearchIndexUsageTest {
+    private static final int SYNTHETIC_PATIENTS = 50_000;
+    private static final int SYNTHETIC_FACILITIES = 2_000;
+    private static final Map<String, Consumer<PatientSearchCriteria.PatientSearchCriteriaBuilder>> FILTERS = new LinkedHashMap<>();
+
+    static {
+        FILTERS.put("search", b -> b.search("smith"));
+        FILTERS.put("name", b -> b.name("smi"));
+        FILTERS.put("dob", b -> b.dobFrom(LocalDate.of(1980, 1, 1)).dobTo(LocalDate.of(1980, 12, 31)));
+        FILTERS.put("gender", b -> b.gender("Female"));
+        FILTERS.put("facility", b -> b.facilityId(1L));
+        FILTERS.put("insurance", b -> b.insuranceNumber("INS1234567"));
+    }
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void everyFilterCombinationIsServedByAnIndex() {
+        Map<String, List<String>> statementsByCombination = new LinkedHashMap<>();
+        List<String> names = new ArrayList<>(FILTERS.keySet());
+        for (int mask = 1; mask < (1 << names.size()); mask++) {
+            List<String> selected = new ArrayList<>();
+            PatientSearchCriteria.PatientSearchCriteriaBuilder builder = PatientSearchCriteria.builder();
+            for (int i = 0; i < names.size(); i++) {
+                if ((mask & (1 << i)) != 0) {
+                    selected.add(names.get(i));
+                    FILTERS.get(names.get(i)).accept(builder);
+                }
+            }
+            statementsByCombination.put(String.join("+", selected), capture(builder.build()));
+        }
+
+        List<Executable> checks = new ArrayList<>();
+        Map<String, JsonNode> plans = explainOnSyntheticData(statementsByCombination);
+        plans.forEach((label, plan) -> checks.add(() -> assertDrivenByIndex(label, plan, "idx_patients_")));
+        assertAll(checks);
+    }
+
+    @Test
+    void trigramNameSearchIsServedByTrigramIndexes() {
+        Map<String, List<String>> statements = new LinkedHashMap<>();
+        statements.put("patient name search", List.of(bind(TrigramNameSearchBackend.PATIENT_SEARCH_SQL)));
+        statements.put("facility name search", List.of(bind(TrigramNameSearchBackend.FACILITY_SEARCH_SQL)));
+
+        Map<String, JsonNode> plans = explainOnSyntheticData(statements);
+        assertAll(
+                () -> assertDrivenByIndex("patient name search", plans.get("patient name search #1"), "idx_patients_"),
+                () -> assertDrivenByIndex("facility name search", plans.get("facility name search #1"), "idx_facilities_"));
+    }
+
+    private List<String> capture(PatientSearchCriteria criteria) {
+        SqlCapture.STATEMENTS.clear();
+        patientRepository.findAll(PatientSpecifications.matching(criteria), PageRequest.of(0, 10));
+        patientRepository.count(PatientSpecifications.matching(criteria));
+        List<String> statements = new ArrayList<>(SqlCapture.STATEMENTS);
+        assertNotEquals(0, statements.size(), "no SQL captured");
+        return statements;
+    }
+
+    private String bind(String sql) {
+        return sql.replace(":term", "'smi'").replace(":pattern", "'%smi%'").replace(":limit", "20");
+    }
+
+    private Map<String, JsonNode> explainOnSyntheticData(Map<String, List<String>> statementsByLabel) {
+        Map<String, JsonNode> plans = new LinkedHashMap<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            seedSyntheticPatients();
+            jdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+            statementsByLabel.forEach((label, statements) -> {
+                for (int i = 0; i < statements.size(); i++) {
+                    String json = jdbcTemplate.queryForObject(
+                            "EXPLAIN (FORMAT JSON) " + statements.get(i).replace("?", "10"), String.class);
+                    plans.put(label + " #" + (i + 1), readPlan(json));
+                }
+            });
+            status.setRollbackOnly();
+        });
+        return plans;
+    }
+
+    private void seedSyntheticPatients() {
+        jdbcTemplate.update("INSERT INTO facilities (name, type, address, deleted, created_at, updated_at) " +
+                "SELECT 'Synthetic ' || translate(substr(md5(g::text), 1, 10), '0123456789', 'ghijklmnop'), " +
+                "'HOSPITAL', 'n/a', FALSE, now(), now() FROM generate_series(1, ?) g", SYNTHETIC_FACILITIES);
+        Long facilityId = jdbcTemplate.queryForObject("SELECT max(id) FROM facilities", Long.class);
+        jdbcTemplate.update("INSERT INTO patients (facility_id, first_name, last_name, date_of_birth, gender, " +
+                "insurance_number, deleted, created_at, updated_at) " +
+                "SELECT ?, translate(substr(md5(g::text), 1, 7), '0123456789', 'ghijklmnop'), " +
+                "translate(substr(md5((g * 7)::text), 1, 9), '0123456789', 'ghijklmnop'), " +
+                "DATE '1930-01-01' + (g % 30000), (ARRAY['Male', 'Female', 'Other'])[g % 3 + 1], " +
+                "'SYN' || g, g % 20 = 0, now(), now() " +
+                "FROM generate_series(1, ?) g", facilityId, SYNTHETIC_PATIENTS);
+        // Rows inserted in this transaction sit in the GIN pending lists, which makes trigram scans look expensive.
+        jdbcTemplate.queryForList("SELECT gin_clean_pending_list(i.indexrelid::regclass) FROM pg_index i " +
+                "JOIN pg_class c ON c.oid = i.indexrelid JOIN pg_am am ON am.oid = c.relam " +
+                "WHERE am.amname = 'gin' AND i.indrelid IN ('patients'::regclass, 'facilities'::regclass)");
+        jdbcTemplate.execute("ANALYZE patients");
+        jdbcTemplate.execute("ANALYZE facilities");
+    }
+
+    private JsonNode readPlan(String json) {
+        try {
+            return objectMapper.readTree(json).get(0).get("Plan");
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void assertDrivenByIndex(String label, JsonNode plan, String indexPrefix) {
+        List<JsonNode> nodes = new ArrayList<>();
+        collect(plan, nodes);
+        assertFalse(nodes.stream().anyMatch(node -> "Seq Scan".equals(node.path("Node Type").asText())),
+                label + " scans a table:\n" + plan.toPrettyString());
+        assertTrue(nodes.stream().anyMatch(node -> node.path("Index Name").asText().startsWith(indexPrefix)
+                        && filtersOnColumn(node.path("Index Cond").asText())),
+                label + " is not driven by an index condition on a filtered column:\n" + plan.toPrettyString());
+    }
+
+    /**
+     * A partial index scanned end to end reports only its {@code deleted} predicate as the index condition.
+     */
+    private boolean filtersOnColumn(String indexCondition) {
+        return !indexCondition.isEmpty() && !indexCondition.replaceAll("[()]", "").matches("(NOT )?deleted");
+    }
+
+    private void collect(JsonNode node, List<JsonNode> nodes) {
+        nodes.add(node);
+        node.path("Plans").forEach(child -> collect(child, nodes));
+    }
+
+    /**
+     * Records the SQL Hibernate sends so it can be explained verbatim.
+     */
+    public static class SqlCapture implements StatementInspector {
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            if (sql.toLowerCase().contains("from patients")) {
+                STATEMENTS.add(sql);
+            }
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.healthcare.healthcare_system.repository;
+
+import com.healthcare.healthcare_system.dto.AuditLogCriteria;
+import com.healthcare.healthcare_system.dto.AuditSegmentCompactionResultDto;
+import com.healthcare.healthcare_system.dto.KeysetCursor;
+import com.healthcare.healthcare_system.exception.ServiceException;
+import com.healthcare.healthcare_system.model.AuditLog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class SegmentAuditLogStoreTest {
+    private static final int SEGMENT_SIZE = 16 * 1024;
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final Comparator<AuditLog> NEWEST_FIRST = Comparator.comparing(AuditLog::getChangedAt)
+            .thenComparing(AuditLog::getId).reversed();
+
+    @TempDir
+    Path dir;
+
+    private final Random random = new Random(42);
+    private SegmentAuditLogStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = open(SEGMENT_SIZE);
+    }
+
+    @Test
+    void saveAll_ShouldAssignIdsAndRollOverToNewSegments() throws IOException {
+        List<AuditLog> saved = saveRandom(500);
+
+        assertEquals(1L, saved.get(0).getId());
+        assertEquals(500L, saved.get(499).getId());
+        assertTrue(segmentFiles().size() > 3);
+        assertEquals(500, store.findAll(PageRequest.of(0, 10)).getTotalElements());
+    }
+
+    @Test
+    void scroll_ShouldAnswerEveryListingLikeAScanOfAllEvents() {
+        List<AuditLog> saved = saveRandom(2000);
+        LocalDateTime from = START.plusMinutes(300);
+        LocalDateTime to = START.plusMinutes(1200);
+
+        assertPagesMatch(saved, AuditLogCriteria.builder().entityType("Patient").entityId(3L).build(),
+                auditLog -> "Patient".equals(auditLog.getEntityType()) && auditLog.getEntityId() == 3L);
+        assertPagesMatch(saved, AuditLogCriteria.builder().entityType("Facility").build(),
+                auditLog -> "Facility".equals(auditLog.getEntityType()));
+        assertPagesMatch(saved, AuditLogCriteria.builder().action("DELETE").build(),
+                auditLog -> "DELETE".equals(auditLog.getAction()));
+        assertPagesMatch(saved, AuditLogCriteria.builder().from(from).to(to).build(),
+                auditLog -> !auditLog.getChangedAt().isBefore(from) && !auditLog.getChangedAt().isAfter(to));
+    }
+
+    @Test
+    void findHistory_ShouldReturnTheEntityOldestFirstUpToTheGivenTime() {
+        List<AuditLog> saved = saveRandom(1000);
+        LocalDateTime at = START.plusMinutes(700);
+
+        List<AuditLog> history = store.findHistory("Patient", 5L, at);
+
+        assertEquals(saved.stream()
+                .filter(auditLog -> "Patient".equals(auditLog.getEntityType()) && auditLog.getEntityId() == 5L
+                        && !auditLog.getChangedAt().isAfter(at))
+                .sorted(NEWEST_FIRST.reversed())
+                .map(AuditLog::getId)
+                .toList(), history.stream().map(AuditLog::getId).toList());
+        assertNotNull(history.get(0).getNewValue());
+    }
+
+    @Test
+    void open_ShouldRebuildTheIndexAndContinueTheIds() {
+        List<AuditLog> saved = saveRandom(800);
+
+        store = open(SEGMENT_SIZE);
+
+        assertPagesMatch(saved, AuditLogCriteria.builder().entityType("Patient").entityId(7L).build(),
+                auditLog -> "Patient".equals(auditLog.getEntityType()) && auditLog.getEntityId() == 7L);
+        assertEquals(801L, store.saveAll(List.of(event("Patient", 1L, "UPDATE", START))).get(0).getId());
+    }
+
+    @Test
+    void open_ShouldDiscardARecordCutShortByACrash() throws IOException {
+        saveRandom(20);
+        store.saveAll(List.of(event("Patient", 99L, "UPDATE", START.plusDays(30))));
+        Path tail = segmentFiles().get(segmentFiles().size() - 1);
+        long torn = lastRecordOffset(tail);
+        try (RandomAccessFile file = new RandomAccessFile(tail.toFile(), "rw")) {
+            // Pretend the last page of the payload never reached the disk
+            file.seek(torn + AuditSegment.RECORD_HEADER_SIZE + 20);
+            file.write(new byte[8]);
+        }
+
+        store = open(SEGMENT_SIZE);
+
+        assertTrue(store.findHistory("Patient", 99L, START.plusYears(1)).isEmpty());
+        assertEquals(20, store.findAll(PageRequest.of(0, 100)).getTotalElements());
+        store.saveAll(List.of(event("Patient", 98L, "UPDATE", START)));
+        store = open(SEGMENT_SIZE);
+        assertEquals(21, store.findAll(PageRequest.of(0, 100)).getTotalElements());
+    }
+
+    @Test
+    void saveAll_WhenAnEventIsTooLarge_ShouldStoreNothingOfTheBatch() {
+        saveRandom(20);
+        AuditLog tooLarge = event("Patient", 99L, "UPDATE", START);
+        tooLarge.setNewValue("x".repeat(SEGMENT_SIZE));
+
+        assertThrows(ServiceException.class, () -> store.saveAll(List.of(
+                event("Patient", 98L, "UPDATE", START), tooLarge, event("Patient", 97L, "UPDATE", START))));
+
+        assertEquals(20, scrollAll().size());
+        assertEquals(21L, store.saveAll(List.of(event("Patient", 1L, "UPDATE", START))).get(0).getId());
+    }
+
+    @Test
+    void saveAll_WhenTheNextSegmentCannotBeCreated_ShouldStoreNothingOfTheBatch() throws IOException {
+        List<AuditLog> saved = saveRandom(20);
+        Path tail = segmentFiles().get(segmentFiles().size() - 1);
+        // A file in the way of the next segment makes rolling over fail partway through the batch
+        Path blocker = Files.createFile(dir.resolve(AuditSegment.fileName(2, 0)));
+        List<AuditLog> batch = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            batch.add(event("Patient", 50L + i, "UPDATE", START.plusDays(1).plusSeconds(i)));
+        }
+
+        assertThrows(ServiceException.class, () -> store.saveAll(batch));
+
+        assertEquals(saved.stream().map(AuditLog::getId).sorted().toList(),
+                scrollAll().stream().map(AuditLog::getId).sorted().toList());
+        assertEquals(List.of(tail, blocker), segmentFiles());
+        store = open(SEGMENT_SIZE);
+        assertEquals(20, scrollAll().size());
+    }
+
+    @Test
+    void compact_ShouldSortAndMergeSealedSegmentsAndSurviveARestart() throws IOException {
+        List<AuditLog> saved = saveRandom(1500);
+        int before = segmentFiles().size();
+        Path first = segmentFiles().get(0);
+        byte[] firstContent = Files.readAllBytes(first);
+        store = open(SEGMENT_SIZE * 4);
+
+        AuditSegmentCompactionResultDto result = store.compact();
+
+        assertEquals(before - 1, result.getCompactedSegments().size());
+        assertTrue(segmentFiles().size() < before / 2);
+        assertPagesMatch(saved, AuditLogCriteria.builder().action("UPDATE").build(),
+                auditLog -> "UPDATE".equals(auditLog.getAction()));
+        assertTrue(store.compact().getCompactedSegments().isEmpty());
+
+        // A crash between the rename and the deletes leaves replaced segments and temporary files behind
+        Files.write(first, firstContent);
+        Files.writeString(dir.resolve(AuditSegment.fileName(99, 1) + AuditSegment.TEMP_SUFFIX), "partial");
+        store = open(SEGMENT_SIZE * 4);
+
+        assertFalse(Files.exists(first));
+        assertEquals(saved.size(), store.findAll(PageRequest.of(0, 10)).getTotalElements());
+        assertPagesMatch(saved, AuditLogCriteria.builder().entityType("Patient").entityId(2L).build(),
+                auditLog -> "Patient".equals(auditLog.getEntityType()) && auditLog.getEntityId() == 2L);
+    }
+
+    @Test
+    void findAll_ShouldPageInTimeOrder() {
+        List<AuditLog> saved = saveRandom(300);
+
+        Page<AuditLog> page = store.findAll(PageRequest.of(2, 25, Sort.by(Sort.Direction.DESC, "changedAt")));
+
+        assertEquals(300, page.getTotalElements());
+        assertEquals(saved.stream().sorted(NEWEST_FIRST).skip(50).limit(25).map(AuditLog::getId).toList(),
+                page.getContent().stream().map(AuditLog::getId).toList());
+    }
+
+    private List<AuditLog> scrollAll() {
+        return store.scroll(AuditLogCriteria.builder().build(), Sort.Direction.DESC, null, Integer.MAX_VALUE);
+    }
+
+    private void assertPagesMatch(List<AuditLog> saved, AuditLogCriteria criteria, Predicate<AuditLog> filter) {
+        List<Long> expected = saved.stream().filter(filter).sorted(NEWEST_FIRST).map(AuditLog::getId).toList();
+        assertFalse(expected.isEmpty());
+
+        List<Long> actual = new ArrayList<>();
+        KeysetCursor after = null;
+        while (true) {
+            List<AuditLog> slice = store.scroll(criteria, Sort.Direction.DESC, after, 37);
+            slice.forEach(auditLog -> actual.add(auditLog.getId()));
+            if (slice.size() < 37) {
+                break;
+            }
+            AuditLog last = slice.get(slice.size() - 1);
+            after = new KeysetCursor("changedAt", Sort.Direction.DESC, last.getChangedAt().toString(), last.getId());
+        }
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * Events a few minutes apart, saved in batches slightly out of time order, like the writer does.
+     */
+    private List<AuditLog> saveRandom(int count) {
+        List<AuditLog> saved = new ArrayList<>();
+        String[] actions = {"CREATE", "UPDATE", "UPDATE", "DELETE"};
+        for (int i = 0; i < count; i += 50) {
+            List<AuditLog> batch = new ArrayList<>();
+            for (int j = i; j < Math.min(count, i + 50); j++) {
+                LocalDateTime changedAt = START.plusMinutes(j).plusSeconds(random.nextInt(600) - 300)
+                        .plusNanos(random.nextInt(1000) * 1000L);
+                batch.add(event(random.nextInt(4) == 0 ? "Facility" : "Patient", (long) random.nextInt(20),
+                        actions[random.nextInt(actions.length)], changedAt));
+            }
+            saved.addAll(store.saveAll(batch));
+        }
+        return saved;
+    }
+
+    private AuditLog event(String entityType, Long entityId, String action, LocalDateTime changedAt) {
+        return AuditLog.builder()
+                .entityType(entityType)
+                .entityId(entityId)
+                .action(action)
+                .oldValue("DELETE".equals(action) ? null : "{\"email\":\"old@example.com\"}")
+                .newValue("DELETE".equals(action) ? null
+                        : "{\"email\":\"new" + random.nextInt(1000) + "@example.com\"}")
+                .changedAt(changedAt)
+                .build();
+    }
+
+    private SegmentAuditLogStore open(int segmentSize) {
+        SegmentAuditLogStore segmentStore = new SegmentAuditLogStore(mock(AuditRollupRepository.class),
+                mock(ApplicationEventPublisher.class));
+        ReflectionTestUtils.setField(segmentStore, "dir", dir.toString());
+        ReflectionTestUtils.setField(segmentStore, "segmentSize", segmentSize);
+        segmentStore.open();
+        return segmentStore;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> AuditSegment.isSegmentFile(file.getFileName().toString()))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private long lastRecordOffset(Path file) throws IOException {
+        try (RandomAccessFile segment = new RandomAccessFile(file.toFile(), "r")) {
+            long offset = AuditSegment.HEADER_SIZE;
+            long last = offset;
+            while (true) {
+                segment.seek(offset);
+                int length = segment.readInt();
+                if (length == 0) {
+                    return last;
+                }
+                last = offset;
+                offset += AuditSegment.RECORD_HEADER_SIZE + length;
+            }
+        }
+    }
+}
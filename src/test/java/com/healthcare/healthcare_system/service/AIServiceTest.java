@@ -0,0 +1,404 @@
+package com.healthcare.healthcare_system.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.healthcare.healthcare_system.dto.ChatRequest;
+import com.healthcare.healthcare_system.dto.ChatResponse;
+import com.healthcare.healthcare_system.dto.FacilityDto;
+import com.healthcare.healthcare_system.exception.ServiceBusyException;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AIServiceTest {
+    @Mock
+    private FacilityService facilityService;
+
+    @Mock
+    private PatientService patientService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService ollamaThreads = Executors.newCachedThreadPool();
+
+    private HttpServer ollama;
+    private volatile HttpHandler generate;
+    private ChatResponseCache chatResponseCache;
+    private OllamaConcurrencyLimiter ollamaConcurrencyLimiter;
+    private AIService aiService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // A stand-in for Ollama's /api/generate, answering as each test tells it to
+        ollama = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        ollama.createContext("/api/generate", exchange -> generate.handle(exchange));
+        ollama.setExecutor(ollamaThreads);
+        ollama.start();
+
+        chatResponseCache = new ChatResponseCache(meterRegistry);
+        chatResponseCache.registerMetrics();
+        ollamaConcurrencyLimiter = new OllamaConcurrencyLimiter(meterRegistry);
+        ollamaConcurrencyLimiter.registerMetrics();
+        aiService = new AIService(facilityService, patientService, HttpClient.newHttpClient(), new ObjectMapper(),
+                meterRegistry, chatResponseCache, new HashingEmbeddingBackend(), ollamaConcurrencyLimiter);
+        ReflectionTestUtils.setField(aiService, "ollamaBaseUrl", "http://127.0.0.1:" + ollama.getAddress().getPort());
+        ReflectionTestUtils.setField(aiService, "ollamaModel", "llama2");
+        aiService.registerMetrics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ollama.stop(0);
+        ollamaThreads.shutdownNow();
+    }
+
+    @Test
+    void processQuery_ShouldReturnBeforeOllamaAnswers() throws Exception {
+        CountDownLatch answer = new CountDownLatch(1);
+        generate = exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            awaitQuietly(answer);
+            byte[] body = "{\"response\":\"Triage sorts patients by urgency.\",\"done\":true}"
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        };
+
+        CompletableFuture<ChatResponse> response = aiService.processQuery(query("Explain the triage levels"));
+
+        assertFalse(response.isDone());
+        answer.countDown();
+        assertEquals("Triage sorts patients by urgency.", response.get(5, TimeUnit.SECONDS).getResponse());
+    }
+
+    @Test
+    void processQuery_ShouldAnswerARepeatedQuestionFromTheCache() throws Exception {
+        AtomicInteger generated = new AtomicInteger();
+        generate = exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            byte[] body = ("{\"response\":\"Answer " + generated.incrementAndGet() + "\",\"done\":true}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        };
+
+        ChatResponse first = aiService.processQuery(query("Explain the triage levels")).get(5, TimeUnit.SECONDS);
+        CompletableFuture<ChatResponse> again = aiService.processQuery(query("explain the  triage levels."));
+
+        assertTrue(again.isDone());
+        assertEquals("Answer 1", first.getResponse());
+        assertEquals("Answer 1", again.get().getResponse());
+        assertEquals(1, generated.get());
+    }
+
+    @Test
+    void processQuery_ShouldAnswerAParaphrasedQuestionFromTheCache() throws Exception {
+        AtomicInteger generated = new AtomicInteger();
+        generate = exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            byte[] body = ("{\"response\":\"Answer " + generated.incrementAndGet() + "\",\"done\":true}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        };
+        ReflectionTestUtils.setField(chatResponseCache, "similarityThreshold", 0.8);
+
+        aiService.processQuery(query("How do I book an MRI scan for an outpatient?")).get(5, TimeUnit.SECONDS);
+        ChatResponse paraphrased = aiService.processQuery(query("How can I book an MRI scan for an outpatient"))
+                .get(5, TimeUnit.SECONDS);
+        ChatResponse other = aiService.processQuery(query("What are the visiting hours on weekends?"))
+                .get(5, TimeUnit.SECONDS);
+
+        assertEquals("Answer 1", paraphrased.getResponse());
+        assertEquals("Answer 2", other.getResponse());
+        assertEquals(2, generated.get());
+    }
+
+    @Test
+    void processQuery_ShouldShareOneGenerationBetweenIdenticalQueriesInFlight() throws Exception {
+        AtomicInteger generated = new AtomicInteger();
+        CountDownLatch answer = new CountDownLatch(1);
+        generate = exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            generated.incrementAndGet();
+            awaitQuietly(answer);
+            byte[] body = "{\"response\":\"Ward B is closed today.\",\"done\":true}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        };
+
+        List<CompletableFuture<ChatResponse>> responses = IntStream.range(0, 50)
+                .mapToObj(i -> aiService.processQuery(query(i % 2 == 0 ? "Is ward B open?" : "is ward b open")))
+                .toList();
+
+        assertTrue(responses.stream().noneMatch(CompletableFuture::isDone));
+        answer.countDown();
+        for (CompletableFuture<ChatResponse> response : responses) {
+            assertEquals("Ward B is closed today.", response.get(5, TimeUnit.SECONDS).getResponse());
+        }
+        assertEquals(1, generated.get());
+        assertEquals(49, meterRegistry.get("ai.chat.coalesced").counter().count());
+        assertEquals(0, ollamaConcurrencyLimiter.getInFlight());
+    }
+
+    @Test
+    void processQuery_ShouldFeedOllamasTokenCountToTheLimiter() throws Exception {
+        ReflectionTestUtils.setField(ollamaConcurrencyLimiter, "limit", 1);
+        generate = exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            byte[] body = ("{\"response\":\"Ward B is closed today.\",\"done\":true,\"eval_count\":6,"
+                    + "\"load_duration\":1000,\"prompt_eval_duration\":2000}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        };
+
+        assertEquals("Ward B is closed today.",
+                aiService.processQuery(query("Is ward B open?")).get(5, TimeUnit.SECONDS).getResponse());
+
+        assertEquals(2, ollamaConcurrencyLimiter.getLimit());
+        assertEquals(0, ollamaConcurrencyLimiter.getInFlight());
+    }
+
+    @Test
+    void processQuery_WhenOllamaIsBusy_ShouldWaitForTheConcurrencyLimit() throws Exception {
+        ReflectionTestUtils.setField(ollamaConcurrencyLimiter, "limit", 1);
+        CountDownLatch answer = new CountDownLatch(1);
+        AtomicInteger generating = new AtomicInteger();
+        generate = exchange -> {
+            String prompt = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            generating.incrementAndGet();
+            awaitQuietly(answer);
+            byte[] body = ("{\"response\":\"" + (prompt.contains("MRI") ? "Radiology" : "Ten to six")
+                    + "\",\"done\":true}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        };
+
+        CompletableFuture<ChatResponse> first = aiService.processQuery(query("Where do I book an MRI?"));
+        CompletableFuture<ChatResponse> second = aiService.processQuery(query("What are the visiting hours?"));
+        for (int i = 0; i < 500 && generating.get() == 0; i++) {
+            Thread.sleep(10);
+        }
+        // Give a second generation the chance to arrive, were it not held back
+        Thread.sleep(100);
+
+        assertEquals(1, generating.get());
+        assertEquals(1, ollamaConcurrencyLimiter.getQueued());
+        answer.countDown();
+        assertEquals("Radiology", first.get(5, TimeUnit.SECONDS).getResponse());
+        assertEquals("Ten to six", second.get(5, TimeUnit.SECONDS).getResponse());
+        assertEquals(2, generating.get());
+    }
+
+    @Test
+    void processQuery_WhenTheQueueIsFullOrTooSlow_ShouldShedWithRetryAfter() throws Exception {
+        ReflectionTestUtils.setField(ollamaConcurrencyLimiter, "limit", 1);
+        ReflectionTestUtils.setField(ollamaConcurrencyLimiter, "queueCapacity", 1);
+        ReflectionTestUtils.setField(ollamaConcurrencyLimiter, "queueTimeoutMs", 200L);
+        CountDownLatch answer = new CountDownLatch(1);
+        generate = exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            awaitQuietly(answer);
+            byte[] body = "{\"response\":\"Radiology\",\"done\":true}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        };
+
+        CompletableFuture<ChatResponse> running = aiService.processQuery(query("Where do I book an MRI?"));
+        for (int i = 0; i < 500 && ollamaConcurrencyLimiter.getInFlight() == 0; i++) {
+            Thread.sleep(10);
+        }
+        CompletableFuture<ChatResponse> queued = aiService.processQuery(query("What are the visiting hours?"));
+        for (int i = 0; i < 500 && ollamaConcurrencyLimiter.getQueued() == 0; i++) {
+            Thread.sleep(10);
+        }
+        CompletableFuture<ChatResponse> refused = aiService.processQuery(query("Is the pharmacy open?"));
+
+        ExecutionException full = assertThrows(ExecutionException.class, () -> refused.get(5, TimeUnit.SECONDS));
+        ServiceBusyException fullCause = assertInstanceOf(ServiceBusyException.class, full.getCause());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, fullCause.getStatus());
+        assertEquals(10, fullCause.getRetryAfterSeconds());
+        ExecutionException slow = assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE,
+                assertInstanceOf(ServiceBusyException.class, slow.getCause()).getStatus());
+        answer.countDown();
+        assertEquals("Radiology", running.get(5, TimeUnit.SECONDS).getResponse());
+    }
+
+    @Test
+    void processQuery_WhenOllamaFails_ShouldNotCacheTheFailure() throws Exception {
+        generate = exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+        };
+
+        ChatResponse response = aiService.processQuery(query("Explain the triage levels")).get(5, TimeUnit.SECONDS);
+
+        assertTrue(response.getResponse().startsWith("Sorry, I encountered an error"));
+        assertEquals(0, chatResponseCache.size());
+    }
+
+    @Test
+    void processQuery_WhenOllamaIsUnreachable_ShouldCompleteWithAnApology() throws Exception {
+        ollama.stop(0);
+
+        ChatResponse response = aiService.processQuery(query("Explain the triage levels")).get(5, TimeUnit.SECONDS);
+
+        assertTrue(response.getResponse().startsWith("Sorry, I encountered an error"));
+    }
+
+    @Test
+    void streamQuery_ShouldForwardEachTokenAsOllamaGeneratesIt() {
+        CountDownLatch firstTokenForwarded = new CountDownLatch(1);
+        String[] requestBody = new String[1];
+        boolean[] forwardedBeforeTheRest = new boolean[1];
+        generate = exchange -> {
+            requestBody[0] = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                write(out, "{\"response\":\"Hel\",\"done\":false}\n".getBytes(StandardCharsets.UTF_8));
+                // The rest only comes once the first token has reached the client
+                forwardedBeforeTheRest[0] = awaitQuietly(firstTokenForwarded);
+                byte[] split = "{\"response\":\"lo wö\",\"done\":false}\n".getBytes(StandardCharsets.UTF_8);
+                int middleOfUmlaut = split.length - 17;
+                write(out, Arrays.copyOfRange(split, 0, middleOfUmlaut));
+                write(out, Arrays.copyOfRange(split, middleOfUmlaut, split.length));
+                write(out, ("{\"response\":\"rld\",\"done\":false}\n" +
+                        "{\"response\":\"\",\"done\":true,\"eval_count\":3}\n").getBytes(StandardCharsets.UTF_8));
+            }
+        };
+
+        List<ServerSentEvent<Object>> events = aiService.streamQuery(query("Summarize the patient intake process"))
+                .doOnNext(event -> firstTokenForwarded.countDown())
+                .collectList()
+                .block();
+
+        assertNotNull(events);
+        assertTrue(forwardedBeforeTheRest[0]);
+        assertEquals(List.of("token Hel", "token lo wö", "token rld", "done"), events.stream()
+                .map(event -> event.event() + (AIService.TOKEN_EVENT.equals(event.event()) ? " " + event.data() : ""))
+                .toList());
+        assertEquals("Hello wörld", ((ChatResponse) events.get(3).data()).getResponse());
+        assertTrue(requestBody[0].contains("\"stream\":true"));
+        assertEquals(1, meterRegistry.get("ai.chat.time-to-first-token").timer().count());
+    }
+
+    @Test
+    void streamQuery_WhenTheClientCancels_ShouldCancelTheOllamaRequest() throws InterruptedException {
+        CountDownLatch upstreamClosed = new CountDownLatch(1);
+        generate = exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (int i = 0; i < 600; i++) {
+                    write(out, ("{\"response\":\"token" + i + " \",\"done\":false}\n")
+                            .getBytes(StandardCharsets.UTF_8));
+                    Thread.sleep(50);
+                }
+            } catch (IOException e) {
+                upstreamClosed.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        ServerSentEvent<Object> first = aiService.streamQuery(query("Explain the triage levels")).blockFirst();
+
+        assertNotNull(first);
+        assertEquals("token0 ", first.data());
+        assertTrue(upstreamClosed.await(10, TimeUnit.SECONDS), "Ollama kept generating after the client left");
+    }
+
+    @Test
+    void streamQuery_ForAKnownPattern_ShouldAnswerFromTheDatabase() {
+        List<FacilityDto> facilities = List.of(FacilityDto.builder().id(1L).name("General").build());
+        when(facilityService.getFacilitiesWithPatientCountGreaterThan(40)).thenReturn(facilities);
+        generate = exchange -> fail("Ollama should not be called");
+
+        List<ServerSentEvent<Object>> events = aiService.streamQuery(
+                query("Which facilities have more than 40 patients?")).collectList().block();
+
+        assertNotNull(events);
+        assertEquals(1, events.size());
+        assertEquals(AIService.DONE_EVENT, events.get(0).event());
+        assertEquals(facilities, ((ChatResponse) events.get(0).data()).getData());
+    }
+
+    @Test
+    void streamQuery_WhenOllamaFails_ShouldSendAnErrorEvent() {
+        generate = exchange -> {
+            byte[] body = "{\"error\":\"model 'llama2' not found\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(404, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        };
+
+        List<ServerSentEvent<Object>> events = aiService.streamQuery(query("Explain the triage levels"))
+                .collectList().block();
+
+        assertNotNull(events);
+        assertEquals(List.of(AIService.ERROR_EVENT), events.stream().map(ServerSentEvent::event).toList());
+    }
+
+    private ChatRequest query(String text) {
+        ChatRequest chatRequest = new ChatRequest();
+        chatRequest.setQuery(text);
+        return chatRequest;
+    }
+
+    private void write(OutputStream out, byte[] bytes) throws IOException {
+        out.write(bytes);
+        out.flush();
+    }
+
+    private boolean awaitQuietly(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
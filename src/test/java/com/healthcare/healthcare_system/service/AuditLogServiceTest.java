@@ -1,33 +1,72 @@
 package com.healthcare.healthcare_system.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.healthcare.healthcare_system.dto.CursorPage;
+import com.healthcare.healthcare_system.dto.FacilityDto;
+import com.healthcare.healthcare_system.dto.KeysetCursor;
+import com.healthcare.healthcare_system.dto.PatientDto;
+import com.healthcare.healthcare_system.enums.AuditCaptureMode;
+import com.healthcare.healthcare_system.exception.ResourceNotFoundException;
+import com.healthcare.healthcare_system.exception.ValidationException;
 import com.healthcare.healthcare_system.model.AuditLog;
-import com.healthcare.healthcare_system.repository.AuditLogRepository;
+import com.healthcare.healthcare_system.model.AuditOutboxEvent;
+import com.healthcare.healthcare_system.repository.AuditLogStore;
+import com.healthcare.healthcare_system.repository.AuditOutboxRepository;
+import com.healthcare.healthcare_system.repository.AuditSnapshotRepository;
+import com.healthcare.healthcare_system.util.CursorUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
 
+import static com.healthcare.healthcare_system.util.MessageUtils.AUDIT_LOG_ENTITY;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.notNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 public class AuditLogServiceTest {
 
     @Mock
-    private AuditLogRepository auditLogRepository;
+    private AuditLogStore auditLogStore;
+
+    @Mock
+    private AuditLogWriter auditLogWriter;
+
+    @Mock
+    private AuditOutboxRepository auditOutboxRepository;
+
+    @Mock
+    private AuditSnapshotRepository auditSnapshotRepository;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
 
     @InjectMocks
     private AuditLogService auditLogService;
@@ -60,18 +99,167 @@ public class AuditLogServiceTest {
     }
 
     @Test
-    void logAudit_ShouldSaveAuditLog() throws ExecutionException, InterruptedException {
+    void logAudit_ShouldQueueAuditLogStampedWithTheTimeOfTheChange() {
+        // Given
+        LocalDateTime before = LocalDateTime.now();
+
+        // When
+        auditLogService.logAudit("Patient", 1L, "CREATE", null, "Patient details");
+
+        // Then
+        ArgumentCaptor<AuditLog> queued = ArgumentCaptor.forClass(AuditLog.class);
+        verify(auditLogWriter, times(1)).enqueue(queued.capture());
+        assertEquals("Patient", queued.getValue().getEntityType());
+        assertEquals("Patient details", queued.getValue().getNewValue());
+        assertFalse(queued.getValue().getChangedAt().isBefore(before));
+        verifyNoInteractions(auditLogStore, auditOutboxRepository);
+    }
+
+    @Test
+    void logAudit_InOutboxMode_ShouldSaveOutboxEventInsteadOfQueueing() {
+        // Given
+        ReflectionTestUtils.setField(auditLogService, "captureMode", AuditCaptureMode.OUTBOX);
+
+        // When
+        auditLogService.logAudit("Patient", 1L, "UPDATE", "Old details", "New details");
+
+        // Then
+        ArgumentCaptor<AuditOutboxEvent> saved = ArgumentCaptor.forClass(AuditOutboxEvent.class);
+        verify(auditOutboxRepository, times(1)).save(saved.capture());
+        assertEquals(1L, saved.getValue().getEntityId());
+        assertEquals("Old details", saved.getValue().getOldValue());
+        assertNotNull(saved.getValue().getChangedAt());
+        verifyNoInteractions(auditLogWriter);
+    }
+
+    @Test
+    void logCreate_ShouldRecordSnapshotOfNonNullFields() {
+        // When
+        auditLogService.logCreate("Patient", 5L, patient("John", "Smith", "john@example.com"));
+
+        // Then
+        ArgumentCaptor<AuditLog> queued = ArgumentCaptor.forClass(AuditLog.class);
+        verify(auditLogWriter).enqueue(queued.capture());
+        assertEquals("CREATE", queued.getValue().getAction());
+        assertNull(queued.getValue().getOldValue());
+        assertEquals("{\"facilityId\":1,\"firstName\":\"John\",\"lastName\":\"Smith\"," +
+                "\"dateOfBirth\":\"1990-01-01\",\"gender\":\"Male\",\"email\":\"john@example.com\"}",
+                queued.getValue().getNewValue());
+    }
+
+    @Test
+    void logUpdate_ShouldRecordOnlyChangedFields() {
+        // When
+        auditLogService.logUpdate("Patient", 5L, patient("John", "Smith", "john@example.com"),
+                patient("John", "Smyth", null));
+
+        // Then
+        ArgumentCaptor<AuditLog> queued = ArgumentCaptor.forClass(AuditLog.class);
+        verify(auditLogWriter).enqueue(queued.capture());
+        assertEquals("UPDATE", queued.getValue().getAction());
+        assertEquals("{\"email\":\"john@example.com\",\"lastName\":\"Smith\"}", queued.getValue().getOldValue());
+        assertEquals("{\"email\":null,\"lastName\":\"Smyth\"}", queued.getValue().getNewValue());
+    }
+
+    @Test
+    void logUpdate_WhenNothingChanged_ShouldNotLog() {
+        // When
+        auditLogService.logUpdate("Facility", 3L,
+                FacilityDto.builder().id(3L).name("General").type("HOSPITAL").address("1 Main St").patientCount(4L).build(),
+                FacilityDto.builder().id(3L).name("General").type("HOSPITAL").address("1 Main St").patientCount(5L).build());
+
+        // Then
+        verifyNoInteractions(auditLogWriter);
+    }
+
+    @Test
+    void reconstruct_ShouldReplayChangesUpToTheRequestedTime() {
+        // Given
+        LocalDateTime at = LocalDateTime.of(2024, 6, 1, 0, 0);
+        when(auditLogStore.findHistory("Patient", 5L, at)).thenReturn(List.of(
+                entry("CREATE", "{\"facilityId\":1,\"firstName\":\"John\",\"lastName\":\"Smith\"," +
+                        "\"dateOfBirth\":\"1990-01-01\",\"gender\":\"Male\",\"email\":\"john@example.com\"}"),
+                entry("UPDATE", "{\"email\":null,\"lastName\":\"Smyth\"}"),
+                entry("UPDATE", "{\"facilityId\":2}")));
+
+        // When
+        PatientDto result = (PatientDto) auditLogService.reconstruct("Patient", 5L, at);
+
+        // Then
+        assertEquals(5L, result.getId());
+        assertEquals(2L, result.getFacilityId());
+        assertEquals("Smyth", result.getLastName());
+        assertEquals(LocalDate.of(1990, 1, 1), result.getDateOfBirth());
+        assertNull(result.getEmail());
+    }
+
+    @Test
+    void reconstruct_FromSnapshot_ShouldReplayOnlyTheChangesAfterIt() {
+        // Given
+        LocalDateTime at = LocalDateTime.of(2024, 6, 1, 0, 0);
+        LocalDateTime snapshotAt = LocalDateTime.of(2024, 5, 20, 9, 30);
+        when(auditSnapshotRepository.findLatest("Patient", 5L, at)).thenReturn(new AuditSnapshotRepository.Snapshot(
+                snapshotAt, 40L, "{\"facilityId\":1,\"firstName\":\"John\",\"lastName\":\"Smith\"," +
+                "\"email\":\"john@example.com\"}"));
+        ArgumentCaptor<KeysetCursor> after = ArgumentCaptor.forClass(KeysetCursor.class);
+        when(auditLogStore.scroll(any(), eq(Sort.Direction.ASC), after.capture(), eq(Integer.MAX_VALUE)))
+                .thenReturn(List.of(entry("UPDATE", "{\"email\":null,\"lastName\":\"Smyth\"}")));
+
+        // When
+        PatientDto result = (PatientDto) auditLogService.reconstruct("Patient", 5L, at);
+
+        // Then
+        assertEquals(snapshotAt.toString(), after.getValue().getSortValue());
+        assertEquals(40L, after.getValue().getId());
+        assertEquals(1L, result.getFacilityId());
+        assertEquals("John", result.getFirstName());
+        assertEquals("Smyth", result.getLastName());
+        assertNull(result.getEmail());
+        verify(auditLogStore, never()).findHistory(any(), any(), any());
+    }
+
+    @Test
+    void replay_ShouldHandOverTheStateAfterEveryIntervalButTheLast() {
         // Given
-        when(auditLogRepository.save(any(AuditLog.class))).thenReturn(auditLog1);
+        LocalDateTime at = LocalDateTime.of(2024, 6, 1, 0, 0);
+        List<AuditLog> history = List.of(
+                entry("CREATE", "{\"name\":\"General\",\"type\":\"HOSPITAL\"}"),
+                entry("UPDATE", "{\"name\":\"Central\"}"),
+                entry("UPDATE", "{\"type\":\"CLINIC\"}"),
+                entry("DELETE", null),
+                entry("CREATE", "{\"name\":\"North\",\"type\":\"CLINIC\"}"));
+        when(auditLogStore.findHistory("Facility", 3L, at)).thenReturn(history);
+        List<String> handedOver = new ArrayList<>();
 
         // When
-        CompletableFuture<Void> future = CompletableFuture.runAsync(() ->
-                auditLogService.logAudit("Patient", 1L, "CREATE", null, "Patient details")
-        );
-        future.get(); // Wait for async operation to complete
+        AuditLogService.ReplayedState replayed = auditLogService.replay("Facility", 3L, at, 2,
+                (position, state) -> handedOver.add(history.indexOf(position) + " " + state));
 
         // Then
-        verify(auditLogRepository, times(1)).save(any(AuditLog.class));
+        assertEquals(List.of("1 {\"name\":\"Central\",\"type\":\"HOSPITAL\"}", "3 null"), handedOver);
+        assertEquals(history.get(4), replayed.getLastReplayed());
+        assertEquals("North", replayed.getState().get("name").asText());
+    }
+
+    @Test
+    void reconstruct_WhenDeletedOrWithoutStructuredHistory_ShouldThrowResourceNotFoundException() {
+        // Given
+        when(auditLogStore.findHistory(eq("Facility"), eq(3L), any())).thenReturn(
+                List.of(entry("CREATE", "{\"name\":\"General\"}"), entry("DELETE", null)),
+                List.of(entry("CREATE", "\"com.healthcare.healthcare_system.model.Facility@1a2b3c\"")));
+
+        // Then
+        assertThrows(ResourceNotFoundException.class,
+                () -> auditLogService.reconstruct("Facility", 3L, LocalDateTime.now()));
+        assertThrows(ResourceNotFoundException.class,
+                () -> auditLogService.reconstruct("Facility", 3L, LocalDateTime.now()));
+    }
+
+    @Test
+    void reconstruct_ForUnsupportedEntityType_ShouldThrowValidationException() {
+        assertThrows(ValidationException.class,
+                () -> auditLogService.reconstruct("Doctor", 2L, LocalDateTime.now()));
+        verifyNoInteractions(auditLogStore);
     }
 
     @Test
@@ -79,7 +267,7 @@ public class AuditLogServiceTest {
         // Given
         Pageable pageable = mock(Pageable.class);
         Page<AuditLog> page = new PageImpl<>(auditLogs);
-        when(auditLogRepository.findAll(pageable)).thenReturn(page);
+        when(auditLogStore.findAll(pageable)).thenReturn(page);
 
         // When
         Page<AuditLog> result = auditLogService.getAllAuditLogs(pageable);
@@ -87,93 +275,136 @@ public class AuditLogServiceTest {
         // Then
         assertNotNull(result);
         assertEquals(2, result.getContent().size());
-        verify(auditLogRepository, times(1)).findAll(pageable);
+        verify(auditLogStore, times(1)).findAll(pageable);
     }
 
     @Test
-    void getAuditLogsByEntityType_ShouldReturnFilteredLogs() {
+    void getAuditLogsByEntityType_ShouldReturnSliceWithNextCursorWhenMoreRowsExist() {
         // Given
-        when(auditLogRepository.findByEntityTypeOrderByChangedAtDesc("Patient"))
-                .thenReturn(Arrays.asList(auditLog1));
+        auditLog1.setId(10L);
+        when(auditLogStore.scroll(notNull(), eq(Sort.Direction.DESC), isNull(), eq(2)))
+                .thenReturn(auditLogs);
 
         // When
-        List<AuditLog> result = auditLogService.getAuditLogsByEntityType("Patient");
+        CursorPage<AuditLog> result = auditLogService.getAuditLogsByEntityType("Patient", null, 1);
 
         // Then
-        assertNotNull(result);
-        assertEquals(1, result.size());
-        assertEquals("Patient", result.get(0).getEntityType());
-        verify(auditLogRepository, times(1))
-                .findByEntityTypeOrderByChangedAtDesc("Patient");
+        assertEquals(1, result.getSize());
+        assertTrue(result.isHasNext());
+        assertEquals(auditLog1, result.getContent().get(0));
+        KeysetCursor next = CursorUtils.decode(result.getNextCursor(), AUDIT_LOG_ENTITY);
+        assertEquals("changedAt", next.getSortProperty());
+        assertEquals(Sort.Direction.DESC, next.getDirection());
+        assertEquals(auditLog1.getChangedAt(), LocalDateTime.parse(next.getSortValue()));
+        assertEquals(10L, next.getId());
     }
 
     @Test
-    void getAuditLogsForEntity_ShouldReturnEntityLogs() {
+    void getAuditLogsForEntity_ShouldContinueFromCursorWithoutNextCursorOnLastSlice() {
         // Given
-        when(auditLogRepository.findByEntityTypeAndEntityIdOrderByChangedAtDesc("Patient", 1L))
-                .thenReturn(Arrays.asList(auditLog1));
+        LocalDateTime changedAt = LocalDateTime.of(2024, 1, 1, 12, 0);
+        String cursor = CursorUtils.encode(new KeysetCursor("changedAt", Sort.Direction.DESC, changedAt.toString(), 7L));
+        ArgumentCaptor<KeysetCursor> after = ArgumentCaptor.forClass(KeysetCursor.class);
+        when(auditLogStore.scroll(notNull(), eq(Sort.Direction.DESC), after.capture(), eq(11)))
+                .thenReturn(List.of(auditLog1));
 
         // When
-        List<AuditLog> result = auditLogService.getAuditLogsForEntity("Patient", 1L);
+        CursorPage<AuditLog> result = auditLogService.getAuditLogsForEntity("Patient", 1L, cursor, 10);
 
         // Then
-        assertNotNull(result);
-        assertEquals(1, result.size());
-        assertEquals(1L, result.get(0).getEntityId());
-        verify(auditLogRepository, times(1))
-                .findByEntityTypeAndEntityIdOrderByChangedAtDesc("Patient", 1L);
+        assertEquals(1, result.getSize());
+        assertFalse(result.isHasNext());
+        assertNull(result.getNextCursor());
+        assertEquals(7L, after.getValue().getId());
+        assertEquals(changedAt.toString(), after.getValue().getSortValue());
     }
 
     @Test
-    void getAuditLogsByAction_ShouldReturnActionLogs() {
+    void getAuditLogsByAction_ShouldUseDefaultSizeAndCapLargeSizes() {
         // Given
-        when(auditLogRepository.findByActionOrderByChangedAtDesc("CREATE"))
-                .thenReturn(Arrays.asList(auditLog1));
+        when(auditLogStore.scroll(notNull(), eq(Sort.Direction.DESC), isNull(), anyInt()))
+                .thenReturn(List.of(auditLog1));
 
         // When
-        List<AuditLog> result = auditLogService.getAuditLogsByAction("CREATE");
+        auditLogService.getAuditLogsByAction("CREATE", "", null);
+        auditLogService.getAuditLogsByAction("CREATE", null, 1_000_000);
 
         // Then
-        assertNotNull(result);
-        assertEquals(1, result.size());
-        assertEquals("CREATE", result.get(0).getAction());
-        verify(auditLogRepository, times(1))
-                .findByActionOrderByChangedAtDesc("CREATE");
+        verify(auditLogStore).scroll(notNull(), eq(Sort.Direction.DESC), isNull(),
+                eq(AuditLogService.DEFAULT_PAGE_SIZE + 1));
+        verify(auditLogStore).scroll(notNull(), eq(Sort.Direction.DESC), isNull(),
+                eq(AuditLogService.MAX_PAGE_SIZE + 1));
     }
 
     @Test
-    void getAuditLogsByDateRange_ShouldReturnFilteredLogs() {
+    void getAuditLogsByDateRange_ShouldRejectEmptyRange() {
         // Given
-        LocalDateTime start = LocalDateTime.now().minusDays(1);
         LocalDateTime end = LocalDateTime.now();
-        when(auditLogRepository.findByChangedAtBetweenOrderByChangedAtDesc(start, end))
-                .thenReturn(auditLogs);
+
+        // When / Then
+        assertThrows(ValidationException.class,
+                () -> auditLogService.getAuditLogsByDateRange(end, end.minusDays(1), null, null));
+        verifyNoInteractions(auditLogStore);
+    }
+
+    @Test
+    void getEntityHistory_ShouldRejectCursorIssuedByTheFeed() {
+        // Given
+        String feedCursor = CursorUtils.encode(new KeysetCursor("changedAt", Sort.Direction.ASC,
+                LocalDateTime.now().toString(), 7L));
+
+        // When / Then
+        assertThrows(ValidationException.class,
+                () -> auditLogService.getEntityHistory("Patient", 1L, feedCursor, null));
+        verifyNoInteractions(auditLogStore);
+    }
+
+    @Test
+    void getChangesSince_ShouldReturnCursorOfLastEntryEvenWithoutMoreRows() {
+        // Given
+        auditLog2.setId(20L);
+        when(auditLogStore.scroll(notNull(), eq(Sort.Direction.ASC), isNull(), eq(11)))
+                .thenReturn(List.of(auditLog1, auditLog2));
 
         // When
-        List<AuditLog> result = auditLogService.getAuditLogsByDateRange(start, end);
+        CursorPage<AuditLog> result = auditLogService.getChangesSince(null, LocalDateTime.now().minusDays(1), 10);
 
         // Then
-        assertNotNull(result);
-        assertEquals(2, result.size());
-        verify(auditLogRepository, times(1))
-                .findByChangedAtBetweenOrderByChangedAtDesc(start, end);
+        assertFalse(result.isHasNext());
+        KeysetCursor next = CursorUtils.decode(result.getNextCursor(), AUDIT_LOG_ENTITY);
+        assertEquals(Sort.Direction.ASC, next.getDirection());
+        assertEquals(20L, next.getId());
     }
 
     @Test
-    void getEntityHistory_ShouldReturnEntityLogs() {
+    void getChangesSince_WhenNothingNew_ShouldHandBackTheSameCursor() {
         // Given
-        when(auditLogRepository.findByEntityTypeAndEntityIdOrderByChangedAtDesc("Patient", 1L))
-                .thenReturn(Arrays.asList(auditLog1));
+        String cursor = CursorUtils.encode(new KeysetCursor("changedAt", Sort.Direction.ASC,
+                LocalDateTime.of(2024, 1, 1, 12, 0).toString(), 7L));
+        when(auditLogStore.scroll(notNull(), eq(Sort.Direction.ASC), any(KeysetCursor.class), anyInt()))
+                .thenReturn(List.of());
 
         // When
-        List<AuditLog> result = auditLogService.getEntityHistory("Patient", 1L);
+        CursorPage<AuditLog> result = auditLogService.getChangesSince(cursor, null, null);
 
         // Then
-        assertNotNull(result);
-        assertEquals(1, result.size());
-        assertEquals("Patient", result.get(0).getEntityType());
-        assertEquals(1L, result.get(0).getEntityId());
-        verify(auditLogRepository, times(1))
-                .findByEntityTypeAndEntityIdOrderByChangedAtDesc("Patient", 1L);
+        assertEquals(0, result.getSize());
+        assertEquals(cursor, result.getNextCursor());
+    }
+
+    private PatientDto patient(String firstName, String lastName, String email) {
+        return PatientDto.builder()
+                .id(5L)
+                .facilityId(1L)
+                .firstName(firstName)
+                .lastName(lastName)
+                .dateOfBirth(LocalDate.of(1990, 1, 1))
+                .gender("Male")
+                .email(email)
+                .build();
+    }
+
+    private AuditLog entry(String action, String newValue) {
+        return AuditLog.builder().action(action).newValue(newValue).build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,254 @@
+package com.healthcare.healthcare_system.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.healthcare.healthcare_system.enums.AuditOverflowPolicy;
+import com.healthcare.healthcare_system.model.AuditLog;
+import com.healthcare.healthcare_system.repository.AuditLogStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AuditLogWriterTest {
+
+    @Mock
+    private AuditLogStore auditLogStore;
+
+    @TempDir
+    Path spillDir;
+
+    private AuditLogWriter auditLogWriter;
+    private SimpleMeterRegistry meterRegistry;
+    private final List<List<AuditLog>> savedBatches = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        auditLogWriter = new AuditLogWriter(auditLogStore, new ObjectMapper().findAndRegisterModules(),
+                meterRegistry);
+        ReflectionTestUtils.setField(auditLogWriter, "spillDir", spillDir.toString());
+        ReflectionTestUtils.setField(auditLogWriter, "flushIntervalMs", 50L);
+
+        lenient().when(auditLogStore.saveAll(anyList())).thenAnswer(invocation -> {
+            List<AuditLog> batch = new ArrayList<>();
+            invocation.<Iterable<AuditLog>>getArgument(0).forEach(batch::add);
+            savedBatches.add(batch);
+            return batch;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        auditLogWriter.stop();
+    }
+
+    @Test
+    void enqueue_ShouldWriteFullBatchesAndFlushTheRestAfterTheInterval() throws Exception {
+        ReflectionTestUtils.setField(auditLogWriter, "batchSize", 10);
+        ReflectionTestUtils.setField(auditLogWriter, "flushIntervalMs", 300L);
+        auditLogWriter.start();
+
+        for (int i = 0; i < 25; i++) {
+            assertTrue(auditLogWriter.enqueue(auditLog(i)));
+        }
+
+        awaitSavedBatches(3);
+        assertEquals(25, savedBatches.stream().mapToInt(List::size).sum());
+        assertEquals(10, savedBatches.get(0).size());
+        assertEquals(0L, savedBatches.get(0).get(0).getEntityId());
+        assertEquals(25.0, meterRegistry.get("audit.writer.events").tag("outcome", "written").counter().count());
+        assertEquals(3, meterRegistry.get("audit.writer.flush").timer().count());
+    }
+
+    @Test
+    void enqueue_BelowBatchSize_ShouldFlushAfterTheInterval() throws Exception {
+        auditLogWriter.start();
+
+        auditLogWriter.enqueue(auditLog(1));
+        auditLogWriter.enqueue(auditLog(2));
+
+        awaitSavedBatches(1);
+        assertEquals(2, savedBatches.get(0).size());
+    }
+
+    @Test
+    void enqueue_WhenQueueIsFullAndPolicyIsReject_ShouldDropAndCount() throws Exception {
+        CountDownLatch release = blockFirstSave();
+        ReflectionTestUtils.setField(auditLogWriter, "overflowPolicy", AuditOverflowPolicy.REJECT);
+        fillQueue();
+
+        assertFalse(auditLogWriter.enqueue(auditLog(99)));
+        assertEquals(1.0, meterRegistry.get("audit.writer.events").tag("outcome", "rejected").counter().count());
+        assertEquals(2.0, meterRegistry.get("audit.writer.queue.depth").gauge().value());
+        release.countDown();
+    }
+
+    @Test
+    void enqueue_WhenQueueIsFullAndPolicyIsSpill_ShouldWriteSpillFileAndReplayIt() throws Exception {
+        CountDownLatch release = blockFirstSave();
+        ReflectionTestUtils.setField(auditLogWriter, "overflowPolicy", AuditOverflowPolicy.SPILL);
+        fillQueue();
+
+        assertTrue(auditLogWriter.enqueue(auditLog(99)));
+        List<String> spilled = Files.readAllLines(spillDir.resolve(AuditLogWriter.SPILL_FILE));
+        assertEquals(1, spilled.size());
+        assertTrue(spilled.get(0).contains("\"entityId\":99"));
+
+        release.countDown();
+        awaitSavedBatches(4);
+        AuditLog replayed = savedBatches.get(3).get(0);
+        assertEquals(99L, replayed.getEntityId());
+        assertEquals(LocalDateTime.of(2024, 1, 1, 12, 0), replayed.getChangedAt());
+        // The replay file is deleted once its last batch is saved
+        assertEquals(0, awaitSpillFiles(0));
+    }
+
+    @Test
+    void enqueue_WhenQueueIsFullAndPolicyIsBlock_ShouldWaitForRoom() throws Exception {
+        CountDownLatch release = blockFirstSave();
+        fillQueue();
+
+        Thread producer = new Thread(() -> auditLogWriter.enqueue(auditLog(99)));
+        producer.start();
+        producer.join(200);
+        assertTrue(producer.isAlive());
+
+        release.countDown();
+        producer.join(2000);
+        assertFalse(producer.isAlive());
+        verify(auditLogStore, timeout(2000).times(4)).saveAll(anyList());
+    }
+
+    @Test
+    void writeBatch_WhenSaveFails_ShouldSpillTheBatchWithoutIdsToOwnerOnlyFiles() throws Exception {
+        Path directory = spillDir.resolve("spill");
+        ReflectionTestUtils.setField(auditLogWriter, "spillDir", directory.toString());
+        doThrow(new DataAccessResourceFailureException("connection lost"))
+                .when(auditLogStore).saveAll(anyList());
+        auditLogWriter.start();
+
+        AuditLog auditLog = auditLog(1);
+        auditLog.setId(500L);
+        auditLogWriter.enqueue(auditLog);
+
+        // At least once, as the writer may already have tried to replay the spill file
+        verify(auditLogStore, timeout(2000).atLeastOnce()).saveAll(anyList());
+        auditLogWriter.stop();
+
+        // The writer retries the spill file when idle, so it may already have been renamed for replay
+        assertEquals(PosixFilePermissions.fromString("rwx------"), Files.getPosixFilePermissions(directory));
+        try (var files = Files.list(directory)) {
+            List<Path> spillFiles = files.toList();
+            assertEquals(1, spillFiles.size());
+            assertEquals(PosixFilePermissions.fromString("rw-------"),
+                    Files.getPosixFilePermissions(spillFiles.get(0)));
+            String spilled = Files.readString(spillFiles.get(0));
+            assertTrue(spilled.contains("\"id\":null"));
+            assertTrue(spilled.contains("\"entityId\":1"));
+        }
+        assertEquals(1.0, meterRegistry.get("audit.writer.events").tag("outcome", "spilled").counter().count());
+    }
+
+    @Test
+    void start_ShouldReplaySpillFilesLeftByAPreviousRun() throws Exception {
+        Files.writeString(spillDir.resolve("audit-spill-1" + AuditLogWriter.REPLAY_SUFFIX),
+                "{\"entityType\":\"Patient\",\"entityId\":7,\"action\":\"UPDATE\"}\n\n" +
+                        "{\"entityType\":\"Patient\",\"entityId\":8,\"action\":\"DELETE\"}\n");
+
+        auditLogWriter.start();
+
+        awaitSavedBatches(1);
+        assertEquals(List.of(7L, 8L), savedBatches.get(0).stream().map(AuditLog::getEntityId).toList());
+    }
+
+    @Test
+    void stop_ShouldFlushQueuedEvents() {
+        ReflectionTestUtils.setField(auditLogWriter, "flushIntervalMs", 60_000L);
+        auditLogWriter.start();
+        for (int i = 0; i < 5; i++) {
+            auditLogWriter.enqueue(auditLog(i));
+        }
+
+        auditLogWriter.stop();
+
+        assertEquals(5, savedBatches.stream().mapToInt(List::size).sum());
+        assertEquals(0, auditLogWriter.queueDepth());
+    }
+
+    private void awaitSavedBatches(int count) throws InterruptedException {
+        for (int i = 0; i < 200 && savedBatches.size() < count; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, savedBatches.size());
+    }
+
+    private long awaitSpillFiles(long count) throws Exception {
+        long files = Long.MAX_VALUE;
+        for (int i = 0; i < 200 && files != count; i++) {
+            try (var listed = Files.list(spillDir)) {
+                files = listed.count();
+            }
+            if (files != count) {
+                Thread.sleep(10);
+            }
+        }
+        return files;
+    }
+
+    private CountDownLatch blockFirstSave() {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch first = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            if (first.getCount() > 0) {
+                first.countDown();
+                release.await(5, TimeUnit.SECONDS);
+            }
+            List<AuditLog> batch = new ArrayList<>();
+            invocation.<Iterable<AuditLog>>getArgument(0).forEach(batch::add);
+            savedBatches.add(batch);
+            return batch;
+        }).when(auditLogStore).saveAll(anyList());
+        return release;
+    }
+
+    // Starts a writer with a two slot queue, lets it take one event into a save that blocks, then fills the queue
+    private void fillQueue() {
+        ReflectionTestUtils.setField(auditLogWriter, "capacity", 2);
+        ReflectionTestUtils.setField(auditLogWriter, "batchSize", 1);
+        auditLogWriter.start();
+        auditLogWriter.enqueue(auditLog(0));
+        verify(auditLogStore, timeout(2000)).saveAll(anyList());
+        assertTrue(auditLogWriter.enqueue(auditLog(1)));
+        assertTrue(auditLogWriter.enqueue(auditLog(2)));
+    }
+
+    private AuditLog auditLog(long entityId) {
+        return AuditLog.builder()
+                .entityType("Patient")
+                .entityId(entityId)
+                .action("UPDATE")
+                .changedAt(LocalDateTime.of(2024, 1, 1, 12, 0))
+                .build();
+    }
+}
@@ -0,0 +1,112 @@
+package com.healthcare.healthcare_system.service;
+
+import com.healthcare.healthcare_system.exception.ServiceException;
+import com.healthcare.healthcare_system.model.AuditLog;
+import com.healthcare.healthcare_system.model.AuditOutboxEvent;
+import com.healthcare.healthcare_system.repository.AuditLogStore;
+import com.healthcare.healthcare_system.repository.AuditOutboxRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AuditOutboxRelayTest {
+
+    @Mock
+    private AuditOutboxRepository auditOutboxRepository;
+
+    @Mock
+    private AuditLogStore auditLogStore;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private AuditOutboxRelay auditOutboxRelay;
+
+    @BeforeEach
+    void setUp() {
+        auditOutboxRelay = new AuditOutboxRelay(auditOutboxRepository, auditLogStore,
+                new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(auditOutboxRelay, "batchSize", 2);
+    }
+
+    @Test
+    void relay_ShouldMoveEventsInBatchesUntilTheOutboxIsEmpty() {
+        when(auditOutboxRepository.lockNextBatch(2))
+                .thenReturn(events(1, 2), events(3, 4), events(5));
+
+        long relayed = auditOutboxRelay.relay();
+
+        assertEquals(5, relayed);
+        verify(auditLogStore, times(3)).saveAll(anyList());
+        verify(auditOutboxRepository).deleteByIds(List.of(1L, 2L));
+        verify(auditOutboxRepository).deleteByIds(List.of(5L));
+        verify(transactionManager, times(3)).commit(any());
+    }
+
+    @Test
+    void relay_ShouldCopyEveryField() {
+        when(auditOutboxRepository.lockNextBatch(2)).thenReturn(events(7));
+
+        auditOutboxRelay.relay();
+
+        ArgumentCaptor<List<AuditLog>> saved = ArgumentCaptor.forClass(List.class);
+        verify(auditLogStore).saveAll(saved.capture());
+        AuditLog auditLog = saved.getValue().get(0);
+        assertNull(auditLog.getId());
+        assertEquals("Patient", auditLog.getEntityType());
+        assertEquals(70L, auditLog.getEntityId());
+        assertEquals("UPDATE", auditLog.getAction());
+        assertEquals("old 7", auditLog.getOldValue());
+        assertEquals("new 7", auditLog.getNewValue());
+        assertEquals(LocalDateTime.of(2024, 1, 1, 12, 7), auditLog.getChangedAt());
+    }
+
+    @Test
+    void relay_WhenOutboxIsEmpty_ShouldWriteNothing() {
+        when(auditOutboxRepository.lockNextBatch(2)).thenReturn(List.of());
+
+        assertEquals(0, auditOutboxRelay.relay());
+        verifyNoInteractions(auditLogStore);
+        verify(auditOutboxRepository, never()).deleteByIds(any());
+    }
+
+    @Test
+    void relay_WhenDatabaseErrorOccurs_ShouldRollBackAndThrowServiceException() {
+        when(auditOutboxRepository.lockNextBatch(2)).thenReturn(events(1));
+        when(auditLogStore.saveAll(anyList())).thenThrow(new DataAccessResourceFailureException("connection lost"));
+
+        assertThrows(ServiceException.class, () -> auditOutboxRelay.relay());
+        verify(auditOutboxRepository, never()).deleteByIds(any());
+        verify(transactionManager).rollback(any());
+    }
+
+    private List<AuditOutboxEvent> events(long... ids) {
+        return LongStream.of(ids)
+                .mapToObj(id -> AuditOutboxEvent.builder()
+                        .id(id)
+                        .entityType("Patient")
+                        .entityId(id * 10)
+                        .action("UPDATE")
+                        .oldValue("old " + id)
+                        .newValue("new " + id)
+                        .changedAt(LocalDateTime.of(2024, 1, 1, 12, (int) id))
+                        .build())
+                .toList();
+    }
+}
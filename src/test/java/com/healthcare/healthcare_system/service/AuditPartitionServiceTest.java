@@ -0,0 +1,170 @@
+package com.healthcare.healthcare_system.service;
+
+import com.healthcare.healthcare_system.dto.AuditArchiveRestoreResultDto;
+import com.healthcare.healthcare_system.dto.AuditPartitionMaintenanceResultDto;
+import com.healthcare.healthcare_system.exception.ResourceNotFoundException;
+import com.healthcare.healthcare_system.exception.ServiceException;
+import com.healthcare.healthcare_system.exception.ValidationException;
+import com.healthcare.healthcare_system.repository.AuditPartitionRepository;
+import com.healthcare.healthcare_system.repository.AuditPartitionRepository.AuditPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AuditPartitionServiceTest {
+    private static final String CSV = "id,entity_type,entity_id,action,old_value,new_value,changed_by,changed_at\n" +
+            "1,Patient,7,DELETE,,,,2024-01-15 10:00:00\n";
+
+    @Mock
+    private AuditPartitionRepository auditPartitionRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path archiveDir;
+
+    private AuditPartitionService auditPartitionService;
+
+    @BeforeEach
+    void setUp() {
+        auditPartitionService = new AuditPartitionService(auditPartitionRepository,
+                new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(auditPartitionService, "archiveDir", archiveDir.toString());
+    }
+
+    @Test
+    void createPartitions_ShouldCreateOnlyMissingMonthsUpToThePremakeHorizon() {
+        YearMonth current = YearMonth.now();
+        when(auditPartitionRepository.findPartitions()).thenReturn(List.of(
+                partition(current, false), partition(current.plusMonths(1), false)));
+        when(auditPartitionRepository.createPartition(any())).thenAnswer(invocation ->
+                AuditPartitionRepository.partitionName(invocation.getArgument(0)));
+
+        List<String> created = auditPartitionService.createPartitions();
+
+        assertEquals(List.of(AuditPartitionRepository.partitionName(current.plusMonths(2)),
+                AuditPartitionRepository.partitionName(current.plusMonths(3))), created);
+        verify(auditPartitionRepository, never()).createPartition(current);
+    }
+
+    @Test
+    void maintain_WithoutRetention_ShouldNotArchiveAnything() {
+        YearMonth current = YearMonth.now();
+        when(auditPartitionRepository.findPartitions()).thenReturn(List.of(partition(current.minusYears(10), false),
+                partition(current, false), partition(current.plusMonths(1), false),
+                partition(current.plusMonths(2), false), partition(current.plusMonths(3), false)));
+
+        AuditPartitionMaintenanceResultDto result = auditPartitionService.maintain();
+
+        assertTrue(result.getCreatedPartitions().isEmpty());
+        assertTrue(result.getArchivedPartitions().isEmpty());
+        verify(auditPartitionRepository, never()).copyOut(any(), any());
+        verify(auditPartitionRepository, never()).detachAndDrop(any());
+    }
+
+    @Test
+    void archiveExpiredPartitions_ShouldWriteGzippedArchiveThenDropExpiredMonthsOnly() throws Exception {
+        ReflectionTestUtils.setField(auditPartitionService, "retentionMonths", 12);
+        YearMonth expired = YearMonth.now().minusMonths(13);
+        YearMonth restored = YearMonth.now().minusMonths(14);
+        YearMonth kept = YearMonth.now().minusMonths(12);
+        when(auditPartitionRepository.findPartitions()).thenReturn(List.of(
+                partition(restored, true), partition(expired, false), partition(kept, false)));
+        when(auditPartitionRepository.copyOut(eq(expired), any())).thenAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(1).write(CSV.getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        });
+
+        List<String> archived = auditPartitionService.archiveExpiredPartitions();
+
+        String name = AuditPartitionRepository.partitionName(expired);
+        assertEquals(List.of(name), archived);
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(
+                archiveDir.resolve(name + AuditPartitionService.ARCHIVE_SUFFIX)))) {
+            assertEquals(CSV, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        verify(auditPartitionRepository).detachAndDrop(expired);
+        verify(auditPartitionRepository, never()).detachAndDrop(restored);
+        verify(auditPartitionRepository, never()).detachAndDrop(kept);
+        verify(transactionManager).commit(any());
+        assertEquals(List.of(name + AuditPartitionService.ARCHIVE_SUFFIX), auditPartitionService.listArchives());
+    }
+
+    @Test
+    void archiveExpiredPartitions_WhenCopyFails_ShouldKeepThePartitionAndLeaveNoFile() throws Exception {
+        ReflectionTestUtils.setField(auditPartitionService, "retentionMonths", 1);
+        YearMonth expired = YearMonth.now().minusMonths(3);
+        when(auditPartitionRepository.findPartitions()).thenReturn(List.of(partition(expired, false)));
+        when(auditPartitionRepository.copyOut(eq(expired), any()))
+                .thenThrow(new DataAccessResourceFailureException("connection lost"));
+
+        assertThrows(ServiceException.class, () -> auditPartitionService.archiveExpiredPartitions());
+
+        verify(auditPartitionRepository, never()).detachAndDrop(any());
+        verify(transactionManager).rollback(any());
+        try (var files = Files.list(archiveDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void restore_ShouldLoadTheArchiveIntoItsMonth() throws Exception {
+        String archive = "audit_log_y2024m01.csv.gz";
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(archiveDir.resolve(archive)))) {
+            out.write(CSV.getBytes(StandardCharsets.UTF_8));
+        }
+        when(auditPartitionRepository.findPartitions()).thenReturn(List.of());
+        when(auditPartitionRepository.restore(eq(YearMonth.of(2024, 1)), eq(archive), any()))
+                .thenAnswer(invocation -> {
+                    ByteArrayOutputStream loaded = new ByteArrayOutputStream();
+                    invocation.<InputStream>getArgument(2).transferTo(loaded);
+                    assertEquals(CSV, loaded.toString(StandardCharsets.UTF_8));
+                    return 1L;
+                });
+
+        AuditArchiveRestoreResultDto result = auditPartitionService.restore(archive);
+
+        assertEquals("audit_log_y2024m01", result.getPartition());
+        assertEquals(1L, result.getRowsRestored());
+        assertTrue(Files.exists(archiveDir.resolve(archive)));
+    }
+
+    @Test
+    void restore_ShouldRejectBadNamesMissingFilesAndMonthsStillAttached() throws Exception {
+        Files.createFile(archiveDir.resolve("audit_log_y2024m02.csv.gz"));
+        when(auditPartitionRepository.findPartitions()).thenReturn(List.of(partition(YearMonth.of(2024, 2), false)));
+
+        assertThrows(ValidationException.class, () -> auditPartitionService.restore("../etc/passwd"));
+        assertThrows(ResourceNotFoundException.class, () -> auditPartitionService.restore("audit_log_y2023m02.csv.gz"));
+        assertThrows(ValidationException.class, () -> auditPartitionService.restore("audit_log_y2024m02.csv.gz"));
+        verify(auditPartitionRepository, never()).restore(any(), any(), any());
+    }
+
+    private AuditPartition partition(YearMonth month, boolean restored) {
+        return new AuditPartition(AuditPartitionRepository.partitionName(month), month, restored);
+    }
+}
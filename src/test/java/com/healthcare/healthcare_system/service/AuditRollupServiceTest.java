@@ -0,0 +1,126 @@
+package com.healthcare.healthcare_system.service;
+
+import com.healthcare.healthcare_system.dto.AuditActivityDto;
+import com.healthcare.healthcare_system.dto.AuditActivityStatsDto;
+import com.healthcare.healthcare_system.dto.AuditRollupBackfillResultDto;
+import com.healthcare.healthcare_system.enums.AuditRollupGranularity;
+import com.healthcare.healthcare_system.exception.ServiceException;
+import com.healthcare.healthcare_system.exception.ValidationException;
+import com.healthcare.healthcare_system.repository.AuditRollupRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AuditRollupServiceTest {
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 3, 1);
+
+    @Mock
+    private AuditRollupRepository auditRollupRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private AuditRollupService auditRollupService;
+
+    @BeforeEach
+    void setUp() {
+        auditRollupService = new AuditRollupService(auditRollupRepository,
+                new TransactionTemplate(transactionManager));
+    }
+
+    @Test
+    void getActivity_ShouldTotalTheBuckets() {
+        LocalDateTime start = FIRST_DAY.atStartOfDay();
+        LocalDateTime end = start.plusHours(2);
+        when(auditRollupRepository.findActivity(AuditRollupGranularity.HOUR, start, end, "Patient", null))
+                .thenReturn(List.of(
+                        new AuditActivityDto(start, "Patient", "CREATE", 3),
+                        new AuditActivityDto(start.plusHours(1), "Patient", "UPDATE", 40)));
+
+        AuditActivityStatsDto stats = auditRollupService.getActivity(AuditRollupGranularity.HOUR, start, end,
+                "Patient", null);
+
+        assertEquals(43, stats.getTotalEvents());
+        assertEquals(2, stats.getBuckets().size());
+    }
+
+    @Test
+    void getActivity_WithStartAfterEnd_ShouldThrowValidationException() {
+        LocalDateTime start = FIRST_DAY.atStartOfDay();
+
+        assertThrows(ValidationException.class, () -> auditRollupService.getActivity(AuditRollupGranularity.DAY,
+                start, start.minusDays(1), null, null));
+        verifyNoInteractions(auditRollupRepository);
+    }
+
+    @Test
+    void getTopEntities_ShouldClampTheLimitAndQueryWholeDays() {
+        LocalDateTime start = FIRST_DAY.atTime(13, 30);
+
+        auditRollupService.getTopEntities(start, start.plusDays(6), null, 5000);
+        auditRollupService.getTopEntities(start, start.plusDays(6), "Facility", null);
+
+        verify(auditRollupRepository).findTopEntities(FIRST_DAY, FIRST_DAY.plusDays(6), null, 100);
+        verify(auditRollupRepository).findTopEntities(FIRST_DAY, FIRST_DAY.plusDays(6), "Facility", 10);
+    }
+
+    @Test
+    void backfill_ShouldRebuildEveryDayWithEventsAndSkipTheRest() {
+        Set<LocalDate> rebuilt = ConcurrentHashMap.newKeySet();
+        when(auditRollupRepository.findEventDays()).thenReturn(List.of(FIRST_DAY, FIRST_DAY.plusDays(9)));
+        when(auditRollupRepository.rebuildDay(any())).thenAnswer(invocation -> {
+            LocalDate day = invocation.getArgument(0);
+            rebuilt.add(day);
+            return day.getDayOfMonth() % 5 == 0 ? OptionalLong.empty() : OptionalLong.of(day.getDayOfMonth());
+        });
+
+        AuditRollupBackfillResultDto result = auditRollupService.backfill(null, null);
+
+        assertEquals(10, rebuilt.size());
+        assertEquals(8, result.getDaysRebuilt());
+        assertEquals(2, result.getDaysSkipped());
+        assertEquals(55 - 5 - 10, result.getEventsCounted());
+        assertEquals(FIRST_DAY.plusDays(9), result.getLastDay());
+        verify(auditRollupRepository).rebuildMonth(YearMonth.of(2024, 3));
+    }
+
+    @Test
+    void backfill_WithoutEvents_ShouldDoNothing() {
+        when(auditRollupRepository.findEventDays()).thenReturn(List.of());
+
+        AuditRollupBackfillResultDto result = auditRollupService.backfill(null, null);
+
+        assertEquals(0, result.getDaysRebuilt());
+        verify(auditRollupRepository, never()).rebuildDay(any());
+    }
+
+    @Test
+    void backfill_WhenADayFails_ShouldThrowServiceException() {
+        when(auditRollupRepository.rebuildDay(any())).thenReturn(OptionalLong.of(1));
+        when(auditRollupRepository.rebuildDay(FIRST_DAY.plusDays(1)))
+                .thenThrow(new DataAccessResourceFailureException("connection lost"));
+
+        assertThrows(ServiceException.class, () -> auditRollupService.backfill(FIRST_DAY.atStartOfDay(),
+                FIRST_DAY.plusDays(2).atStartOfDay()));
+        verify(auditRollupRepository, never()).findEventDays();
+        verify(auditRollupRepository, never()).rebuildMonth(any());
+    }
+}
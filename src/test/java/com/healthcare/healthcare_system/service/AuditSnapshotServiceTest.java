@@ -0,0 +1,105 @@
+package com.healthcare.healthcare_system.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.healthcare.healthcare_system.dto.AuditLogsSavedEvent;
+import com.healthcare.healthcare_system.model.AuditLog;
+import com.healthcare.healthcare_system.repository.AuditSnapshotRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AuditSnapshotServiceTest {
+    private static final LocalDateTime CHANGED_AT = LocalDateTime.of(2024, 6, 1, 12, 0);
+
+    @Mock
+    private AuditLogService auditLogService;
+
+    @Mock
+    private AuditSnapshotRepository auditSnapshotRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private AuditSnapshotService auditSnapshotService;
+
+    @BeforeEach
+    void setUp() {
+        auditSnapshotService = new AuditSnapshotService(auditLogService, auditSnapshotRepository, objectMapper,
+                transactionManager);
+        ReflectionTestUtils.setField(auditSnapshotService, "interval", 3);
+    }
+
+    @Test
+    void onSaved_ShouldTakeASnapshotOnceTheIntervalIsReached() {
+        AuditLog last = auditLog("Patient", 5L, CHANGED_AT.plusSeconds(1));
+        ObjectNode state = objectMapper.createObjectNode().put("firstName", "John").put("lastName", "Smyth");
+        when(auditSnapshotRepository.countChanges(anyList())).thenReturn(List.of(
+                new AuditSnapshotRepository.PendingChanges("Patient", 5L, 3, CHANGED_AT.minusDays(1),
+                        CHANGED_AT, last.getChangedAt()),
+                new AuditSnapshotRepository.PendingChanges("Facility", 2L, 2, null, CHANGED_AT, CHANGED_AT)));
+        when(auditLogService.replay(eq("Patient"), eq(5L), eq(last.getChangedAt()), eq(3), any()))
+                .thenReturn(new AuditLogService.ReplayedState(state, last));
+
+        auditSnapshotService.onSaved(new AuditLogsSavedEvent(List.of(
+                auditLog("Patient", 5L, CHANGED_AT), last, auditLog("Facility", 2L, CHANGED_AT))));
+
+        verify(auditSnapshotRepository).save("Patient", 5L, last, "{\"firstName\":\"John\",\"lastName\":\"Smyth\"}");
+        verify(auditSnapshotRepository, never()).deleteFrom(any(), any(), any());
+        verifyNoMoreInteractions(auditLogService);
+    }
+
+    @Test
+    void onSaved_WhenAnEntryBeforeTheLatestSnapshotIsSavedLate_ShouldReplaceTheStaleSnapshots() {
+        LocalDateTime lateAt = CHANGED_AT.minusHours(1);
+        AuditLog late = auditLog("Facility", 2L, lateAt);
+        when(auditSnapshotRepository.countChanges(List.of(late))).thenReturn(List.of(
+                new AuditSnapshotRepository.PendingChanges("Facility", 2L, 1, CHANGED_AT, lateAt, lateAt)));
+        when(auditLogService.replay(eq("Facility"), eq(2L), eq(lateAt), eq(3), any()))
+                .thenReturn(new AuditLogService.ReplayedState(null, late));
+
+        auditSnapshotService.onSaved(new AuditLogsSavedEvent(List.of(late)));
+
+        verify(auditSnapshotRepository).deleteFrom("Facility", 2L, lateAt);
+        verify(auditSnapshotRepository).save("Facility", 2L, late, null);
+    }
+
+    @Test
+    void onSaved_WhenSnapshottingFails_ShouldRollBackItsOwnTransactionAndNotThrow() {
+        when(auditSnapshotRepository.countChanges(anyList()))
+                .thenThrow(new DataAccessResourceFailureException("connection lost"));
+
+        assertDoesNotThrow(() -> auditSnapshotService.onSaved(
+                new AuditLogsSavedEvent(List.of(auditLog("Patient", 5L, CHANGED_AT)))));
+
+        verify(transactionManager).rollback(any());
+        verify(auditSnapshotRepository, never()).save(any(), any(), any(), any());
+    }
+
+    @Test
+    void onSaved_ShouldIgnoreEntitiesThatCannotBeReconstructed() {
+        auditSnapshotService.onSaved(new AuditLogsSavedEvent(List.of(auditLog("Doctor", 1L, CHANGED_AT))));
+
+        verifyNoInteractions(auditSnapshotRepository, auditLogService);
+    }
+
+    private AuditLog auditLog(String entityType, Long entityId, LocalDateTime changedAt) {
+        return AuditLog.builder().entityType(entityType).entityId(entityId).action("UPDATE")
+                .changedAt(changedAt).build();
+    }
+}
@@ -0,0 +1,185 @@
+package com.healthcare.healthcare_system.service;
+
+import com.healthcare.healthcare_system.dto.AuditLogsSavedEvent;
+import com.healthcare.healthcare_system.dto.KeysetCursor;
+import com.healthcare.healthcare_system.exception.ValidationException;
+import com.healthcare.healthcare_system.model.AuditLog;
+import com.healthcare.healthcare_system.repository.AuditLogStore;
+import com.healthcare.healthcare_system.util.CursorUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.reactivestreams.Subscription;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AuditStreamServiceTest {
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+    @Mock
+    private AuditLogStore auditLogStore;
+
+    private SimpleMeterRegistry meterRegistry;
+    private AuditStreamService auditStreamService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        auditStreamService = new AuditStreamService(auditLogStore, meterRegistry);
+        ReflectionTestUtils.setField(auditStreamService, "bufferSize", 8);
+        ReflectionTestUtils.setField(auditStreamService, "heartbeatMs", 3_600_000L);
+        auditStreamService.registerMetrics();
+    }
+
+    @Test
+    void stream_ShouldPushOnlyMatchingEventsWithTheirFeedPosition() throws InterruptedException {
+        Collector collector = new Collector(Long.MAX_VALUE);
+        auditStreamService.stream("Patient", "UPDATE", null).subscribe(collector);
+
+        auditStreamService.onSaved(new AuditLogsSavedEvent(List.of(
+                auditLog(1L, "Patient", "UPDATE"),
+                auditLog(2L, "Facility", "UPDATE"),
+                auditLog(3L, "Patient", "CREATE"),
+                auditLog(4L, "Patient", "UPDATE"))));
+
+        collector.await(2);
+        assertEquals(List.of(1L, 4L), collector.auditLogIds());
+        KeysetCursor position = CursorUtils.decode(collector.events.get(1).id(), "AuditLog");
+        assertEquals(Sort.Direction.ASC, position.getDirection());
+        assertEquals(4L, position.getId());
+        assertEquals(1.0, meterRegistry.get("audit.stream.subscribers").gauge().value());
+
+        collector.dispose();
+        assertEquals(0.0, meterRegistry.get("audit.stream.subscribers").gauge().value());
+    }
+
+    @Test
+    void stream_WithLastEventId_ShouldReplayMissedEventsThenLiveOnesOnce() throws InterruptedException {
+        AuditLog last = auditLog(10L, "Patient", "UPDATE");
+        String lastEventId = AuditLogService.positionOf(last, Sort.Direction.ASC);
+        CountDownLatch replaying = new CountDownLatch(1);
+        CountDownLatch published = new CountDownLatch(1);
+        when(auditLogStore.scroll(any(), eq(Sort.Direction.ASC), any(), anyInt())).thenAnswer(invocation -> {
+            KeysetCursor after = invocation.getArgument(2);
+            assertEquals(10L, after.getId());
+            replaying.countDown();
+            assertTrue(published.await(5, TimeUnit.SECONDS));
+            return List.of(auditLog(11L, "Patient", "UPDATE"), auditLog(12L, "Patient", "UPDATE"));
+        });
+
+        Collector collector = new Collector(Long.MAX_VALUE);
+        auditStreamService.stream(null, null, lastEventId).subscribe(collector);
+        assertTrue(replaying.await(5, TimeUnit.SECONDS));
+        // Committed while the replay reads the store: seen by both, sent once
+        auditStreamService.onSaved(new AuditLogsSavedEvent(List.of(auditLog(12L, "Patient", "UPDATE"),
+                auditLog(13L, "Patient", "DELETE"))));
+        published.countDown();
+
+        collector.await(3);
+        assertEquals(List.of(11L, 12L, 13L), collector.auditLogIds());
+        collector.dispose();
+    }
+
+    @Test
+    void stream_WithASlowClient_ShouldDropAndReportTheOverflow() throws InterruptedException {
+        Collector collector = new Collector(0);
+        auditStreamService.stream(null, null, null).subscribe(collector);
+
+        List<AuditLog> burst = new ArrayList<>();
+        for (long id = 1; id <= 50; id++) {
+            burst.add(auditLog(id, "Patient", "UPDATE"));
+        }
+        auditStreamService.onSaved(new AuditLogsSavedEvent(burst));
+        double dropped = meterRegistry.get("audit.stream.dropped").counter().count();
+        assertTrue(dropped > 30, "only the buffer should be kept, dropped " + dropped);
+
+        collector.request(Long.MAX_VALUE);
+        auditStreamService.onSaved(new AuditLogsSavedEvent(List.of(auditLog(51L, "Patient", "UPDATE"))));
+        collector.await(50 - (int) dropped + 2);
+
+        List<Long> ids = collector.auditLogIds();
+        assertEquals(51L, ids.get(ids.size() - 1));
+        ServerSentEvent<Object> overflow = collector.events.get(collector.events.size() - 2);
+        assertEquals(AuditStreamService.OVERFLOW_EVENT, overflow.event());
+        assertEquals(Map.of("dropped", (long) dropped), overflow.data());
+        assertEquals(51, ids.size() + (long) dropped);
+        collector.dispose();
+    }
+
+    @Test
+    void stream_WithADescendingCursor_ShouldThrowValidationException() {
+        String lastEventId = AuditLogService.positionOf(auditLog(1L, "Patient", "UPDATE"), Sort.Direction.DESC);
+
+        assertThrows(ValidationException.class, () -> auditStreamService.stream(null, null, lastEventId));
+        verifyNoInteractions(auditLogStore);
+    }
+
+    private AuditLog auditLog(Long id, String entityType, String action) {
+        return AuditLog.builder()
+                .id(id)
+                .entityType(entityType)
+                .entityId(7L)
+                .action(action)
+                .changedAt(NOW.plusSeconds(id))
+                .build();
+    }
+
+    /**
+     * Collects the events, skipping heartbeats, asking for the given number up front.
+     */
+    private static class Collector extends BaseSubscriber<ServerSentEvent<Object>> {
+        private final long initialRequest;
+        private final List<ServerSentEvent<Object>> events = new CopyOnWriteArrayList<>();
+
+        Collector(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            if (initialRequest > 0) {
+                request(initialRequest);
+            }
+        }
+
+        @Override
+        protected void hookOnNext(ServerSentEvent<Object> event) {
+            if (event.comment() == null) {
+                events.add(event);
+            }
+        }
+
+        void await(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (events.size() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(count, events.size());
+        }
+
+        List<Long> auditLogIds() {
+            return events.stream()
+                    .filter(event -> event.data() instanceof AuditLog)
+                    .map(event -> ((AuditLog) event.data()).getId())
+                    .toList();
+        }
+    }
+}
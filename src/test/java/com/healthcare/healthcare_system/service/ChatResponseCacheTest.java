@@ -0,0 +1,158 @@
+package com.healthcare.healthcare_system.service;
+
+import com.healthcare.healthcare_system.dto.AuditLogsSavedEvent;
+import com.healthcare.healthcare_system.model.AuditLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatResponseCacheTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong now = new AtomicLong();
+    private final HashingEmbeddingBackend embeddingBackend = new HashingEmbeddingBackend();
+    private ChatResponseCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ChatResponseCache(meterRegistry);
+        ReflectionTestUtils.setField(cache, "maxEntries", 2);
+        ReflectionTestUtils.setField(cache, "ttlMs", 60_000L);
+        ReflectionTestUtils.setField(cache, "similarityThreshold", 0.8);
+        ReflectionTestUtils.setField(cache, "nanoTime", (LongSupplier) now::get);
+        cache.registerMetrics();
+    }
+
+    @Test
+    void normalize_ShouldFoldCasePunctuationAndWhitespace() {
+        assertEquals("what is triage", ChatResponseCache.normalize("  What is\tTRIAGE?! "));
+        assertEquals(ChatResponseCache.normalize("How do I book an MRI?"),
+                ChatResponseCache.normalize("how do i book an mri"));
+    }
+
+    @Test
+    void get_ShouldHitForTheSameModelAndNormalizedPrompt() {
+        cache.put("llama2", "What is triage?", null, "Sorting patients by urgency.", 0);
+
+        assertEquals("Sorting patients by urgency.", cache.get("llama2", "what is  triage"));
+        assertNull(cache.get("mistral", "What is triage?"));
+        assertEquals(1, lookups("exact", "hit"));
+        assertEquals(1, lookups("exact", "miss"));
+    }
+
+    @Test
+    void findSimilar_ShouldReuseTheAnswerToTheMostSimilarPrompt() {
+        putWithEmbedding("How do I book an MRI scan for an outpatient?", "Through radiology.", 4);
+        putWithEmbedding("What are the visiting hours on weekends?", "Ten to six.", 3);
+
+        String prompt = "How can I book an MRI scan for an outpatient";
+        assertEquals("Through radiology.", cache.findSimilar("llama2", prompt, embed(prompt)));
+        assertNull(cache.findSimilar("mistral", prompt, embed(prompt)));
+        String unrelated = "Where is the cafeteria?";
+        assertNull(cache.findSimilar("llama2", unrelated, embed(unrelated)));
+        assertEquals(1, lookups("semantic", "hit"));
+        assertEquals(2, lookups("semantic", "miss"));
+        assertEquals(4.0, timeSaved("semantic"));
+    }
+
+    @Test
+    void findSimilar_ShouldNotReuseAnAnswerForOtherNumbers() {
+        putWithEmbedding("Which wards have more than 40 beds?", "Wards A and C.", 5);
+
+        String prompt = "Which wards have more than 50 beds?";
+        assertNull(cache.findSimilar("llama2", prompt, embed(prompt)));
+    }
+
+    @Test
+    void hitRatio_ShouldCountExactAndSimilarHitsAgainstAllLookups() {
+        putWithEmbedding("How do I book an MRI scan for an outpatient?", "Through radiology.", 4);
+
+        cache.get("llama2", "how do i book an mri scan for an outpatient");
+        String prompt = "How can I book an MRI scan for an outpatient";
+        cache.get("llama2", prompt);
+        cache.findSimilar("llama2", prompt, embed(prompt));
+        cache.get("llama2", "Where is the cafeteria?");
+
+        assertEquals(2.0 / 3, meterRegistry.get("ai.chat.cache.hit-ratio").gauge().value(), 1e-9);
+        assertEquals(4.0, timeSaved("exact"));
+    }
+
+    @Test
+    void put_ShouldEvictTheLeastRecentlyUsedAnswerWhenFull() {
+        cache.put("llama2", "first", null, "1", 0);
+        cache.put("llama2", "second", null, "2", 0);
+        cache.get("llama2", "first");
+
+        cache.put("llama2", "third", null, "3", 0);
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("llama2", "second"));
+        assertEquals("1", cache.get("llama2", "first"));
+        assertEquals(1, removals("evicted"));
+    }
+
+    @Test
+    void get_ShouldMissOnceTheAnswerHasExpired() {
+        cache.put("llama2", "What is triage?", null, "Sorting patients by urgency.", 0);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(59));
+        assertNotNull(cache.get("llama2", "What is triage?"));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+        assertNull(cache.get("llama2", "What is triage?"));
+        assertEquals(0, cache.size());
+        assertEquals(1, removals("expired"));
+    }
+
+    @Test
+    void onSaved_ShouldDropOnlyAnswersAboutPatientsOrFacilities() {
+        cache.put("llama2", "How many patients are admitted?", null, "42", 0);
+        cache.put("llama2", "What is triage?", null, "Sorting patients by urgency.", 0);
+
+        cache.onSaved(new AuditLogsSavedEvent(List.of(AuditLog.builder().entityType("Patient").entityId(1L)
+                .action("UPDATE").build())));
+
+        assertNull(cache.get("llama2", "How many patients are admitted?"));
+        assertNotNull(cache.get("llama2", "What is triage?"));
+        assertEquals(1, removals("invalidated"));
+    }
+
+    @Test
+    void invalidateAll_ShouldDropEveryAnswer() {
+        cache.put("llama2", "first", null, "1", 0);
+        cache.put("llama2", "second", null, "2", 0);
+
+        assertEquals(2, cache.invalidateAll());
+
+        assertEquals(0, cache.size());
+        assertEquals(2, removals("invalidated"));
+    }
+
+    private void putWithEmbedding(String prompt, String response, long generationSeconds) {
+        cache.put("llama2", prompt, embed(prompt), response, TimeUnit.SECONDS.toNanos(generationSeconds));
+    }
+
+    private float[] embed(String prompt) {
+        return embeddingBackend.embed(prompt).join();
+    }
+
+    private double lookups(String match, String result) {
+        return meterRegistry.get("ai.chat.cache.lookups").tag("match", match).tag("result", result).counter()
+                .count();
+    }
+
+    private double timeSaved(String match) {
+        return meterRegistry.get("ai.chat.cache.time-saved").tag("match", match).counter().count();
+    }
+
+    private double removals(String cause) {
+        return meterRegistry.get("ai.chat.cache.removals").tag("cause", cause).counter().count();
+    }
+}
@@ -6,26 +6,29 @@ import com.healthcare.healthcare_system.exception.DuplicateResourceException;
 import com.healthcare.healthcare_system.exception.ResourceNotFoundException;
 import com.healthcare.healthcare_system.exception.ServiceException;
 import com.healthcare.healthcare_system.exception.ValidationException;
+import com.healthcare.healthcare_system.mapper.FacilityMapper;
 import com.healthcare.healthcare_system.model.Facility;
 import com.healthcare.healthcare_system.repository.FacilityRepository;
-import com.healthcare.healthcare_system.repository.PatientRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mapstruct.factory.Mappers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.modelmapper.ModelMapper;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
+import static com.healthcare.healthcare_system.util.MessageUtils.FACILITY_ENTITY;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -36,11 +39,8 @@ class FacilityServiceTest {
     @Mock
     private FacilityRepository facilityRepository;
 
-    @Mock
-    private PatientRepository patientRepository;
-
-    @Mock
-    private ModelMapper modelMapper;
+    @Spy
+    private FacilityMapper facilityMapper = Mappers.getMapper(FacilityMapper.class);
 
     @Mock
     private AuditLogService auditLogService;
@@ -75,20 +75,36 @@ class FacilityServiceTest {
     @Test
     void getAllFacilities_WithNoFilters_ShouldReturnAllFacilities() {
         when(facilityRepository.findAll(any(Pageable.class))).thenReturn(facilityPage);
-        when(modelMapper.map(any(Facility.class), eq(FacilityDto.class))).thenReturn(facilityDto);
 
         Page<FacilityDto> result = facilityService.getAllFacilities(Pageable.unpaged(), null, null);
 
         assertNotNull(result);
         assertEquals(1, result.getTotalElements());
         verify(facilityRepository).findAll(any(Pageable.class));
-        verify(modelMapper, times(1)).map(any(Facility.class), eq(FacilityDto.class));
+        verify(facilityMapper, times(1)).toDto(any(Facility.class));
+    }
+
+    @Test
+    void getAllFacilities_ShouldReadPatientCountsFromTheFacilities() {
+        Facility secondFacility = new Facility();
+        secondFacility.setId(2L);
+        secondFacility.setName("Second Facility");
+        secondFacility.setType(FacilityType.CLINIC);
+        secondFacility.setAddress("456 Test Ave");
+        secondFacility.setPatientCount(7L);
+
+        when(facilityRepository.findAll(any(Pageable.class)))
+                .thenReturn(new PageImpl<>(Arrays.asList(facility, secondFacility)));
+
+        Page<FacilityDto> result = facilityService.getAllFacilities(Pageable.unpaged(), null, null);
+
+        assertEquals(0L, result.getContent().get(0).getPatientCount());
+        assertEquals(7L, result.getContent().get(1).getPatientCount());
     }
 
     @Test
     void getAllFacilities_WithNameFilter_ShouldReturnMatchingFacilities() {
         when(facilityRepository.findByNameContainingIgnoreCase(anyString(), any(Pageable.class))).thenReturn(facilityPage);
-        when(modelMapper.map(any(Facility.class), eq(FacilityDto.class))).thenReturn(facilityDto);
 
         Page<FacilityDto> result = facilityService.getAllFacilities(Pageable.unpaged(), "Test", null);
 
@@ -100,7 +116,6 @@ class FacilityServiceTest {
     @Test
     void getAllFacilities_WithTypeFilter_ShouldReturnMatchingFacilities() {
         when(facilityRepository.findByType(anyString(), any(Pageable.class))).thenReturn(facilityPage);
-        when(modelMapper.map(any(Facility.class), eq(FacilityDto.class))).thenReturn(facilityDto);
 
         Page<FacilityDto> result = facilityService.getAllFacilities(Pageable.unpaged(), null, "Hospital");
 
@@ -113,7 +128,6 @@ class FacilityServiceTest {
     void getAllFacilities_WithNameAndTypeFilters_ShouldReturnMatchingFacilities() {
         when(facilityRepository.findByNameContainingIgnoreCaseAndType(anyString(), anyString(), any(Pageable.class)))
                 .thenReturn(facilityPage);
-        when(modelMapper.map(any(Facility.class), eq(FacilityDto.class))).thenReturn(facilityDto);
 
         Page<FacilityDto> result = facilityService.getAllFacilities(Pageable.unpaged(), "Test", "Hospital");
 
@@ -135,7 +149,6 @@ class FacilityServiceTest {
     @Test
     void getFacilityById_WhenFacilityExists_ShouldReturnFacilityDto() {
         when(facilityRepository.findById(1L)).thenReturn(Optional.of(facility));
-        when(modelMapper.map(facility, FacilityDto.class)).thenReturn(facilityDto);
 
         FacilityDto result = facilityService.getFacilityById(1L);
 
@@ -165,16 +178,14 @@ class FacilityServiceTest {
     @Test
     void createFacility_WithValidData_ShouldReturnCreatedFacilityAndLogAudit() {
         when(facilityRepository.existsByNameIgnoreCase(anyString())).thenReturn(false);
-        when(modelMapper.map(facilityDto, Facility.class)).thenReturn(facility);
         when(facilityRepository.save(any(Facility.class))).thenReturn(facility);
-        when(modelMapper.map(facility, FacilityDto.class)).thenReturn(facilityDto);
 
         FacilityDto result = facilityService.createFacility(facilityDto);
 
         assertNotNull(result);
         assertEquals("Test Facility", result.getName());
         verify(facilityRepository).save(any(Facility.class));
-        verify(auditLogService).logAudit(anyString(), anyLong(), anyString(), isNull(), anyString());
+        verify(auditLogService).logCreate(eq(FACILITY_ENTITY), anyLong(), any());
     }
 
     @Test
@@ -208,7 +219,6 @@ class FacilityServiceTest {
     @Test
     void createFacility_WhenDatabaseConstraintViolation_ShouldThrowDuplicateResourceException() {
         when(facilityRepository.existsByNameIgnoreCase(anyString())).thenReturn(false);
-        when(modelMapper.map(facilityDto, Facility.class)).thenReturn(facility);
         when(facilityRepository.save(any(Facility.class))).thenThrow(new DataIntegrityViolationException("Duplicate entry"));
 
         assertThrows(DuplicateResourceException.class, () ->
@@ -218,7 +228,6 @@ class FacilityServiceTest {
     @Test
     void createFacility_WhenDatabaseErrorOccurs_ShouldThrowServiceException() {
         when(facilityRepository.existsByNameIgnoreCase(anyString())).thenReturn(false);
-        when(modelMapper.map(facilityDto, Facility.class)).thenReturn(facility);
         when(facilityRepository.save(any(Facility.class))).thenThrow(new DataAccessException("Database error") {
         });
 
@@ -230,18 +239,6 @@ class FacilityServiceTest {
     void updateFacility_WithValidData_ShouldReturnUpdatedFacilityAndLogAudit() {
         // Setup
         when(facilityRepository.findById(1L)).thenReturn(Optional.of(facility));
-
-        doAnswer(invocation -> {
-            FacilityDto source = invocation.getArgument(0);
-            Facility destination = invocation.getArgument(1);
-            destination.setName(source.getName());
-            destination.setAddress(source.getAddress());
-            return null;
-        }).when(modelMapper).map(any(FacilityDto.class), any(Facility.class));
-
-        // Second mapping: Facility -> FacilityDto (for return value)
-        when(modelMapper.map(any(Facility.class), eq(FacilityDto.class))).thenReturn(facilityDto);
-
         when(facilityRepository.save(facility)).thenReturn(facility);
 
         // Execute
@@ -251,7 +248,7 @@ class FacilityServiceTest {
         assertNotNull(result);
         assertEquals("Test Facility", result.getName());
         verify(facilityRepository).save(facility);
-        verify(auditLogService).logAudit(anyString(), anyLong(), anyString(), anyString(), anyString());
+        verify(auditLogService).logUpdate(eq(FACILITY_ENTITY), anyLong(), any(), any());
     }
 
     @Test
@@ -311,7 +308,7 @@ class FacilityServiceTest {
 
         assertTrue(facility.isDeleted());
         verify(facilityRepository).save(facility);
-        verify(auditLogService).logAudit(anyString(), anyLong(), anyString(), anyString(), isNull());
+        verify(auditLogService).logDelete(FACILITY_ENTITY, 1L);
     }
 
     @Test
@@ -337,7 +334,6 @@ class FacilityServiceTest {
     void getFacilitiesWithPatientCountGreaterThan_ShouldReturnFacilitiesWithHighPatientCount() {
         when(facilityRepository.findFacilitiesWithPatientCountGreaterThan(anyInt()))
                 .thenReturn(Collections.singletonList(facility));
-        when(modelMapper.map(any(Facility.class), eq(FacilityDto.class))).thenReturn(facilityDto);
 
         List<FacilityDto> result = facilityService.getFacilitiesWithPatientCountGreaterThan(5);
 
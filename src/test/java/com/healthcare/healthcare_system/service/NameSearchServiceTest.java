@@ -0,0 +1,175 @@
+package com.healthcare.healthcare_system.service;
+
+import com.healthcare.healthcare_system.dto.FacilityDto;
+import com.healthcare.healthcare_system.dto.PatientDto;
+import com.healthcare.healthcare_system.dto.SearchResultDto;
+import com.healthcare.healthcare_system.enums.FacilityType;
+import com.healthcare.healthcare_system.exception.ServiceException;
+import com.healthcare.healthcare_system.exception.ValidationException;
+import com.healthcare.healthcare_system.mapper.FacilityMapper;
+import com.healthcare.healthcare_system.mapper.PatientMapper;
+import com.healthcare.healthcare_system.model.Facility;
+import com.healthcare.healthcare_system.model.Patient;
+import com.healthcare.healthcare_system.model.listener.EntitySavedEvent;
+import com.healthcare.healthcare_system.repository.FacilityRepository;
+import com.healthcare.healthcare_system.repository.InMemoryNameSearchBackend;
+import com.healthcare.healthcare_system.repository.PatientRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mapstruct.factory.Mappers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NameSearchServiceTest {
+
+    @Mock
+    private PatientRepository patientRepository;
+
+    @Mock
+    private FacilityRepository facilityRepository;
+
+    private InMemoryNameSearchBackend nameSearchBackend;
+    private NameSearchService nameSearchService;
+
+    private Patient smith;
+    private Patient smythe;
+    private Patient anderson;
+
+    @BeforeEach
+    void setUp() {
+        nameSearchBackend = spy(new InMemoryNameSearchBackend(patientRepository, facilityRepository));
+        nameSearchService = new NameSearchService(nameSearchBackend, patientRepository, facilityRepository,
+                Mappers.getMapper(PatientMapper.class), Mappers.getMapper(FacilityMapper.class));
+
+        smith = patient(1L, "John", "Smith");
+        smythe = patient(2L, "Jane", "Smythe");
+        anderson = patient(3L, "Karen", "Anderson");
+        Arrays.asList(smith, smythe, anderson).forEach(nameSearchBackend::patientChanged);
+    }
+
+    @Test
+    void searchPatients_ShouldReturnMatchesInRankOrder() {
+        // Arrange
+        when(patientRepository.findAllById(anyIterable())).thenReturn(Arrays.asList(smythe, smith));
+
+        // Act
+        List<SearchResultDto<PatientDto>> results = nameSearchService.searchPatients("Smi", null);
+
+        // Assert
+        assertEquals(Collections.singletonList(1L), ids(results));
+        assertEquals("Smith", results.get(0).getResult().getLastName());
+        assertTrue(results.get(0).getScore() >= 0.6);
+    }
+
+    @Test
+    void searchPatients_ShouldMatchSubstringInsideName() {
+        // Arrange
+        when(patientRepository.findAllById(anyIterable())).thenReturn(Collections.singletonList(anderson));
+
+        // Act
+        List<SearchResultDto<PatientDto>> results = nameSearchService.searchPatients("erso", 10);
+
+        // Assert
+        assertEquals(Collections.singletonList(3L), ids(results));
+    }
+
+    @Test
+    void searchPatients_ShouldRankCloserNameFirst() {
+        // Arrange
+        when(patientRepository.findAllById(anyIterable())).thenReturn(Arrays.asList(smythe, smith));
+
+        // Act
+        List<SearchResultDto<PatientDto>> results = nameSearchService.searchPatients("smyth", 10);
+
+        // Assert
+        assertEquals(2L, results.get(0).getResult().getId());
+    }
+
+    @Test
+    void searchPatients_ShouldNotReturnSoftDeletedPatients() {
+        // Arrange
+        smith.setDeleted(true);
+        nameSearchBackend.onSaved(new EntitySavedEvent(smith));
+
+        // Act
+        List<SearchResultDto<PatientDto>> results = nameSearchService.searchPatients("smith", 10);
+
+        // Assert
+        assertTrue(results.isEmpty());
+        verify(patientRepository).findAllById(Collections.emptyList());
+    }
+
+    @Test
+    void searchPatients_ShouldRejectTermsShorterThanATrigram() {
+        // Act & Assert
+        assertThrows(ValidationException.class, () -> nameSearchService.searchPatients(" sm ", 10));
+        verifyNoInteractions(patientRepository);
+    }
+
+    @Test
+    void searchPatients_ShouldCapLimit() {
+        // Arrange
+        when(patientRepository.findAllById(anyIterable())).thenReturn(Collections.emptyList());
+
+        // Act
+        nameSearchService.searchPatients("smith", 10_000);
+
+        // Assert
+        verify(nameSearchBackend).searchPatients("smith", NameSearchService.MAX_LIMIT);
+    }
+
+    @Test
+    void searchPatients_ShouldWrapDataAccessErrors() {
+        // Arrange
+        when(patientRepository.findAllById(anyIterable())).thenThrow(new DataAccessResourceFailureException("down"));
+
+        // Act & Assert
+        assertThrows(ServiceException.class, () -> nameSearchService.searchPatients("smith", 10));
+    }
+
+    @Test
+    void searchFacilities_ShouldReturnMatchesWithPatientCounts() {
+        // Arrange
+        Facility general = new Facility();
+        general.setId(7L);
+        general.setName("General Hospital");
+        general.setType(FacilityType.HOSPITAL);
+        general.setPatientCount(12L);
+        nameSearchBackend.facilityChanged(general);
+        when(facilityRepository.findAllById(anyIterable())).thenReturn(Collections.singletonList(general));
+
+        // Act
+        List<SearchResultDto<FacilityDto>> results = nameSearchService.searchFacilities("hosp", null);
+
+        // Assert
+        assertEquals(1, results.size());
+        assertEquals("General Hospital", results.get(0).getResult().getName());
+        assertEquals(12L, results.get(0).getResult().getPatientCount());
+    }
+
+    private static List<Long> ids(List<SearchResultDto<PatientDto>> results) {
+        return results.stream()
+                .map(result -> result.getResult().getId())
+                .collect(Collectors.toList());
+    }
+
+    private static Patient patient(Long id, String firstName, String lastName) {
+        Patient patient = new Patient();
+        patient.setId(id);
+        patient.setFirstName(firstName);
+        patient.setLastName(lastName);
+        return patient;
+    }
+}
@@ -0,0 +1,146 @@
+package com.healthcare.healthcare_system.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OllamaConcurrencyLimiterTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong now = new AtomicLong();
+    private OllamaConcurrencyLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        limiter = new OllamaConcurrencyLimiter(meterRegistry);
+        ReflectionTestUtils.setField(limiter, "limit", 2);
+        ReflectionTestUtils.setField(limiter, "maxLimit", 3);
+        ReflectionTestUtils.setField(limiter, "queueCapacity", 2);
+        ReflectionTestUtils.setField(limiter, "nanoTime", (LongSupplier) now::get);
+        limiter.registerMetrics();
+    }
+
+    @Test
+    void acquire_BeyondTheLimit_ShouldQueueAndGrantInArrivalOrder() throws Exception {
+        OllamaConcurrencyLimiter.Permit first = limiter.acquire().get();
+        limiter.acquire().get();
+        CompletableFuture<OllamaConcurrencyLimiter.Permit> third = limiter.acquire();
+        CompletableFuture<OllamaConcurrencyLimiter.Permit> fourth = limiter.acquire();
+
+        assertFalse(third.isDone());
+        assertEquals(2.0, meterRegistry.get("ai.ollama.in-flight").gauge().value());
+        assertEquals(2.0, meterRegistry.get("ai.ollama.queued").gauge().value());
+
+        first.onIgnore();
+
+        assertTrue(third.isDone());
+        assertFalse(fourth.isDone());
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(1, limiter.getQueued());
+    }
+
+    @Test
+    void acquire_WhenTheQueueIsFull_ShouldRejectStraightAway() {
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire();
+        }
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> limiter.acquire().get());
+
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        assertEquals(1.0, meterRegistry.get("ai.ollama.rejected").tag("reason", "queue-full").counter().count());
+    }
+
+    @Test
+    void acquire_WhenQueuedTooLong_ShouldTimeOutAndLeaveTheQueue() throws Exception {
+        ReflectionTestUtils.setField(limiter, "queueTimeoutMs", 50L);
+        OllamaConcurrencyLimiter.Permit first = limiter.acquire().get();
+        limiter.acquire().get();
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> limiter.acquire().get(5, TimeUnit.SECONDS));
+
+        assertInstanceOf(TimeoutException.class, e.getCause());
+        assertEquals(0, limiter.getQueued());
+        assertEquals(1.0, meterRegistry.get("ai.ollama.rejected").tag("reason", "queue-timeout").counter().count());
+        first.onSuccess();
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    void release_ShouldGrowTheLimitWhileBusyAndShrinkItWhenOllamaSlowsDownOrFails() throws Exception {
+        OllamaConcurrencyLimiter.Permit first = limiter.acquire().get();
+        OllamaConcurrencyLimiter.Permit second = limiter.acquire().get();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        // 20 ms per token once the half second of prompt processing is left out
+        first.recordGeneration(75, TimeUnit.MILLISECONDS.toNanos(500));
+        first.onSuccess();
+        assertEquals(3, limiter.getLimit());
+
+        OllamaConcurrencyLimiter.Permit third = limiter.acquire().get();
+        OllamaConcurrencyLimiter.Permit fourth = limiter.acquire().get();
+        assertEquals(3, limiter.getInFlight());
+        // Three times the best latency per token so far: Ollama is queueing
+        now.addAndGet(TimeUnit.SECONDS.toNanos(4));
+        second.recordGeneration(100, 0);
+        second.onSuccess();
+        assertEquals(2, limiter.getLimit());
+
+        third.onDropped();
+        assertEquals(1, limiter.getLimit());
+        fourth.onDropped();
+        assertEquals(1, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(1.0, meterRegistry.get("ai.ollama.concurrency-limit").gauge().value());
+    }
+
+    @Test
+    void release_ShouldCompareLatencyPerTokenSoLongAnswersDoNotShrinkTheLimit() throws Exception {
+        OllamaConcurrencyLimiter.Permit shortAnswer = limiter.acquire().get();
+        OllamaConcurrencyLimiter.Permit longAnswer = limiter.acquire().get();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        shortAnswer.recordGeneration(50, 0);
+        shortAnswer.onSuccess();
+        assertEquals(3, limiter.getLimit());
+
+        // Ten times as long, for ten times the tokens
+        now.addAndGet(TimeUnit.SECONDS.toNanos(9));
+        longAnswer.recordGeneration(500, 0);
+        longAnswer.onSuccess();
+
+        assertEquals(3, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void release_WithoutGeneratedTokens_ShouldLeaveTheLimitAlone() throws Exception {
+        OllamaConcurrencyLimiter.Permit first = limiter.acquire().get();
+        limiter.acquire().get();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+        first.onSuccess();
+
+        assertEquals(2, limiter.getLimit());
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    void run_ShouldReleaseThePermitWhenTheCallFails() {
+        CompletableFuture<String> result = limiter.run(permit -> {
+            throw new IllegalStateException("connection refused");
+        });
+
+        assertTrue(result.isCompletedExceptionally());
+        assertEquals(0, limiter.getInFlight());
+    }
+}
@@ -0,0 +1,66 @@
+package com.healthcare.healthcare_system.service;
+
+import com.healthcare.healthcare_system.dto.PatientDto;
+import com.healthcare.healthcare_system.repository.PatientRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PatientConflictServiceTest {
+
+    @Mock
+    private PatientRepository patientRepository;
+
+    @InjectMocks
+    private PatientConflictService patientConflictService;
+
+    private PatientDto patientDto;
+
+    @BeforeEach
+    void setUp() {
+        patientDto = new PatientDto();
+        patientDto.setEmail("john.doe@example.com");
+        patientDto.setPhoneNumber("1234567890");
+        patientDto.setInsuranceNumber("INS1234567");
+    }
+
+    @Test
+    void findConflictingFields_OnCreate_ShouldListEveryTakenField() {
+        // Arrange
+        when(patientRepository.existsByEmailAndDeletedFalse("john.doe@example.com")).thenReturn(true);
+        when(patientRepository.existsByPhoneNumberAndDeletedFalse("1234567890")).thenReturn(false);
+        when(patientRepository.existsByInsuranceNumberAndDeletedFalse("INS1234567")).thenReturn(true);
+
+        // Act
+        List<String> fields = patientConflictService.findConflictingFields(patientDto, null);
+
+        // Assert
+        assertEquals(Arrays.asList("email address 'john.doe@example.com'", "insurance number 'INS1234567'"), fields);
+    }
+
+    @Test
+    void findConflictingFields_OnUpdate_ShouldExcludeThePatientItself() {
+        // Arrange
+        patientDto.setInsuranceNumber("");
+        when(patientRepository.existsByEmailAndIdNotAndDeletedFalse("john.doe@example.com", 1L)).thenReturn(false);
+        when(patientRepository.existsByPhoneNumberAndIdNotAndDeletedFalse("1234567890", 1L)).thenReturn(true);
+
+        // Act
+        List<String> fields = patientConflictService.findConflictingFields(patientDto, 1L);
+
+        // Assert
+        assertEquals(List.of("phone number '1234567890'"), fields);
+        verify(patientRepository, never()).existsByInsuranceNumberAndIdNotAndDeletedFalse(anyString(), anyLong());
+    }
+}
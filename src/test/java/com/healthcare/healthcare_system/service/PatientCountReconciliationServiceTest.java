@@ -0,0 +1,67 @@
+package com.healthcare.healthcare_system.service;
+
+import com.healthcare.healthcare_system.dto.ReconciliationResultDto;
+import com.healthcare.healthcare_system.exception.ServiceException;
+import com.healthcare.healthcare_system.repository.FacilityRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Pageable;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PatientCountReconciliationServiceTest {
+
+    @Mock
+    private FacilityRepository facilityRepository;
+
+    @InjectMocks
+    private PatientCountReconciliationService reconciliationService;
+
+    @Test
+    void reconcile_ShouldWalkAllChunksAndSumCorrectedRows() {
+        when(facilityRepository.findIdsAfter(eq(0L), any(Pageable.class))).thenReturn(Arrays.asList(1L, 2L));
+        when(facilityRepository.findIdsAfter(eq(2L), any(Pageable.class))).thenReturn(Collections.singletonList(5L));
+        when(facilityRepository.findIdsAfter(eq(5L), any(Pageable.class))).thenReturn(Collections.emptyList());
+        when(facilityRepository.reconcilePatientCounts(Arrays.asList(1L, 2L))).thenReturn(1);
+        when(facilityRepository.reconcilePatientCounts(Collections.singletonList(5L))).thenReturn(1);
+
+        ReconciliationResultDto result = reconciliationService.reconcile();
+
+        assertEquals(3, result.getFacilitiesScanned());
+        assertEquals(2, result.getFacilitiesCorrected());
+        verify(facilityRepository, times(2)).reconcilePatientCounts(anyCollection());
+    }
+
+    @Test
+    void reconcile_WhenNoFacilities_ShouldReportNothingCorrected() {
+        when(facilityRepository.findIdsAfter(anyLong(), any(Pageable.class))).thenReturn(Collections.emptyList());
+
+        ReconciliationResultDto result = reconciliationService.reconcile();
+
+        assertEquals(0, result.getFacilitiesScanned());
+        assertEquals(0, result.getFacilitiesCorrected());
+        verify(facilityRepository, never()).reconcilePatientCounts(anyCollection());
+    }
+
+    @Test
+    void reconcile_WhenDatabaseErrorOccurs_ShouldThrowServiceException() {
+        when(facilityRepository.findIdsAfter(anyLong(), any(Pageable.class)))
+                .thenThrow(new DataAccessException("Database error") {
+                });
+
+        assertThrows(ServiceException.class, () -> reconciliationService.reconcile());
+    }
+}
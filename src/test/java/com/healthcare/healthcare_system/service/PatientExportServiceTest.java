@@ -0,0 +1,128 @@
+package com.healthcare.healthcare_system.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.healthcare.healthcare_system.enums.DataFormat;
+import com.healthcare.healthcare_system.exception.ResourceNotFoundException;
+import com.healthcare.healthcare_system.mapper.PatientMapper;
+import com.healthcare.healthcare_system.model.Facility;
+import com.healthcare.healthcare_system.model.Patient;
+import com.healthcare.healthcare_system.repository.FacilityRepository;
+import com.healthcare.healthcare_system.repository.PatientRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mapstruct.factory.Mappers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PatientExportServiceTest {
+
+    @Mock
+    private PatientRepository patientRepository;
+
+    @Mock
+    private FacilityRepository facilityRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    private PatientExportService patientExportService;
+
+    private Patient smith;
+    private Patient doe;
+
+    @BeforeEach
+    void setUp() {
+        patientExportService = new PatientExportService(patientRepository, facilityRepository,
+                Mappers.getMapper(PatientMapper.class),
+                new ObjectMapper().findAndRegisterModules().disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS));
+        ReflectionTestUtils.setField(patientExportService, "entityManager", entityManager);
+
+        Facility facility = Facility.builder().id(3L).name("General Hospital").build();
+        smith = Patient.builder().id(1L).facility(facility).firstName("John").lastName("Smith")
+                .dateOfBirth(LocalDate.of(1990, 1, 1)).gender("Male").email("john@example.com").build();
+        doe = Patient.builder().id(2L).facility(facility).firstName("Jane").lastName("Doe, Jr")
+                .dateOfBirth(LocalDate.of(1985, 5, 20)).gender("Female").build();
+    }
+
+    @Test
+    void exportPatients_Ndjson_ShouldWriteOneObjectPerLineAndDetachEachPatient() throws Exception {
+        when(patientRepository.stream(any(), anyInt())).thenReturn(Stream.of(smith, doe));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long exported = patientExportService.exportPatients(null, null, DataFormat.NDJSON, out);
+
+        assertEquals(2, exported);
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{\"id\":1,\"facilityId\":3,\"firstName\":\"John\""));
+        assertTrue(lines[0].contains("\"dateOfBirth\":\"1990-01-01\""));
+        verify(entityManager).detach(smith);
+        verify(entityManager).detach(doe);
+    }
+
+    @Test
+    void exportPatients_Csv_ShouldWriteHeaderAndQuotedRows() throws Exception {
+        when(patientRepository.stream(any(), anyInt())).thenReturn(Stream.of(smith, doe));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        patientExportService.exportPatients(3L, null, DataFormat.CSV, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals("id,facilityId,firstName,lastName,dateOfBirth,gender,address,phoneNumber,email,insuranceNumber",
+                lines[0]);
+        assertEquals("1,3,John,Smith,1990-01-01,Male,,,john@example.com,", lines[1]);
+        assertEquals("2,3,Jane,\"Doe, Jr\",1985-05-20,Female,,,,", lines[2]);
+    }
+
+    @Test
+    void exportPatients_ShouldCloseTheStream() throws Exception {
+        AtomicBoolean closed = new AtomicBoolean();
+        when(patientRepository.stream(notNull(), eq(500)))
+                .thenReturn(Stream.of(smith).onClose(() -> closed.set(true)));
+
+        patientExportService.exportPatients(3L, LocalDateTime.of(2024, 1, 1, 0, 0), DataFormat.NDJSON,
+                new ByteArrayOutputStream());
+
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void exportPatients_WhenNothingMatches_ShouldWriteNothing() throws Exception {
+        when(patientRepository.stream(any(), anyInt())).thenReturn(Stream.empty());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(0, patientExportService.exportPatients(null, null, DataFormat.NDJSON, out));
+        assertEquals(0, out.size());
+        verifyNoInteractions(entityManager);
+    }
+
+    @Test
+    void validateFilters_WhenFacilityDoesNotExist_ShouldThrowResourceNotFoundException() {
+        when(facilityRepository.existsById(999L)).thenReturn(false);
+
+        assertThrows(ResourceNotFoundException.class, () -> patientExportService.validateFilters(999L));
+    }
+
+    @Test
+    void validateFilters_WithoutFacility_ShouldNotQuery() {
+        patientExportService.validateFilters(null);
+
+        verifyNoInteractions(facilityRepository);
+    }
+}
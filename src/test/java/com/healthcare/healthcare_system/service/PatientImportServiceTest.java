@@ -0,0 +1,295 @@
+package com.healthcare.healthcare_system.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.healthcare.healthcare_system.dto.PatientDto;
+import com.healthcare.healthcare_system.dto.PatientImportResultDto;
+import com.healthcare.healthcare_system.dto.PatientImportRowResultDto;
+import com.healthcare.healthcare_system.enums.DataFormat;
+import com.healthcare.healthcare_system.enums.ImportRowStatus;
+import com.healthcare.healthcare_system.model.AuditLog;
+import com.healthcare.healthcare_system.model.Patient;
+import com.healthcare.healthcare_system.repository.AuditLogStore;
+import com.healthcare.healthcare_system.repository.FacilityRepository;
+import com.healthcare.healthcare_system.repository.NameSearchBackend;
+import com.healthcare.healthcare_system.repository.PatientImportRepository;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.healthcare.healthcare_system.util.MessageUtils.IMPORT_ACTION;
+import static com.healthcare.healthcare_system.util.MessageUtils.IMPORT_INSERT_SKIPPED;
+import static com.healthcare.healthcare_system.util.MessageUtils.PATIENT_ENTITY_TYPE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PatientImportServiceTest {
+
+    @Mock
+    private PatientImportRepository patientImportRepository;
+
+    @Mock
+    private AuditLogStore auditLogStore;
+
+    @Mock
+    private FacilityRepository facilityRepository;
+
+    @Mock
+    private NameSearchBackend nameSearchBackend;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private PatientImportService patientImportService;
+    private final AtomicLong nextId = new AtomicLong(100);
+
+    @BeforeEach
+    void setUp() {
+        patientImportService = new PatientImportService(patientImportRepository, auditLogStore, facilityRepository,
+                nameSearchBackend, new TransactionTemplate(transactionManager),
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                new ObjectMapper().findAndRegisterModules());
+
+        lenient().when(facilityRepository.findExistingIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream().filter(id -> id < 10).toList();
+        });
+        lenient().when(patientImportRepository.insertPatients(anyList())).thenAnswer(invocation -> {
+            List<PatientDto> patients = invocation.getArgument(0);
+            List<Long> ids = new ArrayList<>();
+            patients.forEach(patient -> ids.add(nextId.getAndIncrement()));
+            return ids;
+        });
+    }
+
+    @Test
+    void importPatients_Ndjson_ShouldInsertAuditAndCountValidRows() {
+        PatientImportResultDto result = importNdjson(
+                patientJson(1, "John", "Smith", "john@example.com", "INS1"),
+                patientJson(2, "Jane", "Doe", "jane@example.com", "INS2"),
+                patientJson(1, "Bob", "Brown", null, null));
+
+        assertEquals(3, result.getTotalRows());
+        assertEquals(3, result.getImported());
+        assertEquals(List.of(100L, 101L, 102L),
+                result.getRows().stream().map(PatientImportRowResultDto::getPatientId).toList());
+
+        verify(patientImportRepository, times(1)).insertPatients(anyList());
+        ArgumentCaptor<List<AuditLog>> audited = ArgumentCaptor.forClass(List.class);
+        verify(auditLogStore).saveAll(audited.capture());
+        assertEquals(List.of(100L, 101L, 102L), audited.getValue().stream().map(AuditLog::getEntityId).toList());
+        assertTrue(audited.getValue().stream().allMatch(auditLog ->
+                PATIENT_ENTITY_TYPE.equals(auditLog.getEntityType()) && IMPORT_ACTION.equals(auditLog.getAction())));
+        assertTrue(audited.getValue().get(0).getNewValue().contains("\"email\":\"john@example.com\""));
+        assertFalse(audited.getValue().get(2).getNewValue().contains("email"));
+        verify(facilityRepository).adjustPatientCount(1L, 2L);
+        verify(facilityRepository).adjustPatientCount(2L, 1L);
+
+        ArgumentCaptor<Patient> indexed = ArgumentCaptor.forClass(Patient.class);
+        verify(nameSearchBackend, times(3)).patientChanged(indexed.capture());
+        assertEquals("Smith", indexed.getAllValues().get(0).getLastName());
+    }
+
+    @Test
+    void importPatients_WithInvalidRows_ShouldReportThemAndInsertTheRest() {
+        PatientImportResultDto result = importNdjson(
+                "{not json",
+                "",
+                "{\"facilityId\":1,\"lastName\":\"Smith\",\"dateOfBirth\":\"1990-01-01\",\"gender\":\"Male\",\"email\":\"bad\"}",
+                patientJson(1, "John", "Smith", "john@example.com", "INS1"));
+
+        assertEquals(3, result.getTotalRows());
+        assertEquals(1, result.getImported());
+        assertEquals(2, result.getInvalid());
+
+        PatientImportRowResultDto malformed = result.getRows().get(0);
+        assertEquals(1, malformed.getRow());
+        assertEquals(ImportRowStatus.INVALID, malformed.getStatus());
+        assertTrue(malformed.getErrors().get(0).startsWith("The row could not be read"));
+
+        PatientImportRowResultDto invalid = result.getRows().get(1);
+        assertEquals(3, invalid.getRow());
+        assertEquals(List.of("email: Invalid email format", "firstName: First name is required"), invalid.getErrors());
+
+        assertEquals(4, result.getRows().get(2).getRow());
+        assertEquals(ImportRowStatus.IMPORTED, result.getRows().get(2).getStatus());
+    }
+
+    @Test
+    void importPatients_WithDuplicateContactFields_ShouldRejectRepeatsInBodyAndDatabase() {
+        when(patientImportRepository.findActiveEmails(anyCollection())).thenReturn(Set.of("taken@example.com"));
+
+        PatientImportResultDto result = importNdjson(
+                patientJson(1, "John", "Smith", "john@example.com", "INS1"),
+                patientJson(1, "Johnny", "Smith", "john@example.com", "INS2"),
+                patientJson(1, "Jane", "Doe", "taken@example.com", "INS3"));
+
+        assertEquals(1, result.getImported());
+        assertEquals(2, result.getDuplicates());
+        assertEquals(List.of("The email address 'john@example.com' is already used by row 1 of this import."),
+                result.getRows().get(1).getErrors());
+        assertEquals(List.of("Another patient record exists with the same email address 'taken@example.com'."),
+                result.getRows().get(2).getErrors());
+        verify(patientImportRepository).insertPatients(argThat(patients -> patients.size() == 1));
+    }
+
+    @Test
+    void importPatients_WithUnknownFacility_ShouldRejectRowAndLookUpFacilitiesOnce() {
+        ReflectionTestUtils.setField(patientImportService, "batchSize", 1);
+
+        PatientImportResultDto result = importNdjson(
+                patientJson(42, "John", "Smith", null, null),
+                patientJson(42, "Jane", "Doe", null, null),
+                patientJson(1, "Bob", "Brown", null, null));
+
+        assertEquals(2, result.getInvalid());
+        assertEquals(1, result.getImported());
+        assertTrue(result.getRows().get(0).getErrors().get(0).startsWith("facilityId: The medical facility with ID 42"));
+        verify(facilityRepository).findExistingIds(Set.of(42L));
+        verify(facilityRepository).findExistingIds(Set.of(1L));
+        verify(facilityRepository, times(2)).findExistingIds(anyCollection());
+    }
+
+    @Test
+    void importPatients_ShouldWriteOneInsertPerBatch() {
+        ReflectionTestUtils.setField(patientImportService, "batchSize", 2);
+
+        PatientImportResultDto result = importNdjson(
+                patientJson(1, "A", "One", null, null),
+                patientJson(1, "B", "Two", null, null),
+                patientJson(1, "C", "Three", null, null),
+                patientJson(1, "D", "Four", null, null),
+                patientJson(1, "E", "Five", null, null));
+
+        assertEquals(5, result.getImported());
+        verify(patientImportRepository, times(3)).insertPatients(anyList());
+        verify(transactionManager, times(3)).commit(any());
+    }
+
+    @Test
+    void importPatients_WhenInsertSkipsRow_ShouldReportDuplicate() {
+        when(patientImportRepository.insertPatients(anyList())).thenReturn(Arrays.asList(7L, null));
+
+        PatientImportResultDto result = importNdjson(
+                patientJson(1, "John", "Smith", "john@example.com", null),
+                patientJson(1, "Jane", "Doe", "jane@example.com", null));
+
+        assertEquals(1, result.getImported());
+        assertEquals(ImportRowStatus.DUPLICATE, result.getRows().get(1).getStatus());
+        assertEquals(List.of(IMPORT_INSERT_SKIPPED), result.getRows().get(1).getErrors());
+        verify(auditLogStore).saveAll(argThat(audited -> audited.size() == 1 && audited.get(0).getEntityId() == 7L));
+        verify(facilityRepository).adjustPatientCount(1L, 1L);
+    }
+
+    @Test
+    void importPatients_Csv_ShouldMapHeaderColumnsAndTreatEmptyCellsAsUnset() {
+        String csv = "facilityId,firstName,lastName,dateOfBirth,gender,email,phoneNumber\n" +
+                "1,John,\"Smith, Jr\",1990-01-01,Male,john@example.com,\n" +
+                "1,Jane,Doe,01/02/1990,Female,,\n";
+
+        PatientImportResultDto result = patientImportService.importPatients(stream(csv), DataFormat.CSV);
+
+        assertEquals(2, result.getTotalRows());
+        assertEquals(ImportRowStatus.IMPORTED, result.getRows().get(0).getStatus());
+        assertEquals(ImportRowStatus.INVALID, result.getRows().get(1).getStatus());
+
+        ArgumentCaptor<List<PatientDto>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(patientImportRepository).insertPatients(inserted.capture());
+        PatientDto patient = inserted.getValue().get(0);
+        assertEquals("Smith, Jr", patient.getLastName());
+        assertEquals(LocalDate.of(1990, 1, 1), patient.getDateOfBirth());
+        assertNull(patient.getPhoneNumber());
+    }
+
+    @Test
+    void importPatients_WhenInsertSkipsRow_ShouldNotTreatItsValuesAsImported() {
+        ReflectionTestUtils.setField(patientImportService, "batchSize", 2);
+        when(patientImportRepository.insertPatients(anyList()))
+                .thenReturn(Collections.singletonList(null), List.of(8L));
+
+        PatientImportResultDto result = importNdjson(
+                patientJson(1, "John", "Smith", "john@example.com", null),
+                patientJson(1, "Johnny", "Smith", "john@example.com", null),
+                patientJson(1, "Jack", "Smith", "john@example.com", null));
+
+        assertEquals(List.of(IMPORT_INSERT_SKIPPED), result.getRows().get(0).getErrors());
+        assertEquals(List.of("Another patient record exists with the same email address 'john@example.com'."),
+                result.getRows().get(1).getErrors());
+        assertEquals(ImportRowStatus.IMPORTED, result.getRows().get(2).getStatus());
+        assertEquals(8L, result.getRows().get(2).getPatientId());
+    }
+
+    @Test
+    void importPatients_WhenChunkFails_ShouldReportItsRowsAsFailedAndImportTheRest() {
+        ReflectionTestUtils.setField(patientImportService, "batchSize", 2);
+        when(patientImportRepository.insertPatients(anyList()))
+                .thenReturn(List.of(1L, 2L))
+                .thenThrow(new DataAccessResourceFailureException("connection lost"))
+                .thenReturn(List.of(5L));
+
+        PatientImportResultDto result = importNdjson(
+                patientJson(1, "A", "One", "a@example.com", null),
+                patientJson(1, "B", "Two", null, null),
+                patientJson(1, "C", "Three", "c@example.com", null),
+                patientJson(42, "D", "Four", null, null),
+                patientJson(1, "E", "Five", "c@example.com", null));
+
+        assertEquals(5, result.getTotalRows());
+        assertEquals(3, result.getImported());
+        assertEquals(1, result.getFailed());
+        assertEquals(1, result.getInvalid());
+        PatientImportRowResultDto failed = result.getRows().get(2);
+        assertEquals(ImportRowStatus.FAILED, failed.getStatus());
+        assertTrue(failed.getErrors().get(0).startsWith("The rows 3 to 4 could not be saved"));
+        assertEquals(ImportRowStatus.INVALID, result.getRows().get(3).getStatus());
+        // The failed row's email was never imported, so the later row may use it
+        assertEquals(5L, result.getRows().get(4).getPatientId());
+        verify(transactionManager).rollback(any());
+        verify(nameSearchBackend, times(3)).patientChanged(any());
+    }
+
+    @Test
+    void importPatients_EmptyBody_ShouldReportNothing() {
+        PatientImportResultDto result = importNdjson();
+
+        assertEquals(0, result.getTotalRows());
+        assertEquals(Collections.emptyList(), result.getRows());
+        verifyNoInteractions(patientImportRepository);
+    }
+
+    private PatientImportResultDto importNdjson(String... lines) {
+        return patientImportService.importPatients(stream(String.join("\n", lines)), DataFormat.NDJSON);
+    }
+
+    private InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String patientJson(long facilityId, String firstName, String lastName, String email, String insuranceNumber) {
+        return String.format("{\"facilityId\":%d,\"firstName\":\"%s\",\"lastName\":\"%s\",\"dateOfBirth\":\"1990-01-01\"," +
+                        "\"gender\":\"Male\"%s%s}", facilityId, firstName, lastName,
+                email != null ? ",\"email\":\"" + email + "\"" : "",
+                insuranceNumber != null ? ",\"insuranceNumber\":\"" + insuranceNumber + "\"" : "");
+    }
+}
@@ -1,28 +1,44 @@
 package com.healthcare.healthcare_system.service;
 
+import com.healthcare.healthcare_system.dto.CursorPage;
+import com.healthcare.healthcare_system.dto.KeysetCursor;
 import com.healthcare.healthcare_system.dto.PatientDto;
+import com.healthcare.healthcare_system.dto.PatientSearchCriteria;
 import com.healthcare.healthcare_system.exception.DuplicateResourceException;
 import com.healthcare.healthcare_system.exception.ResourceNotFoundException;
 import com.healthcare.healthcare_system.exception.ServiceException;
+import com.healthcare.healthcare_system.exception.ValidationException;
+import com.healthcare.healthcare_system.mapper.PatientMapper;
 import com.healthcare.healthcare_system.model.Facility;
 import com.healthcare.healthcare_system.model.Patient;
 import com.healthcare.healthcare_system.repository.FacilityRepository;
 import com.healthcare.healthcare_system.repository.PatientRepository;
+import com.healthcare.healthcare_system.util.CursorUtils;
 import com.healthcare.healthcare_system.util.PatientUtils;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mapstruct.factory.Mappers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.modelmapper.ModelMapper;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Optional;
 
+import static com.healthcare.healthcare_system.util.MessageUtils.PATIENT_ENTITY_TYPE;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -36,12 +52,15 @@ class PatientServiceTest {
     @Mock
     private FacilityRepository facilityRepository;
 
-    @Mock
-    private ModelMapper modelMapper;
+    @Spy
+    private PatientMapper patientMapper = Mappers.getMapper(PatientMapper.class);
 
     @Mock
     private AuditLogService auditLogService;
 
+    @Mock
+    private PatientConflictService patientConflictService;
+
     @InjectMocks
     private PatientService patientService;
 
@@ -78,10 +97,9 @@ class PatientServiceTest {
         // Arrange
         Page<Patient> patientPage = new PageImpl<>(Collections.singletonList(patient));
         when(patientRepository.findAll(any(Pageable.class))).thenReturn(patientPage);
-        when(modelMapper.map(any(Patient.class), eq(PatientDto.class))).thenReturn(patientDto);
 
         // Act
-        Page<PatientDto> result = patientService.getAllPatients(Pageable.unpaged(), null, null, null);
+        Page<PatientDto> result = patientService.getAllPatients(Pageable.unpaged(), new PatientSearchCriteria());
 
         // Assert
         assertNotNull(result);
@@ -93,25 +111,59 @@ class PatientServiceTest {
     void getAllPatients_WithSearchCriteria_ShouldReturnFilteredResults() {
         // Arrange
         Page<Patient> patientPage = new PageImpl<>(Collections.singletonList(patient));
-        when(patientRepository.findByLastNameContainingIgnoreCaseOrFirstNameContainingIgnoreCase(
-                anyString(), anyString(), any(Pageable.class))).thenReturn(patientPage);
-        when(modelMapper.map(any(Patient.class), eq(PatientDto.class))).thenReturn(patientDto);
+        when(patientRepository.findAll(any(Specification.class), any(Pageable.class))).thenReturn(patientPage);
 
         // Act
-        Page<PatientDto> result = patientService.getAllPatients(Pageable.unpaged(), "Doe", null, null);
+        Page<PatientDto> result = patientService.getAllPatients(Pageable.unpaged(),
+                PatientSearchCriteria.builder().search("Doe").build());
 
         // Assert
         assertNotNull(result);
         assertEquals(1, result.getTotalElements());
-        verify(patientRepository, times(1))
-                .findByLastNameContainingIgnoreCaseOrFirstNameContainingIgnoreCase(anyString(), anyString(), any(Pageable.class));
+        verify(patientRepository, times(1)).findAll(any(Specification.class), any(Pageable.class));
+        verify(patientRepository, never()).findAll(any(Pageable.class));
+    }
+
+    @Test
+    void getAllPatients_WithSeveralCriteria_ShouldIssueOneCombinedQuery() {
+        // Arrange
+        PatientSearchCriteria criteria = PatientSearchCriteria.builder()
+                .name("Smi")
+                .gender("Female")
+                .dobFrom(LocalDate.of(1980, 1, 1))
+                .dobTo(LocalDate.of(1980, 12, 31))
+                .facilityId(1L)
+                .insuranceNumber("INS123")
+                .build();
+        when(patientRepository.findAll(any(Specification.class), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(Collections.singletonList(patient)));
+
+        // Act
+        Page<PatientDto> result = patientService.getAllPatients(PageRequest.of(0, 10), criteria);
+
+        // Assert
+        assertEquals(1, result.getContent().size());
+        verify(patientRepository, times(1)).findAll(any(Specification.class), eq(PageRequest.of(0, 10)));
+        verifyNoMoreInteractions(patientRepository);
+    }
+
+    @Test
+    void getAllPatients_WithInvertedDobRange_ShouldThrowValidationException() {
+        // Arrange
+        PatientSearchCriteria criteria = PatientSearchCriteria.builder()
+                .dobFrom(LocalDate.of(1990, 1, 1))
+                .dobTo(LocalDate.of(1980, 1, 1))
+                .build();
+
+        // Act & Assert
+        assertThrows(ValidationException.class, () -> patientService.getAllPatients(Pageable.unpaged(), criteria));
+        verifyNoInteractions(patientRepository);
     }
 
     @Test
     void getPatientById_ShouldReturnPatientWhenExists() {
         // Arrange
         when(patientRepository.findById(1L)).thenReturn(Optional.of(patient));
-        when(modelMapper.map(patient, PatientDto.class)).thenReturn(patientDto);
 
         // Act
         PatientDto result = patientService.getPatientById(1L);
@@ -149,7 +201,6 @@ class PatientServiceTest {
         Page<Patient> patientPage = new PageImpl<>(Collections.singletonList(patient));
         when(facilityRepository.existsById(1L)).thenReturn(true);
         when(patientRepository.findByFacilityId(1L, Pageable.unpaged())).thenReturn(patientPage);
-        when(modelMapper.map(any(Patient.class), eq(PatientDto.class))).thenReturn(patientDto);
 
         // Act
         Page<PatientDto> result = patientService.getPatientsByFacility(1L, Pageable.unpaged());
@@ -171,22 +222,101 @@ class PatientServiceTest {
         verify(facilityRepository, times(1)).existsById(1L);
     }
 
+    @Test
+    void scrollPatients_ShouldReturnSliceWithNextCursorWhenMoreRowsExist() {
+        // Arrange
+        Patient second = new Patient();
+        second.setId(2L);
+        second.setLastName("Smith");
+        second.setFacility(facility);
+        Patient third = new Patient();
+        third.setId(3L);
+        third.setLastName("Taylor");
+        third.setFacility(facility);
+        when(patientRepository.scroll(isNull(), eq("lastName"), eq(Sort.Direction.ASC), isNull(), eq(3)))
+                .thenReturn(Arrays.asList(patient, second, third));
+
+        // Act
+        CursorPage<PatientDto> result = patientService.scrollPatients("", PageRequest.of(0, 2, Sort.by("lastName")),
+                new PatientSearchCriteria());
+
+        // Assert
+        assertEquals(2, result.getSize());
+        assertTrue(result.isHasNext());
+        KeysetCursor next = CursorUtils.decode(result.getNextCursor(), "Patient");
+        assertEquals("lastName", next.getSortProperty());
+        assertEquals("Smith", next.getSortValue());
+        assertEquals(2L, next.getId());
+    }
+
+    @Test
+    void scrollPatients_ShouldContinueFromCursorWithoutNextCursorOnLastSlice() {
+        // Arrange
+        String cursor = CursorUtils.encode(new KeysetCursor("id", Sort.Direction.ASC, "1", 1L));
+        when(patientRepository.scroll(isNull(), eq("id"), eq(Sort.Direction.ASC), any(KeysetCursor.class), eq(11)))
+                .thenReturn(Collections.singletonList(patient));
+
+        // Act
+        CursorPage<PatientDto> result = patientService.scrollPatients(cursor, PageRequest.of(0, 10), new PatientSearchCriteria());
+
+        // Assert
+        assertEquals(1, result.getSize());
+        assertFalse(result.isHasNext());
+        assertNull(result.getNextCursor());
+        verify(patientRepository, never()).findAll(any(Pageable.class));
+    }
+
+    @Test
+    void scrollPatients_WithCriteria_ShouldPassFilterToSeekQuery() {
+        // Arrange
+        when(patientRepository.scroll(notNull(), eq("id"), eq(Sort.Direction.ASC), isNull(), eq(11)))
+                .thenReturn(Collections.singletonList(patient));
+
+        // Act
+        CursorPage<PatientDto> result = patientService.scrollPatients("", PageRequest.of(0, 10),
+                PatientSearchCriteria.builder().name("Do").gender("Male").build());
+
+        // Assert
+        assertEquals(1, result.getSize());
+        assertFalse(result.isHasNext());
+    }
+
+    @Test
+    void scrollPatients_ShouldRejectUnsupportedSortProperty() {
+        assertThrows(ValidationException.class,
+                () -> patientService.scrollPatients("", PageRequest.of(0, 10, Sort.by("email")),
+                        new PatientSearchCriteria()));
+    }
+
+    @Test
+    void scrollPatients_ShouldRejectMalformedCursor() {
+        assertThrows(ValidationException.class,
+                () -> patientService.scrollPatients("not-a-cursor", PageRequest.of(0, 10),
+                        new PatientSearchCriteria()));
+    }
+
+    @Test
+    void scrollPatientsByFacility_ShouldThrowExceptionWhenFacilityNotFound() {
+        when(facilityRepository.existsById(1L)).thenReturn(false);
+
+        assertThrows(ResourceNotFoundException.class,
+                () -> patientService.scrollPatientsByFacility(1L, "", PageRequest.of(0, 10)));
+        verify(patientRepository, never()).scroll(any(), anyString(), any(), any(), anyInt());
+    }
+
     @Test
     void createPatient_ShouldSuccessfullyCreatePatient() {
         when(facilityRepository.findById(1L)).thenReturn(Optional.of(facility));
-        when(patientRepository.existsByEmailAndDeletedFalse(anyString())).thenReturn(false);
-        when(patientRepository.existsByPhoneNumberAndDeletedFalse(anyString())).thenReturn(false);
-
-        when(modelMapper.map(patientDto, Patient.class)).thenReturn(patient);
-        when(patientRepository.save(any(Patient.class))).thenReturn(patient);
-        when(modelMapper.map(patient, PatientDto.class)).thenReturn(patientDto);
+        when(patientRepository.saveAndFlush(any(Patient.class))).thenReturn(patient);
 
         PatientDto result = patientService.createPatient(patientDto);
 
         assertNotNull(result);
         assertEquals("John", result.getFirstName());
-        verify(patientRepository, times(1)).save(any(Patient.class));
-        verify(auditLogService, times(1)).logAudit(anyString(), anyLong(), anyString(), any(), any());
+        verify(patientRepository, times(1)).saveAndFlush(any(Patient.class));
+        verifyNoInteractions(patientConflictService);
+        verify(facilityRepository, times(1)).adjustPatientCount(1L, 1);
+        verify(auditLogService, times(1)).logCreate(eq(PATIENT_ENTITY_TYPE), anyLong(), any(PatientDto.class));
     }
 
     @Test
@@ -203,11 +333,16 @@ class PatientServiceTest {
     void createPatient_ShouldThrowExceptionWhenDuplicateEmail() {
         // Arrange
         when(facilityRepository.findById(1L)).thenReturn(Optional.of(facility));
-        when(patientRepository.existsByEmailAndDeletedFalse(anyString())).thenReturn(true);
+        when(patientRepository.saveAndFlush(any(Patient.class))).thenThrow(uniqueViolation("uq_patients_email"));
+        when(patientConflictService.findConflictingFields(any(PatientDto.class), isNull()))
+                .thenReturn(Collections.singletonList("email address 'john.doe@example.com'"));
 
         // Act & Assert
-        assertThrows(DuplicateResourceException.class, () -> patientService.createPatient(patientDto));
-        verify(patientRepository, times(1)).existsByEmailAndDeletedFalse(anyString());
+        DuplicateResourceException exception =
+                assertThrows(DuplicateResourceException.class, () -> patientService.createPatient(patientDto));
+        assertTrue(exception.getTechnicalDetails().contains("email address 'john.doe@example.com'"));
+        verify(facilityRepository, never()).adjustPatientCount(anyLong(), anyLong());
+        verifyNoInteractions(auditLogService);
     }
 
     @Test
@@ -231,25 +366,7 @@ class PatientServiceTest {
 
         when(patientRepository.findById(1L)).thenReturn(Optional.of(patient));
         when(facilityRepository.findById(1L)).thenReturn(Optional.of(facility));
-
-        // Only mock the duplicate checks if they're actually needed for this test
-        // In this case, since we're not changing the email/phone/insurance, they might not be needed
-        lenient().when(patientRepository.existsByEmailAndIdNotAndDeletedFalse(anyString(), anyLong())).thenReturn(false);
-        lenient().when(patientRepository.existsByPhoneNumberAndIdNotAndDeletedFalse(anyString(), anyLong())).thenReturn(false);
-        lenient().when(patientRepository.existsByInsuranceNumberAndIdNotAndDeletedFalse(anyString(), anyLong())).thenReturn(false);
-
-        // Setup the mapping behavior
-        doAnswer(invocation -> {
-            PatientDto source = invocation.getArgument(0);
-            Patient destination = invocation.getArgument(1);
-            destination.setFirstName(source.getFirstName());
-            destination.setLastName(source.getLastName());
-            destination.setFacility(facility);
-            return null;
-        }).when(modelMapper).map(updatedDto, patient);
-
-        when(patientRepository.save(any(Patient.class))).thenReturn(updatedPatient);
-        when(modelMapper.map(updatedPatient, PatientDto.class)).thenReturn(updatedDto);
+        when(patientRepository.saveAndFlush(any(Patient.class))).thenReturn(updatedPatient);
 
         // Act
         PatientDto result = patientService.updatePatient(1L, updatedDto);
@@ -258,8 +375,28 @@ class PatientServiceTest {
         assertNotNull(result);
         assertEquals("Updated", result.getFirstName());
         assertEquals("Doe", result.getLastName());
-        verify(patientRepository, times(1)).save(any(Patient.class));
-        verify(auditLogService, times(1)).logAudit(anyString(), anyLong(), anyString(), any(), any());
+        assertEquals("Updated", patient.getFirstName());
+        verify(patientRepository, times(1)).saveAndFlush(any(Patient.class));
+        verify(auditLogService, times(1)).logUpdate(eq(PATIENT_ENTITY_TYPE), anyLong(), any(PatientDto.class), any(PatientDto.class));
+    }
+
+    @Test
+    void updatePatient_ShouldMovePatientCountWhenFacilityChanges() {
+        // Arrange
+        Facility newFacility = new Facility();
+        newFacility.setId(2L);
+        patientDto.setFacilityId(2L);
+
+        when(patientRepository.findById(1L)).thenReturn(Optional.of(patient));
+        when(facilityRepository.findById(2L)).thenReturn(Optional.of(newFacility));
+        when(patientRepository.saveAndFlush(any(Patient.class))).thenReturn(patient);
+
+        // Act
+        patientService.updatePatient(1L, patientDto);
+
+        // Assert
+        verify(facilityRepository, times(1)).adjustPatientCount(1L, -1);
+        verify(facilityRepository, times(1)).adjustPatientCount(2L, 1);
     }
 
     @Test
@@ -295,7 +432,8 @@ class PatientServiceTest {
         // Assert
         assertTrue(patient.isDeleted());
         verify(patientRepository, times(1)).save(any(Patient.class));
-        verify(auditLogService, times(1)).logAudit(anyString(), anyLong(), anyString(), any(), any());
+        verify(facilityRepository, times(1)).adjustPatientCount(1L, -1);
+        verify(auditLogService, times(1)).logDelete(eq(PATIENT_ENTITY_TYPE), anyLong());
     }
 
     @Test
@@ -309,28 +447,44 @@ class PatientServiceTest {
     }
 
     @Test
-    void checkForDuplicatePatient_ShouldThrowExceptionForDuplicateEmail() {
+    void createPatient_ShouldListEveryConflictingField() {
         // Arrange
         when(facilityRepository.findById(1L)).thenReturn(Optional.of(facility));
-        when(patientRepository.existsByEmailAndDeletedFalse(anyString())).thenReturn(true);
+        when(patientRepository.saveAndFlush(any(Patient.class))).thenThrow(uniqueViolation("uq_patients_phone_number"));
+        when(patientConflictService.findConflictingFields(any(PatientDto.class), isNull()))
+                .thenReturn(Arrays.asList("email address 'john.doe@example.com'", "phone number '1234567890'"));
 
         // Act & Assert
-        assertThrows(DuplicateResourceException.class,
-                () -> patientService.createPatient(patientDto));
+        DuplicateResourceException exception =
+                assertThrows(DuplicateResourceException.class, () -> patientService.createPatient(patientDto));
+        assertTrue(exception.getTechnicalDetails()
+                .contains("email address 'john.doe@example.com' and phone number '1234567890'"));
+    }
 
-        verify(patientRepository, times(1)).existsByEmailAndDeletedFalse(anyString());
+    @Test
+    void updatePatient_ShouldReportViolatedFieldWhenConflictIsGoneOnLookup() {
+        // Arrange
+        when(patientRepository.findById(1L)).thenReturn(Optional.of(patient));
+        when(facilityRepository.findById(1L)).thenReturn(Optional.of(facility));
+        when(patientRepository.saveAndFlush(any(Patient.class))).thenThrow(uniqueViolation("uq_patients_phone_number"));
+        when(patientConflictService.findConflictingFields(any(PatientDto.class), eq(1L))).thenReturn(Collections.emptyList());
+
+        // Act & Assert
+        DuplicateResourceException exception =
+                assertThrows(DuplicateResourceException.class, () -> patientService.updatePatient(1L, patientDto));
+        assertTrue(exception.getTechnicalDetails().contains("phone number '1234567890'"));
+        verify(facilityRepository, never()).adjustPatientCount(anyLong(), anyLong());
     }
 
     @Test
-    void checkForDuplicatePatient_ShouldThrowExceptionForDuplicatePhoneNumber() {
+    void createPatient_ShouldNotTreatOtherIntegrityViolationsAsDuplicates() {
         // Arrange
         when(facilityRepository.findById(1L)).thenReturn(Optional.of(facility));
-        when(patientRepository.existsByEmailAndDeletedFalse(anyString())).thenReturn(false);
-        when(patientRepository.existsByPhoneNumberAndDeletedFalse(anyString())).thenReturn(true);
+        when(patientRepository.saveAndFlush(any(Patient.class))).thenThrow(uniqueViolation("patients_facility_id_fkey"));
 
         // Act & Assert
-        assertThrows(DuplicateResourceException.class,
-                () -> patientService.createPatient(patientDto));
+        assertThrows(ServiceException.class, () -> patientService.createPatient(patientDto));
+        verifyNoInteractions(patientConflictService);
     }
 
     @Test
@@ -340,6 +494,12 @@ class PatientServiceTest {
 
         // Act & Assert
         assertThrows(ServiceException.class,
-                () -> patientService.getAllPatients(Pageable.unpaged(), null, null, null));
+                () -> patientService.getAllPatients(Pageable.unpaged(), new PatientSearchCriteria()));
+    }
+
+    private static DataIntegrityViolationException uniqueViolation(String constraintName) {
+        return new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("duplicate key value violates unique constraint",
+                        new SQLException("duplicate key value"), constraintName));
     }
 }
\ No newline at end of file